@@ -21,7 +21,13 @@ import java.io.OutputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 import com.opsmatters.core.documents.OutputFileWriter;
 import com.opsmatters.core.documents.Workbook;
@@ -48,6 +54,7 @@ import com.opsmatters.newrelic.api.model.alerts.conditions.InfraProcessRunningAl
 import com.opsmatters.newrelic.api.model.alerts.conditions.InfraHostNotReportingAlertCondition;
 import com.opsmatters.newrelic.api.model.applications.Application;
 import com.opsmatters.newrelic.api.model.servers.Server;
+import com.opsmatters.newrelic.batch.cache.EntityCache;
 import com.opsmatters.newrelic.batch.parsers.EmailChannelParser;
 import com.opsmatters.newrelic.batch.parsers.SlackChannelParser;
 import com.opsmatters.newrelic.batch.parsers.HipChatChannelParser;
@@ -80,6 +87,12 @@ import com.opsmatters.newrelic.batch.renderers.NrqlAlertConditionRenderer;
 import com.opsmatters.newrelic.batch.renderers.InfraMetricAlertConditionRenderer;
 import com.opsmatters.newrelic.batch.renderers.InfraProcessRunningAlertConditionRenderer;
 import com.opsmatters.newrelic.batch.renderers.InfraHostNotReportingAlertConditionRenderer;
+import com.opsmatters.newrelic.batch.events.BatchEvent;
+import com.opsmatters.newrelic.batch.progress.ProgressTracker;
+import com.opsmatters.newrelic.batch.sync.CanonicalForm;
+import com.opsmatters.newrelic.batch.sync.Fingerprint;
+import com.opsmatters.newrelic.batch.sync.Journal;
+import com.opsmatters.newrelic.batch.sync.StateFile;
 
 /**
  * Manager of operations on alert channels, policies and conditions.
@@ -90,6 +103,15 @@ public class AlertManager extends BaseManager
 {
     private static final Logger logger = Logger.getLogger(AlertManager.class.getName());
 
+    // Deleting a policy also deletes its conditions and channel links
+    private static final List<String> POLICY_RESOURCES = Arrays.asList("alertPolicies", "alertChannels",
+        "alertConditions", "externalServiceAlertConditions", "nrqlAlertConditions", "infraAlertConditions");
+
+    // The channels include the ids of the policies they are linked to
+    private static final List<String> CHANNEL_RESOURCES = Arrays.asList("alertChannels");
+
+    private EntityCache entityCache = EntityCache.getShared();
+
     /**
      * Constructor that takes an API key.
      * @param apiKey The API key used to authenticate the client
@@ -109,6 +131,56 @@ public class AlertManager extends BaseManager
         super(apiKey, verbose);
     }
 
+    /**
+     * Sets the cache used to keep the applications and servers.
+     * <P>
+     * The cache shared by all the managers in the JVM is used by default.
+     * </P>
+     * @param entityCache The cache used to keep the applications and servers, or <CODE>null</CODE> to always read them
+     */
+    public void setEntityCache(EntityCache entityCache)
+    {
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * Returns the cache used to keep the applications and servers.
+     * @return The cache used to keep the applications and servers
+     */
+    public EntityCache getEntityCache()
+    {
+        return entityCache;
+    }
+
+    /**
+     * Discards the applications and servers kept for this account, so that they are read again.
+     */
+    public void invalidateEntities()
+    {
+        if(entityCache != null)
+            entityCache.invalidatePrefix(getApiKey()+"|");
+    }
+
+    /**
+     * Returns the resources whose results kept by the read cache are discarded after a write to the given endpoint.
+     * <P>
+     * Writes to policies affect the conditions and channels of the policies, and writes to the links
+     * between policies and channels affect the channels. Writes to conditions only affect their own family.
+     * </P>
+     * @param endpoint The name of the API endpoint, eg. "alertPolicies.create"
+     * @return The resources affected by the write, eg. "alertPolicies"
+     */
+    @Override
+    protected List<String> getInvalidatedResources(String endpoint)
+    {
+        String resource = getResource(endpoint);
+        if(resource.equals("alertPolicies"))
+            return POLICY_RESOURCES;
+        else if(resource.equals("alertPolicyChannels"))
+            return CHANNEL_RESOURCES;
+        return super.getInvalidatedResources(endpoint);
+    }
+
     /**
      * Returns the alert policies.
      * @return The alert policies
@@ -120,7 +192,13 @@ public class AlertManager extends BaseManager
         // Get the alert policies
         if(verbose())
             logger.info("Getting the alert policies");
-        Collection<AlertPolicy> policies = apiClient.alertPolicies().list();
+        Collection<AlertPolicy> policies = readList("alertPolicies.list", null, new Callable<Collection<AlertPolicy>>()
+        {
+            public Collection<AlertPolicy> call() throws Exception
+            {
+                return apiClient.alertPolicies().list();
+            }
+        });
         if(verbose())
             logger.info("Got "+policies.size()+" alert policies");
         return toList(policies);
@@ -142,8 +220,21 @@ public class AlertManager extends BaseManager
         List<AlertPolicy> ret = new ArrayList<AlertPolicy>();
         if(verbose())
             logger.info("Creating "+policies.size()+" alert policies");
-        for(AlertPolicy policy : policies)
-            ret.add(createAlertPolicy(policy));
+        ProgressTracker progress = startProgress("Creating alert policies", policies.size());
+        try
+        {
+            for(AlertPolicy policy : policies)
+            {
+                progress.started();
+                ret.add(createAlertPolicy(policy));
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
+        }
 
         return ret;
     }
@@ -153,32 +244,148 @@ public class AlertManager extends BaseManager
      * @param policy The alert policy to create
      * @return The created alert policy
      */
-    public AlertPolicy createAlertPolicy(AlertPolicy policy)
+    public AlertPolicy createAlertPolicy(final AlertPolicy policy)
     {
         checkInitialize();
 
-        // Create the policy
+        // Skip the alert policy if it has not changed since it was created
+        String key = StateFile.getKey(policy);
+        String fingerprint = getStateFile() != null ? Fingerprint.of(policy) : null;
+        Long id = getUnchangedId(key, fingerprint);
+        if(id != null)
+        {
+            policy.setId(id);
+            logger.fine("Skipped unchanged alert policy: "+id+" - "+policy.getName());
+            return policy;
+        }
+
+        // Skip the alert policy if it was created before the bulk operation was interrupted
+        id = getCompletedId(Journal.CREATE, key);
+        if(id != null)
+        {
+            policy.setId(id);
+            logger.fine("Skipped completed alert policy: "+id+" - "+policy.getName());
+            return policy;
+        }
+
+        // Create the policy, unless it was created but its channels may not have been added
         AlertPolicyChannel channels = policy.getChannels();
-        if(verbose())
-            logger.info("Creating alert policy: "+policy.getName());
-        policy = apiClient.alertPolicies().create(policy).get();
-        logger.info("Created alert policy: "+policy.getId()+" - "+policy.getName());
+        final AlertPolicy ret;
+        id = isPending(Journal.CREATE, key) ? findAlertPolicyId(policy.getName()) : null;
+        if(id != null)
+        {
+            policy.setId(id);
+            ret = policy;
+            logger.fine("Resumed alert policy: "+id+" - "+policy.getName());
+        }
+        else
+        {
+            beginOperation(Journal.CREATE, key);
+            if(verbose())
+                logger.info("Creating alert policy: "+policy.getName());
+            ret = call("alertPolicies.create", policy, new Callable<AlertPolicy>()
+            {
+                public AlertPolicy call() throws Exception
+                {
+                    return apiClient.alertPolicies().create(policy).get();
+                }
+            });
+            logger.fine("Created alert policy: "+ret.getId()+" - "+ret.getName());
+        }
 
         // Add the channels for the policy
         if(channels != null)
         {
-            for(Long channelId : channels.getChannelIds())
+            for(final Long channelId : channels.getChannelIds())
 				{
                 if(channelId != null)
                 {
-                    apiClient.alertPolicyChannels().update(policy.getId(), channelId);
+                    call("alertPolicyChannels.update", new Callable<Void>()
+                    {
+                        public Void call() throws Exception
+                        {
+                            apiClient.alertPolicyChannels().update(ret.getId(), channelId);
+                            return null;
+                        }
+                    });
                     if(verbose())
                         logger.info("Added channel for alert policy: "+channelId);
                 }
             }
         }
 
-        return policy;
+        // Record the policy once its channels have been added
+        putState(key, ret.getId(), StateFile.POLICY, null, fingerprint);
+        completeOperation(Journal.CREATE, key, ret.getId());
+
+        return ret;
+    }
+
+    /**
+     * Updates the given alert policy.
+     * <P>
+     * The policy must have the id of the existing policy. The channels of the policy are not changed.
+     * </P>
+     * @param policy The alert policy to update
+     * @return The updated alert policy
+     */
+    public AlertPolicy updateAlertPolicy(final AlertPolicy policy)
+    {
+        checkInitialize();
+
+        // Update the policy
+        if(verbose())
+            logger.info("Updating alert policy: "+policy.getId()+" - "+policy.getName());
+        AlertPolicy ret = call("alertPolicies.update", policy, new Callable<AlertPolicy>()
+        {
+            public AlertPolicy call() throws Exception
+            {
+                return apiClient.alertPolicies().update(policy).get();
+            }
+        });
+        logger.fine("Updated alert policy: "+ret.getId()+" - "+ret.getName());
+
+        return ret;
+    }
+
+    /**
+     * Adds the given channel to the given alert policy.
+     * @param policyId The id of the alert policy
+     * @param channelId The id of the channel to add to the policy
+     */
+    public void addAlertPolicyChannel(final long policyId, final long channelId)
+    {
+        checkInitialize();
+
+        call("alertPolicyChannels.update", new Callable<Void>()
+        {
+            public Void call() throws Exception
+            {
+                apiClient.alertPolicyChannels().update(policyId, channelId);
+                return null;
+            }
+        });
+        logger.fine("Added channel "+channelId+" to alert policy: "+policyId);
+    }
+
+    /**
+     * Removes the given channel from the given alert policy.
+     * @param policyId The id of the alert policy
+     * @param channelId The id of the channel to remove from the policy
+     */
+    public void removeAlertPolicyChannel(final long policyId, final long channelId)
+    {
+        checkInitialize();
+
+        call("alertPolicyChannels.delete", new Callable<Void>()
+        {
+            public Void call() throws Exception
+            {
+                apiClient.alertPolicyChannels().delete(policyId, channelId);
+                return null;
+            }
+        });
+        logger.fine("Removed channel "+channelId+" from alert policy: "+policyId);
     }
 
     /**
@@ -195,10 +402,21 @@ public class AlertManager extends BaseManager
 
         // Delete the policies
         List<AlertPolicy> ret = new ArrayList<AlertPolicy>();
-        for(AlertPolicy policy : policies)
+        ProgressTracker progress = startProgress("Deleting alert policies", policies.size());
+        try
         {
-            deleteAlertPolicies(policy.getName());
-            ret.add(policy);
+            for(AlertPolicy policy : policies)
+            {
+                progress.started();
+                deleteAlertPolicies(null, policy.getName());
+                ret.add(policy);
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
         }
 
         return ret;
@@ -206,6 +424,9 @@ public class AlertManager extends BaseManager
 
     /**
      * Delete the given alert policy.
+     * <P>
+     * If the alert policy has an id it is deleted by that id, otherwise the alert policys with the same name are deleted.
+     * </P>
      * @param policy The alert policy to delete
      * @return The deleted alert policy
      */
@@ -214,25 +435,92 @@ public class AlertManager extends BaseManager
         checkInitialize();
 
         // Delete the policy
-        deleteAlertPolicies(policy.getName());
+        deleteAlertPolicies(policy.getId(), policy.getName());
 
         return policy;
     }
 
     /**
      * Delete the alert policies with the given name.
+     * @param knownId The id of the alert policy if it is known, otherwise <CODE>null</CODE>
      * @param name The name of the alert policies
      */
-    private void deleteAlertPolicies(String name)
+    private void deleteAlertPolicies(Long knownId, final String name)
     {
-        Collection<AlertPolicy> policies = apiClient.alertPolicies().list(name);
-        for(AlertPolicy policy : policies)
+        final String key = StateFile.getPolicyKey(name);
+
+        // Skip the delete if it completed before the bulk operation was interrupted
+        if(getCompletedId(Journal.DELETE, key) != null)
+            return;
+        beginOperation(Journal.DELETE, key);
+
+        // Delete using the given id or the id from the state file unless it is missing or stale
+        final Long id = knownId != null ? knownId : getStateId(key);
+        if(id != null)
+        {
+            boolean deleted = tryCall("alertPolicies.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.alertPolicies().delete(id);
+                    return null;
+                }
+            });
+            if(deleted)
+            {
+                logger.fine("Deleted alert policy: "+id+" - "+name);
+                removeState(key);
+                completeOperation(Journal.DELETE, key, id);
+                return;
+            }
+        }
+
+        // Otherwise look up the ids by name
+        Collection<AlertPolicy> policies = readList("alertPolicies.list", name, new Callable<Collection<AlertPolicy>>()
+        {
+            public Collection<AlertPolicy> call() throws Exception
+            {
+                return apiClient.alertPolicies().list(name);
+            }
+        });
+        for(final AlertPolicy policy : policies)
         {
             if(verbose())
                 logger.info("Deleting alert policy: "+policy.getId());
-            apiClient.alertPolicies().delete(policy.getId());
-            logger.info("Deleted alert policy : "+policy.getId()+" - "+policy.getName());
+            call("alertPolicies.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.alertPolicies().delete(policy.getId());
+                    return null;
+                }
+            });
+            logger.fine("Deleted alert policy : "+policy.getId()+" - "+policy.getName());
+        }
+        removeState(key);
+        completeOperation(Journal.DELETE, key, 0L);
+    }
+
+    /**
+     * Returns the id of the alert policy with the given name.
+     * @param name The name of the alert policy
+     * @return The id of the alert policy, or null if it does not exist
+     */
+    private Long findAlertPolicyId(final String name)
+    {
+        Collection<AlertPolicy> policies = readList("alertPolicies.list", name, new Callable<Collection<AlertPolicy>>()
+        {
+            public Collection<AlertPolicy> call() throws Exception
+            {
+                return apiClient.alertPolicies().list(name);
+            }
+        });
+        for(AlertPolicy policy : policies)
+        {
+            if(name.equals(policy.getName()))
+                return policy.getId();
         }
+        return null;
     }
 
     /**
@@ -251,16 +539,18 @@ public class AlertManager extends BaseManager
     {
         List<AlertPolicy> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, AlertPolicyParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading alert policy file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = AlertPolicyParser.parse(channels, getReader(filename, worksheet, stream));
+            ret = AlertPolicyParser.parse(channels, getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" alert policies");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -283,18 +573,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, AlertPolicyRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing alert policy file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             AlertPolicyRenderer.write(channels, policies, writer);
+            success = true;
             logger.info("Wrote "+policies.size()+" alert policies");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? policies.size() : 0, success);
         }
     }
 
@@ -309,7 +603,13 @@ public class AlertManager extends BaseManager
         // Get the alert channels
         if(verbose())
             logger.info("Getting the alert channels");
-        Collection<AlertChannel> channels = apiClient.alertChannels().list();
+        Collection<AlertChannel> channels = readList("alertChannels.list", null, new Callable<Collection<AlertChannel>>()
+        {
+            public Collection<AlertChannel> call() throws Exception
+            {
+                return apiClient.alertChannels().list();
+            }
+        });
         if(verbose())
             logger.info("Got "+channels.size()+" alert channels");
         return toList(channels);
@@ -331,8 +631,21 @@ public class AlertManager extends BaseManager
         List<AlertChannel> ret = new ArrayList<AlertChannel>();
         if(verbose())
             logger.info("Creating "+channels.size()+" alert channels");
-        for(AlertChannel channel : channels)
-            ret.add(createAlertChannel(channel));
+        ProgressTracker progress = startProgress("Creating alert channels", channels.size());
+        try
+        {
+            for(AlertChannel channel : channels)
+            {
+                progress.started();
+                ret.add(createAlertChannel(channel));
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
+        }
 
         return ret;
     }
@@ -342,17 +655,50 @@ public class AlertManager extends BaseManager
      * @param channel The alert channel to create
      * @return The created alert channel
      */
-    public AlertChannel createAlertChannel(AlertChannel channel)
+    public AlertChannel createAlertChannel(final AlertChannel channel)
     {
         checkInitialize();
 
+        // Skip the alert channel if it has not changed since it was created
+        String key = StateFile.getKey(channel);
+        String fingerprint = getStateFile() != null ? Fingerprint.of(channel) : null;
+        Long id = getUnchangedId(key, fingerprint);
+        if(id != null)
+        {
+            channel.setId(id);
+            logger.fine("Skipped unchanged alert channel: "+id+" - "+channel.getName());
+            return channel;
+        }
+
+        // Skip the alert channel if it was created before the bulk operation was interrupted
+        id = getCompletedId(Journal.CREATE, key);
+        if(id == null && isPending(Journal.CREATE, key))
+            id = findAlertChannelId(channel.getName());
+        if(id != null)
+        {
+            channel.setId(id);
+            logger.fine("Skipped completed alert channel: "+id+" - "+channel.getName());
+            putState(key, id, StateFile.CHANNEL, null, fingerprint);
+            completeOperation(Journal.CREATE, key, id);
+            return channel;
+        }
+
         // Create the channel
+        beginOperation(Journal.CREATE, key);
         if(verbose())
             logger.info("Creating alert channel: "+channel.getName());
-        channel = apiClient.alertChannels().create(channel).get();
-        logger.info("Created alert channel: "+channel.getId()+" - "+channel.getName());
+        AlertChannel ret = call("alertChannels.create", channel, new Callable<AlertChannel>()
+        {
+            public AlertChannel call() throws Exception
+            {
+                return apiClient.alertChannels().create(channel).get();
+            }
+        });
+        logger.fine("Created alert channel: "+ret.getId()+" - "+ret.getName());
+        putState(key, ret.getId(), StateFile.CHANNEL, null, fingerprint);
+        completeOperation(Journal.CREATE, key, ret.getId());
 
-        return channel;
+        return ret;
     }
 
     /**
@@ -369,10 +715,21 @@ public class AlertManager extends BaseManager
 
         // Delete the channels
         List<AlertChannel> ret = new ArrayList<AlertChannel>();
-        for(AlertChannel channel : channels)
+        ProgressTracker progress = startProgress("Deleting alert channels", channels.size());
+        try
+        {
+            for(AlertChannel channel : channels)
+            {
+                progress.started();
+                deleteAlertChannels(null, channel.getName());
+                ret.add(channel);
+                progress.completed();
+            }
+        }
+        finally
         {
-            deleteAlertChannels(channel.getName());
-            ret.add(channel);
+            progress.finish();
+            checkpoint();
         }
 
         return ret;
@@ -380,6 +737,9 @@ public class AlertManager extends BaseManager
 
     /**
      * Delete the given alert channel.
+     * <P>
+     * If the alert channel has an id it is deleted by that id, otherwise the alert channels with the same name are deleted.
+     * </P>
      * @param channel The alert channel to delete
      * @return The deleted alert channel
      */
@@ -388,25 +748,92 @@ public class AlertManager extends BaseManager
         checkInitialize();
 
         // Delete the channel
-        deleteAlertChannels(channel.getName());
+        deleteAlertChannels(channel.getId(), channel.getName());
 
         return channel;
     }
 
     /**
      * Delete the alert channels with the given name.
+     * @param knownId The id of the alert channel if it is known, otherwise <CODE>null</CODE>
      * @param name The name of the alert channels
      */
-    private void deleteAlertChannels(String name)
+    private void deleteAlertChannels(Long knownId, final String name)
     {
-        Collection<AlertChannel> channels = apiClient.alertChannels().list(name);
-        for(AlertChannel channel : channels)
+        final String key = StateFile.getChannelKey(name);
+
+        // Skip the delete if it completed before the bulk operation was interrupted
+        if(getCompletedId(Journal.DELETE, key) != null)
+            return;
+        beginOperation(Journal.DELETE, key);
+
+        // Delete using the given id or the id from the state file unless it is missing or stale
+        final Long id = knownId != null ? knownId : getStateId(key);
+        if(id != null)
+        {
+            boolean deleted = tryCall("alertChannels.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.alertChannels().delete(id);
+                    return null;
+                }
+            });
+            if(deleted)
+            {
+                logger.fine("Deleted alert channel: "+id+" - "+name);
+                removeState(key);
+                completeOperation(Journal.DELETE, key, id);
+                return;
+            }
+        }
+
+        // Otherwise look up the ids by name
+        Collection<AlertChannel> channels = readList("alertChannels.list", name, new Callable<Collection<AlertChannel>>()
+        {
+            public Collection<AlertChannel> call() throws Exception
+            {
+                return apiClient.alertChannels().list(name);
+            }
+        });
+        for(final AlertChannel channel : channels)
         {
             if(verbose())
                 logger.info("Deleting alert channel: "+channel.getId());
-            apiClient.alertChannels().delete(channel.getId());
-            logger.info("Deleted alert channel : "+channel.getId()+" - "+channel.getName());
+            call("alertChannels.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.alertChannels().delete(channel.getId());
+                    return null;
+                }
+            });
+            logger.fine("Deleted alert channel : "+channel.getId()+" - "+channel.getName());
+        }
+        removeState(key);
+        completeOperation(Journal.DELETE, key, 0L);
+    }
+
+    /**
+     * Returns the id of the alert channel with the given name.
+     * @param name The name of the alert channel
+     * @return The id of the alert channel, or null if it does not exist
+     */
+    private Long findAlertChannelId(final String name)
+    {
+        Collection<AlertChannel> channels = readList("alertChannels.list", name, new Callable<Collection<AlertChannel>>()
+        {
+            public Collection<AlertChannel> call() throws Exception
+            {
+                return apiClient.alertChannels().list(name);
+            }
+        });
+        for(AlertChannel channel : channels)
+        {
+            if(name.equals(channel.getName()))
+                return channel.getId();
         }
+        return null;
     }
 
     /**
@@ -423,16 +850,18 @@ public class AlertManager extends BaseManager
     {
         List<EmailChannel> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, EmailChannelParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading email alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = EmailChannelParser.parse(getReader(filename, worksheet, stream));
+            ret = EmailChannelParser.parse(getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" email alert channels");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -454,18 +883,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, EmailChannelRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing email alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             EmailChannelRenderer.write(channels, writer);
+            success = true;
             logger.info("Wrote "+channels.size()+" email alert channels");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? channels.size() : 0, success);
         }
     }
 
@@ -483,16 +916,18 @@ public class AlertManager extends BaseManager
     {
         List<SlackChannel> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, SlackChannelParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading Slack alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = SlackChannelParser.parse(getReader(filename, worksheet, stream));
+            ret = SlackChannelParser.parse(getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" Slack alert channels");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -514,18 +949,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, SlackChannelRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing Slack alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             SlackChannelRenderer.write(channels, writer);
+            success = true;
             logger.info("Wrote "+channels.size()+" Slack alert channels");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? channels.size() : 0, success);
         }
     }
 
@@ -543,16 +982,18 @@ public class AlertManager extends BaseManager
     {
         List<HipChatChannel> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, HipChatChannelParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading HipChat alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = HipChatChannelParser.parse(getReader(filename, worksheet, stream));
+            ret = HipChatChannelParser.parse(getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" HipChat alert channels");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -574,18 +1015,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, HipChatChannelRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing HipChat alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             HipChatChannelRenderer.write(channels, writer);
+            success = true;
             logger.info("Wrote "+channels.size()+" HipChat alert channels");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? channels.size() : 0, success);
         }
     }
 
@@ -603,16 +1048,18 @@ public class AlertManager extends BaseManager
     {
         List<CampfireChannel> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, CampfireChannelParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading Campfire alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = CampfireChannelParser.parse(getReader(filename, worksheet, stream));
+            ret = CampfireChannelParser.parse(getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" Campfire alert channels");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -634,18 +1081,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, CampfireChannelRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing Campfire alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             CampfireChannelRenderer.write(channels, writer);
+            success = true;
             logger.info("Wrote "+channels.size()+" Campfire alert channels");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? channels.size() : 0, success);
         }
     }
 
@@ -663,16 +1114,18 @@ public class AlertManager extends BaseManager
     {
         List<OpsGenieChannel> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, OpsGenieChannelParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading OpsGenie alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = OpsGenieChannelParser.parse(getReader(filename, worksheet, stream));
+            ret = OpsGenieChannelParser.parse(getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" OpsGenie alert channels");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -694,18 +1147,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, OpsGenieChannelRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing OpsGenie alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             OpsGenieChannelRenderer.write(channels, writer);
+            success = true;
             logger.info("Wrote "+channels.size()+" OpsGenie alert channels");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? channels.size() : 0, success);
         }
     }
 
@@ -723,16 +1180,18 @@ public class AlertManager extends BaseManager
     {
         List<PagerDutyChannel> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, PagerDutyChannelParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading PagerDuty alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = PagerDutyChannelParser.parse(getReader(filename, worksheet, stream));
+            ret = PagerDutyChannelParser.parse(getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" PagerDuty alert channels");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -754,18 +1213,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, PagerDutyChannelRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing PagerDuty alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             PagerDutyChannelRenderer.write(channels, writer);
+            success = true;
             logger.info("Wrote "+channels.size()+" PagerDuty alert channels");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? channels.size() : 0, success);
         }
     }
 
@@ -783,16 +1246,18 @@ public class AlertManager extends BaseManager
     {
         List<VictorOpsChannel> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, VictorOpsChannelParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading VictorOps alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = VictorOpsChannelParser.parse(getReader(filename, worksheet, stream));
+            ret = VictorOpsChannelParser.parse(getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" VictorOps alert channels");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -814,18 +1279,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, VictorOpsChannelRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing VictorOps alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             VictorOpsChannelRenderer.write(channels, writer);
+            success = true;
             logger.info("Wrote "+channels.size()+" VictorOps alert channels");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? channels.size() : 0, success);
         }
     }
 
@@ -843,16 +1312,18 @@ public class AlertManager extends BaseManager
     {
         List<UserChannel> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, UserChannelParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading User alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = UserChannelParser.parse(getReader(filename, worksheet, stream));
+            ret = UserChannelParser.parse(getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" User alert channels");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -874,18 +1345,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, UserChannelRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing User alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             UserChannelRenderer.write(channels, writer);
+            success = true;
             logger.info("Wrote "+channels.size()+" User alert channels");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? channels.size() : 0, success);
         }
     }
 
@@ -903,16 +1378,18 @@ public class AlertManager extends BaseManager
     {
         List<xMattersChannel> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, xMattersChannelParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading xMatters alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = xMattersChannelParser.parse(getReader(filename, worksheet, stream));
+            ret = xMattersChannelParser.parse(getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" xMatters alert channels");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -934,18 +1411,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, xMattersChannelRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing xMatters alert channel file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             xMattersChannelRenderer.write(channels, writer);
+            success = true;
             logger.info("Wrote "+channels.size()+" xMatters alert channels");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? channels.size() : 0, success);
         }
     }
 
@@ -960,6 +1441,116 @@ public class AlertManager extends BaseManager
             throw new IllegalArgumentException("condition has missing policyId: "+condition.getName());
     }
 
+    /**
+     * Throws an exception if the given alert condition does not have an id.
+     * @param condition The alert condition to check
+     * @throws IllegalArgumentException if the id of the condition is null or empty
+     */
+    private void checkId(BaseCondition condition)
+    {
+        if(condition.getId() == null || condition.getId() == 0L)
+            throw new IllegalArgumentException("condition has missing id: "+condition.getName());
+    }
+
+    /**
+     * The operations used to update the conditions of a condition family.
+     */
+    private interface ConditionUpdater<T extends BaseCondition>
+    {
+        /**
+         * Returns the existing conditions for the given policy.
+         */
+        Collection<T> list(long policyId);
+
+        /**
+         * Creates the given condition.
+         */
+        T create(T condition);
+
+        /**
+         * Updates the given condition in place.
+         */
+        T update(T condition);
+    }
+
+    /**
+     * Returns the key used to match the given condition to the existing conditions.
+     * <P>
+     * The key includes the type of the condition, as infrastructure conditions of different types
+     * can have the same name in the same policy.
+     * </P>
+     */
+    private static String getExistingKey(BaseCondition condition, long policyId)
+    {
+        return StateFile.getSubtype(condition)+"/"+policyId+"/"+condition.getName();
+    }
+
+    /**
+     * Updates the given conditions in place, matching them to the existing conditions by policy, type and name.
+     * @param type The type of the conditions, eg. "alert conditions"
+     * @param conditions The conditions to update
+     * @param updater The operations for the condition family
+     * @return The updated conditions
+     */
+    private <T extends BaseCondition> List<T> updateConditions(String type, List<? extends T> conditions,
+        ConditionUpdater<T> updater)
+    {
+        // Get the existing conditions once for each policy
+        Map<String,T> existing = new HashMap<String,T>();
+        Set<Long> policyIds = new HashSet<Long>();
+        for(T condition : conditions)
+        {
+            checkPolicyId(condition);
+            long policyId = condition.getPolicyId();
+            if(policyIds.add(policyId))
+            {
+                for(T current : updater.list(policyId))
+                {
+                    String key = getExistingKey(current, policyId);
+                    if(!existing.containsKey(key))
+                        existing.put(key, current);
+                }
+            }
+        }
+
+        // Update the conditions that have changed
+        List<T> ret = new ArrayList<T>();
+        if(verbose())
+            logger.info("Updating "+conditions.size()+" "+type);
+        ProgressTracker progress = startProgress("Updating "+type, conditions.size());
+        try
+        {
+            for(T condition : conditions)
+            {
+                progress.started();
+                T current = existing.get(getExistingKey(condition, condition.getPolicyId()));
+                if(current == null)
+                {
+                    ret.add(updater.create(condition));
+                }
+                else if(!CanonicalForm.of(condition).equals(CanonicalForm.of(current)))
+                {
+                    condition.setId(current.getId());
+                    ret.add(updater.update(condition));
+                }
+                else
+                {
+                    condition.setId(current.getId());
+                    logger.fine("Skipped unchanged condition: "+current.getId()+" - "+condition.getName());
+                    ret.add(condition);
+                }
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
+        }
+
+        return ret;
+    }
+
     /**
      * Returns the alert conditions for the given policies.
      * @param policies The alert policies for the alert conditions
@@ -970,12 +1561,18 @@ public class AlertManager extends BaseManager
         checkInitialize();
 
         List<AlertCondition> ret = new ArrayList<AlertCondition>();
-        for(AlertPolicy policy : policies)
+        for(final AlertPolicy policy : policies)
         {
             // Get the alert conditions
             if(verbose())
                 logger.info("Getting the alert conditions for policy: "+policy.getId());
-            Collection<AlertCondition> conditions = apiClient.alertConditions().list(policy.getId());
+            Collection<AlertCondition> conditions = readList("alertConditions.list", String.valueOf(policy.getId()), new Callable<Collection<AlertCondition>>()
+            {
+                public Collection<AlertCondition> call() throws Exception
+                {
+                    return apiClient.alertConditions().list(policy.getId());
+                }
+            });
             if(verbose())
                 logger.info("Got "+conditions.size()+" alert conditions for policy: "+policy.getId());
 
@@ -1006,8 +1603,21 @@ public class AlertManager extends BaseManager
         List<AlertCondition> ret = new ArrayList<AlertCondition>();
         if(verbose())
             logger.info("Creating "+conditions.size()+" alert conditions");
-        for(AlertCondition condition : conditions)
-            ret.add(createAlertCondition(condition));
+        ProgressTracker progress = startProgress("Creating alert conditions", conditions.size());
+        try
+        {
+            for(AlertCondition condition : conditions)
+            {
+                progress.started();
+                ret.add(createAlertCondition(condition));
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
+        }
 
         return ret;
     }
@@ -1017,18 +1627,123 @@ public class AlertManager extends BaseManager
      * @param condition The alert condition to create
      * @return The created alert condition
      */
-    public AlertCondition createAlertCondition(AlertCondition condition)
+    public AlertCondition createAlertCondition(final AlertCondition condition)
     {
         checkInitialize();
 
+        checkPolicyId(condition);
+
+        // Skip the alert condition if it has not changed since it was created
+        String key = StateFile.getKey(condition);
+        String fingerprint = getStateFile() != null ? Fingerprint.of(condition) : null;
+        Long id = getUnchangedId(key, fingerprint);
+        if(id != null)
+        {
+            condition.setId(id);
+            logger.fine("Skipped unchanged alert condition: "+id+" - "+condition.getName());
+            return condition;
+        }
+
+        // Skip the alert condition if it was created before the bulk operation was interrupted
+        id = getCompletedId(Journal.CREATE, key);
+        if(id == null && isPending(Journal.CREATE, key))
+            id = findAlertConditionId(condition.getPolicyId(), condition.getName());
+        if(id != null)
+        {
+            condition.setId(id);
+            logger.fine("Skipped completed alert condition: "+id+" - "+condition.getName());
+            putState(key, id, StateFile.ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+            completeOperation(Journal.CREATE, key, id);
+            return condition;
+        }
+
         // Create the condition
+        beginOperation(Journal.CREATE, key);
         if(verbose())
             logger.info("Creating alert condition: "+condition.getName());
-        checkPolicyId(condition);
-        condition = apiClient.alertConditions().create(condition.getPolicyId(), condition).get();
-        logger.info("Created alert condition: "+condition.getId()+" - "+condition.getName());
+        AlertCondition ret = call("alertConditions.create", condition, new Callable<AlertCondition>()
+        {
+            public AlertCondition call() throws Exception
+            {
+                return apiClient.alertConditions().create(condition.getPolicyId(), condition).get();
+            }
+        });
+        logger.fine("Created alert condition: "+ret.getId()+" - "+ret.getName());
+        putState(key, ret.getId(), StateFile.ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+        completeOperation(Journal.CREATE, key, ret.getId());
 
-        return condition;
+        return ret;
+    }
+
+    /**
+     * Updates the given alert conditions in place, matching them to the existing conditions by policy and name.
+     * <P>
+     * The existing conditions are listed once for each policy. Only the conditions that have changed are updated,
+     * conditions that do not exist are created, and unchanged conditions are skipped.
+     * Updating a condition keeps its violation history, unlike deleting and re-creating it.
+     * </P>
+     * @param conditions The alert conditions to update
+     * @return The updated alert conditions
+     */
+    public List<AlertCondition> updateAlertConditions(List<AlertCondition> conditions)
+    {
+        if(conditions == null)
+            throw new IllegalArgumentException("null conditions");
+
+        checkInitialize();
+
+        return updateConditions("alert conditions", conditions, new ConditionUpdater<AlertCondition>()
+        {
+            public Collection<AlertCondition> list(final long policyId)
+            {
+                return readList("alertConditions.list", String.valueOf(policyId), new Callable<Collection<AlertCondition>>()
+                {
+                    public Collection<AlertCondition> call() throws Exception
+                    {
+                        return apiClient.alertConditions().list(policyId);
+                    }
+                });
+            }
+
+            public AlertCondition create(AlertCondition condition)
+            {
+                return createAlertCondition(condition);
+            }
+
+            public AlertCondition update(AlertCondition condition)
+            {
+                return updateAlertCondition(condition);
+            }
+        });
+    }
+
+    /**
+     * Updates the given alert condition in place.
+     * @param condition The alert condition to update, which must have the id of the existing condition
+     * @return The updated alert condition
+     */
+    public AlertCondition updateAlertCondition(final AlertCondition condition)
+    {
+        checkInitialize();
+
+        checkPolicyId(condition);
+        checkId(condition);
+
+        // Update the condition
+        if(verbose())
+            logger.info("Updating alert condition: "+condition.getId()+" - "+condition.getName());
+        AlertCondition ret = call("alertConditions.update", condition, new Callable<AlertCondition>()
+        {
+            public AlertCondition call() throws Exception
+            {
+                return apiClient.alertConditions().update(condition).get();
+            }
+        });
+        logger.fine("Updated alert condition: "+ret.getId()+" - "+ret.getName());
+        String fingerprint = getStateFile() != null ? Fingerprint.of(condition) : null;
+        putState(StateFile.getKey(condition), ret.getId(), StateFile.ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+
+        return ret;
     }
 
     /**
@@ -1045,11 +1760,22 @@ public class AlertManager extends BaseManager
 
         // Delete the conditions
         List<AlertCondition> ret = new ArrayList<AlertCondition>();
-        for(AlertCondition condition : conditions)
+        ProgressTracker progress = startProgress("Deleting alert conditions", conditions.size());
+        try
         {
-            checkPolicyId(condition);
-            deleteAlertConditions(condition.getPolicyId(), condition.getName());
-            ret.add(condition);
+            for(AlertCondition condition : conditions)
+            {
+                progress.started();
+                checkPolicyId(condition);
+                deleteAlertConditions(condition.getId(), StateFile.getKey(condition), condition.getPolicyId(), condition.getName());
+                ret.add(condition);
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
         }
 
         return ret;
@@ -1057,6 +1783,9 @@ public class AlertManager extends BaseManager
 
     /**
      * Delete the given alert condition.
+     * <P>
+     * If the alert condition has an id it is deleted by that id, otherwise the alert conditions with the same name are deleted.
+     * </P>
      * @param condition The alert condition to delete
      * @return The deleted alert condition
      */
@@ -1066,26 +1795,93 @@ public class AlertManager extends BaseManager
 
         // Delete the condition
         checkPolicyId(condition);
-        deleteAlertConditions(condition.getPolicyId(), condition.getName());
+        deleteAlertConditions(condition.getId(), StateFile.getKey(condition), condition.getPolicyId(), condition.getName());
 
         return condition;
     }
 
     /**
      * Delete the alert conditions with the given name.
+     * @param knownId The id of the alert condition if it is known, otherwise <CODE>null</CODE>
+     * @param key The key of the alert conditions in the state file
      * @param policyId The id of the policy to delete the alert conditions from
      * @param name The name of the alert conditions
      */
-    private void deleteAlertConditions(long policyId, String name)
+    private void deleteAlertConditions(Long knownId, final String key, final long policyId, final String name)
     {
-        Collection<AlertCondition> conditions = apiClient.alertConditions().list(policyId, name);
-        for(AlertCondition condition : conditions)
+        // Skip the delete if it completed before the bulk operation was interrupted
+        if(getCompletedId(Journal.DELETE, key) != null)
+            return;
+        beginOperation(Journal.DELETE, key);
+
+        // Delete using the given id or the id from the state file unless it is missing or stale
+        final Long id = knownId != null ? knownId : getStateId(key);
+        if(id != null)
+        {
+            boolean deleted = tryCall("alertConditions.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.alertConditions().delete(id);
+                    return null;
+                }
+            });
+            if(deleted)
+            {
+                logger.fine("Deleted alert condition: "+id+" - "+name);
+                removeState(key);
+                completeOperation(Journal.DELETE, key, id);
+                return;
+            }
+        }
+
+        // Otherwise look up the ids by name
+        Collection<AlertCondition> conditions = readList("alertConditions.list", policyId+":"+name, new Callable<Collection<AlertCondition>>()
+        {
+            public Collection<AlertCondition> call() throws Exception
+            {
+                return apiClient.alertConditions().list(policyId, name);
+            }
+        });
+        for(final AlertCondition condition : conditions)
         {
             if(verbose())
                 logger.info("Deleting alert condition: "+condition.getId());
-            apiClient.alertConditions().delete(condition.getId());
-            logger.info("Deleted alert condition : "+condition.getId()+" - "+condition.getName());
+            call("alertConditions.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.alertConditions().delete(condition.getId());
+                    return null;
+                }
+            });
+            logger.fine("Deleted alert condition : "+condition.getId()+" - "+condition.getName());
+        }
+        removeState(key);
+        completeOperation(Journal.DELETE, key, 0L);
+    }
+
+    /**
+     * Returns the id of the alert condition with the given name.
+     * @param policyId The id of the policy of the alert condition
+     * @param name The name of the alert condition
+     * @return The id of the alert condition, or null if it does not exist
+     */
+    private Long findAlertConditionId(final long policyId, final String name)
+    {
+        Collection<AlertCondition> conditions = readList("alertConditions.list", policyId+":"+name, new Callable<Collection<AlertCondition>>()
+        {
+            public Collection<AlertCondition> call() throws Exception
+            {
+                return apiClient.alertConditions().list(policyId, name);
+            }
+        });
+        for(AlertCondition condition : conditions)
+        {
+            if(name.equals(condition.getName()))
+                return condition.getId();
         }
+        return null;
     }
 
     /**
@@ -1105,16 +1901,18 @@ public class AlertManager extends BaseManager
     {
         List<AlertCondition> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, AlertConditionParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = AlertConditionParser.parse(policies, entities, getReader(filename, worksheet, stream));
+            ret = AlertConditionParser.parse(policies, entities, getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" alert conditions");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -1138,18 +1936,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, AlertConditionRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             AlertConditionRenderer.write(policies, entities, conditions, writer);
+            success = true;
             logger.info("Wrote "+conditions.size()+" alert conditions");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? conditions.size() : 0, success);
         }
     }
 
@@ -1163,12 +1965,18 @@ public class AlertManager extends BaseManager
         checkInitialize();
 
         List<ExternalServiceAlertCondition> ret = new ArrayList<ExternalServiceAlertCondition>();
-        for(AlertPolicy policy : policies)
+        for(final AlertPolicy policy : policies)
         {
             // Get the alert conditions
             if(verbose())
                 logger.info("Getting the external service alert conditions for policy: "+policy.getId());
-            Collection<ExternalServiceAlertCondition> conditions = apiClient.externalServiceAlertConditions().list(policy.getId());
+            Collection<ExternalServiceAlertCondition> conditions = readList("externalServiceAlertConditions.list", String.valueOf(policy.getId()), new Callable<Collection<ExternalServiceAlertCondition>>()
+            {
+                public Collection<ExternalServiceAlertCondition> call() throws Exception
+                {
+                    return apiClient.externalServiceAlertConditions().list(policy.getId());
+                }
+            });
             if(verbose())
                 logger.info("Got "+conditions.size()+" external service alert conditions for policy: "+policy.getId());
 
@@ -1199,8 +2007,21 @@ public class AlertManager extends BaseManager
         List<ExternalServiceAlertCondition> ret = new ArrayList<ExternalServiceAlertCondition>();
         if(verbose())
             logger.info("Creating "+conditions.size()+" external service alert conditions");
-        for(ExternalServiceAlertCondition condition : conditions)
-            ret.add(createExternalServiceAlertCondition(condition));
+        ProgressTracker progress = startProgress("Creating external service alert conditions", conditions.size());
+        try
+        {
+            for(ExternalServiceAlertCondition condition : conditions)
+            {
+                progress.started();
+                ret.add(createExternalServiceAlertCondition(condition));
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
+        }
 
         return ret;
     }
@@ -1210,18 +2031,123 @@ public class AlertManager extends BaseManager
      * @param condition The external service alert condition to create
      * @return The created external service alert condition
      */
-    public ExternalServiceAlertCondition createExternalServiceAlertCondition(ExternalServiceAlertCondition condition)
+    public ExternalServiceAlertCondition createExternalServiceAlertCondition(final ExternalServiceAlertCondition condition)
     {
         checkInitialize();
 
+        checkPolicyId(condition);
+
+        // Skip the external service alert condition if it has not changed since it was created
+        String key = StateFile.getKey(condition);
+        String fingerprint = getStateFile() != null ? Fingerprint.of(condition) : null;
+        Long id = getUnchangedId(key, fingerprint);
+        if(id != null)
+        {
+            condition.setId(id);
+            logger.fine("Skipped unchanged external service alert condition: "+id+" - "+condition.getName());
+            return condition;
+        }
+
+        // Skip the external service alert condition if it was created before the bulk operation was interrupted
+        id = getCompletedId(Journal.CREATE, key);
+        if(id == null && isPending(Journal.CREATE, key))
+            id = findExternalServiceAlertConditionId(condition.getPolicyId(), condition.getName());
+        if(id != null)
+        {
+            condition.setId(id);
+            logger.fine("Skipped completed external service alert condition: "+id+" - "+condition.getName());
+            putState(key, id, StateFile.EXTERNAL_SERVICE_ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+            completeOperation(Journal.CREATE, key, id);
+            return condition;
+        }
+
         // Create the condition
+        beginOperation(Journal.CREATE, key);
         if(verbose())
             logger.info("Creating external service alert condition: "+condition.getName());
+        ExternalServiceAlertCondition ret = call("externalServiceAlertConditions.create", condition, new Callable<ExternalServiceAlertCondition>()
+        {
+            public ExternalServiceAlertCondition call() throws Exception
+            {
+                return apiClient.externalServiceAlertConditions().create(condition.getPolicyId(), condition).get();
+            }
+        });
+        logger.fine("Created external service alert condition: "+ret.getId()+" - "+ret.getName());
+        putState(key, ret.getId(), StateFile.EXTERNAL_SERVICE_ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+        completeOperation(Journal.CREATE, key, ret.getId());
+
+        return ret;
+    }
+
+    /**
+     * Updates the given external service alert conditions in place, matching them to the existing conditions by policy and name.
+     * <P>
+     * The existing conditions are listed once for each policy. Only the conditions that have changed are updated,
+     * conditions that do not exist are created, and unchanged conditions are skipped.
+     * Updating a condition keeps its violation history, unlike deleting and re-creating it.
+     * </P>
+     * @param conditions The external service alert conditions to update
+     * @return The updated external service alert conditions
+     */
+    public List<ExternalServiceAlertCondition> updateExternalServiceAlertConditions(List<ExternalServiceAlertCondition> conditions)
+    {
+        if(conditions == null)
+            throw new IllegalArgumentException("null conditions");
+
+        checkInitialize();
+
+        return updateConditions("external service alert conditions", conditions, new ConditionUpdater<ExternalServiceAlertCondition>()
+        {
+            public Collection<ExternalServiceAlertCondition> list(final long policyId)
+            {
+                return readList("externalServiceAlertConditions.list", String.valueOf(policyId), new Callable<Collection<ExternalServiceAlertCondition>>()
+                {
+                    public Collection<ExternalServiceAlertCondition> call() throws Exception
+                    {
+                        return apiClient.externalServiceAlertConditions().list(policyId);
+                    }
+                });
+            }
+
+            public ExternalServiceAlertCondition create(ExternalServiceAlertCondition condition)
+            {
+                return createExternalServiceAlertCondition(condition);
+            }
+
+            public ExternalServiceAlertCondition update(ExternalServiceAlertCondition condition)
+            {
+                return updateExternalServiceAlertCondition(condition);
+            }
+        });
+    }
+
+    /**
+     * Updates the given external service alert condition in place.
+     * @param condition The external service alert condition to update, which must have the id of the existing condition
+     * @return The updated external service alert condition
+     */
+    public ExternalServiceAlertCondition updateExternalServiceAlertCondition(final ExternalServiceAlertCondition condition)
+    {
+        checkInitialize();
+
         checkPolicyId(condition);
-        condition = apiClient.externalServiceAlertConditions().create(condition.getPolicyId(), condition).get();
-        logger.info("Created external service alert condition: "+condition.getId()+" - "+condition.getName());
+        checkId(condition);
 
-        return condition;
+        // Update the condition
+        if(verbose())
+            logger.info("Updating external service alert condition: "+condition.getId()+" - "+condition.getName());
+        ExternalServiceAlertCondition ret = call("externalServiceAlertConditions.update", condition, new Callable<ExternalServiceAlertCondition>()
+        {
+            public ExternalServiceAlertCondition call() throws Exception
+            {
+                return apiClient.externalServiceAlertConditions().update(condition).get();
+            }
+        });
+        logger.fine("Updated external service alert condition: "+ret.getId()+" - "+ret.getName());
+        String fingerprint = getStateFile() != null ? Fingerprint.of(condition) : null;
+        putState(StateFile.getKey(condition), ret.getId(), StateFile.EXTERNAL_SERVICE_ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+
+        return ret;
     }
 
     /**
@@ -1238,11 +2164,22 @@ public class AlertManager extends BaseManager
 
         // Delete the conditions
         List<ExternalServiceAlertCondition> ret = new ArrayList<ExternalServiceAlertCondition>();
-        for(ExternalServiceAlertCondition condition : conditions)
+        ProgressTracker progress = startProgress("Deleting external service alert conditions", conditions.size());
+        try
         {
-            checkPolicyId(condition);
-            deleteExternalServiceAlertConditions(condition.getPolicyId(), condition.getName());
-            ret.add(condition);
+            for(ExternalServiceAlertCondition condition : conditions)
+            {
+                progress.started();
+                checkPolicyId(condition);
+                deleteExternalServiceAlertConditions(condition.getId(), StateFile.getKey(condition), condition.getPolicyId(), condition.getName());
+                ret.add(condition);
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
         }
 
         return ret;
@@ -1250,6 +2187,9 @@ public class AlertManager extends BaseManager
 
     /**
      * Delete the given external service alert condition.
+     * <P>
+     * If the external service alert condition has an id it is deleted by that id, otherwise the external service alert conditions with the same name are deleted.
+     * </P>
      * @param condition The external service alert condition to delete
      * @return The deleted external service alert condition
      */
@@ -1259,26 +2199,93 @@ public class AlertManager extends BaseManager
 
         // Delete the condition
         checkPolicyId(condition);
-        deleteExternalServiceAlertConditions(condition.getPolicyId(), condition.getName());
+        deleteExternalServiceAlertConditions(condition.getId(), StateFile.getKey(condition), condition.getPolicyId(), condition.getName());
 
         return condition;
     }
 
     /**
      * Delete the external service alert conditions with the given name.
+     * @param knownId The id of the alert condition if it is known, otherwise <CODE>null</CODE>
+     * @param key The key of the alert conditions in the state file
      * @param policyId The id of the policy to delete the external service alert conditions from
      * @param name The name of the external service alert conditions
      */
-    private void deleteExternalServiceAlertConditions(long policyId, String name)
+    private void deleteExternalServiceAlertConditions(Long knownId, final String key, final long policyId, final String name)
     {
-        Collection<ExternalServiceAlertCondition> conditions = apiClient.externalServiceAlertConditions().list(policyId, name);
-        for(ExternalServiceAlertCondition condition : conditions)
+        // Skip the delete if it completed before the bulk operation was interrupted
+        if(getCompletedId(Journal.DELETE, key) != null)
+            return;
+        beginOperation(Journal.DELETE, key);
+
+        // Delete using the given id or the id from the state file unless it is missing or stale
+        final Long id = knownId != null ? knownId : getStateId(key);
+        if(id != null)
+        {
+            boolean deleted = tryCall("externalServiceAlertConditions.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.externalServiceAlertConditions().delete(id);
+                    return null;
+                }
+            });
+            if(deleted)
+            {
+                logger.fine("Deleted external service alert condition: "+id+" - "+name);
+                removeState(key);
+                completeOperation(Journal.DELETE, key, id);
+                return;
+            }
+        }
+
+        // Otherwise look up the ids by name
+        Collection<ExternalServiceAlertCondition> conditions = readList("externalServiceAlertConditions.list", policyId+":"+name, new Callable<Collection<ExternalServiceAlertCondition>>()
+        {
+            public Collection<ExternalServiceAlertCondition> call() throws Exception
+            {
+                return apiClient.externalServiceAlertConditions().list(policyId, name);
+            }
+        });
+        for(final ExternalServiceAlertCondition condition : conditions)
         {
             if(verbose())
                 logger.info("Deleting external service alert condition: "+condition.getId());
-            apiClient.externalServiceAlertConditions().delete(condition.getId());
-            logger.info("Deleted external service alert condition : "+condition.getId()+" - "+condition.getName());
+            call("externalServiceAlertConditions.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.externalServiceAlertConditions().delete(condition.getId());
+                    return null;
+                }
+            });
+            logger.fine("Deleted external service alert condition : "+condition.getId()+" - "+condition.getName());
+        }
+        removeState(key);
+        completeOperation(Journal.DELETE, key, 0L);
+    }
+
+    /**
+     * Returns the id of the external service alert condition with the given name.
+     * @param policyId The id of the policy of the external service alert condition
+     * @param name The name of the external service alert condition
+     * @return The id of the external service alert condition, or null if it does not exist
+     */
+    private Long findExternalServiceAlertConditionId(final long policyId, final String name)
+    {
+        Collection<ExternalServiceAlertCondition> conditions = readList("externalServiceAlertConditions.list", policyId+":"+name, new Callable<Collection<ExternalServiceAlertCondition>>()
+        {
+            public Collection<ExternalServiceAlertCondition> call() throws Exception
+            {
+                return apiClient.externalServiceAlertConditions().list(policyId, name);
+            }
+        });
+        for(ExternalServiceAlertCondition condition : conditions)
+        {
+            if(name.equals(condition.getName()))
+                return condition.getId();
         }
+        return null;
     }
 
     /**
@@ -1298,16 +2305,18 @@ public class AlertManager extends BaseManager
     {
         List<ExternalServiceAlertCondition> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, ExternalServiceAlertConditionParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading external service alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = ExternalServiceAlertConditionParser.parse(policies, entities, getReader(filename, worksheet, stream));
+            ret = ExternalServiceAlertConditionParser.parse(policies, entities, getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" external service alert conditions");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -1331,18 +2340,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, ExternalServiceAlertConditionRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing external service alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             ExternalServiceAlertConditionRenderer.write(policies, entities, conditions, writer);
+            success = true;
             logger.info("Wrote "+conditions.size()+" external service alert conditions");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? conditions.size() : 0, success);
         }
     }
 
@@ -1356,12 +2369,18 @@ public class AlertManager extends BaseManager
         checkInitialize();
 
         List<NrqlAlertCondition> ret = new ArrayList<NrqlAlertCondition>();
-        for(AlertPolicy policy : policies)
+        for(final AlertPolicy policy : policies)
         {
             // Get the alert conditions
             if(verbose())
                 logger.info("Getting the NRQL alert conditions for policy: "+policy.getId());
-            Collection<NrqlAlertCondition> conditions = apiClient.nrqlAlertConditions().list(policy.getId());
+            Collection<NrqlAlertCondition> conditions = readList("nrqlAlertConditions.list", String.valueOf(policy.getId()), new Callable<Collection<NrqlAlertCondition>>()
+            {
+                public Collection<NrqlAlertCondition> call() throws Exception
+                {
+                    return apiClient.nrqlAlertConditions().list(policy.getId());
+                }
+            });
             if(verbose())
                 logger.info("Got "+conditions.size()+" NRQL alert conditions for policy: "+policy.getId());
 
@@ -1392,8 +2411,21 @@ public class AlertManager extends BaseManager
         List<NrqlAlertCondition> ret = new ArrayList<NrqlAlertCondition>();
         if(verbose())
             logger.info("Creating "+conditions.size()+" NRQL alert conditions");
-        for(NrqlAlertCondition condition : conditions)
-            ret.add(createNrqlAlertCondition(condition));
+        ProgressTracker progress = startProgress("Creating NRQL alert conditions", conditions.size());
+        try
+        {
+            for(NrqlAlertCondition condition : conditions)
+            {
+                progress.started();
+                ret.add(createNrqlAlertCondition(condition));
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
+        }
 
         return ret;
     }
@@ -1403,18 +2435,123 @@ public class AlertManager extends BaseManager
      * @param condition The NRQL alert condition to create
      * @return The created NRQL alert condition
      */
-    public NrqlAlertCondition createNrqlAlertCondition(NrqlAlertCondition condition)
+    public NrqlAlertCondition createNrqlAlertCondition(final NrqlAlertCondition condition)
     {
         checkInitialize();
 
+        checkPolicyId(condition);
+
+        // Skip the NRQL alert condition if it has not changed since it was created
+        String key = StateFile.getKey(condition);
+        String fingerprint = getStateFile() != null ? Fingerprint.of(condition) : null;
+        Long id = getUnchangedId(key, fingerprint);
+        if(id != null)
+        {
+            condition.setId(id);
+            logger.fine("Skipped unchanged NRQL alert condition: "+id+" - "+condition.getName());
+            return condition;
+        }
+
+        // Skip the NRQL alert condition if it was created before the bulk operation was interrupted
+        id = getCompletedId(Journal.CREATE, key);
+        if(id == null && isPending(Journal.CREATE, key))
+            id = findNrqlAlertConditionId(condition.getPolicyId(), condition.getName());
+        if(id != null)
+        {
+            condition.setId(id);
+            logger.fine("Skipped completed NRQL alert condition: "+id+" - "+condition.getName());
+            putState(key, id, StateFile.NRQL_ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+            completeOperation(Journal.CREATE, key, id);
+            return condition;
+        }
+
         // Create the condition
+        beginOperation(Journal.CREATE, key);
         if(verbose())
             logger.info("Creating NRQL alert condition: "+condition.getName());
+        NrqlAlertCondition ret = call("nrqlAlertConditions.create", condition, new Callable<NrqlAlertCondition>()
+        {
+            public NrqlAlertCondition call() throws Exception
+            {
+                return apiClient.nrqlAlertConditions().create(condition.getPolicyId(), condition).get();
+            }
+        });
+        logger.fine("Created NRQL alert condition: "+ret.getId()+" - "+ret.getName());
+        putState(key, ret.getId(), StateFile.NRQL_ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+        completeOperation(Journal.CREATE, key, ret.getId());
+
+        return ret;
+    }
+
+    /**
+     * Updates the given NRQL alert conditions in place, matching them to the existing conditions by policy and name.
+     * <P>
+     * The existing conditions are listed once for each policy. Only the conditions that have changed are updated,
+     * conditions that do not exist are created, and unchanged conditions are skipped.
+     * Updating a condition keeps its violation history, unlike deleting and re-creating it.
+     * </P>
+     * @param conditions The NRQL alert conditions to update
+     * @return The updated NRQL alert conditions
+     */
+    public List<NrqlAlertCondition> updateNrqlAlertConditions(List<NrqlAlertCondition> conditions)
+    {
+        if(conditions == null)
+            throw new IllegalArgumentException("null conditions");
+
+        checkInitialize();
+
+        return updateConditions("NRQL alert conditions", conditions, new ConditionUpdater<NrqlAlertCondition>()
+        {
+            public Collection<NrqlAlertCondition> list(final long policyId)
+            {
+                return readList("nrqlAlertConditions.list", String.valueOf(policyId), new Callable<Collection<NrqlAlertCondition>>()
+                {
+                    public Collection<NrqlAlertCondition> call() throws Exception
+                    {
+                        return apiClient.nrqlAlertConditions().list(policyId);
+                    }
+                });
+            }
+
+            public NrqlAlertCondition create(NrqlAlertCondition condition)
+            {
+                return createNrqlAlertCondition(condition);
+            }
+
+            public NrqlAlertCondition update(NrqlAlertCondition condition)
+            {
+                return updateNrqlAlertCondition(condition);
+            }
+        });
+    }
+
+    /**
+     * Updates the given NRQL alert condition in place.
+     * @param condition The NRQL alert condition to update, which must have the id of the existing condition
+     * @return The updated NRQL alert condition
+     */
+    public NrqlAlertCondition updateNrqlAlertCondition(final NrqlAlertCondition condition)
+    {
+        checkInitialize();
+
         checkPolicyId(condition);
-        condition = apiClient.nrqlAlertConditions().create(condition.getPolicyId(), condition).get();
-        logger.info("Created NRQL alert condition: "+condition.getId()+" - "+condition.getName());
+        checkId(condition);
 
-        return condition;
+        // Update the condition
+        if(verbose())
+            logger.info("Updating NRQL alert condition: "+condition.getId()+" - "+condition.getName());
+        NrqlAlertCondition ret = call("nrqlAlertConditions.update", condition, new Callable<NrqlAlertCondition>()
+        {
+            public NrqlAlertCondition call() throws Exception
+            {
+                return apiClient.nrqlAlertConditions().update(condition).get();
+            }
+        });
+        logger.fine("Updated NRQL alert condition: "+ret.getId()+" - "+ret.getName());
+        String fingerprint = getStateFile() != null ? Fingerprint.of(condition) : null;
+        putState(StateFile.getKey(condition), ret.getId(), StateFile.NRQL_ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+
+        return ret;
     }
 
     /**
@@ -1431,11 +2568,22 @@ public class AlertManager extends BaseManager
 
         // Delete the conditions
         List<NrqlAlertCondition> ret = new ArrayList<NrqlAlertCondition>();
-        for(NrqlAlertCondition condition : conditions)
+        ProgressTracker progress = startProgress("Deleting NRQL alert conditions", conditions.size());
+        try
         {
-            checkPolicyId(condition);
-            deleteNrqlAlertConditions(condition.getPolicyId(), condition.getName());
-            ret.add(condition);
+            for(NrqlAlertCondition condition : conditions)
+            {
+                progress.started();
+                checkPolicyId(condition);
+                deleteNrqlAlertConditions(condition.getId(), StateFile.getKey(condition), condition.getPolicyId(), condition.getName());
+                ret.add(condition);
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
         }
 
         return ret;
@@ -1443,6 +2591,9 @@ public class AlertManager extends BaseManager
 
     /**
      * Delete the given NRQL alert condition.
+     * <P>
+     * If the NRQL alert condition has an id it is deleted by that id, otherwise the NRQL alert conditions with the same name are deleted.
+     * </P>
      * @param condition The NRQL alert condition to delete
      * @return The deleted NRQL alert condition
      */
@@ -1452,26 +2603,93 @@ public class AlertManager extends BaseManager
 
         // Delete the condition
         checkPolicyId(condition);
-        deleteNrqlAlertConditions(condition.getPolicyId(), condition.getName());
+        deleteNrqlAlertConditions(condition.getId(), StateFile.getKey(condition), condition.getPolicyId(), condition.getName());
 
         return condition;
     }
 
     /**
      * Delete the NRQL alert conditions with the given name.
+     * @param knownId The id of the alert condition if it is known, otherwise <CODE>null</CODE>
+     * @param key The key of the alert conditions in the state file
      * @param policyId The id of the policy to delete the NRQL alert conditions from
      * @param name The name of the NRQL alert conditions
      */
-    private void deleteNrqlAlertConditions(long policyId, String name)
+    private void deleteNrqlAlertConditions(Long knownId, final String key, final long policyId, final String name)
     {
-        Collection<NrqlAlertCondition> conditions = apiClient.nrqlAlertConditions().list(policyId, name);
-        for(NrqlAlertCondition condition : conditions)
+        // Skip the delete if it completed before the bulk operation was interrupted
+        if(getCompletedId(Journal.DELETE, key) != null)
+            return;
+        beginOperation(Journal.DELETE, key);
+
+        // Delete using the given id or the id from the state file unless it is missing or stale
+        final Long id = knownId != null ? knownId : getStateId(key);
+        if(id != null)
+        {
+            boolean deleted = tryCall("nrqlAlertConditions.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.nrqlAlertConditions().delete(id);
+                    return null;
+                }
+            });
+            if(deleted)
+            {
+                logger.fine("Deleted NRQL alert condition: "+id+" - "+name);
+                removeState(key);
+                completeOperation(Journal.DELETE, key, id);
+                return;
+            }
+        }
+
+        // Otherwise look up the ids by name
+        Collection<NrqlAlertCondition> conditions = readList("nrqlAlertConditions.list", policyId+":"+name, new Callable<Collection<NrqlAlertCondition>>()
+        {
+            public Collection<NrqlAlertCondition> call() throws Exception
+            {
+                return apiClient.nrqlAlertConditions().list(policyId, name);
+            }
+        });
+        for(final NrqlAlertCondition condition : conditions)
         {
             if(verbose())
                 logger.info("Deleting NRQL alert condition: "+condition.getId());
-            apiClient.nrqlAlertConditions().delete(condition.getId());
-            logger.info("Deleted i alert condition : "+condition.getId()+" - "+condition.getName());
+            call("nrqlAlertConditions.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.nrqlAlertConditions().delete(condition.getId());
+                    return null;
+                }
+            });
+            logger.fine("Deleted i alert condition : "+condition.getId()+" - "+condition.getName());
+        }
+        removeState(key);
+        completeOperation(Journal.DELETE, key, 0L);
+    }
+
+    /**
+     * Returns the id of the NRQL alert condition with the given name.
+     * @param policyId The id of the policy of the NRQL alert condition
+     * @param name The name of the NRQL alert condition
+     * @return The id of the NRQL alert condition, or null if it does not exist
+     */
+    private Long findNrqlAlertConditionId(final long policyId, final String name)
+    {
+        Collection<NrqlAlertCondition> conditions = readList("nrqlAlertConditions.list", policyId+":"+name, new Callable<Collection<NrqlAlertCondition>>()
+        {
+            public Collection<NrqlAlertCondition> call() throws Exception
+            {
+                return apiClient.nrqlAlertConditions().list(policyId, name);
+            }
+        });
+        for(NrqlAlertCondition condition : conditions)
+        {
+            if(name.equals(condition.getName()))
+                return condition.getId();
         }
+        return null;
     }
 
     /**
@@ -1490,16 +2708,18 @@ public class AlertManager extends BaseManager
     {
         List<NrqlAlertCondition> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, NrqlAlertConditionParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading NRQL alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = NrqlAlertConditionParser.parse(policies, getReader(filename, worksheet, stream));
+            ret = NrqlAlertConditionParser.parse(policies, getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" NRQL alert conditions");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -1522,19 +2742,53 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, NrqlAlertConditionRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing NRQL alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             NrqlAlertConditionRenderer.write(policies, conditions, writer);
+            success = true;
             logger.info("Wrote "+conditions.size()+" NRQL alert conditions");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? conditions.size() : 0, success);
+        }
+    }
+
+    /**
+     * Returns all the infrastructure alert conditions for the given policies.
+     * @param policies The alert policies for the alert conditions
+     * @return The infrastructure alert conditions for the given policies
+     */
+    public List<InfraAlertCondition> getInfraAlertConditions(List<AlertPolicy> policies)
+    {
+        checkInitialize();
+
+        List<InfraAlertCondition> ret = new ArrayList<InfraAlertCondition>();
+        for(final AlertPolicy policy : policies)
+        {
+            // Get the alert conditions
+            if(verbose())
+                logger.info("Getting the infra alert conditions for policy: "+policy.getId());
+            Collection<InfraAlertCondition> conditions = readList("infraAlertConditions.list", String.valueOf(policy.getId()), new Callable<Collection<InfraAlertCondition>>()
+            {
+                public Collection<InfraAlertCondition> call() throws Exception
+                {
+                    return infraApiClient.infraAlertConditions().list(policy.getId());
+                }
+            });
+            if(verbose())
+                logger.info("Got "+conditions.size()+" infra alert conditions for policy: "+policy.getId());
+            ret.addAll(conditions);
         }
+
+        return ret;
     }
 
     /**
@@ -1547,12 +2801,18 @@ public class AlertManager extends BaseManager
         checkInitialize();
 
         List<InfraMetricAlertCondition> ret = new ArrayList<InfraMetricAlertCondition>();
-        for(AlertPolicy policy : policies)
+        for(final AlertPolicy policy : policies)
         {
             // Get the alert conditions
             if(verbose())
                 logger.info("Getting the infra metric alert conditions for policy: "+policy.getId());
-            Collection<InfraAlertCondition> conditions = infraApiClient.infraAlertConditions().list(policy.getId());
+            Collection<InfraAlertCondition> conditions = readList("infraAlertConditions.list", String.valueOf(policy.getId()), new Callable<Collection<InfraAlertCondition>>()
+            {
+                public Collection<InfraAlertCondition> call() throws Exception
+                {
+                    return infraApiClient.infraAlertConditions().list(policy.getId());
+                }
+            });
             if(verbose())
                 logger.info("Got "+conditions.size()+" infra metric alert conditions for policy: "+policy.getId());
 
@@ -1577,12 +2837,18 @@ public class AlertManager extends BaseManager
         checkInitialize();
 
         List<InfraProcessRunningAlertCondition> ret = new ArrayList<InfraProcessRunningAlertCondition>();
-        for(AlertPolicy policy : policies)
+        for(final AlertPolicy policy : policies)
         {
             // Get the alert conditions
             if(verbose())
                 logger.info("Getting the infra process alert conditions for policy: "+policy.getId());
-            Collection<InfraAlertCondition> conditions = infraApiClient.infraAlertConditions().list(policy.getId());
+            Collection<InfraAlertCondition> conditions = readList("infraAlertConditions.list", String.valueOf(policy.getId()), new Callable<Collection<InfraAlertCondition>>()
+            {
+                public Collection<InfraAlertCondition> call() throws Exception
+                {
+                    return infraApiClient.infraAlertConditions().list(policy.getId());
+                }
+            });
             if(verbose())
                 logger.info("Got "+conditions.size()+" infra process alert conditions for policy: "+policy.getId());
 
@@ -1607,12 +2873,18 @@ public class AlertManager extends BaseManager
         checkInitialize();
 
         List<InfraHostNotReportingAlertCondition> ret = new ArrayList<InfraHostNotReportingAlertCondition>();
-        for(AlertPolicy policy : policies)
+        for(final AlertPolicy policy : policies)
         {
             // Get the alert conditions
             if(verbose())
                 logger.info("Getting the infra host alert conditions for policy: "+policy.getId());
-            Collection<InfraAlertCondition> conditions = infraApiClient.infraAlertConditions().list(policy.getId());
+            Collection<InfraAlertCondition> conditions = readList("infraAlertConditions.list", String.valueOf(policy.getId()), new Callable<Collection<InfraAlertCondition>>()
+            {
+                public Collection<InfraAlertCondition> call() throws Exception
+                {
+                    return infraApiClient.infraAlertConditions().list(policy.getId());
+                }
+            });
             if(verbose())
                 logger.info("Got "+conditions.size()+" infra host alert conditions for policy: "+policy.getId());
 
@@ -1643,8 +2915,21 @@ public class AlertManager extends BaseManager
         List<InfraAlertCondition> ret = new ArrayList<InfraAlertCondition>();
         if(verbose())
             logger.info("Creating "+conditions.size()+" infra alert conditions");
-        for(InfraAlertCondition condition : conditions)
-            ret.add(createInfraAlertCondition(condition));
+        ProgressTracker progress = startProgress("Creating infra alert conditions", conditions.size());
+        try
+        {
+            for(InfraAlertCondition condition : conditions)
+            {
+                progress.started();
+                ret.add(createInfraAlertCondition(condition));
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
+        }
 
         return ret;
     }
@@ -1654,18 +2939,123 @@ public class AlertManager extends BaseManager
      * @param condition The infrastructure alert condition to create
      * @return The created infrastructure alert condition
      */
-    public InfraAlertCondition createInfraAlertCondition(InfraAlertCondition condition)
+    public InfraAlertCondition createInfraAlertCondition(final InfraAlertCondition condition)
     {
         checkInitialize();
 
+        checkPolicyId(condition);
+
+        // Skip the infra alert condition if it has not changed since it was created
+        String key = StateFile.getKey(condition);
+        String fingerprint = getStateFile() != null ? Fingerprint.of(condition) : null;
+        Long id = getUnchangedId(key, fingerprint);
+        if(id != null)
+        {
+            condition.setId(id);
+            logger.fine("Skipped unchanged infra alert condition: "+id+" - "+condition.getName());
+            return condition;
+        }
+
+        // Skip the infra alert condition if it was created before the bulk operation was interrupted
+        id = getCompletedId(Journal.CREATE, key);
+        if(id == null && isPending(Journal.CREATE, key))
+            id = findInfraAlertConditionId(condition.getPolicyId(), condition.getName());
+        if(id != null)
+        {
+            condition.setId(id);
+            logger.fine("Skipped completed infra alert condition: "+id+" - "+condition.getName());
+            putState(key, id, StateFile.INFRA_ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+            completeOperation(Journal.CREATE, key, id);
+            return condition;
+        }
+
         // Create the condition
+        beginOperation(Journal.CREATE, key);
         if(verbose())
             logger.info("Creating infra alert condition: "+condition.getName());
+        InfraAlertCondition ret = call("infraAlertConditions.create", condition, new Callable<InfraAlertCondition>()
+        {
+            public InfraAlertCondition call() throws Exception
+            {
+                return infraApiClient.infraAlertConditions().create(condition).get();
+            }
+        });
+        logger.fine("Created infra alert condition: "+ret.getId()+" - "+ret.getName());
+        putState(key, ret.getId(), StateFile.INFRA_ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+        completeOperation(Journal.CREATE, key, ret.getId());
+
+        return ret;
+    }
+
+    /**
+     * Updates the given infra alert conditions in place, matching them to the existing conditions by policy, type and name.
+     * <P>
+     * The existing conditions are listed once for each policy. Only the conditions that have changed are updated,
+     * conditions that do not exist are created, and unchanged conditions are skipped.
+     * Updating a condition keeps its violation history, unlike deleting and re-creating it.
+     * </P>
+     * @param conditions The infra alert conditions to update
+     * @return The updated infra alert conditions
+     */
+    public List<InfraAlertCondition> updateInfraAlertConditions(List<? extends InfraAlertCondition> conditions)
+    {
+        if(conditions == null)
+            throw new IllegalArgumentException("null conditions");
+
+        checkInitialize();
+
+        return updateConditions("infra alert conditions", conditions, new ConditionUpdater<InfraAlertCondition>()
+        {
+            public Collection<InfraAlertCondition> list(final long policyId)
+            {
+                return readList("infraAlertConditions.list", String.valueOf(policyId), new Callable<Collection<InfraAlertCondition>>()
+                {
+                    public Collection<InfraAlertCondition> call() throws Exception
+                    {
+                        return infraApiClient.infraAlertConditions().list(policyId);
+                    }
+                });
+            }
+
+            public InfraAlertCondition create(InfraAlertCondition condition)
+            {
+                return createInfraAlertCondition(condition);
+            }
+
+            public InfraAlertCondition update(InfraAlertCondition condition)
+            {
+                return updateInfraAlertCondition(condition);
+            }
+        });
+    }
+
+    /**
+     * Updates the given infra alert condition in place.
+     * @param condition The infra alert condition to update, which must have the id of the existing condition
+     * @return The updated infra alert condition
+     */
+    public InfraAlertCondition updateInfraAlertCondition(final InfraAlertCondition condition)
+    {
+        checkInitialize();
+
         checkPolicyId(condition);
-        condition = infraApiClient.infraAlertConditions().create(condition).get();
-        logger.info("Created infra alert condition: "+condition.getId()+" - "+condition.getName());
+        checkId(condition);
 
-        return condition;
+        // Update the condition
+        if(verbose())
+            logger.info("Updating infra alert condition: "+condition.getId()+" - "+condition.getName());
+        InfraAlertCondition ret = call("infraAlertConditions.update", condition, new Callable<InfraAlertCondition>()
+        {
+            public InfraAlertCondition call() throws Exception
+            {
+                return infraApiClient.infraAlertConditions().update(condition).get();
+            }
+        });
+        logger.fine("Updated infra alert condition: "+ret.getId()+" - "+ret.getName());
+        String fingerprint = getStateFile() != null ? Fingerprint.of(condition) : null;
+        putState(StateFile.getKey(condition), ret.getId(), StateFile.INFRA_ALERT_CONDITION, condition.getPolicyId(), fingerprint);
+
+        return ret;
     }
 
     /**
@@ -1682,11 +3072,22 @@ public class AlertManager extends BaseManager
 
         // Delete the conditions
         List<InfraAlertCondition> ret = new ArrayList<InfraAlertCondition>();
-        for(InfraAlertCondition condition : conditions)
+        ProgressTracker progress = startProgress("Deleting infra alert conditions", conditions.size());
+        try
         {
-            checkPolicyId(condition);
-            deleteInfraAlertConditions(condition.getPolicyId(), condition.getName());
-            ret.add(condition);
+            for(InfraAlertCondition condition : conditions)
+            {
+                progress.started();
+                checkPolicyId(condition);
+                deleteInfraAlertConditions(condition.getId(), StateFile.getKey(condition), condition.getPolicyId(), condition.getName());
+                ret.add(condition);
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
         }
 
         return ret;
@@ -1694,6 +3095,9 @@ public class AlertManager extends BaseManager
 
     /**
      * Delete the given infrastructure alert condition.
+     * <P>
+     * If the infrastructure alert condition has an id it is deleted by that id, otherwise the infrastructure alert conditions with the same name are deleted.
+     * </P>
      * @param condition The infrastructure alert condition to delete
      * @return The deleted infrastructure alert condition
      */
@@ -1703,26 +3107,93 @@ public class AlertManager extends BaseManager
 
         // Delete the condition
         checkPolicyId(condition);
-        deleteInfraAlertConditions(condition.getPolicyId(), condition.getName());
+        deleteInfraAlertConditions(condition.getId(), StateFile.getKey(condition), condition.getPolicyId(), condition.getName());
 
         return condition;
     }
 
     /**
      * Delete the infrastructure alert conditions with the given name.
+     * @param knownId The id of the alert condition if it is known, otherwise <CODE>null</CODE>
+     * @param key The key of the alert conditions in the state file
      * @param policyId The id of the policy to delete the infrastructure alert conditions from
      * @param name The name of the infrastructure alert conditions
      */
-    private void deleteInfraAlertConditions(long policyId, String name)
+    private void deleteInfraAlertConditions(Long knownId, final String key, final long policyId, final String name)
     {
-        Collection<InfraAlertCondition> conditions = infraApiClient.infraAlertConditions().list(policyId, name);
-        for(InfraAlertCondition condition : conditions)
+        // Skip the delete if it completed before the bulk operation was interrupted
+        if(getCompletedId(Journal.DELETE, key) != null)
+            return;
+        beginOperation(Journal.DELETE, key);
+
+        // Delete using the given id or the id from the state file unless it is missing or stale
+        final Long id = knownId != null ? knownId : getStateId(key);
+        if(id != null)
+        {
+            boolean deleted = tryCall("infraAlertConditions.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    infraApiClient.infraAlertConditions().delete(id);
+                    return null;
+                }
+            });
+            if(deleted)
+            {
+                logger.fine("Deleted infra alert condition: "+id+" - "+name);
+                removeState(key);
+                completeOperation(Journal.DELETE, key, id);
+                return;
+            }
+        }
+
+        // Otherwise look up the ids by name
+        Collection<InfraAlertCondition> conditions = readList("infraAlertConditions.list", policyId+":"+name, new Callable<Collection<InfraAlertCondition>>()
+        {
+            public Collection<InfraAlertCondition> call() throws Exception
+            {
+                return infraApiClient.infraAlertConditions().list(policyId, name);
+            }
+        });
+        for(final InfraAlertCondition condition : conditions)
         {
             if(verbose())
                 logger.info("Deleting infra alert condition: "+condition.getId());
-            infraApiClient.infraAlertConditions().delete(condition.getId());
-            logger.info("Deleted infra alert condition : "+condition.getId()+" - "+condition.getName());
+            call("infraAlertConditions.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    infraApiClient.infraAlertConditions().delete(condition.getId());
+                    return null;
+                }
+            });
+            logger.fine("Deleted infra alert condition : "+condition.getId()+" - "+condition.getName());
+        }
+        removeState(key);
+        completeOperation(Journal.DELETE, key, 0L);
+    }
+
+    /**
+     * Returns the id of the infra alert condition with the given name.
+     * @param policyId The id of the policy of the infra alert condition
+     * @param name The name of the infra alert condition
+     * @return The id of the infra alert condition, or null if it does not exist
+     */
+    private Long findInfraAlertConditionId(final long policyId, final String name)
+    {
+        Collection<InfraAlertCondition> conditions = readList("infraAlertConditions.list", policyId+":"+name, new Callable<Collection<InfraAlertCondition>>()
+        {
+            public Collection<InfraAlertCondition> call() throws Exception
+            {
+                return infraApiClient.infraAlertConditions().list(policyId, name);
+            }
+        });
+        for(InfraAlertCondition condition : conditions)
+        {
+            if(name.equals(condition.getName()))
+                return condition.getId();
         }
+        return null;
     }
 
     /**
@@ -1741,16 +3212,18 @@ public class AlertManager extends BaseManager
     {
         List<InfraMetricAlertCondition> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, InfraMetricAlertConditionParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading infra metric alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = InfraMetricAlertConditionParser.parse(policies, getReader(filename, worksheet, stream));
+            ret = InfraMetricAlertConditionParser.parse(policies, getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" infra metric alert conditions");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -1773,18 +3246,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, InfraMetricAlertConditionRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing infra metric alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             InfraMetricAlertConditionRenderer.write(policies, conditions, writer);
+            success = true;
             logger.info("Wrote "+conditions.size()+" infra metric alert conditions");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? conditions.size() : 0, success);
         }
     }
 
@@ -1804,16 +3281,18 @@ public class AlertManager extends BaseManager
     {
         List<InfraProcessRunningAlertCondition> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, InfraProcessRunningAlertConditionParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading infra process alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = InfraProcessRunningAlertConditionParser.parse(policies, getReader(filename, worksheet, stream));
+            ret = InfraProcessRunningAlertConditionParser.parse(policies, getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" infra process alert conditions");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -1836,18 +3315,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, InfraProcessRunningAlertConditionRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing infra process alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             InfraProcessRunningAlertConditionRenderer.write(policies, conditions, writer);
+            success = true;
             logger.info("Wrote "+conditions.size()+" infra process alert conditions");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? conditions.size() : 0, success);
         }
     }
 
@@ -1867,16 +3350,18 @@ public class AlertManager extends BaseManager
     {
         List<InfraHostNotReportingAlertCondition> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.PARSE, InfraHostNotReportingAlertConditionParser.class, filename, worksheet);
         try
         {
             if(verbose())
                 logger.info("Loading infra host alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            ret = InfraHostNotReportingAlertConditionParser.parse(policies, getReader(filename, worksheet, stream));
+            ret = InfraHostNotReportingAlertConditionParser.parse(policies, getReader(filename, worksheet, event.wrap(stream)));
             logger.info("Read "+ret.size()+" infra host alert conditions");
         }
         finally
         {
             closeStream(stream);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -1899,18 +3384,22 @@ public class AlertManager extends BaseManager
     {
         OutputFileWriter writer = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.RENDER, InfraHostNotReportingAlertConditionRenderer.class, filename, worksheet);
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing infra host alert condition file: "+filename+(worksheet != null ? "/"+worksheet : ""));
-            writer = getWriter(filename, worksheet, workbook, stream);
+            writer = getWriter(filename, worksheet, workbook, event.wrap(stream));
             InfraHostNotReportingAlertConditionRenderer.write(policies, conditions, writer);
+            success = true;
             logger.info("Wrote "+conditions.size()+" infra host alert conditions");
         }
         finally
         {
             closeStream(stream);
             closeWriter(writer);
+            event.commit(success ? conditions.size() : 0, success);
         }
     }
 
@@ -1922,14 +3411,36 @@ public class AlertManager extends BaseManager
     {
         checkInitialize();
 
+        if(entityCache == null)
+            return readApplications();
+        return toList(entityCache.get(getApiKey()+"|applications", new Callable<List<Application>>()
+        {
+            public List<Application> call() throws Exception
+            {
+                return readApplications();
+            }
+        }));
+    }
+
+    /**
+     * Reads the applications from the API.
+     */
+    private List<Application> readApplications()
+    {
         // Get the applications
         if(verbose())
             logger.info("Getting the applications");
-        Collection<Application> applications = apiClient.applications().list();
+        Collection<Application> applications = readList("applications.list", null, new Callable<Collection<Application>>()
+        {
+            public Collection<Application> call() throws Exception
+            {
+                return apiClient.applications().list();
+            }
+        });
         if(verbose())
             logger.info("Got "+applications.size()+" applications");
         return toList(applications);
-   }
+    }
 
     /**
      * Returns the servers.
@@ -1939,10 +3450,32 @@ public class AlertManager extends BaseManager
     {
         checkInitialize();
 
+        if(entityCache == null)
+            return readServers();
+        return toList(entityCache.get(getApiKey()+"|servers", new Callable<List<Server>>()
+        {
+            public List<Server> call() throws Exception
+            {
+                return readServers();
+            }
+        }));
+    }
+
+    /**
+     * Reads the servers from the API.
+     */
+    private List<Server> readServers()
+    {
         // Get the servers
         if(verbose())
             logger.info("Getting the servers");
-        Collection<Server> servers = apiClient.servers().list();
+        Collection<Server> servers = readList("servers.list", null, new Callable<Collection<Server>>()
+        {
+            public Collection<Server> call() throws Exception
+            {
+                return apiClient.servers().list();
+            }
+        });
         if(verbose())
             logger.info("Got "+servers.size()+" servers");
         return toList(servers);
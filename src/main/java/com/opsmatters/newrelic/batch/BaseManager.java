@@ -24,12 +24,28 @@ import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 import com.opsmatters.newrelic.api.NewRelicApi;
 import com.opsmatters.newrelic.api.NewRelicInfraApi;
 import com.opsmatters.core.documents.InputFileReader;
 import com.opsmatters.core.documents.OutputFileWriter;
 import com.opsmatters.core.documents.Workbook;
+import com.opsmatters.newrelic.batch.metrics.MetricsRegistry;
+import com.opsmatters.newrelic.batch.metrics.EndpointMetrics;
+import com.opsmatters.newrelic.batch.events.BatchEvent;
+import com.opsmatters.newrelic.batch.progress.ProgressListener;
+import com.opsmatters.newrelic.batch.progress.ProgressTracker;
+import com.opsmatters.newrelic.batch.sync.StateFile;
+import com.opsmatters.newrelic.batch.sync.Journal;
+import com.opsmatters.newrelic.batch.limits.RateLimiter;
+import com.opsmatters.newrelic.batch.limits.ConcurrencyLimiter;
+import com.opsmatters.newrelic.batch.limits.CircuitBreaker;
+import com.opsmatters.newrelic.batch.cache.ReadCache;
+import com.opsmatters.newrelic.batch.client.ClientContext;
+import com.opsmatters.newrelic.batch.deploy.DryRun;
 
 /**
  * Base class for all manager classes.
@@ -40,11 +56,32 @@ public class BaseManager
 {
     private static final Logger logger = Logger.getLogger(BaseManager.class.getName());
 
+    /**
+     * The default number of times a throttled or overloaded call is retried.
+     */
+    public static final int DEFAULT_MAX_RETRIES = 2;
+
+    /**
+     * The delay before the first retry of a call, doubled for each further retry.
+     */
+    private static final long RETRY_DELAY = 500L;
+
     private String apiKey;
     protected NewRelicApi apiClient;
     protected NewRelicInfraApi infraApiClient;
     private boolean initialized = false;
     private boolean verbose = false;
+    private MetricsRegistry metrics = new MetricsRegistry();
+    private List<ProgressListener> progressListeners = new CopyOnWriteArrayList<ProgressListener>();
+    private StateFile state;
+    private Journal journal;
+    private RateLimiter rateLimiter;
+    private ConcurrencyLimiter concurrencyLimiter;
+    private CircuitBreaker circuitBreaker;
+    private ReadCache readCache;
+    private ClientContext clientContext;
+    private DryRun dryRun;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
 
     /**
      * Constructor that takes an API key.
@@ -59,8 +96,11 @@ public class BaseManager
 
     /**
      * Initialise the clients.
+     * <P>
+     * Synchronized as the managers can be shared by several threads.
+     * </P>
      */
-    protected void checkInitialize()
+    protected synchronized void checkInitialize()
     {
         if(!initialized)
             initialize();
@@ -80,8 +120,16 @@ public class BaseManager
 
         if(verbose)
             logger.info("Initialising the client");
-        apiClient = NewRelicApi.builder().apiKey(apiKey).build();
-        infraApiClient = NewRelicInfraApi.builder().apiKey(apiKey).build();
+        if(clientContext != null)
+        {
+            apiClient = clientContext.getApiClient(apiKey);
+            infraApiClient = clientContext.getInfraApiClient(apiKey);
+        }
+        else
+        {
+            apiClient = NewRelicApi.builder().apiKey(apiKey).build();
+            infraApiClient = NewRelicInfraApi.builder().apiKey(apiKey).build();
+        }
         if(verbose)
             logger.info("Initialised the clients");
 
@@ -97,6 +145,15 @@ public class BaseManager
         return initialized;
     }
 
+    /**
+     * Returns the API key used to authenticate the client.
+     * @return The API key used to authenticate the client
+     */
+    protected String getApiKey()
+    {
+        return apiKey;
+    }
+
     /**
      * Returns <CODE>true</CODE> if verbose logging is enabled.
      * @return <CODE>true</CODE> if verbose logging is enabled
@@ -106,6 +163,29 @@ public class BaseManager
         return verbose;
     }
 
+    /**
+     * Sets the context used to share the API clients with other managers.
+     * <P>
+     * Must be called before the clients are initialized.
+     * </P>
+     * @param clientContext The context holding the API clients, or null to create new clients
+     */
+    public void setClientContext(ClientContext clientContext)
+    {
+        if(initialized)
+            throw new IllegalStateException("client already initialized");
+        this.clientContext = clientContext;
+    }
+
+    /**
+     * Returns the context used to share the API clients with other managers.
+     * @return The context holding the API clients, or null if new clients are created
+     */
+    public ClientContext getClientContext()
+    {
+        return clientContext;
+    }
+
     /**
      * Returns the REST API client.
      * @return the REST API client 
@@ -124,6 +204,658 @@ public class BaseManager
         return infraApiClient;
     }
 
+    /**
+     * Returns the registry holding the metrics for each API endpoint.
+     * @return The registry holding the metrics for each API endpoint
+     */
+    public MetricsRegistry getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Sets the registry holding the metrics for each API endpoint.
+     * <P>
+     * Allows several managers to share a single registry.
+     * </P>
+     * @param metrics The registry holding the metrics for each API endpoint
+     */
+    public void setMetrics(MetricsRegistry metrics)
+    {
+        if(metrics == null)
+            throw new IllegalArgumentException("null metrics");
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the limiter for the rate of API calls.
+     * <P>
+     * Allows several managers for the same account to share a single limit.
+     * </P>
+     * @param rateLimiter The limiter for the rate of API calls, or null if the rate is not limited
+     */
+    public void setRateLimiter(RateLimiter rateLimiter)
+    {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Returns the limiter for the rate of API calls.
+     * @return The limiter for the rate of API calls, or null if the rate is not limited
+     */
+    public RateLimiter getRateLimiter()
+    {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets the limiter for the number of API calls in flight.
+     * <P>
+     * Allows several managers for the same account to share a single limit for each family of endpoints.
+     * </P>
+     * @param concurrencyLimiter The limiter for the number of API calls in flight, or null if the number is not limited
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter)
+    {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Returns the limiter for the number of API calls in flight.
+     * @return The limiter for the number of API calls in flight, or null if the number is not limited
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter()
+    {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Sets the breaker that stops API calls while a family of endpoints is failing.
+     * <P>
+     * Allows several managers for the same account to share a single breaker.
+     * </P>
+     * @param circuitBreaker The breaker for API calls, or null if calls are always made
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker)
+    {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Returns the breaker that stops API calls while a family of endpoints is failing.
+     * @return The breaker for API calls, or null if calls are always made
+     */
+    public CircuitBreaker getCircuitBreaker()
+    {
+        return circuitBreaker;
+    }
+
+    /**
+     * Sets the number of times a throttled or overloaded call is retried.
+     * <P>
+     * A read call is retried after a throttled (429) or server error (5xx) response or a timeout.
+     * A write call is only retried after a throttled response, as the other failures
+     * may happen after the write has been carried out. Each retry is recorded in the metrics of the endpoint.
+     * </P>
+     * @param maxRetries The number of times a call is retried, or 0 if calls are not retried
+     */
+    public void setMaxRetries(int maxRetries)
+    {
+        if(maxRetries < 0)
+            throw new IllegalArgumentException("retries cannot be negative: "+maxRetries);
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Returns the number of times a throttled or overloaded call is retried.
+     * @return The number of times a call is retried, or 0 if calls are not retried
+     */
+    public int getMaxRetries()
+    {
+        return maxRetries;
+    }
+
+    /**
+     * Sets the dry run that records the API calls instead of changing the account.
+     * @param dryRun The dry run that records the API calls, or null to make the calls
+     */
+    public void setDryRun(DryRun dryRun)
+    {
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Returns the dry run that records the API calls instead of changing the account.
+     * @return The dry run that records the API calls, or null if the calls are made
+     */
+    public DryRun getDryRun()
+    {
+        return dryRun;
+    }
+
+    /**
+     * Sets the cache used to coalesce identical read calls and keep their results.
+     * @param readCache The cache for read calls, or null if read calls are not cached
+     */
+    public void setReadCache(ReadCache readCache)
+    {
+        this.readCache = readCache;
+    }
+
+    /**
+     * Returns the cache used to coalesce identical read calls and keep their results.
+     * @return The cache for read calls, or null if read calls are not cached
+     */
+    public ReadCache getReadCache()
+    {
+        return readCache;
+    }
+
+    /**
+     * Adds a listener to be notified of the progress of bulk operations.
+     * @param listener The listener to add
+     */
+    public void addProgressListener(ProgressListener listener)
+    {
+        if(listener == null)
+            throw new IllegalArgumentException("null listener");
+        progressListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener for the progress of bulk operations.
+     * @param listener The listener to remove
+     */
+    public void removeProgressListener(ProgressListener listener)
+    {
+        progressListeners.remove(listener);
+    }
+
+    /**
+     * Returns the listeners to be notified of the progress of bulk operations.
+     * <P>
+     * The list is read-only, use {@link #addProgressListener(ProgressListener)}
+     * and {@link #removeProgressListener(ProgressListener)} to change the listeners.
+     * </P>
+     * @return The listeners to be notified of the progress of bulk operations
+     */
+    public List<ProgressListener> getProgressListeners()
+    {
+        return Collections.unmodifiableList(progressListeners);
+    }
+
+    /**
+     * Returns a tracker for the progress of a phase of a bulk operation.
+     * @param phase The name of the phase, eg. "Creating alert policies"
+     * @param total The total number of items in the phase
+     * @return The progress tracker
+     */
+    protected ProgressTracker startProgress(String phase, int total)
+    {
+        ProgressTracker ret = new ProgressTracker(phase, total);
+        ret.addListeners(progressListeners);
+        return ret;
+    }
+
+    /**
+     * Sets the state file used to resolve the ids of objects created by previous runs.
+     * <P>
+     * Creates of objects that have not changed since they were recorded are skipped,
+     * and deletes use the recorded ids instead of listing the objects by name.
+     * The state file is saved after each bulk create or delete.
+     * </P>
+     * @param state The state file, or null to always use the API
+     */
+    public void setStateFile(StateFile state)
+    {
+        this.state = state;
+    }
+
+    /**
+     * Returns the state file used to resolve the ids of objects created by previous runs.
+     * @return The state file, or null if the API is always used
+     */
+    public StateFile getStateFile()
+    {
+        return state;
+    }
+
+    /**
+     * Returns the id of the object with the given key from the state file.
+     * @param key The key of the object in the state file
+     * @return The id of the object, or null if there is no state file or the entry is missing or stale
+     */
+    protected Long getStateId(String key)
+    {
+        return state != null ? state.getId(key) : null;
+    }
+
+    /**
+     * Returns the id of the object with the given key if it has not changed since it was created.
+     * @param key The key of the object in the state file
+     * @param fingerprint The current fingerprint of the object
+     * @return The id of the unchanged object, or null if there is no state file or the object is new or has changed
+     */
+    protected Long getUnchangedId(String key, String fingerprint)
+    {
+        return state != null ? state.getUnchangedId(key, fingerprint) : null;
+    }
+
+    /**
+     * Records a created object in the state file.
+     * @param key The key of the object in the state file
+     * @param id The id of the created object
+     * @param type The type of the object, eg. "policy"
+     * @param policyId The id of the policy of the object, or null if the object does not belong to a policy
+     * @param fingerprint The fingerprint of the object, or null if the object has no fingerprint
+     * @throws IllegalStateException if the state file cannot be written
+     */
+    protected void putState(String key, Long id, String type, Long policyId, String fingerprint)
+    {
+        if(state != null && id != null && dryRun == null)
+        {
+            try
+            {
+                state.put(key, id, type, policyId, fingerprint);
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException("unable to write state file: "+state.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Removes a deleted object from the state file.
+     * @param key The key of the object in the state file
+     * @throws IllegalStateException if the state file cannot be written
+     */
+    protected void removeState(String key)
+    {
+        if(state != null && dryRun == null)
+        {
+            try
+            {
+                state.remove(key);
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException("unable to write state file: "+state.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Flushes the state file and compacts it if necessary.
+     * @throws IllegalStateException if the state file cannot be written
+     */
+    protected void saveState()
+    {
+        if(state != null && dryRun == null)
+        {
+            try
+            {
+                state.save();
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException("unable to save state file: "+state.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Sets the journal used to resume an interrupted bulk operation.
+     * <P>
+     * The journal should be opened before it is set, and deleted once the bulk operation has completed.
+     * Operations that completed before the interruption are skipped, and the objects of operations
+     * that began but did not complete are looked up by name before they are created again.
+     * </P>
+     * @param journal The opened journal, or null if operations are not journalled
+     */
+    public void setJournal(Journal journal)
+    {
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the journal used to resume an interrupted bulk operation.
+     * @return The journal, or null if operations are not journalled
+     */
+    public Journal getJournal()
+    {
+        return journal;
+    }
+
+    /**
+     * Returns the id of the object if the given operation completed before the bulk operation was interrupted.
+     * @param operation The name of the operation, eg. "create"
+     * @param key The key of the object in the state file
+     * @return The id of the object, or null if there is no journal or the operation has not completed
+     */
+    protected Long getCompletedId(String operation, String key)
+    {
+        return journal != null ? journal.getCompletedId(operation+"/"+key) : null;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the given operation began but did not complete before the bulk operation was interrupted.
+     * @param operation The name of the operation, eg. "create"
+     * @param key The key of the object in the state file
+     * @return <CODE>true</CODE> if the operation began but did not complete
+     */
+    protected boolean isPending(String operation, String key)
+    {
+        return journal != null && journal.isPending(operation+"/"+key);
+    }
+
+    /**
+     * Records in the journal that the given operation is about to begin.
+     * @param operation The name of the operation, eg. "create"
+     * @param key The key of the object in the state file
+     * @throws IllegalStateException if the journal cannot be written
+     */
+    protected void beginOperation(String operation, String key)
+    {
+        if(journal != null && dryRun == null)
+        {
+            try
+            {
+                journal.begin(operation+"/"+key);
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException("unable to write journal: "+journal.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Records in the journal that the given operation has completed.
+     * @param operation The name of the operation, eg. "create"
+     * @param key The key of the object in the state file
+     * @param id The id of the object
+     * @throws IllegalStateException if the journal cannot be written
+     */
+    protected void completeOperation(String operation, String key, Long id)
+    {
+        if(journal != null && id != null && dryRun == null)
+        {
+            try
+            {
+                journal.complete(operation+"/"+key, id);
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException("unable to write journal: "+journal.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Saves the state file and syncs the journal at the end of a bulk operation.
+     * @throws IllegalStateException if the state file or journal cannot be written
+     */
+    protected void checkpoint()
+    {
+        saveState();
+        if(journal != null && dryRun == null)
+        {
+            try
+            {
+                journal.sync();
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException("unable to sync journal: "+journal.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Executes the given API call, recording the latency and outcome against the given endpoint.
+     * <P>
+     * The call is treated as a write, so any results kept by the read cache for the resources
+     * affected by the write are discarded.
+     * </P>
+     * @param <T> The type of the result of the call
+     * @param endpoint The name of the API endpoint, eg. "alertPolicies.create"
+     * @param callable The API call
+     * @return The result of the call
+     */
+    protected <T> T call(String endpoint, Callable<T> callable)
+    {
+        return call(endpoint, null, callable);
+    }
+
+    /**
+     * Executes the given API call that writes the given object.
+     * <P>
+     * The call is treated as a write, so any results kept by the read cache for the resources
+     * affected by the write are discarded. In a dry run the call is counted but not made, and the object is returned instead.
+     * </P>
+     * @param <T> The type of the result of the call
+     * @param endpoint The name of the API endpoint, eg. "alertPolicies.create"
+     * @param value The object being written, returned in place of the result in a dry run
+     * @param callable The API call
+     * @return The result of the call
+     */
+    protected <T> T call(String endpoint, T value, Callable<T> callable)
+    {
+        if(dryRun != null)
+        {
+            dryRun.record(endpoint);
+            return dryRun.getResult(value);
+        }
+
+        try
+        {
+            return execute(endpoint, callable, false);
+        }
+        finally
+        {
+            if(readCache != null)
+            {
+                for(String resource : getInvalidatedResources(endpoint))
+                    readCache.invalidate(resource);
+            }
+        }
+    }
+
+    /**
+     * Returns the resources whose results kept by the read cache are discarded after a write to the given endpoint.
+     * <P>
+     * By default only the resource of the endpoint is affected by a write.
+     * </P>
+     * @param endpoint The name of the API endpoint, eg. "alertPolicies.create"
+     * @return The resources affected by the write, eg. "alertPolicies"
+     */
+    protected List<String> getInvalidatedResources(String endpoint)
+    {
+        return Collections.singletonList(getResource(endpoint));
+    }
+
+    /**
+     * Returns the resource of the given endpoint.
+     * @param endpoint The name of the API endpoint, eg. "alertPolicies.create"
+     * @return The resource of the endpoint, eg. "alertPolicies"
+     */
+    protected static String getResource(String endpoint)
+    {
+        int pos = endpoint.indexOf('.');
+        return pos >= 0 ? endpoint.substring(0, pos) : endpoint;
+    }
+
+    /**
+     * Executes the given read-only API call that lists objects, sharing the result with identical calls if there is a read cache.
+     * <P>
+     * In a dry run that does not read through, the call is counted but not made, and an empty list is returned.
+     * </P>
+     * @param <T> The type of the objects listed by the call
+     * @param endpoint The name of the API endpoint, eg. "alertPolicies.list"
+     * @param key The parameters of the call, eg. the policy id
+     * @param callable The API call
+     * @return The objects listed by the call
+     */
+    protected <T> Collection<T> readList(String endpoint, String key, Callable<Collection<T>> callable)
+    {
+        if(dryRun != null && !dryRun.isReadThrough())
+        {
+            dryRun.record(endpoint);
+            return new ArrayList<T>();
+        }
+        return read(endpoint, key, callable);
+    }
+
+    /**
+     * Executes the given read-only API call, sharing the result with identical calls if there is a read cache.
+     * <P>
+     * In a dry run that does not read through, the call is counted but not made, and <CODE>null</CODE> is returned.
+     * Calls that list objects should use {@link #readList(String, String, Callable)} instead.
+     * </P>
+     * @param <T> The type of the result of the call
+     * @param endpoint The name of the API endpoint, eg. "dashboards.show"
+     * @param key The parameters of the call, eg. the dashboard id
+     * @param callable The API call
+     * @return The result of the call, or <CODE>null</CODE> in a dry run that does not read through
+     */
+    protected <T> T read(final String endpoint, String key, final Callable<T> callable)
+    {
+        if(dryRun != null)
+        {
+            dryRun.record(endpoint);
+            if(!dryRun.isReadThrough())
+                return null;
+        }
+
+        if(readCache == null)
+            return execute(endpoint, callable, true);
+
+        return readCache.get(getResource(endpoint), endpoint+"|"+key, new Callable<T>()
+        {
+            public T call() throws Exception
+            {
+                return execute(endpoint, callable, true);
+            }
+        });
+    }
+
+    /**
+     * Executes the given API call, retrying it with a growing delay if it is throttled or overloaded.
+     */
+    private <T> T execute(String endpoint, Callable<T> callable, boolean read)
+    {
+        for(int retries = 0; ; retries++)
+        {
+            try
+            {
+                return attempt(endpoint, callable);
+            }
+            catch(RuntimeException e)
+            {
+                boolean retry = read ? ConcurrencyLimiter.isOverload(e) : ConcurrencyLimiter.isThrottled(e);
+                if(!retry || retries >= maxRetries)
+                    throw e;
+
+                metrics.retry(endpoint);
+                logger.fine("Retrying API call: "+endpoint+": "+e.getMessage());
+                try
+                {
+                    Thread.sleep(RETRY_DELAY << retries);
+                }
+                catch(InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes a single attempt at the given API call, recording the latency and outcome against the given endpoint.
+     */
+    private <T> T attempt(String endpoint, Callable<T> callable)
+    {
+        CircuitBreaker.Permit circuit = null;
+        if(circuitBreaker != null)
+            circuit = circuitBreaker.acquire(endpoint);
+        ConcurrencyLimiter.Permit permit = null;
+        try
+        {
+            if(rateLimiter != null)
+                rateLimiter.acquire();
+            if(concurrencyLimiter != null)
+                permit = concurrencyLimiter.acquire(endpoint);
+        }
+        catch(RuntimeException e)
+        {
+            if(circuit != null)
+                circuit.cancel();
+            throw e;
+        }
+
+        EndpointMetrics endpointMetrics = metrics.getEndpoint(endpoint);
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.API_CALL, endpoint, null);
+        boolean success = false;
+        boolean overloaded = false;
+        int rows = 0;
+        long start = endpointMetrics.start();
+
+        try
+        {
+            T ret = callable.call();
+            if(ret instanceof Collection)
+                rows = ((Collection<?>)ret).size();
+            else if(ret != null)
+                rows = 1;
+            success = true;
+            return ret;
+        }
+        catch(RuntimeException e)
+        {
+            overloaded = ConcurrencyLimiter.isOverload(e);
+            throw e;
+        }
+        catch(Exception e)
+        {
+            overloaded = ConcurrencyLimiter.isOverload(e);
+            throw new IllegalStateException("API call failed: "+endpoint, e);
+        }
+        finally
+        {
+            if(permit != null)
+                permit.release(overloaded);
+            if(circuit != null)
+                circuit.release(overloaded);
+            endpointMetrics.stop(start, success);
+            event.commit(rows, success);
+        }
+    }
+
+    /**
+     * Executes the given API call, returning <CODE>false</CODE> instead of throwing an exception if the call fails.
+     * <P>
+     * Used when the call is an optimisation that has a fallback, eg. a delete using an id from the state file.
+     * </P>
+     * @param endpoint The name of the API endpoint, eg. "alertPolicies.delete"
+     * @param callable The API call
+     * @return <CODE>true</CODE> if the call succeeded
+     */
+    protected boolean tryCall(String endpoint, Callable<?> callable)
+    {
+        try
+        {
+            call(endpoint, callable);
+            return true;
+        }
+        catch(RuntimeException e)
+        {
+            logger.fine("API call failed, falling back: "+endpoint+": "+e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Returns an input file reader for the given file stream.
      * @param filename The name of the file to import
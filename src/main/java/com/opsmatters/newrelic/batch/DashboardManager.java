@@ -21,10 +21,15 @@ import java.io.Writer;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 import com.opsmatters.newrelic.api.model.insights.Dashboard;
 import com.opsmatters.newrelic.batch.parsers.DashboardParser;
 import com.opsmatters.newrelic.batch.renderers.DashboardRenderer;
+import com.opsmatters.newrelic.batch.events.BatchEvent;
+import com.opsmatters.newrelic.batch.progress.ProgressTracker;
+import com.opsmatters.newrelic.batch.sync.StateFile;
+import com.opsmatters.newrelic.batch.sync.Journal;
 
 /**
  * Manager of operations on dashboards.
@@ -68,20 +73,43 @@ public class DashboardManager extends BaseManager
         // Get the dashboards
         if(verbose())
             logger.info("Getting the dashboards");
-        Collection<Dashboard> dashboards = apiClient.dashboards().list();
+        Collection<Dashboard> dashboards = readList("dashboards.list", null, new Callable<Collection<Dashboard>>()
+        {
+            public Collection<Dashboard> call() throws Exception
+            {
+                return apiClient.dashboards().list();
+            }
+        });
         if(verbose())
             logger.info("Got "+dashboards.size()+" dashboards");
 
         List<Dashboard> ret = new ArrayList<Dashboard>();
-        for(Dashboard dashboard : dashboards)
+        for(final Dashboard dashboard : dashboards)
         {
-            if(detailed)
-                dashboard = apiClient.dashboards().show(dashboard.getId()).get();
-            ret.add(dashboard);
+            Dashboard detail = detailed ? getDashboard(dashboard.getId()) : null;
+            ret.add(detail != null ? detail : dashboard);
         }
         return ret;
     }
 
+    /**
+     * Returns the dashboard with the given id, including the widgets.
+     * @param id The id of the dashboard
+     * @return The dashboard, or <CODE>null</CODE> in a dry run that does not read through
+     */
+    public Dashboard getDashboard(final long id)
+    {
+        checkInitialize();
+
+        return read("dashboards.show", String.valueOf(id), new Callable<Dashboard>()
+        {
+            public Dashboard call() throws Exception
+            {
+                return apiClient.dashboards().show(id).get();
+            }
+        });
+    }
+
     /**
      * Creates the given dashboards.
      * @param dashboards The dashboards to create
@@ -100,13 +128,20 @@ public class DashboardManager extends BaseManager
         List<Dashboard> ret = new ArrayList<Dashboard>();
         if(verbose())
             logger.info("Creating "+dashboards.size()+" dashboards");
-        for(Dashboard dashboard : dashboards)
+        ProgressTracker progress = startProgress("Creating dashboards", dashboards.size());
+        try
         {
-            if(verbose())
-                logger.info("Creating dashboard: "+dashboard.getTitle());
-            dashboard = apiClient.dashboards().create(dashboard).get();
-            logger.info("Created dashboard: "+dashboard.getId()+" - "+dashboard.getTitle());
-            ret.add(dashboard);
+            for(Dashboard dashboard : dashboards)
+            {
+                progress.started();
+                ret.add(createDashboard(dashboard));
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+            checkpoint();
         }
 
         return ret;
@@ -117,23 +152,49 @@ public class DashboardManager extends BaseManager
      * @param dashboard The dashboard to create
      * @return The created dashboard
      */
-    public Dashboard createDashboard(Dashboard dashboard)
+    public Dashboard createDashboard(final Dashboard dashboard)
     {
         checkInitialize();
         if(!isInitialized())
             throw new IllegalStateException("client not initialized");
 
+        // Skip the dashboard if it was created before the bulk operation was interrupted
+        String key = StateFile.getKey(dashboard);
+        Long id = getCompletedId(Journal.CREATE, key);
+        if(id == null && isPending(Journal.CREATE, key))
+            id = findDashboardId(dashboard.getTitle());
+        if(id != null)
+        {
+            dashboard.setId(id);
+            logger.fine("Skipped completed dashboard: "+id+" - "+dashboard.getTitle());
+            putState(key, id, StateFile.DASHBOARD, null, null);
+            completeOperation(Journal.CREATE, key, id);
+            return dashboard;
+        }
+
         // Create the dashboard
+        beginOperation(Journal.CREATE, key);
         if(verbose())
             logger.info("Creating dashboard: "+dashboard.getTitle());
-        dashboard = apiClient.dashboards().create(dashboard).get();
-        logger.info("Created dashboard: "+dashboard.getId()+" - "+dashboard.getTitle());
+        Dashboard ret = call("dashboards.create", dashboard, new Callable<Dashboard>()
+        {
+            public Dashboard call() throws Exception
+            {
+                return apiClient.dashboards().create(dashboard).get();
+            }
+        });
+        logger.fine("Created dashboard: "+ret.getId()+" - "+ret.getTitle());
+        putState(key, ret.getId(), StateFile.DASHBOARD, null, null);
+        completeOperation(Journal.CREATE, key, ret.getId());
 
-        return dashboard;
+        return ret;
     }
 
     /**
      * Delete the given dashboard.
+     * <P>
+     * If the dashboard has an id it is deleted by that id, otherwise the dashboards with the same title are deleted.
+     * </P>
      * @param dashboards The dashboards to delete
      * @return The deleted dashboards
      */
@@ -148,10 +209,21 @@ public class DashboardManager extends BaseManager
 
         // Delete the dashboards
         List<Dashboard> ret = new ArrayList<Dashboard>();
-        for(Dashboard dashboard : dashboards)
+        ProgressTracker progress = startProgress("Deleting dashboards", dashboards.size());
+        try
+        {
+            for(Dashboard dashboard : dashboards)
+            {
+                progress.started();
+                deleteDashboards(null, dashboard.getTitle());
+                ret.add(dashboard);
+                progress.completed();
+            }
+        }
+        finally
         {
-            deleteDashboards(dashboard.getTitle());
-            ret.add(dashboard);
+            progress.finish();
+            checkpoint();
         }
 
         return ret;
@@ -159,6 +231,9 @@ public class DashboardManager extends BaseManager
 
     /**
      * Delete the given dashboard.
+     * <P>
+     * If the dashboard has an id it is deleted by that id, otherwise the dashboards with the same title are deleted.
+     * </P>
      * @param dashboard The dashboard to delete
      * @return The deleted dashboard
      */
@@ -169,25 +244,92 @@ public class DashboardManager extends BaseManager
             throw new IllegalStateException("client not initialized");
 
         // Delete the dashboard
-        deleteDashboards(dashboard.getTitle());
+        deleteDashboards(dashboard.getId(), dashboard.getTitle());
 
         return dashboard;
     }
 
     /**
      * Delete the dashboards with the given title.
+     * @param knownId The id of the dashboard if it is known, otherwise <CODE>null</CODE>
      * @param title The title of the dashboards
      */
-    private void deleteDashboards(String title)
+    private void deleteDashboards(Long knownId, final String title)
     {
-        Collection<Dashboard> dashboards = apiClient.dashboards().list(title);
-        for(Dashboard dashboard : dashboards)
+        final String key = StateFile.getDashboardKey(title);
+
+        // Skip the delete if it completed before the bulk operation was interrupted
+        if(getCompletedId(Journal.DELETE, key) != null)
+            return;
+        beginOperation(Journal.DELETE, key);
+
+        // Delete using the given id or the id from the state file unless it is missing or stale
+        final Long id = knownId != null ? knownId : getStateId(key);
+        if(id != null)
+        {
+            boolean deleted = tryCall("dashboards.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.dashboards().delete(id);
+                    return null;
+                }
+            });
+            if(deleted)
+            {
+                logger.fine("Deleted dashboard: "+id+" - "+title);
+                removeState(key);
+                completeOperation(Journal.DELETE, key, id);
+                return;
+            }
+        }
+
+        // Otherwise look up the ids by title
+        Collection<Dashboard> dashboards = readList("dashboards.list", title, new Callable<Collection<Dashboard>>()
+        {
+            public Collection<Dashboard> call() throws Exception
+            {
+                return apiClient.dashboards().list(title);
+            }
+        });
+        for(final Dashboard dashboard : dashboards)
         {
             if(verbose())
                 logger.info("Deleting dashboard: "+dashboard.getId());
-            apiClient.dashboards().delete(dashboard.getId());
-            logger.info("Deleted dashboard: "+dashboard.getId()+" - "+dashboard.getTitle());
+            call("dashboards.delete", new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    apiClient.dashboards().delete(dashboard.getId());
+                    return null;
+                }
+            });
+            logger.fine("Deleted dashboard: "+dashboard.getId()+" - "+dashboard.getTitle());
+        }
+        removeState(key);
+        completeOperation(Journal.DELETE, key, 0L);
+    }
+
+    /**
+     * Returns the id of the dashboard with the given title.
+     * @param title The title of the dashboard
+     * @return The id of the dashboard, or null if it does not exist
+     */
+    private Long findDashboardId(final String title)
+    {
+        Collection<Dashboard> dashboards = readList("dashboards.list", title, new Callable<Collection<Dashboard>>()
+        {
+            public Collection<Dashboard> call() throws Exception
+            {
+                return apiClient.dashboards().list(title);
+            }
+        });
+        for(Dashboard dashboard : dashboards)
+        {
+            if(title.equals(dashboard.getTitle()))
+                return dashboard.getId();
         }
+        return null;
     }
 
     /**
@@ -201,16 +343,18 @@ public class DashboardManager extends BaseManager
     {
         List<Dashboard> ret = null;
 
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.YAML_PARSE, filename, "dashboard");
         try
         {
             if(verbose())
                 logger.info("Loading dashboard file: "+filename);
-            ret = DashboardParser.parseYaml(reader);
+            ret = DashboardParser.parseYaml(event.wrap(reader));
             logger.info("Read "+ret.size()+" dashboards");
         }
         finally
         {
             closeReader(reader);
+            event.commit(ret != null ? ret.size() : 0, ret != null);
         }
 
         return ret;
@@ -225,16 +369,20 @@ public class DashboardManager extends BaseManager
      */
     public void writeDashboards(List<Dashboard> dashboards, String filename, Writer writer)
     {
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.YAML_DUMP, filename, "dashboard");
+        boolean success = false;
         try
         {
             if(verbose())
                 logger.info("Writing dashboard file: "+filename);
-            DashboardRenderer.builder().withBanner(true).title(filename).build().renderYaml(dashboards, writer);
+            DashboardRenderer.builder().withBanner(true).title(filename).build().renderYaml(dashboards, event.wrap(writer));
+            success = true;
             logger.info("Wrote "+dashboards.size()+" dashboards");
         }
         finally
         {
             closeWriter(writer);
+            event.commit(success ? dashboards.size() : 0, success);
         }
     }
 }
\ No newline at end of file
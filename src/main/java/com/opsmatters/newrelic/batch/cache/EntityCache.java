@@ -0,0 +1,303 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.cache;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the entity lists of each account, eg. the applications and servers, for a period of time.
+ * <P>
+ * The lists are kept in least recently used order and the cache is bounded by the total number
+ * of entities it holds rather than the number of lists, so that one large account
+ * cannot crowd out the memory of the JVM. A list larger than the bound is never kept.
+ * </P>
+ * <P>
+ * A single shared cache is used by default by all the managers in the JVM,
+ * so that repeated imports within the period reuse the same entities.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class EntityCache
+{
+    private static final Logger logger = Logger.getLogger(EntityCache.class.getName());
+
+    /**
+     * The default time a list is kept.
+     */
+    public static final long DEFAULT_TTL = 300000L;
+
+    /**
+     * The default maximum number of entities kept.
+     */
+    public static final int DEFAULT_MAX_ENTITIES = 250000;
+
+    private static final EntityCache shared = new EntityCache();
+
+    private long ttl;
+    private int maxEntities;
+    private int size = 0;
+    private LinkedHashMap<String,Entry> entries = new LinkedHashMap<String,Entry>(16, 0.75f, true);
+    private long hits = 0L;
+    private long misses = 0L;
+    private long evictions = 0L;
+
+    /**
+     * Default constructor.
+     */
+    public EntityCache()
+    {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTITIES);
+    }
+
+    /**
+     * Constructor that takes the time a list is kept and the maximum number of entities.
+     * @param ttl The time a list is kept in milliseconds
+     * @param maxEntities The maximum number of entities kept across all the lists
+     */
+    public EntityCache(long ttl, int maxEntities)
+    {
+        if(ttl < 0L)
+            throw new IllegalArgumentException("ttl cannot be negative: "+ttl);
+        if(maxEntities < 0)
+            throw new IllegalArgumentException("maximum entities cannot be negative: "+maxEntities);
+        this.ttl = ttl;
+        this.maxEntities = maxEntities;
+    }
+
+    /**
+     * Returns the cache shared by all the managers in the JVM.
+     * @return The shared cache
+     */
+    public static EntityCache getShared()
+    {
+        return shared;
+    }
+
+    /**
+     * Returns the time a list is kept.
+     * @return The time a list is kept in milliseconds
+     */
+    public long getTtl()
+    {
+        return ttl;
+    }
+
+    /**
+     * Returns the maximum number of entities kept across all the lists.
+     * @return The maximum number of entities kept
+     */
+    public int getMaxEntities()
+    {
+        return maxEntities;
+    }
+
+    /**
+     * Returns the list for the given key, calling the loader if the list is missing or has expired.
+     * <P>
+     * The loader is called outside the lock, so a slow load does not hold up the other accounts.
+     * </P>
+     * @param <T> The type of the entities
+     * @param key The key of the list, including the account
+     * @param loader The call used to read the list
+     * @return The list of entities, which cannot be modified
+     */
+    public <T> List<T> get(String key, Callable<? extends List<T>> loader)
+    {
+        synchronized(this)
+        {
+            Entry entry = entries.get(key);
+            if(entry != null)
+            {
+                if(entry.expires > System.currentTimeMillis())
+                {
+                    ++hits;
+                    @SuppressWarnings("unchecked")
+                    List<T> ret = (List<T>)entry.list;
+                    return ret;
+                }
+                remove(key);
+            }
+            ++misses;
+        }
+
+        List<T> list;
+        try
+        {
+            list = loader.call();
+        }
+        catch(RuntimeException e)
+        {
+            throw e;
+        }
+        catch(Exception e)
+        {
+            throw new IllegalStateException("entity load failed", e);
+        }
+
+        List<T> ret = Collections.unmodifiableList(new ArrayList<T>(list));
+        put(key, ret);
+        return ret;
+    }
+
+    /**
+     * Adds the given list, evicting the expired and least recently used lists to stay within the bound.
+     */
+    private synchronized void put(String key, List<?> list)
+    {
+        remove(key);
+        if(ttl == 0L || list.size() > maxEntities)
+            return;
+
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String,Entry>> it = entries.entrySet().iterator();
+        while(it.hasNext())
+        {
+            Entry entry = it.next().getValue();
+            if(entry.expires <= now || size+list.size() > maxEntities)
+            {
+                it.remove();
+                size -= entry.list.size();
+                ++evictions;
+            }
+        }
+
+        entries.put(key, new Entry(list, now+ttl));
+        size += list.size();
+    }
+
+    /**
+     * Removes the list with the given key.
+     */
+    private void remove(String key)
+    {
+        Entry entry = entries.remove(key);
+        if(entry != null)
+            size -= entry.list.size();
+    }
+
+    /**
+     * Discards the list with the given key.
+     * @param key The key of the list
+     */
+    public synchronized void invalidate(String key)
+    {
+        remove(key);
+    }
+
+    /**
+     * Discards the lists whose keys start with the given prefix, eg. all the lists for an account.
+     * @param prefix The prefix of the keys
+     */
+    public synchronized void invalidatePrefix(String prefix)
+    {
+        Iterator<Map.Entry<String,Entry>> it = entries.entrySet().iterator();
+        while(it.hasNext())
+        {
+            Map.Entry<String,Entry> entry = it.next();
+            if(entry.getKey().startsWith(prefix))
+            {
+                it.remove();
+                size -= entry.getValue().list.size();
+            }
+        }
+    }
+
+    /**
+     * Discards all the lists.
+     */
+    public synchronized void invalidateAll()
+    {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the number of entities kept across all the lists.
+     * @return The number of entities kept
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of reads answered from a kept list.
+     * @return The number of reads answered from a kept list
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of reads that called the loader.
+     * @return The number of reads that called the loader
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the number of lists evicted to stay within the bound or because they expired.
+     * @return The number of lists evicted
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return "EntityCache [ttl="+ttl
+            +", maxEntities="+maxEntities
+            +", lists="+entries.size()
+            +", size="+size
+            +", hits="+hits
+            +", misses="+misses
+            +", evictions="+evictions
+            +"]";
+    }
+
+    /**
+     * A list that has been kept.
+     */
+    private static class Entry
+    {
+        private List<?> list;
+        private long expires;
+
+        Entry(List<?> list, long expires)
+        {
+            this.list = list;
+            this.expires = expires;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.cache;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.api.model.Entity;
+import com.opsmatters.newrelic.batch.AlertManager;
+
+/**
+ * Loads the entities of an account used to resolve the entity names of alert conditions.
+ * <P>
+ * Each entity type is read by a separate concurrent call, and the name index is built
+ * from each list as soon as it arrives, while the other calls are still in progress.
+ * </P>
+ * <P>
+ * The manager can only read the applications and servers,
+ * so only these sources are added by {@link #EntityCatalogue(AlertManager)}.
+ * Other entity types can be loaded by adding a source for each type using {@link #addSource(String, Callable)}.
+ * Each source reads all the pages of its type itself, so the pages of a single type are not prefetched.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class EntityCatalogue
+{
+    private static final Logger logger = Logger.getLogger(EntityCatalogue.class.getName());
+
+    /**
+     * The default number of concurrent API calls.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    private Map<String,Callable<List<? extends Entity>>> sources = new LinkedHashMap<String,Callable<List<? extends Entity>>>();
+    private int threads = DEFAULT_THREADS;
+    private List<Entity> entities = new ArrayList<Entity>();
+    private Map<String,Long> ids = new HashMap<String,Long>();
+    private Map<String,List<Long>> duplicates = new HashMap<String,List<Long>>();
+    private long duration = 0L;
+
+    /**
+     * Default constructor.
+     */
+    public EntityCatalogue()
+    {
+    }
+
+    /**
+     * Constructor that takes the manager used to read the applications and servers.
+     * @param manager The manager used to read the applications and servers
+     */
+    public EntityCatalogue(final AlertManager manager)
+    {
+        if(manager == null)
+            throw new IllegalArgumentException("null manager");
+
+        addSource("applications", new Callable<List<? extends Entity>>()
+        {
+            public List<? extends Entity> call() throws Exception
+            {
+                return manager.getApplications();
+            }
+        });
+        addSource("servers", new Callable<List<? extends Entity>>()
+        {
+            public List<? extends Entity> call() throws Exception
+            {
+                return manager.getServers();
+            }
+        });
+    }
+
+    /**
+     * Adds a call that reads the entities of the given type.
+     * @param type The type of the entities, eg. "applications"
+     * @param source The call that reads the entities
+     */
+    public void addSource(String type, Callable<List<? extends Entity>> source)
+    {
+        if(type == null)
+            throw new IllegalArgumentException("null type");
+        if(source == null)
+            throw new IllegalArgumentException("null source");
+        sources.put(type, source);
+    }
+
+    /**
+     * Sets the number of concurrent API calls.
+     * @param threads The number of concurrent API calls
+     */
+    public void setThreads(int threads)
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1: "+threads);
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of concurrent API calls.
+     * @return The number of concurrent API calls
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Reads the entities of each type concurrently and indexes them by name.
+     * <P>
+     * Any entities from a previous load are discarded.
+     * </P>
+     * @return The entities of all the types
+     * @throws InterruptedException if the thread is interrupted while waiting for the API calls
+     */
+    public List<Entity> load() throws InterruptedException
+    {
+        long start = System.currentTimeMillis();
+        entities = new ArrayList<Entity>();
+        ids = new HashMap<String,Long>();
+        duplicates = new HashMap<String,List<Long>>();
+        if(sources.isEmpty())
+            return getEntities();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, sources.size()));
+        try
+        {
+            CompletionService<List<? extends Entity>> service = new ExecutorCompletionService<List<? extends Entity>>(executor);
+            for(Callable<List<? extends Entity>> source : sources.values())
+                service.submit(source);
+
+            // Index each list in the order the calls complete
+            for(int i = 0; i < sources.size(); i++)
+                add(get(service.take()));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        duration = System.currentTimeMillis()-start;
+        logger.info("Loaded entity catalogue: "+this);
+        return getEntities();
+    }
+
+    /**
+     * Adds the given entities to the catalogue and the name index.
+     */
+    private void add(List<? extends Entity> batch)
+    {
+        for(Entity entity : batch)
+        {
+            entities.add(entity);
+            String name = entity.getName();
+            if(name == null)
+                continue;
+
+            Long id = entity.getId();
+            List<Long> names = duplicates.get(name);
+            if(names != null)
+            {
+                names.add(id);
+            }
+            else
+            {
+                Long existing = ids.put(name, id);
+                if(existing != null)
+                {
+                    names = new ArrayList<Long>(2);
+                    names.add(existing);
+                    names.add(id);
+                    duplicates.put(name, names);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the entities of all the types.
+     * @return The entities of all the types
+     */
+    public List<Entity> getEntities()
+    {
+        return Collections.unmodifiableList(entities);
+    }
+
+    /**
+     * Returns the id of the entity with the given name.
+     * @param name The name of the entity
+     * @return The id of the entity, or <CODE>null</CODE> if there is no entity with the name
+     * @throws IllegalStateException if there is more than one entity with the name
+     */
+    public Long getId(String name)
+    {
+        if(duplicates.containsKey(name))
+            throw new IllegalStateException("more than one entity found with name: "+name);
+        return ids.get(name);
+    }
+
+    /**
+     * Returns the ids of all the entities with the given name.
+     * @param name The name of the entities
+     * @return The ids of the entities, or an empty list if there are no entities with the name
+     */
+    public List<Long> getIds(String name)
+    {
+        List<Long> ret = duplicates.get(name);
+        if(ret != null)
+            return Collections.unmodifiableList(ret);
+        Long id = ids.get(name);
+        if(id != null)
+            return Collections.singletonList(id);
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the number of entities in the catalogue.
+     * @return The number of entities in the catalogue
+     */
+    public int size()
+    {
+        return entities.size();
+    }
+
+    /**
+     * Returns the time taken by the last load.
+     * @return The time taken by the last load in milliseconds
+     */
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * Returns the result of the given future, unwrapping the cause of any failure.
+     */
+    private static <T> T get(Future<T> future) throws InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch(ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if(cause instanceof Error)
+                throw (Error)cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "EntityCatalogue [sources="+sources.keySet()
+            +", threads="+threads
+            +", entities="+entities.size()
+            +", names="+ids.size()
+            +", duplicates="+duplicates.size()
+            +", duration="+duration
+            +"]";
+    }
+}
\ No newline at end of file
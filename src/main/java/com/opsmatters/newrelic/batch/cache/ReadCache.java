@@ -0,0 +1,310 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces identical read calls and keeps their results for a short time.
+ * <P>
+ * Concurrent reads with the same key share a single call that is in flight.
+ * The result is then kept until it expires or until its resource is invalidated by a write.
+ * A read that started before the last write to its resource is never shared or kept, so a caller
+ * never sees a result older than its own writes. Writes to one resource do not discard the results
+ * kept for other resources.
+ * </P>
+ * <P>
+ * Note that the objects returned are shared by all the callers that read them.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class ReadCache
+{
+    private static final Logger logger = Logger.getLogger(ReadCache.class.getName());
+
+    /**
+     * The default time a result is kept.
+     */
+    public static final long DEFAULT_TTL = 5000L;
+
+    private long ttl;
+    private ConcurrentMap<String,AtomicLong> generations = new ConcurrentHashMap<String,AtomicLong>();
+    private ConcurrentMap<String,Entry> entries = new ConcurrentHashMap<String,Entry>();
+    private ConcurrentMap<String,Flight> flights = new ConcurrentHashMap<String,Flight>();
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong coalesced = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+    /**
+     * Default constructor.
+     */
+    public ReadCache()
+    {
+        this(DEFAULT_TTL);
+    }
+
+    /**
+     * Constructor that takes the time a result is kept.
+     * @param ttl The time a result is kept in milliseconds, or 0 to only coalesce concurrent reads
+     */
+    public ReadCache(long ttl)
+    {
+        if(ttl < 0L)
+            throw new IllegalArgumentException("ttl cannot be negative: "+ttl);
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns the time a result is kept.
+     * @return The time a result is kept in milliseconds
+     */
+    public long getTtl()
+    {
+        return ttl;
+    }
+
+    /**
+     * Returns the result for the given key, calling the loader only if there is no current result
+     * and no identical read in flight.
+     * @param <T> The type of the result
+     * @param resource The resource that is read, eg. "alertPolicies"
+     * @param key The key of the read, including the endpoint and parameters
+     * @param loader The call used to read the result
+     * @return The result of the read
+     */
+    public <T> T get(String resource, String key, Callable<T> loader)
+    {
+        AtomicLong generation = getGeneration(resource);
+        long gen = generation.get();
+        Entry entry = entries.get(key);
+        if(entry != null)
+        {
+            if(entry.generation == gen && entry.expires > System.currentTimeMillis())
+            {
+                hits.incrementAndGet();
+                @SuppressWarnings("unchecked")
+                T ret = (T)entry.value;
+                return ret;
+            }
+            entries.remove(key, entry);
+        }
+
+        Flight flight = new Flight(gen);
+        Flight current = flights.putIfAbsent(key, flight);
+        if(current != null)
+        {
+            if(current.generation == gen)
+            {
+                coalesced.incrementAndGet();
+                @SuppressWarnings("unchecked")
+                T ret = (T)current.await();
+                return ret;
+            }
+
+            // The read in flight started before a write, so make a separate read
+            flight = null;
+        }
+
+        misses.incrementAndGet();
+        try
+        {
+            T ret = loader.call();
+            if(flight != null)
+                flight.complete(ret, null);
+            if(ttl > 0L && generation.get() == gen)
+                entries.put(key, new Entry(resource, ret, gen, System.currentTimeMillis()+ttl));
+            return ret;
+        }
+        catch(RuntimeException e)
+        {
+            if(flight != null)
+                flight.complete(null, e);
+            throw e;
+        }
+        catch(Exception e)
+        {
+            IllegalStateException ex = new IllegalStateException("read failed: "+key, e);
+            if(flight != null)
+                flight.complete(null, ex);
+            throw ex;
+        }
+        catch(Error e)
+        {
+            if(flight != null)
+                flight.complete(null, new IllegalStateException("read failed: "+key, e));
+            throw e;
+        }
+        finally
+        {
+            if(flight != null)
+                flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Discards the results for the given resource, and prevents the reads of the resource
+     * in flight from being shared or kept.
+     * <P>
+     * Called after every write to the resource.
+     * </P>
+     * @param resource The resource that was written, eg. "alertPolicies"
+     */
+    public void invalidate(String resource)
+    {
+        getGeneration(resource).incrementAndGet();
+        Iterator<Map.Entry<String,Entry>> it = entries.entrySet().iterator();
+        while(it.hasNext())
+        {
+            if(it.next().getValue().resource.equals(resource))
+                it.remove();
+        }
+    }
+
+    /**
+     * Discards all the results, and prevents the reads in flight from being shared or kept.
+     */
+    public void invalidate()
+    {
+        for(AtomicLong generation : generations.values())
+            generation.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Returns the generation of the given resource, which is incremented by each write to the resource.
+     */
+    private AtomicLong getGeneration(String resource)
+    {
+        AtomicLong ret = generations.get(resource);
+        if(ret == null)
+        {
+            AtomicLong generation = new AtomicLong();
+            ret = generations.putIfAbsent(resource, generation);
+            if(ret == null)
+                ret = generation;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of reads answered from a kept result.
+     * @return The number of reads answered from a kept result
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of reads that shared a read in flight.
+     * @return The number of reads that shared a read in flight
+     */
+    public long getCoalesced()
+    {
+        return coalesced.get();
+    }
+
+    /**
+     * Returns the number of reads that called the loader.
+     * @return The number of reads that called the loader
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "ReadCache [ttl="+ttl
+            +", entries="+entries.size()
+            +", hits="+hits.get()
+            +", coalesced="+coalesced.get()
+            +", misses="+misses.get()
+            +"]";
+    }
+
+    /**
+     * A result that has been kept.
+     */
+    private static class Entry
+    {
+        private String resource;
+        private Object value;
+        private long generation;
+        private long expires;
+
+        Entry(String resource, Object value, long generation, long expires)
+        {
+            this.resource = resource;
+            this.value = value;
+            this.generation = generation;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * A read that is in flight.
+     */
+    private static class Flight
+    {
+        private long generation;
+        private CountDownLatch done = new CountDownLatch(1);
+        private volatile Object value;
+        private volatile RuntimeException error;
+
+        Flight(long generation)
+        {
+            this.generation = generation;
+        }
+
+        void complete(Object value, RuntimeException error)
+        {
+            this.value = value;
+            this.error = error;
+            done.countDown();
+        }
+
+        Object await()
+        {
+            try
+            {
+                done.await();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for read", e);
+            }
+            if(error != null)
+                throw error;
+            return value;
+        }
+    }
+}
\ No newline at end of file
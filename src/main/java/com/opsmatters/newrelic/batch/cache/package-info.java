@@ -0,0 +1,4 @@
+/**
+ * The cache classes used for New Relic.
+ */
+package com.opsmatters.newrelic.batch.cache;
\ No newline at end of file
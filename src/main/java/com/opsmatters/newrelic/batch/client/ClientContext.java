@@ -0,0 +1,311 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.client;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.api.NewRelicApi;
+import com.opsmatters.newrelic.api.NewRelicInfraApi;
+
+/**
+ * Holds the API clients for each account so they can be shared by several managers.
+ * <P>
+ * The clients for an account are created on first use and reused by every manager
+ * that borrows them from the context, so that short-lived managers do not pay for
+ * new clients and connections each time. Clients that have not been used for
+ * the idle timeout are evicted.
+ * </P>
+ * <P>
+ * The clients use the JDK HTTP connection, which has a single keep-alive pool for the
+ * whole JVM rather than one per client. Building a context therefore sets the JVM-wide
+ * <CODE>http.keepAlive</CODE> and <CODE>http.maxConnections</CODE> system properties,
+ * which affect every <CODE>HttpURLConnection</CODE> in the JVM, not just these clients.
+ * The JDK reads these properties once, so they only take effect if the context is built
+ * before the first HTTP connection is opened, and the last context built wins.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class ClientContext
+{
+    private static final Logger logger = Logger.getLogger(ClientContext.class.getName());
+
+    /**
+     * The default maximum number of idle connections kept alive for each host.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 16;
+
+    /**
+     * The default time before unused clients are evicted.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 300000L;
+
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private boolean keepAlive = true;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private ConcurrentMap<String,Clients> clients = new ConcurrentHashMap<String,Clients>();
+
+    /**
+     * Default constructor.
+     */
+    public ClientContext()
+    {
+    }
+
+    /**
+     * Sets the maximum number of idle connections kept alive for each host.
+     * @param maxConnections The maximum number of idle connections kept alive for each host
+     */
+    public void setMaxConnections(int maxConnections)
+    {
+        if(maxConnections < 1)
+            throw new IllegalArgumentException("maximum connections must be at least 1: "+maxConnections);
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Returns the maximum number of idle connections kept alive for each host.
+     * @return The maximum number of idle connections kept alive for each host
+     */
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    /**
+     * Set to <CODE>true</CODE> if connections should be kept alive between calls.
+     * @param keepAlive <CODE>true</CODE> if connections should be kept alive between calls
+     */
+    public void setKeepAlive(boolean keepAlive)
+    {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if connections are kept alive between calls.
+     * @return <CODE>true</CODE> if connections are kept alive between calls
+     */
+    public boolean getKeepAlive()
+    {
+        return keepAlive;
+    }
+
+    /**
+     * Sets the time before unused clients are evicted.
+     * @param idleTimeout The time before unused clients are evicted in milliseconds, or 0 to keep them
+     */
+    public void setIdleTimeout(long idleTimeout)
+    {
+        if(idleTimeout < 0L)
+            throw new IllegalArgumentException("idle timeout cannot be negative: "+idleTimeout);
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns the time before unused clients are evicted.
+     * @return The time before unused clients are evicted in milliseconds
+     */
+    public long getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+
+    /**
+     * Applies the connection settings to the JDK HTTP connection.
+     * <P>
+     * Note that this sets the <CODE>http.keepAlive</CODE> and <CODE>http.maxConnections</CODE>
+     * system properties, so the settings apply to every HTTP connection in the JVM.
+     * </P>
+     */
+    protected void configure()
+    {
+        System.setProperty("http.keepAlive", Boolean.toString(keepAlive));
+        System.setProperty("http.maxConnections", Integer.toString(maxConnections));
+    }
+
+    /**
+     * Returns the REST API client for the given account, creating it if necessary.
+     * @param apiKey The API key of the account
+     * @return The REST API client for the account
+     */
+    public NewRelicApi getApiClient(String apiKey)
+    {
+        return getClients(apiKey).apiClient;
+    }
+
+    /**
+     * Returns the Infrastructure API client for the given account, creating it if necessary.
+     * @param apiKey The API key of the account
+     * @return The Infrastructure API client for the account
+     */
+    public NewRelicInfraApi getInfraApiClient(String apiKey)
+    {
+        return getClients(apiKey).infraApiClient;
+    }
+
+    /**
+     * Returns the clients for the given account, creating them if necessary.
+     */
+    private Clients getClients(String apiKey)
+    {
+        if(apiKey == null)
+            throw new IllegalArgumentException("null API key");
+
+        evictIdle();
+
+        Clients ret = clients.get(apiKey);
+        if(ret == null)
+        {
+            Clients created = new Clients(apiKey);
+            ret = clients.putIfAbsent(apiKey, created);
+            if(ret == null)
+                ret = created;
+        }
+        ret.lastUsed = System.currentTimeMillis();
+        return ret;
+    }
+
+    /**
+     * Evicts the clients that have not been used for the idle timeout.
+     */
+    public void evictIdle()
+    {
+        if(idleTimeout == 0L)
+            return;
+
+        long expired = System.currentTimeMillis()-idleTimeout;
+        Iterator<Clients> it = clients.values().iterator();
+        while(it.hasNext())
+        {
+            if(it.next().lastUsed < expired)
+            {
+                it.remove();
+                logger.fine("Evicted idle clients");
+            }
+        }
+    }
+
+    /**
+     * Evicts all the clients.
+     */
+    public void clear()
+    {
+        clients.clear();
+    }
+
+    /**
+     * Returns the number of accounts with clients.
+     * @return The number of accounts with clients
+     */
+    public int size()
+    {
+        return clients.size();
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "ClientContext [maxConnections="+maxConnections
+            +", keepAlive="+keepAlive
+            +", idleTimeout="+idleTimeout
+            +", accounts="+clients.size()
+            +"]";
+    }
+
+    /**
+     * Returns a builder for the context.
+     * @return The builder instance.
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Builder to make context construction easier.
+     */
+    public static class Builder
+    {
+        private ClientContext context = new ClientContext();
+
+        /**
+         * Sets the maximum number of idle connections kept alive for each host.
+         * @param maxConnections The maximum number of idle connections kept alive for each host
+         * @return This object
+         */
+        public Builder maxConnections(int maxConnections)
+        {
+            context.setMaxConnections(maxConnections);
+            return this;
+        }
+
+        /**
+         * Set to <CODE>true</CODE> if connections should be kept alive between calls.
+         * @param keepAlive <CODE>true</CODE> if connections should be kept alive between calls
+         * @return This object
+         */
+        public Builder keepAlive(boolean keepAlive)
+        {
+            context.setKeepAlive(keepAlive);
+            return this;
+        }
+
+        /**
+         * Sets the time before unused clients are evicted.
+         * @param idleTimeout The time before unused clients are evicted in milliseconds, or 0 to keep them
+         * @return This object
+         */
+        public Builder idleTimeout(long idleTimeout)
+        {
+            context.setIdleTimeout(idleTimeout);
+            return this;
+        }
+
+        /**
+         * Returns the configured context instance
+         * @return The context instance
+         */
+        public ClientContext build()
+        {
+            context.configure();
+            return context;
+        }
+    }
+
+    /**
+     * The clients for an account.
+     */
+    private static class Clients
+    {
+        private NewRelicApi apiClient;
+        private NewRelicInfraApi infraApiClient;
+        private volatile long lastUsed;
+
+        Clients(String apiKey)
+        {
+            apiClient = NewRelicApi.builder().apiKey(apiKey).build();
+            infraApiClient = NewRelicInfraApi.builder().apiKey(apiKey).build();
+            lastUsed = System.currentTimeMillis();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,4 @@
+/**
+ * The client classes used for New Relic.
+ */
+package com.opsmatters.newrelic.batch.client;
\ No newline at end of file
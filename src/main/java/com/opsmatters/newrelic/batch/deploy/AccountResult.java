@@ -0,0 +1,215 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.logging.Logger;
+
+/**
+ * Represents the outcome of a deployment to a single account.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class AccountResult
+{
+    private static final Logger logger = Logger.getLogger(AccountResult.class.getName());
+
+    private String account;
+    private int completed = 0;
+    private int failed = 0;
+    private int skipped = 0;
+    private int dashboards = 0;
+    private long calls = 0L;
+    private long errors = 0L;
+    private long duration = 0L;
+    private Throwable error;
+
+    /**
+     * Constructor that takes an account name.
+     * @param account The name of the account
+     */
+    public AccountResult(String account)
+    {
+        this.account = account;
+    }
+
+    /**
+     * Returns the name of the account.
+     * @return The name of the account
+     */
+    public String getAccount()
+    {
+        return account;
+    }
+
+    /**
+     * Sets the outcome of the tasks in the given graph.
+     * @param graph The graph of tasks that was executed
+     */
+    void setTasks(TaskGraph graph)
+    {
+        completed = graph.getTasks(DeploymentTask.Status.COMPLETED).size();
+        failed = graph.getTasks(DeploymentTask.Status.FAILED).size();
+        skipped = graph.getTasks(DeploymentTask.Status.SKIPPED).size();
+        if(error == null)
+        {
+            for(DeploymentTask task : graph.getTasks(DeploymentTask.Status.FAILED))
+            {
+                error = task.getError();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks that completed.
+     * @return The number of tasks that completed
+     */
+    public int getCompleted()
+    {
+        return completed;
+    }
+
+    /**
+     * Returns the number of tasks that failed.
+     * @return The number of tasks that failed
+     */
+    public int getFailed()
+    {
+        return failed;
+    }
+
+    /**
+     * Returns the number of tasks that were skipped because a dependency failed.
+     * @return The number of tasks that were skipped
+     */
+    public int getSkipped()
+    {
+        return skipped;
+    }
+
+    /**
+     * Sets the number of dashboards created.
+     * @param dashboards The number of dashboards created
+     */
+    void setDashboards(int dashboards)
+    {
+        this.dashboards = dashboards;
+    }
+
+    /**
+     * Returns the number of dashboards created.
+     * @return The number of dashboards created
+     */
+    public int getDashboards()
+    {
+        return dashboards;
+    }
+
+    /**
+     * Sets the number of API calls and errors.
+     * @param calls The number of API calls made
+     * @param errors The number of API calls that failed
+     */
+    void setCalls(long calls, long errors)
+    {
+        this.calls = calls;
+        this.errors = errors;
+    }
+
+    /**
+     * Returns the number of API calls made.
+     * @return The number of API calls made
+     */
+    public long getCalls()
+    {
+        return calls;
+    }
+
+    /**
+     * Returns the number of API calls that failed.
+     * @return The number of API calls that failed
+     */
+    public long getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Sets the duration of the deployment.
+     * @param duration The duration of the deployment in milliseconds
+     */
+    void setDuration(long duration)
+    {
+        this.duration = duration;
+    }
+
+    /**
+     * Returns the duration of the deployment.
+     * @return The duration of the deployment in milliseconds
+     */
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * Sets the error that stopped the deployment.
+     * @param error The error that stopped the deployment
+     */
+    void setError(Throwable error)
+    {
+        this.error = error;
+    }
+
+    /**
+     * Returns the first error of the deployment.
+     * @return The first error of the deployment, or null if the deployment was successful
+     */
+    public Throwable getError()
+    {
+        return error;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the deployment was successful.
+     * @return <CODE>true</CODE> if the deployment was successful
+     */
+    public boolean isSuccessful()
+    {
+        return error == null && failed == 0 && skipped == 0;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "AccountResult [account="+account
+            +", successful="+isSuccessful()
+            +", completed="+completed
+            +", failed="+failed
+            +", skipped="+skipped
+            +", dashboards="+dashboards
+            +", calls="+calls
+            +", errors="+errors
+            +", duration="+duration
+            +(error != null ? ", error="+error.getMessage() : "")
+            +"]";
+    }
+}
\ No newline at end of file
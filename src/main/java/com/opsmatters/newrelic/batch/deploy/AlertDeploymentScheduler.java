@@ -0,0 +1,365 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.api.model.alerts.conditions.BaseCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.AlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ExternalServiceAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.NrqlAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraAlertCondition;
+import com.opsmatters.newrelic.batch.AlertManager;
+import com.opsmatters.newrelic.batch.model.AlertConfiguration;
+import com.opsmatters.newrelic.batch.limits.ConcurrencyLimiter;
+import com.opsmatters.newrelic.batch.progress.ProgressTracker;
+
+/**
+ * Deploys a complete alert configuration, creating each object as soon as the objects it needs exist.
+ * <P>
+ * Each channel and policy is a task, and the conditions of each family for a policy are a task.
+ * A policy depends on the channels it uses, and the conditions depend on their policy,
+ * so the conditions for a policy are created as soon as that policy exists, concurrently with other branches.
+ * </P>
+ * <P>
+ * Objects that do not exist yet are referenced by placeholder ids, which are negative numbers
+ * assigned using {@link #assignPlaceholderIds(List)} before the policies and conditions are parsed.
+ * The placeholder ids are replaced with the real ids as the objects are created.
+ * Channels and policies that already have a real id are assumed to exist and are not created.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class AlertDeploymentScheduler
+{
+    private static final Logger logger = Logger.getLogger(AlertDeploymentScheduler.class.getName());
+
+    /**
+     * The default number of threads used to run the tasks.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    private AlertManager manager;
+    private int threads = DEFAULT_THREADS;
+    private Map<Long,Long> channelIds = new ConcurrentHashMap<Long,Long>();
+    private Map<Long,Long> policyIds = new ConcurrentHashMap<Long,Long>();
+
+    /**
+     * Constructor that takes a manager.
+     * @param manager The alert manager used to create the objects
+     */
+    public AlertDeploymentScheduler(AlertManager manager)
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Sets the number of threads used to run the tasks.
+     * <P>
+     * If the manager has a concurrency limiter, the tasks are run using at least as many threads
+     * as the maximum limit, so that the current limit of each family decides how many calls are in flight.
+     * </P>
+     * @param threads The number of threads used to run the tasks
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of threads used to run the tasks.
+     * @return The number of threads used to run the tasks
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Assigns a unique negative placeholder id to each of the given channels or policies that has no id.
+     * <P>
+     * Placeholder ids allow policies to be parsed against channels, and conditions against policies,
+     * before the channels and policies have been created.
+     * </P>
+     * @param objects The channels or policies to assign placeholder ids to
+     */
+    public static void assignPlaceholderIds(List<?> objects)
+    {
+        long next = -1L;
+        for(Object object : objects)
+        {
+            if(object instanceof AlertChannel)
+            {
+                AlertChannel channel = (AlertChannel)object;
+                if(channel.getId() == null || channel.getId() == 0L)
+                    channel.setId(next--);
+            }
+            else if(object instanceof AlertPolicy)
+            {
+                AlertPolicy policy = (AlertPolicy)object;
+                if(policy.getId() == null || policy.getId() == 0L)
+                    policy.setId(next--);
+            }
+            else
+            {
+                throw new IllegalArgumentException("unsupported object type: "+object.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the given id is a placeholder id.
+     * @param id The id to check
+     * @return <CODE>true</CODE> if the given id is a placeholder id
+     */
+    public static boolean isPlaceholder(Long id)
+    {
+        return id != null && id < 0L;
+    }
+
+    /**
+     * Creates all the objects in the given configuration, waiting until the deployment has finished.
+     * @param config The alert configuration to deploy
+     * @return The graph of tasks with the outcome of each task
+     * @throws InterruptedException if the thread is interrupted while waiting for the deployment
+     */
+    public TaskGraph deploy(AlertConfiguration config) throws InterruptedException
+    {
+        TaskGraph graph = getGraph(config);
+        ProgressTracker progress = new ProgressTracker("Deploying alert configuration", graph.size());
+        progress.addListeners(manager.getProgressListeners());
+        graph.execute(getWidth(), progress);
+        return graph;
+    }
+
+    /**
+     * Returns the number of threads used to run the tasks, allowing for the concurrency limiter of the manager.
+     * @return The number of threads used to run the tasks
+     */
+    public int getWidth()
+    {
+        ConcurrencyLimiter limiter = manager.getConcurrencyLimiter();
+        if(limiter != null)
+            return Math.max(threads, limiter.getMaxLimit());
+        return threads;
+    }
+
+    /**
+     * Returns the graph of tasks needed to create all the objects in the given configuration.
+     * @param config The alert configuration to deploy
+     * @return The graph of tasks
+     */
+    public TaskGraph getGraph(AlertConfiguration config)
+    {
+        TaskGraph ret = new TaskGraph();
+
+        // Create the channels that do not exist yet
+        Map<Long,DeploymentTask> channelTasks = new LinkedHashMap<Long,DeploymentTask>();
+        for(final AlertChannel channel : config.getAlertChannels())
+        {
+            if(channel.getId() != null && !isPlaceholder(channel.getId()))
+                continue;
+
+            final Long placeholder = channel.getId();
+            DeploymentTask task = ret.add(new DeploymentTask("channel:"+channel.getName(), new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    channel.setId(null);
+                    AlertChannel created = manager.createAlertChannel(channel);
+                    putId(channelIds, placeholder, created.getId());
+                    channel.setId(created.getId());
+                    return null;
+                }
+            }));
+            if(placeholder != null)
+                channelTasks.put(placeholder, task);
+        }
+
+        // Create the policies that do not exist yet, once their channels exist
+        Map<Long,DeploymentTask> policyTasks = new LinkedHashMap<Long,DeploymentTask>();
+        for(final AlertPolicy policy : config.getAlertPolicies())
+        {
+            if(policy.getId() != null && !isPlaceholder(policy.getId()))
+                continue;
+
+            final Long placeholder = policy.getId();
+            DeploymentTask task = ret.add(new DeploymentTask("policy:"+policy.getName(), new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    if(policy.getChannels() != null && policy.getChannels().getChannelIds() != null)
+                    {
+                        List<Long> ids = new ArrayList<Long>();
+                        for(Long channelId : policy.getChannels().getChannelIds())
+                            ids.add(getId(channelIds, channelId));
+                        policy.setChannelIds(ids);
+                    }
+                    policy.setId(null);
+                    AlertPolicy created = manager.createAlertPolicy(policy);
+                    putId(policyIds, placeholder, created.getId());
+                    policy.setId(created.getId());
+                    return null;
+                }
+            }));
+            if(placeholder != null)
+                policyTasks.put(placeholder, task);
+
+            if(policy.getChannels() != null && policy.getChannels().getChannelIds() != null)
+            {
+                for(Long channelId : policy.getChannels().getChannelIds())
+                {
+                    DeploymentTask channelTask = channelTasks.get(channelId);
+                    if(channelTask != null)
+                        task.dependsOn(channelTask);
+                }
+            }
+        }
+
+        // Create the conditions for each family and policy, once the policy exists
+        addConditionTasks(ret, "alert conditions", config.getAlertConditions(), policyTasks,
+            new ConditionCreator<AlertCondition>()
+            {
+                public void create(AlertCondition condition)
+                {
+                    manager.createAlertCondition(condition);
+                }
+            });
+        addConditionTasks(ret, "external service alert conditions", config.getExternalServiceAlertConditions(), policyTasks,
+            new ConditionCreator<ExternalServiceAlertCondition>()
+            {
+                public void create(ExternalServiceAlertCondition condition)
+                {
+                    manager.createExternalServiceAlertCondition(condition);
+                }
+            });
+        addConditionTasks(ret, "NRQL alert conditions", config.getNrqlAlertConditions(), policyTasks,
+            new ConditionCreator<NrqlAlertCondition>()
+            {
+                public void create(NrqlAlertCondition condition)
+                {
+                    manager.createNrqlAlertCondition(condition);
+                }
+            });
+        ConditionCreator<InfraAlertCondition> infraCreator = new ConditionCreator<InfraAlertCondition>()
+        {
+            public void create(InfraAlertCondition condition)
+            {
+                manager.createInfraAlertCondition(condition);
+            }
+        };
+        addConditionTasks(ret, "infra metric alert conditions", config.getInfraMetricAlertConditions(), policyTasks, infraCreator);
+        addConditionTasks(ret, "infra process alert conditions", config.getInfraProcessRunningAlertConditions(), policyTasks, infraCreator);
+        addConditionTasks(ret, "infra host alert conditions", config.getInfraHostNotReportingAlertConditions(), policyTasks, infraCreator);
+
+        logger.info("Created deployment graph: "+ret.size()+" tasks, "+channelTasks.size()+" channels, "+policyTasks.size()+" policies");
+        return ret;
+    }
+
+    /**
+     * Creates a single condition.
+     */
+    private interface ConditionCreator<T extends BaseCondition>
+    {
+        /**
+         * Creates the given condition.
+         */
+        void create(T condition);
+    }
+
+    /**
+     * Adds a task for the conditions of a family for each policy, which depends on the task for the policy.
+     */
+    private <T extends BaseCondition> void addConditionTasks(TaskGraph graph, String family, List<? extends T> conditions,
+        Map<Long,DeploymentTask> policyTasks, final ConditionCreator<T> creator)
+    {
+        Map<Long,List<T>> policies = new LinkedHashMap<Long,List<T>>();
+        for(T condition : conditions)
+        {
+            List<T> list = policies.get(condition.getPolicyId());
+            if(list == null)
+            {
+                list = new ArrayList<T>();
+                policies.put(condition.getPolicyId(), list);
+            }
+            list.add(condition);
+        }
+
+        for(Map.Entry<Long,List<T>> entry : policies.entrySet())
+        {
+            final Long policyId = entry.getKey();
+            final List<T> list = entry.getValue();
+            DeploymentTask task = graph.add(new DeploymentTask(family+":"+policyId, new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    Long id = getId(policyIds, policyId);
+                    for(T condition : list)
+                    {
+                        condition.setPolicyId(id);
+                        creator.create(condition);
+                    }
+                    return null;
+                }
+            }));
+
+            DeploymentTask policyTask = policyTasks.get(policyId);
+            if(policyTask != null)
+                task.dependsOn(policyTask);
+        }
+    }
+
+    /**
+     * Records the real id for the given placeholder id.
+     */
+    private void putId(Map<Long,Long> ids, Long placeholder, Long id)
+    {
+        if(isPlaceholder(placeholder) && id != null)
+            ids.put(placeholder, id);
+    }
+
+    /**
+     * Returns the real id for the given id, which may be a placeholder.
+     * @throws IllegalStateException if the id is a placeholder for an object that has not been created
+     */
+    private Long getId(Map<Long,Long> ids, Long id)
+    {
+        if(!isPlaceholder(id))
+            return id;
+        Long ret = ids.get(id);
+        if(ret == null)
+            throw new IllegalStateException("object not created for placeholder id: "+id);
+        return ret;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "AlertDeploymentScheduler [threads="+threads+"]";
+    }
+}
\ No newline at end of file
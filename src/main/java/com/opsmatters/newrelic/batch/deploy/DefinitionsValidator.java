@@ -0,0 +1,380 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.api.model.Entity;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.batch.deploy.DeploymentDefinitions.SheetType;
+
+/**
+ * Checks every row of the alert and dashboard definitions before any API call is made.
+ * <P>
+ * The rows of each sheet are checked in chunks on several threads. A chunk is first parsed
+ * as a whole, and only if that fails is each of its rows parsed on its own, so that every row error
+ * is found, not just the first. The channels are checked first, then the policies using
+ * the valid channels, then the conditions using the valid policies.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class DefinitionsValidator
+{
+    private static final Logger logger = Logger.getLogger(DefinitionsValidator.class.getName());
+
+    /**
+     * The default number of threads used to check the rows.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * The default number of rows checked by each task.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * The maximum number of errors included in the message of the exception thrown by {@link #check(List)}.
+     */
+    private static final int MAX_REPORTED = 20;
+
+    private static final SheetType[] CHANNEL_SHEETS =
+    {
+        SheetType.EMAIL_CHANNELS,
+        SheetType.SLACK_CHANNELS,
+        SheetType.HIPCHAT_CHANNELS,
+        SheetType.CAMPFIRE_CHANNELS,
+        SheetType.OPSGENIE_CHANNELS,
+        SheetType.PAGERDUTY_CHANNELS,
+        SheetType.USER_CHANNELS,
+        SheetType.VICTOROPS_CHANNELS,
+        SheetType.XMATTERS_CHANNELS
+    };
+
+    private static final SheetType[] POLICY_SHEETS =
+    {
+        SheetType.ALERT_POLICIES
+    };
+
+    private static final SheetType[] CONDITION_SHEETS =
+    {
+        SheetType.ALERT_CONDITIONS,
+        SheetType.EXTERNAL_SERVICE_ALERT_CONDITIONS,
+        SheetType.NRQL_ALERT_CONDITIONS,
+        SheetType.INFRA_METRIC_ALERT_CONDITIONS,
+        SheetType.INFRA_PROCESS_RUNNING_ALERT_CONDITIONS,
+        SheetType.INFRA_HOST_NOT_REPORTING_ALERT_CONDITIONS
+    };
+
+    private DeploymentDefinitions definitions;
+    private int threads = DEFAULT_THREADS;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Constructor that takes the definitions to check.
+     * @param definitions The definitions to check
+     */
+    public DefinitionsValidator(DeploymentDefinitions definitions)
+    {
+        if(definitions == null)
+            throw new IllegalArgumentException("null definitions");
+        this.definitions = definitions;
+    }
+
+    /**
+     * Sets the number of threads used to check the rows.
+     * @param threads The number of threads used to check the rows
+     */
+    public void setThreads(int threads)
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1: "+threads);
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of threads used to check the rows.
+     * @return The number of threads used to check the rows
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Sets the number of rows checked by each task.
+     * @param chunkSize The number of rows checked by each task
+     */
+    public void setChunkSize(int chunkSize)
+    {
+        if(chunkSize < 1)
+            throw new IllegalArgumentException("chunk size must be at least 1: "+chunkSize);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the number of rows checked by each task.
+     * @return The number of rows checked by each task
+     */
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    /**
+     * Checks every row of the definitions and throws an exception if any errors are found.
+     * @param entities The entities of the account used to resolve the conditions
+     * @throws IllegalStateException if any errors are found, with the first errors in its message
+     * @throws InterruptedException if the thread is interrupted while waiting for the checks
+     */
+    public void check(List<Entity> entities) throws InterruptedException
+    {
+        List<ValidationError> errors = validate(entities);
+        if(errors.size() > 0)
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append(errors.size()).append(" errors found in definitions");
+            for(int i = 0; i < errors.size() && i < MAX_REPORTED; i++)
+                sb.append("\n  ").append(errors.get(i));
+            if(errors.size() > MAX_REPORTED)
+                sb.append("\n  ...");
+            throw new IllegalStateException(sb.toString());
+        }
+    }
+
+    /**
+     * Checks every row of the definitions and returns the errors found.
+     * @param entities The entities of the account used to resolve the conditions
+     * @return The errors found, in sheet and row order, or an empty list if there are no errors
+     * @throws InterruptedException if the thread is interrupted while waiting for the checks
+     */
+    public List<ValidationError> validate(List<Entity> entities) throws InterruptedException
+    {
+        long start = System.currentTimeMillis();
+        if(entities == null)
+            entities = new ArrayList<Entity>();
+
+        List<ValidationError> ret = new ArrayList<ValidationError>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            // Check the dashboards while the sheets are checked
+            Future<List<ValidationError>> dashboards = null;
+            if(definitions.hasDashboards())
+            {
+                dashboards = executor.submit(new Callable<List<ValidationError>>()
+                {
+                    public List<ValidationError> call() throws Exception
+                    {
+                        try
+                        {
+                            definitions.getDashboards();
+                            return Collections.<ValidationError>emptyList();
+                        }
+                        catch(RuntimeException e)
+                        {
+                            return Collections.singletonList(new ValidationError("dashboards", 0, getMessage(e)));
+                        }
+                    }
+                });
+            }
+
+            List<AlertChannel> channels = new ArrayList<AlertChannel>();
+            check(executor, CHANNEL_SHEETS, null, null, entities, AlertChannel.class, channels, ret);
+            AlertDeploymentScheduler.assignPlaceholderIds(channels);
+
+            List<AlertPolicy> policies = new ArrayList<AlertPolicy>();
+            check(executor, POLICY_SHEETS, channels, null, entities, AlertPolicy.class, policies, ret);
+            AlertDeploymentScheduler.assignPlaceholderIds(policies);
+
+            check(executor, CONDITION_SHEETS, channels, policies, entities, Object.class, null, ret);
+
+            if(dashboards != null)
+                ret.addAll(get(dashboards));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        logger.info("Validated definitions: errors="+ret.size()+" duration="+(System.currentTimeMillis()-start));
+        return ret;
+    }
+
+    /**
+     * Checks the rows of the given sheets concurrently, adding the valid objects of the given class
+     * and the errors to the given lists.
+     */
+    private <T> void check(ExecutorService executor, SheetType[] types,
+        final List<AlertChannel> channels, final List<AlertPolicy> policies, final List<Entity> entities,
+        final Class<T> objectClass, List<T> objects, List<ValidationError> errors)
+        throws InterruptedException
+    {
+        List<Future<Chunk<T>>> futures = new ArrayList<Future<Chunk<T>>>();
+        for(final SheetType type : types)
+        {
+            final String[] headers = definitions.getHeaders(type);
+            final List<String[]> rows = definitions.getRows(type);
+            if(rows == null)
+                continue;
+
+            for(int i = 0; i < rows.size(); i += chunkSize)
+            {
+                final int from = i;
+                final int to = Math.min(rows.size(), i+chunkSize);
+                futures.add(executor.submit(new Callable<Chunk<T>>()
+                {
+                    public Chunk<T> call() throws Exception
+                    {
+                        return check(type, headers, rows, from, to, channels, policies, entities, objectClass);
+                    }
+                }));
+            }
+        }
+
+        // Collect the results in sheet and row order
+        for(Future<Chunk<T>> future : futures)
+        {
+            Chunk<T> chunk = get(future);
+            if(objects != null)
+                objects.addAll(chunk.objects);
+            errors.addAll(chunk.errors);
+        }
+    }
+
+    /**
+     * Checks the given range of rows of a sheet, keeping the valid objects of the given class.
+     */
+    static <T> Chunk<T> check(SheetType type, String[] headers, List<String[]> rows, int from, int to,
+        List<AlertChannel> channels, List<AlertPolicy> policies, List<Entity> entities, Class<T> objectClass)
+    {
+        Chunk<T> ret = new Chunk<T>(objectClass);
+        try
+        {
+            ret.addObjects(DeploymentDefinitions.parse(type, headers, rows.subList(from, to),
+                channels, policies, entities));
+        }
+        catch(RuntimeException e)
+        {
+            // Parse each row on its own to find all the errors in the chunk
+            for(int i = from; i < to; i++)
+            {
+                try
+                {
+                    ret.addObjects(DeploymentDefinitions.parse(type, headers, rows.subList(i, i+1),
+                        channels, policies, entities));
+                }
+                catch(RuntimeException ex)
+                {
+                    ret.errors.add(new ValidationError(type.name(), i+2, getMessage(ex)));
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the message of the given exception.
+     */
+    private static String getMessage(Throwable e)
+    {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+    }
+
+    /**
+     * Returns the result of the given future, unwrapping the cause of any failure.
+     */
+    private static <T> T get(Future<T> future) throws InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch(ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if(cause instanceof Error)
+                throw (Error)cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "DefinitionsValidator [definitions="+definitions
+            +", threads="+threads
+            +", chunkSize="+chunkSize
+            +"]";
+    }
+
+    /**
+     * The valid objects and errors of a range of rows.
+     */
+    static class Chunk<T>
+    {
+        private Class<T> objectClass;
+        private List<T> objects = new ArrayList<T>();
+        private List<ValidationError> errors = new ArrayList<ValidationError>();
+
+        Chunk(Class<T> objectClass)
+        {
+            this.objectClass = objectClass;
+        }
+
+        /**
+         * Adds the given parsed objects, checking that they have the class of the chunk.
+         */
+        void addObjects(List<?> parsed)
+        {
+            List<T> list = new ArrayList<T>(parsed.size());
+            for(Object object : parsed)
+                list.add(objectClass.cast(object));
+            objects.addAll(list);
+        }
+
+        /**
+         * Returns the valid objects of the range of rows.
+         */
+        List<T> getObjects()
+        {
+            return objects;
+        }
+
+        /**
+         * Returns the errors found in the range of rows.
+         */
+        List<ValidationError> getErrors()
+        {
+            return errors;
+        }
+    }
+}
\ No newline at end of file
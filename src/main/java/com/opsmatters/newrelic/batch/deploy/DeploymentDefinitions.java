@@ -0,0 +1,631 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.logging.Logger;
+import org.yaml.snakeyaml.Yaml;
+import com.opsmatters.core.documents.InputFileReader;
+import com.opsmatters.newrelic.api.model.Entity;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.api.model.insights.Dashboard;
+import com.opsmatters.newrelic.batch.model.AlertConfiguration;
+import com.opsmatters.newrelic.batch.parsers.EmailChannelParser;
+import com.opsmatters.newrelic.batch.parsers.SlackChannelParser;
+import com.opsmatters.newrelic.batch.parsers.HipChatChannelParser;
+import com.opsmatters.newrelic.batch.parsers.CampfireChannelParser;
+import com.opsmatters.newrelic.batch.parsers.OpsGenieChannelParser;
+import com.opsmatters.newrelic.batch.parsers.PagerDutyChannelParser;
+import com.opsmatters.newrelic.batch.parsers.UserChannelParser;
+import com.opsmatters.newrelic.batch.parsers.VictorOpsChannelParser;
+import com.opsmatters.newrelic.batch.parsers.xMattersChannelParser;
+import com.opsmatters.newrelic.batch.parsers.AlertPolicyParser;
+import com.opsmatters.newrelic.batch.parsers.AlertConditionParser;
+import com.opsmatters.newrelic.batch.parsers.ExternalServiceAlertConditionParser;
+import com.opsmatters.newrelic.batch.parsers.NrqlAlertConditionParser;
+import com.opsmatters.newrelic.batch.parsers.InfraMetricAlertConditionParser;
+import com.opsmatters.newrelic.batch.parsers.InfraProcessRunningAlertConditionParser;
+import com.opsmatters.newrelic.batch.parsers.InfraHostNotReportingAlertConditionParser;
+import com.opsmatters.newrelic.batch.parsers.DashboardParser;
+import com.opsmatters.newrelic.batch.templates.TemplateFactory;
+import com.opsmatters.newrelic.batch.templates.FileTemplate;
+import com.opsmatters.newrelic.batch.readers.MappedCsvReader;
+
+/**
+ * Holds the alert and dashboard definitions to be deployed to several accounts.
+ * <P>
+ * The input files are read only once and the rows are kept in memory, unmodified.
+ * The model objects are created from the rows separately for each account
+ * as they carry the ids and entities of that account.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class DeploymentDefinitions
+{
+    private static final Logger logger = Logger.getLogger(DeploymentDefinitions.class.getName());
+
+    /**
+     * The types of sheet containing the alert definitions.
+     */
+    public enum SheetType
+    {
+        EMAIL_CHANNELS(EmailChannelParser.class),
+        SLACK_CHANNELS(SlackChannelParser.class),
+        HIPCHAT_CHANNELS(HipChatChannelParser.class),
+        CAMPFIRE_CHANNELS(CampfireChannelParser.class),
+        OPSGENIE_CHANNELS(OpsGenieChannelParser.class),
+        PAGERDUTY_CHANNELS(PagerDutyChannelParser.class),
+        USER_CHANNELS(UserChannelParser.class),
+        VICTOROPS_CHANNELS(VictorOpsChannelParser.class),
+        XMATTERS_CHANNELS(xMattersChannelParser.class),
+        ALERT_POLICIES(AlertPolicyParser.class),
+        ALERT_CONDITIONS(AlertConditionParser.class),
+        EXTERNAL_SERVICE_ALERT_CONDITIONS(ExternalServiceAlertConditionParser.class),
+        NRQL_ALERT_CONDITIONS(NrqlAlertConditionParser.class),
+        INFRA_METRIC_ALERT_CONDITIONS(InfraMetricAlertConditionParser.class),
+        INFRA_PROCESS_RUNNING_ALERT_CONDITIONS(InfraProcessRunningAlertConditionParser.class),
+        INFRA_HOST_NOT_REPORTING_ALERT_CONDITIONS(InfraHostNotReportingAlertConditionParser.class);
+
+        private Class parser;
+
+        SheetType(Class parser)
+        {
+            this.parser = parser;
+        }
+
+        /**
+         * Returns the value of the "Type" column for the rows of the sheet, eg. "email-channel".
+         * @return The value of the "Type" column for the rows of the sheet
+         */
+        public String getTemplateType()
+        {
+            return getTemplate().getType();
+        }
+
+        /**
+         * Returns the template for the rows of the sheet.
+         * @return The template for the rows of the sheet
+         */
+        public FileTemplate getTemplate()
+        {
+            return TemplateFactory.getTemplate(parser);
+        }
+
+        /**
+         * Returns the type of sheet for the given value of the "Type" column.
+         * @param templateType The value of the "Type" column, eg. "email-channel"
+         * @return The type of sheet, or null if the value is not a known type
+         */
+        public static SheetType fromTemplateType(String templateType)
+        {
+            FileTemplate template = TemplateFactory.getTemplate(templateType);
+            if(template != null)
+            {
+                for(SheetType type : values())
+                {
+                    if(TemplateFactory.getTemplate(type.parser) == template)
+                        return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    private Map<SheetType,Sheet> sheets = new EnumMap<SheetType,Sheet>(SheetType.class);
+    private Object dashboards;
+
+    /**
+     * Default constructor.
+     */
+    public DeploymentDefinitions()
+    {
+    }
+
+    /**
+     * Reads the rows of the given sheet from the given input stream.
+     * @param type The type of the sheet
+     * @param filename The name of the file
+     * @param worksheet The name of the worksheet, or null for a CSV file
+     * @param stream The input stream for the file
+     * @throws IOException if there is a problem reading the input file
+     */
+    public void readSheet(SheetType type, String filename, String worksheet, InputStream stream) throws IOException
+    {
+        readSheet(type, InputFileReader.builder()
+            .name(filename)
+            .worksheet(worksheet)
+            .withInputStream(stream)
+            .build());
+    }
+
+    /**
+     * Reads the rows of the given sheet from the given reader.
+     * @param type The type of the sheet
+     * @param reader The input file reader used to read the rows
+     * @throws IOException if there is a problem reading the input file
+     */
+    public void readSheet(SheetType type, InputFileReader reader) throws IOException
+    {
+        if(type == null)
+            throw new IllegalArgumentException("null sheet type");
+        if(reader == null)
+            throw new IllegalArgumentException("null reader");
+
+        reader.parse();
+        putSheet(type, reader.getHeaders(), reader.getRows());
+    }
+
+    /**
+     * Reads the rows of the given sheet from the given CSV file by memory-mapping it.
+     * <P>
+     * Only the columns of the template for the sheet are read.
+     * </P>
+     * @param type The type of the sheet
+     * @param file The CSV file
+     * @throws IOException if there is a problem reading the input file
+     */
+    public void readCsvSheet(SheetType type, File file) throws IOException
+    {
+        if(type == null)
+            throw new IllegalArgumentException("null sheet type");
+
+        MappedCsvReader reader = new MappedCsvReader(file);
+        reader.addTemplates(type.getTemplate());
+        reader.parse();
+        putSheet(type, reader.getHeaders(), reader.getRows());
+    }
+
+    /**
+     * Reads the rows of a sheet containing several types of object from the given CSV file by memory-mapping it.
+     * <P>
+     * Only the columns of the templates for the sheets are read.
+     * </P>
+     * @param file The CSV file
+     * @throws IOException if there is a problem reading the input file
+     * @see #putMixedSheet(String[], List)
+     */
+    public void readMixedCsvSheet(File file) throws IOException
+    {
+        MappedCsvReader reader = new MappedCsvReader(file);
+        for(SheetType type : SheetType.values())
+            reader.addTemplates(type.getTemplate());
+        reader.parse();
+        putMixedSheet(reader.getHeaders(), reader.getRows());
+    }
+
+    /**
+     * Reads the rows of a sheet containing several types of object from the given input stream.
+     * @param filename The name of the file
+     * @param worksheet The name of the worksheet, or null for a CSV file
+     * @param stream The input stream for the file
+     * @throws IOException if there is a problem reading the input file
+     * @see #putMixedSheet(String[], List)
+     */
+    public void readMixedSheet(String filename, String worksheet, InputStream stream) throws IOException
+    {
+        readMixedSheet(InputFileReader.builder()
+            .name(filename)
+            .worksheet(worksheet)
+            .withInputStream(stream)
+            .build());
+    }
+
+    /**
+     * Reads the rows of a sheet containing several types of object from the given reader.
+     * @param reader The input file reader used to read the rows
+     * @throws IOException if there is a problem reading the input file
+     * @see #putMixedSheet(String[], List)
+     */
+    public void readMixedSheet(InputFileReader reader) throws IOException
+    {
+        if(reader == null)
+            throw new IllegalArgumentException("null reader");
+
+        reader.parse();
+        putMixedSheet(reader.getHeaders(), reader.getRows());
+    }
+
+    /**
+     * Sets the rows of a sheet containing several types of object.
+     * <P>
+     * The rows are dispatched in a single pass to the sheet of each type using the value of their "Type" column,
+     * and each sheet keeps the headers of the whole sheet. Rows with a missing or unknown type are skipped.
+     * The row arrays are kept without being copied, so they must not be modified once the sheet has been set.
+     * </P>
+     * @param headers The headers of the sheet, the union of the columns of all the types in the sheet
+     * @param rows The rows of the sheet
+     */
+    public void putMixedSheet(String[] headers, List<String[]> rows)
+    {
+        if(headers == null)
+            throw new IllegalArgumentException("null headers");
+
+        int pos = -1;
+        for(int i = 0; i < headers.length && pos == -1; i++)
+        {
+            if(FileTemplate.TEMPLATE_TYPE.getHeader().equalsIgnoreCase(headers[i]))
+                pos = i;
+        }
+        if(pos == -1)
+            throw new IllegalStateException("missing mandatory column: "+FileTemplate.TEMPLATE_TYPE.getName());
+
+        Map<String,SheetType> types = new HashMap<String,SheetType>();
+        Map<SheetType,List<String[]>> dispatched = new EnumMap<SheetType,List<String[]>>(SheetType.class);
+        int skipped = 0;
+        if(rows != null)
+        {
+            for(String[] row : rows)
+            {
+                String value = pos < row.length && row[pos] != null ? row[pos].trim() : null;
+                SheetType type = types.get(value);
+                if(type == null && value != null)
+                {
+                    type = SheetType.fromTemplateType(value);
+                    if(type != null)
+                        types.put(value, type);
+                }
+                if(type == null)
+                {
+                    logger.severe("found illegal line in mixed file: "+value);
+                    ++skipped;
+                    continue;
+                }
+
+                List<String[]> list = dispatched.get(type);
+                if(list == null)
+                {
+                    list = new ArrayList<String[]>();
+                    dispatched.put(type, list);
+                }
+                list.add(row);
+            }
+        }
+
+        for(Map.Entry<SheetType,List<String[]>> entry : dispatched.entrySet())
+            putSheet(entry.getKey(), headers, entry.getValue());
+        logger.fine("Read mixed sheet: types="+dispatched.keySet()+" skipped="+skipped);
+    }
+
+    /**
+     * Sets the rows of the given sheet.
+     * <P>
+     * The row arrays are kept without being copied, so they must not be modified once the sheet has been set.
+     * </P>
+     * @param type The type of the sheet
+     * @param headers The headers of the sheet
+     * @param rows The rows of the sheet
+     */
+    public void putSheet(SheetType type, String[] headers, List<String[]> rows)
+    {
+        if(type == null)
+            throw new IllegalArgumentException("null sheet type");
+
+        Sheet sheet = new Sheet(headers, rows);
+        synchronized(sheets)
+        {
+            sheets.put(type, sheet);
+        }
+        logger.fine("Read "+sheet.size()+" rows for "+type);
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if a sheet of the given type has been read.
+     * @param type The type of the sheet
+     * @return <CODE>true</CODE> if a sheet of the given type has been read
+     */
+    public boolean hasSheet(SheetType type)
+    {
+        synchronized(sheets)
+        {
+            return sheets.containsKey(type);
+        }
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the alert conditions need the entities of each account.
+     * @return <CODE>true</CODE> if the alert conditions need the entities of each account
+     */
+    public boolean hasEntityConditions()
+    {
+        return hasSheet(SheetType.ALERT_CONDITIONS)
+            || hasSheet(SheetType.EXTERNAL_SERVICE_ALERT_CONDITIONS);
+    }
+
+    /**
+     * Reads the dashboards from the given YAML reader.
+     * @param reader The reader used to read the YAML string
+     */
+    public void readDashboards(Reader reader)
+    {
+        if(reader == null)
+            throw new IllegalArgumentException("null reader");
+        dashboards = new Yaml().load(reader);
+    }
+
+    /**
+     * Reads the dashboards from the given YAML string.
+     * @param contents The contents of the file as a YAML string
+     */
+    public void readDashboards(String contents)
+    {
+        if(contents == null)
+            throw new IllegalArgumentException("null contents");
+        dashboards = new Yaml().load(contents);
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the dashboards have been read.
+     * @return <CODE>true</CODE> if the dashboards have been read
+     */
+    public boolean hasDashboards()
+    {
+        return dashboards != null;
+    }
+
+    /**
+     * Returns a new set of dashboards created from the YAML document.
+     * @return The dashboards, or an empty list if no dashboards have been read
+     */
+    public List<Dashboard> getDashboards()
+    {
+        if(dashboards == null)
+            return new ArrayList<Dashboard>();
+        return DashboardParser.parseDocument(dashboards);
+    }
+
+    /**
+     * Returns a new alert configuration created from the rows of the sheets.
+     * <P>
+     * The channels and policies are given placeholder ids so that the conditions
+     * can refer to them before they have been created.
+     * </P>
+     * @param entities The entities of the account used to resolve the conditions
+     * @return The alert configuration
+     */
+    public AlertConfiguration getAlertConfiguration(List<Entity> entities)
+    {
+        AlertConfiguration ret = new AlertConfiguration();
+
+        List<AlertChannel> channels = new ArrayList<AlertChannel>();
+        Sheet sheet = getSheet(SheetType.EMAIL_CHANNELS);
+        if(sheet != null)
+            channels.addAll(EmailChannelParser.parse(sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.SLACK_CHANNELS);
+        if(sheet != null)
+            channels.addAll(SlackChannelParser.parse(sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.HIPCHAT_CHANNELS);
+        if(sheet != null)
+            channels.addAll(HipChatChannelParser.parse(sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.CAMPFIRE_CHANNELS);
+        if(sheet != null)
+            channels.addAll(CampfireChannelParser.parse(sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.OPSGENIE_CHANNELS);
+        if(sheet != null)
+            channels.addAll(OpsGenieChannelParser.parse(sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.PAGERDUTY_CHANNELS);
+        if(sheet != null)
+            channels.addAll(PagerDutyChannelParser.parse(sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.USER_CHANNELS);
+        if(sheet != null)
+            channels.addAll(UserChannelParser.parse(sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.VICTOROPS_CHANNELS);
+        if(sheet != null)
+            channels.addAll(VictorOpsChannelParser.parse(sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.XMATTERS_CHANNELS);
+        if(sheet != null)
+            channels.addAll(xMattersChannelParser.parse(sheet.getHeaders(), sheet.getRows()));
+        AlertDeploymentScheduler.assignPlaceholderIds(channels);
+        ret.setAlertChannels(channels);
+
+        List<AlertPolicy> policies = new ArrayList<AlertPolicy>();
+        sheet = getSheet(SheetType.ALERT_POLICIES);
+        if(sheet != null)
+            policies.addAll(AlertPolicyParser.parse(channels, sheet.getHeaders(), sheet.getRows()));
+        AlertDeploymentScheduler.assignPlaceholderIds(policies);
+        ret.setAlertPolicies(policies);
+
+        if(entities == null)
+            entities = new ArrayList<Entity>();
+
+        sheet = getSheet(SheetType.ALERT_CONDITIONS);
+        if(sheet != null)
+            ret.setAlertConditions(AlertConditionParser.parse(policies, entities,
+                sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.EXTERNAL_SERVICE_ALERT_CONDITIONS);
+        if(sheet != null)
+            ret.setExternalServiceAlertConditions(ExternalServiceAlertConditionParser.parse(policies, entities,
+                sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.NRQL_ALERT_CONDITIONS);
+        if(sheet != null)
+            ret.setNrqlAlertConditions(NrqlAlertConditionParser.parse(policies,
+                sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.INFRA_METRIC_ALERT_CONDITIONS);
+        if(sheet != null)
+            ret.addInfraAlertConditions(InfraMetricAlertConditionParser.parse(policies,
+                sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.INFRA_PROCESS_RUNNING_ALERT_CONDITIONS);
+        if(sheet != null)
+            ret.addInfraAlertConditions(InfraProcessRunningAlertConditionParser.parse(policies,
+                sheet.getHeaders(), sheet.getRows()));
+        sheet = getSheet(SheetType.INFRA_HOST_NOT_REPORTING_ALERT_CONDITIONS);
+        if(sheet != null)
+            ret.addInfraAlertConditions(InfraHostNotReportingAlertConditionParser.parse(policies,
+                sheet.getHeaders(), sheet.getRows()));
+
+        return ret;
+    }
+
+    /**
+     * Returns the headers of the sheet of the given type.
+     * @param type The type of the sheet
+     * @return The headers of the sheet, or null if the sheet has not been read
+     */
+    String[] getHeaders(SheetType type)
+    {
+        Sheet sheet = getSheet(type);
+        return sheet != null ? sheet.getHeaders() : null;
+    }
+
+    /**
+     * Returns the rows of the sheet of the given type.
+     * @param type The type of the sheet
+     * @return The rows of the sheet, or null if the sheet has not been read
+     */
+    List<String[]> getRows(SheetType type)
+    {
+        Sheet sheet = getSheet(type);
+        return sheet != null ? sheet.getRows() : null;
+    }
+
+    /**
+     * Returns the objects created from the given rows of a sheet of the given type.
+     * @param type The type of the sheet
+     * @param headers The headers of the sheet
+     * @param rows The rows of the sheet
+     * @param channels The channels used to resolve the policies
+     * @param policies The policies used to resolve the conditions
+     * @param entities The entities used to resolve the conditions
+     * @return The objects created from the rows
+     */
+    static List<?> parse(SheetType type, String[] headers, List<String[]> rows,
+        List<AlertChannel> channels, List<AlertPolicy> policies, List<Entity> entities)
+    {
+        switch(type)
+        {
+            case EMAIL_CHANNELS:
+                return EmailChannelParser.parse(headers, rows);
+            case SLACK_CHANNELS:
+                return SlackChannelParser.parse(headers, rows);
+            case HIPCHAT_CHANNELS:
+                return HipChatChannelParser.parse(headers, rows);
+            case CAMPFIRE_CHANNELS:
+                return CampfireChannelParser.parse(headers, rows);
+            case OPSGENIE_CHANNELS:
+                return OpsGenieChannelParser.parse(headers, rows);
+            case PAGERDUTY_CHANNELS:
+                return PagerDutyChannelParser.parse(headers, rows);
+            case USER_CHANNELS:
+                return UserChannelParser.parse(headers, rows);
+            case VICTOROPS_CHANNELS:
+                return VictorOpsChannelParser.parse(headers, rows);
+            case XMATTERS_CHANNELS:
+                return xMattersChannelParser.parse(headers, rows);
+            case ALERT_POLICIES:
+                return AlertPolicyParser.parse(channels, headers, rows);
+            case ALERT_CONDITIONS:
+                return AlertConditionParser.parse(policies, entities, headers, rows);
+            case EXTERNAL_SERVICE_ALERT_CONDITIONS:
+                return ExternalServiceAlertConditionParser.parse(policies, entities, headers, rows);
+            case NRQL_ALERT_CONDITIONS:
+                return NrqlAlertConditionParser.parse(policies, headers, rows);
+            case INFRA_METRIC_ALERT_CONDITIONS:
+                return InfraMetricAlertConditionParser.parse(policies, headers, rows);
+            case INFRA_PROCESS_RUNNING_ALERT_CONDITIONS:
+                return InfraProcessRunningAlertConditionParser.parse(policies, headers, rows);
+            case INFRA_HOST_NOT_REPORTING_ALERT_CONDITIONS:
+                return InfraHostNotReportingAlertConditionParser.parse(policies, headers, rows);
+            default:
+                throw new IllegalArgumentException("unknown sheet type: "+type);
+        }
+    }
+
+    /**
+     * Returns the sheet of the given type.
+     */
+    private Sheet getSheet(SheetType type)
+    {
+        synchronized(sheets)
+        {
+            return sheets.get(type);
+        }
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "DeploymentDefinitions [sheets="+sheets.keySet()
+            +", dashboards="+hasDashboards()
+            +"]";
+    }
+
+    /**
+     * The rows of a sheet, which cannot be modified once read.
+     */
+    private static class Sheet
+    {
+        private String[] headers;
+        private List<String[]> rows;
+
+        /**
+         * Constructor that takes the headers and rows.
+         * <P>
+         * The list of rows is copied but the row arrays are shared with the caller, and must not be modified.
+         * </P>
+         * @param headers The headers of the sheet
+         * @param rows The rows of the sheet
+         */
+        Sheet(String[] headers, List<String[]> rows)
+        {
+            this.headers = headers != null ? headers.clone() : new String[0];
+            this.rows = Collections.unmodifiableList(rows != null
+                ? new ArrayList<String[]>(rows) : new ArrayList<String[]>());
+        }
+
+        /**
+         * Returns a copy of the headers of the sheet.
+         * @return The headers of the sheet
+         */
+        String[] getHeaders()
+        {
+            return Arrays.copyOf(headers, headers.length);
+        }
+
+        /**
+         * Returns the rows of the sheet.
+         * @return The rows of the sheet
+         */
+        List<String[]> getRows()
+        {
+            return rows;
+        }
+
+        /**
+         * Returns the number of rows in the sheet.
+         * @return The number of rows in the sheet
+         */
+        int size()
+        {
+            return rows.size();
+        }
+    }
+}
\ No newline at end of file
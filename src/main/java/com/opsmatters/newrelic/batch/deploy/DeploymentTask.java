@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Represents a unit of work in a deployment, which can only start once the tasks it depends on have completed.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class DeploymentTask
+{
+    /**
+     * The states of a task.
+     */
+    public enum Status
+    {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        SKIPPED
+    }
+
+    private String name;
+    private Callable<?> work;
+    private List<DeploymentTask> dependencies = new ArrayList<DeploymentTask>();
+    private List<DeploymentTask> dependents = new ArrayList<DeploymentTask>();
+    private AtomicReference<Status> status = new AtomicReference<Status>(Status.PENDING);
+    private AtomicInteger remaining = new AtomicInteger();
+    private int height = -1;
+    private volatile Throwable error;
+    private volatile long startTime = 0L;
+    private volatile long endTime = 0L;
+
+    /**
+     * Constructor that takes a name and the work to perform.
+     * @param name The name of the task, eg. "policy:Production"
+     * @param work The work to perform
+     */
+    public DeploymentTask(String name, Callable<?> work)
+    {
+        this.name = name;
+        this.work = work;
+    }
+
+    /**
+     * Returns the name of the task.
+     * @return The name of the task
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Adds a task that must complete before this task can start.
+     * @param task The task that this task depends on
+     */
+    public void dependsOn(DeploymentTask task)
+    {
+        if(task == null)
+            throw new IllegalArgumentException("null task");
+        if(!dependencies.contains(task))
+        {
+            dependencies.add(task);
+            task.dependents.add(this);
+        }
+    }
+
+    /**
+     * Returns the tasks that must complete before this task can start.
+     * @return The tasks that this task depends on
+     */
+    public List<DeploymentTask> getDependencies()
+    {
+        return dependencies;
+    }
+
+    /**
+     * Returns the tasks that depend on this task.
+     * @return The tasks that depend on this task
+     */
+    public List<DeploymentTask> getDependents()
+    {
+        return dependents;
+    }
+
+    /**
+     * Returns the state of the task.
+     * @return The state of the task
+     */
+    public Status getStatus()
+    {
+        return status.get();
+    }
+
+    /**
+     * Returns the error that caused the task to fail.
+     * @return The error that caused the task to fail, or null if the task did not fail
+     */
+    public Throwable getError()
+    {
+        return error;
+    }
+
+    /**
+     * Returns the time taken to run the task.
+     * @return The time taken to run the task in milliseconds, or zero if the task has not run
+     */
+    public long getDuration()
+    {
+        return endTime > 0L ? endTime-startTime : 0L;
+    }
+
+    /**
+     * Returns the length of the longest chain of tasks starting with this task.
+     * <P>
+     * Tasks with a greater height are on a longer path, so they are started first.
+     * </P>
+     * @return The length of the longest chain of tasks starting with this task
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Sets the length of the longest chain of tasks starting with this task.
+     */
+    void setHeight(int height)
+    {
+        this.height = height;
+    }
+
+    /**
+     * Resets the task before the graph is executed.
+     */
+    void reset()
+    {
+        status.set(Status.PENDING);
+        remaining.set(dependencies.size());
+        error = null;
+        startTime = 0L;
+        endTime = 0L;
+    }
+
+    /**
+     * Records that one of the dependencies of this task has completed.
+     * @return <CODE>true</CODE> if all the dependencies of this task have now completed
+     */
+    boolean dependencyCompleted()
+    {
+        return remaining.decrementAndGet() == 0;
+    }
+
+    /**
+     * Marks the task as skipped if it has not started.
+     * @return <CODE>true</CODE> if the task was marked as skipped
+     */
+    boolean skip()
+    {
+        return status.compareAndSet(Status.PENDING, Status.SKIPPED);
+    }
+
+    /**
+     * Performs the work of the task if it has not been skipped.
+     * @return <CODE>true</CODE> if the task completed successfully
+     */
+    boolean run()
+    {
+        if(!status.compareAndSet(Status.PENDING, Status.RUNNING))
+            return false;
+
+        startTime = System.currentTimeMillis();
+        try
+        {
+            work.call();
+            status.set(Status.COMPLETED);
+            return true;
+        }
+        catch(Throwable e)
+        {
+            error = e;
+            status.set(Status.FAILED);
+            return false;
+        }
+        finally
+        {
+            endTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "DeploymentTask [name="+name
+            +", status="+status.get()
+            +", dependencies="+dependencies.size()
+            +", dependents="+dependents.size()
+            +", height="+height
+            +"]";
+    }
+}
\ No newline at end of file
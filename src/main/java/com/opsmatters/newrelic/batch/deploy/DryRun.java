@@ -0,0 +1,292 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.api.model.IdResource;
+import com.opsmatters.newrelic.batch.metrics.MetricsRegistry;
+import com.opsmatters.newrelic.batch.metrics.EndpointMetrics;
+
+/**
+ * Records the API calls a manager would make without changing the account.
+ * <P>
+ * When set on a manager, every write call is counted and skipped, and the object being written
+ * is returned in place of the result, with a negative placeholder id for a new object.
+ * Read calls are also counted and by default still made, so that existing objects are resolved
+ * and deleted exactly as in a real run. The state file and journal are not changed.
+ * </P>
+ * <P>
+ * The wall-clock time of the real run is projected from the median latency of each endpoint
+ * in the recorded metrics of an earlier run, and from the number of threads and rate limit to be used.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class DryRun
+{
+    private static final Logger logger = Logger.getLogger(DryRun.class.getName());
+
+    /**
+     * The latency assumed for an endpoint with no recorded metrics.
+     */
+    public static final long DEFAULT_LATENCY = 250L;
+
+    private ConcurrentMap<String,AtomicLong> calls = new ConcurrentHashMap<String,AtomicLong>();
+    private AtomicLong nextId = new AtomicLong(-1L);
+    private boolean readThrough = true;
+    private MetricsRegistry latencies;
+    private int threads = 1;
+    private double rate = 0.0d;
+
+    /**
+     * Default constructor.
+     */
+    public DryRun()
+    {
+    }
+
+    /**
+     * Set to <CODE>true</CODE> if read calls should still be made.
+     * <P>
+     * If <CODE>false</CODE>, list calls return empty lists and other read calls return <CODE>null</CODE>,
+     * so no network calls are made at all.
+     * </P>
+     * @param readThrough <CODE>true</CODE> if read calls should still be made
+     */
+    public void setReadThrough(boolean readThrough)
+    {
+        this.readThrough = readThrough;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if read calls are still made.
+     * @return <CODE>true</CODE> if read calls are still made
+     */
+    public boolean isReadThrough()
+    {
+        return readThrough;
+    }
+
+    /**
+     * Sets the metrics recorded by an earlier run, used to project the latency of each endpoint.
+     * @param latencies The metrics recorded by an earlier run, or null to use the default latency
+     */
+    public void setLatencies(MetricsRegistry latencies)
+    {
+        this.latencies = latencies;
+    }
+
+    /**
+     * Returns the metrics recorded by an earlier run, used to project the latency of each endpoint.
+     * @return The metrics recorded by an earlier run, or null if the default latency is used
+     */
+    public MetricsRegistry getLatencies()
+    {
+        return latencies;
+    }
+
+    /**
+     * Sets the number of concurrent API calls to be used in the real run.
+     * @param threads The number of concurrent API calls
+     */
+    public void setThreads(int threads)
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1: "+threads);
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of concurrent API calls to be used in the real run.
+     * @return The number of concurrent API calls
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Sets the maximum number of API calls per second to be used in the real run.
+     * @param rate The maximum number of API calls per second, or 0 if the rate is not limited
+     */
+    public void setRate(double rate)
+    {
+        if(rate < 0.0d)
+            throw new IllegalArgumentException("rate cannot be negative: "+rate);
+        this.rate = rate;
+    }
+
+    /**
+     * Returns the maximum number of API calls per second to be used in the real run.
+     * @return The maximum number of API calls per second, or 0 if the rate is not limited
+     */
+    public double getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * Counts a call to the given endpoint.
+     * @param endpoint The name of the API endpoint, eg. "alertPolicies.create"
+     */
+    public void record(String endpoint)
+    {
+        AtomicLong count = calls.get(endpoint);
+        if(count == null)
+        {
+            AtomicLong created = new AtomicLong();
+            count = calls.putIfAbsent(endpoint, created);
+            if(count == null)
+                count = created;
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Returns the result of a skipped write call.
+     * <P>
+     * A new object is given a negative placeholder id, so that objects created later
+     * in the same run can refer to it.
+     * </P>
+     * @param <T> The type of the result
+     * @param value The object being written, or null if the call has no result
+     * @return The object being written
+     */
+    public <T> T getResult(T value)
+    {
+        if(value instanceof IdResource)
+        {
+            IdResource resource = (IdResource)value;
+            if(resource.getId() == null)
+                resource.setId(nextId.getAndDecrement());
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of calls counted for each endpoint, sorted by endpoint name.
+     * @return The number of calls counted for each endpoint
+     */
+    public Map<String,Long> getCalls()
+    {
+        Map<String,Long> ret = new TreeMap<String,Long>();
+        for(Map.Entry<String,AtomicLong> entry : calls.entrySet())
+            ret.put(entry.getKey(), entry.getValue().get());
+        return ret;
+    }
+
+    /**
+     * Returns the total number of calls counted.
+     * @return The total number of calls counted
+     */
+    public long getCount()
+    {
+        long ret = 0L;
+        for(AtomicLong count : calls.values())
+            ret += count.get();
+        return ret;
+    }
+
+    /**
+     * Returns the projected latency of a call to the given endpoint.
+     * @param endpoint The name of the API endpoint
+     * @return The median recorded latency of the endpoint in milliseconds, or the default latency if none was recorded
+     */
+    public long getLatency(String endpoint)
+    {
+        if(latencies != null)
+        {
+            EndpointMetrics metrics = latencies.findEndpoint(endpoint);
+            if(metrics != null && metrics.getLatency().getCount() > 0L)
+                return Math.max(1L, TimeUnit.MICROSECONDS.toMillis(metrics.getLatency().getValueAtPercentile(50.0d)));
+        }
+        return DEFAULT_LATENCY;
+    }
+
+    /**
+     * Returns the projected wall-clock time of the real run.
+     * <P>
+     * The time is the total latency of the calls shared across the threads,
+     * or the time needed to make the calls at the rate limit, whichever is longer.
+     * </P>
+     * @return The projected wall-clock time of the real run in milliseconds
+     */
+    public long getProjectedDuration()
+    {
+        long latency = 0L;
+        long count = 0L;
+        for(Map.Entry<String,Long> entry : getCalls().entrySet())
+        {
+            latency += entry.getValue()*getLatency(entry.getKey());
+            count += entry.getValue();
+        }
+
+        long ret = latency/threads;
+        if(rate > 0.0d)
+            ret = Math.max(ret, (long)(count*1000.0d/rate));
+        return ret;
+    }
+
+    /**
+     * Returns a summary of the calls counted, one endpoint per line, followed by the projected time.
+     * @return A summary of the calls counted
+     */
+    public String getSummary()
+    {
+        StringBuilder sb = new StringBuilder();
+        for(Map.Entry<String,Long> entry : getCalls().entrySet())
+        {
+            sb.append(entry.getKey()).append(": calls=").append(entry.getValue())
+                .append(", latency=").append(getLatency(entry.getKey())).append("ms\n");
+        }
+        sb.append("total: calls=").append(getCount())
+            .append(", threads=").append(threads)
+            .append(", rate=").append(rate)
+            .append(", projected=").append(getProjectedDuration()).append("ms\n");
+        return sb.toString();
+    }
+
+    /**
+     * Clears the calls counted.
+     */
+    public void reset()
+    {
+        calls.clear();
+        nextId.set(-1L);
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "DryRun [calls="+getCount()
+            +", readThrough="+readThrough
+            +", threads="+threads
+            +", rate="+rate
+            +", projected="+getProjectedDuration()
+            +"]";
+    }
+}
\ No newline at end of file
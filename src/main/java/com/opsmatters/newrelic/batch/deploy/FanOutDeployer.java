@@ -0,0 +1,345 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.api.model.Entity;
+import com.opsmatters.newrelic.api.model.insights.Dashboard;
+import com.opsmatters.newrelic.batch.AlertManager;
+import com.opsmatters.newrelic.batch.DashboardManager;
+import com.opsmatters.newrelic.batch.model.AlertConfiguration;
+import com.opsmatters.newrelic.batch.metrics.MetricsRegistry;
+import com.opsmatters.newrelic.batch.limits.RateLimiter;
+import com.opsmatters.newrelic.batch.limits.ConcurrencyLimiter;
+import com.opsmatters.newrelic.batch.limits.CircuitBreaker;
+import com.opsmatters.newrelic.batch.cache.EntityCatalogue;
+import com.opsmatters.newrelic.batch.client.ClientContext;
+
+/**
+ * Deploys the same alert and dashboard definitions to several accounts concurrently.
+ * <P>
+ * The definitions are read once and shared by all the accounts.
+ * Each account has its own managers, its own limit on the rate of API calls
+ * and its own pool of threads for the alert deployment.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class FanOutDeployer
+{
+    private static final Logger logger = Logger.getLogger(FanOutDeployer.class.getName());
+
+    /**
+     * The default number of accounts deployed concurrently.
+     */
+    public static final int DEFAULT_ACCOUNT_THREADS = 8;
+
+    /**
+     * The default maximum number of API calls per second for each account.
+     */
+    public static final double DEFAULT_RATE = 10.0d;
+
+    private DeploymentDefinitions definitions;
+    private Map<String,String> accounts = new LinkedHashMap<String,String>();
+    private int accountThreads = DEFAULT_ACCOUNT_THREADS;
+    private int threads = AlertDeploymentScheduler.DEFAULT_THREADS;
+    private double rate = DEFAULT_RATE;
+    private ClientContext clientContext;
+
+    /**
+     * Default constructor.
+     */
+    public FanOutDeployer()
+    {
+    }
+
+    /**
+     * Sets the definitions to deploy.
+     * @param definitions The definitions to deploy
+     */
+    public void setDefinitions(DeploymentDefinitions definitions)
+    {
+        this.definitions = definitions;
+    }
+
+    /**
+     * Returns the definitions to deploy.
+     * @return The definitions to deploy
+     */
+    public DeploymentDefinitions getDefinitions()
+    {
+        return definitions;
+    }
+
+    /**
+     * Adds an account to deploy to.
+     * @param name The name of the account
+     * @param apiKey The API key of the account
+     */
+    public void addAccount(String name, String apiKey)
+    {
+        if(name == null)
+            throw new IllegalArgumentException("null account name");
+        if(apiKey == null)
+            throw new IllegalArgumentException("null API key for account: "+name);
+        accounts.put(name, apiKey);
+    }
+
+    /**
+     * Returns the names of the accounts to deploy to.
+     * @return The names of the accounts to deploy to
+     */
+    public List<String> getAccounts()
+    {
+        return new ArrayList<String>(accounts.keySet());
+    }
+
+    /**
+     * Sets the number of accounts deployed concurrently.
+     * @param accountThreads The number of accounts deployed concurrently
+     */
+    public void setAccountThreads(int accountThreads)
+    {
+        if(accountThreads < 1)
+            throw new IllegalArgumentException("account threads must be at least 1: "+accountThreads);
+        this.accountThreads = accountThreads;
+    }
+
+    /**
+     * Returns the number of accounts deployed concurrently.
+     * @return The number of accounts deployed concurrently
+     */
+    public int getAccountThreads()
+    {
+        return accountThreads;
+    }
+
+    /**
+     * Sets the number of threads used for the alert deployment of each account.
+     * @param threads The number of threads used for each account
+     */
+    public void setThreads(int threads)
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1: "+threads);
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of threads used for the alert deployment of each account.
+     * @return The number of threads used for each account
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Sets the maximum number of API calls per second for each account.
+     * @param rate The maximum number of API calls per second for each account
+     */
+    public void setRate(double rate)
+    {
+        if(rate <= 0.0d)
+            throw new IllegalArgumentException("rate must be positive: "+rate);
+        this.rate = rate;
+    }
+
+    /**
+     * Returns the maximum number of API calls per second for each account.
+     * @return The maximum number of API calls per second for each account
+     */
+    public double getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * Sets the context used to share the API clients between the managers of each account.
+     * @param clientContext The context holding the API clients, or null to create new clients for each manager
+     */
+    public void setClientContext(ClientContext clientContext)
+    {
+        this.clientContext = clientContext;
+    }
+
+    /**
+     * Returns the context used to share the API clients between the managers of each account.
+     * @return The context holding the API clients, or null if new clients are created for each manager
+     */
+    public ClientContext getClientContext()
+    {
+        return clientContext;
+    }
+
+    /**
+     * Deploys the definitions to all the accounts.
+     * <P>
+     * A failure in one account does not stop the deployment to the other accounts.
+     * </P>
+     * @return The combined report of the deployment
+     * @throws IllegalStateException if the definitions contain errors
+     * @throws InterruptedException if the thread is interrupted while waiting for the deployment
+     */
+    public FanOutReport deploy() throws InterruptedException
+    {
+        if(definitions == null)
+            throw new IllegalStateException("null definitions");
+
+        long start = System.currentTimeMillis();
+        List<AccountResult> results = new ArrayList<AccountResult>();
+        if(accounts.isEmpty())
+            return new FanOutReport(results, 0L);
+
+        // Check the definitions before deploying to any account, unless they need the entities of each account
+        if(!definitions.hasEntityConditions())
+            new DefinitionsValidator(definitions).check(null);
+
+        logger.info("Deploying to "+accounts.size()+" accounts");
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(accountThreads, accounts.size()));
+
+        try
+        {
+            Map<String,Future<AccountResult>> futures = new LinkedHashMap<String,Future<AccountResult>>();
+            for(Map.Entry<String,String> account : accounts.entrySet())
+            {
+                final String name = account.getKey();
+                final String apiKey = account.getValue();
+                futures.put(name, executor.submit(new Callable<AccountResult>()
+                {
+                    public AccountResult call() throws Exception
+                    {
+                        return deploy(name, apiKey);
+                    }
+                }));
+            }
+
+            for(Map.Entry<String,Future<AccountResult>> future : futures.entrySet())
+            {
+                try
+                {
+                    results.add(future.getValue().get());
+                }
+                catch(ExecutionException e)
+                {
+                    AccountResult result = new AccountResult(future.getKey());
+                    result.setError(e.getCause());
+                    results.add(result);
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        FanOutReport ret = new FanOutReport(results, System.currentTimeMillis()-start);
+        logger.info("Deployed to "+results.size()+" accounts with "+ret.getFailures().size()+" failures");
+        return ret;
+    }
+
+    /**
+     * Deploys the definitions to the given account.
+     * @param name The name of the account
+     * @param apiKey The API key of the account
+     * @return The result of the deployment to the account
+     */
+    private AccountResult deploy(String name, String apiKey)
+    {
+        long start = System.currentTimeMillis();
+        AccountResult ret = new AccountResult(name);
+        MetricsRegistry metrics = new MetricsRegistry();
+        RateLimiter limiter = new RateLimiter(rate);
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        try
+        {
+            AlertManager alertManager = new AlertManager(apiKey);
+            alertManager.setClientContext(clientContext);
+            alertManager.setMetrics(metrics);
+            alertManager.setRateLimiter(limiter);
+            alertManager.setConcurrencyLimiter(concurrencyLimiter);
+            alertManager.setCircuitBreaker(circuitBreaker);
+
+            // Resolve the conditions against the entities of this account
+            List<Entity> entities = new ArrayList<Entity>();
+            if(definitions.hasEntityConditions())
+            {
+                entities.addAll(new EntityCatalogue(alertManager).load());
+                new DefinitionsValidator(definitions).check(entities);
+            }
+
+            AlertConfiguration config = definitions.getAlertConfiguration(entities);
+            AlertDeploymentScheduler scheduler = new AlertDeploymentScheduler(alertManager);
+            scheduler.setThreads(threads);
+            ret.setTasks(scheduler.deploy(config));
+
+            if(definitions.hasDashboards())
+            {
+                DashboardManager dashboardManager = new DashboardManager(apiKey);
+                dashboardManager.setClientContext(clientContext);
+                dashboardManager.setMetrics(metrics);
+                dashboardManager.setRateLimiter(limiter);
+                dashboardManager.setConcurrencyLimiter(concurrencyLimiter);
+                dashboardManager.setCircuitBreaker(circuitBreaker);
+                List<Dashboard> dashboards = dashboardManager.createDashboards(definitions.getDashboards());
+                ret.setDashboards(dashboards.size());
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            ret.setError(e);
+        }
+        catch(RuntimeException e)
+        {
+            logger.severe("Deployment failed for account "+name+": "+e.getMessage());
+            ret.setError(e);
+        }
+        finally
+        {
+            ret.setCalls(metrics.getCalls(), metrics.getErrors());
+            ret.setDuration(System.currentTimeMillis()-start);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "FanOutDeployer [accounts="+accounts.size()
+            +", accountThreads="+accountThreads
+            +", threads="+threads
+            +", rate="+rate
+            +"]";
+    }
+}
\ No newline at end of file
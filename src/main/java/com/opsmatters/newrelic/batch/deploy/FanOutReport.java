@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+
+/**
+ * Represents the combined outcome of a deployment to several accounts.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class FanOutReport
+{
+    private static final Logger logger = Logger.getLogger(FanOutReport.class.getName());
+
+    private List<AccountResult> results = new ArrayList<AccountResult>();
+    private long duration = 0L;
+
+    /**
+     * Constructor that takes the results for each account.
+     * @param results The results for each account
+     * @param duration The duration of the deployment in milliseconds
+     */
+    public FanOutReport(List<AccountResult> results, long duration)
+    {
+        this.results.addAll(results);
+        this.duration = duration;
+    }
+
+    /**
+     * Returns the results for each account.
+     * @return The results for each account
+     */
+    public List<AccountResult> getResults()
+    {
+        return new ArrayList<AccountResult>(results);
+    }
+
+    /**
+     * Returns the results for the accounts where the deployment failed.
+     * @return The results for the accounts where the deployment failed
+     */
+    public List<AccountResult> getFailures()
+    {
+        List<AccountResult> ret = new ArrayList<AccountResult>();
+        for(AccountResult result : results)
+        {
+            if(!result.isSuccessful())
+                ret.add(result);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the deployment was successful for all accounts.
+     * @return <CODE>true</CODE> if the deployment was successful for all accounts
+     */
+    public boolean isSuccessful()
+    {
+        return getFailures().isEmpty();
+    }
+
+    /**
+     * Returns the duration of the deployment.
+     * @return The duration of the deployment in milliseconds
+     */
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * Returns a summary of the deployment with a line for each account.
+     * @return The summary of the deployment
+     */
+    public String getSummary()
+    {
+        int completed = 0;
+        int failed = 0;
+        int skipped = 0;
+        int dashboards = 0;
+        long calls = 0L;
+        long errors = 0L;
+        StringBuilder lines = new StringBuilder();
+        for(AccountResult result : results)
+        {
+            completed += result.getCompleted();
+            failed += result.getFailed();
+            skipped += result.getSkipped();
+            dashboards += result.getDashboards();
+            calls += result.getCalls();
+            errors += result.getErrors();
+
+            lines.append(String.format("%-30s %-6s completed=%d failed=%d skipped=%d dashboards=%d calls=%d errors=%d duration=%dms",
+                result.getAccount(), result.isSuccessful() ? "OK" : "FAILED",
+                result.getCompleted(), result.getFailed(), result.getSkipped(), result.getDashboards(),
+                result.getCalls(), result.getErrors(), result.getDuration()));
+            if(result.getError() != null)
+                lines.append(" error=").append(result.getError().getMessage());
+            lines.append("\n");
+        }
+
+        StringBuilder ret = new StringBuilder();
+        ret.append(String.format("Deployed to %d accounts (%d failed) in %dms: completed=%d failed=%d skipped=%d dashboards=%d calls=%d errors=%d\n",
+            results.size(), getFailures().size(), duration, completed, failed, skipped, dashboards, calls, errors));
+        ret.append(lines);
+        return ret.toString();
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "FanOutReport [accounts="+results.size()
+            +", failures="+getFailures().size()
+            +", duration="+duration
+            +"]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.batch.progress.ProgressTracker;
+
+/**
+ * A graph of deployment tasks, executed concurrently in dependency order.
+ * <P>
+ * Each task is started as soon as all the tasks it depends on have completed.
+ * When more tasks are ready than there are threads, the tasks on the longest remaining path are started first,
+ * to keep the critical path as short as possible.
+ * If a task fails, all the tasks that depend on it are skipped, but independent tasks continue.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class TaskGraph
+{
+    private static final Logger logger = Logger.getLogger(TaskGraph.class.getName());
+
+    private List<DeploymentTask> tasks = new ArrayList<DeploymentTask>();
+    private AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Default constructor.
+     */
+    public TaskGraph()
+    {
+    }
+
+    /**
+     * Adds the given task to the graph.
+     * @param task The task to add
+     * @return The task added
+     */
+    public DeploymentTask add(DeploymentTask task)
+    {
+        if(task == null)
+            throw new IllegalArgumentException("null task");
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Returns the tasks in the graph.
+     * @return The tasks in the graph
+     */
+    public List<DeploymentTask> getTasks()
+    {
+        return tasks;
+    }
+
+    /**
+     * Returns the tasks in the graph with the given status.
+     * @param status The status of the tasks
+     * @return The tasks in the graph with the given status
+     */
+    public List<DeploymentTask> getTasks(DeploymentTask.Status status)
+    {
+        List<DeploymentTask> ret = new ArrayList<DeploymentTask>();
+        for(DeploymentTask task : tasks)
+        {
+            if(task.getStatus() == status)
+                ret.add(task);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of tasks in the graph.
+     * @return The number of tasks in the graph
+     */
+    public int size()
+    {
+        return tasks.size();
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if all the tasks in the graph completed successfully.
+     * @return <CODE>true</CODE> if all the tasks in the graph completed successfully
+     */
+    public boolean isSuccessful()
+    {
+        return getTasks(DeploymentTask.Status.COMPLETED).size() == tasks.size();
+    }
+
+    /**
+     * Executes the tasks in the graph using the given number of threads and waits for them to finish.
+     * @param threads The number of threads used to execute the tasks
+     * @param progress The tracker for the progress of the tasks, or null if progress is not tracked
+     * @throws IllegalStateException if the graph contains a cycle
+     * @throws InterruptedException if the thread is interrupted while waiting for the tasks
+     */
+    public void execute(int threads, final ProgressTracker progress) throws InterruptedException
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1: "+threads);
+
+        // Work out the height of every task, which also checks for cycles
+        Set<DeploymentTask> visiting = new HashSet<DeploymentTask>();
+        for(DeploymentTask task : tasks)
+            task.setHeight(-1);
+        for(DeploymentTask task : tasks)
+            getHeight(task, visiting);
+
+        for(DeploymentTask task : tasks)
+            task.reset();
+
+        final CountDownLatch latch = new CountDownLatch(tasks.size());
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<Runnable>());
+        try
+        {
+            for(DeploymentTask task : tasks)
+            {
+                if(task.getDependencies().isEmpty())
+                    schedule(executor, task, latch, progress);
+            }
+            latch.await();
+        }
+        finally
+        {
+            executor.shutdownNow();
+            if(progress != null)
+                progress.finish();
+        }
+
+        logger.info("Executed "+tasks.size()+" tasks: completed="+getTasks(DeploymentTask.Status.COMPLETED).size()
+            +" failed="+getTasks(DeploymentTask.Status.FAILED).size()
+            +" skipped="+getTasks(DeploymentTask.Status.SKIPPED).size());
+    }
+
+    /**
+     * Submits the given task to the executor.
+     */
+    private void schedule(final ThreadPoolExecutor executor, final DeploymentTask task,
+        final CountDownLatch latch, final ProgressTracker progress)
+    {
+        executor.execute(new Runner(task, sequence.incrementAndGet())
+        {
+            public void run()
+            {
+                if(progress != null)
+                    progress.started();
+                boolean completed = task.run();
+                if(progress != null)
+                {
+                    if(completed)
+                        progress.completed();
+                    else
+                        progress.failed();
+                }
+
+                if(!completed)
+                    logger.severe("Task failed: "+task.getName()+": "+task.getError());
+
+                // Start the dependents that are now ready, or skip them if this task failed
+                for(DeploymentTask dependent : task.getDependents())
+                {
+                    if(!completed)
+                        skip(dependent, latch);
+                    else if(dependent.dependencyCompleted() && dependent.getStatus() == DeploymentTask.Status.PENDING)
+                        schedule(executor, dependent, latch, progress);
+                }
+
+                latch.countDown();
+            }
+        });
+    }
+
+    /**
+     * Skips the given task and all the tasks that depend on it.
+     */
+    private void skip(DeploymentTask task, CountDownLatch latch)
+    {
+        if(task.skip())
+        {
+            logger.warning("Task skipped: "+task.getName());
+            for(DeploymentTask dependent : task.getDependents())
+                skip(dependent, latch);
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Returns the length of the longest chain of tasks starting with the given task.
+     * @throws IllegalStateException if the graph contains a cycle
+     */
+    private int getHeight(DeploymentTask task, Set<DeploymentTask> visiting)
+    {
+        if(task.getHeight() >= 0)
+            return task.getHeight();
+        if(!visiting.add(task))
+            throw new IllegalStateException("cycle in task graph at task: "+task.getName());
+
+        int height = 0;
+        for(DeploymentTask dependent : task.getDependents())
+            height = Math.max(height, getHeight(dependent, visiting));
+        visiting.remove(task);
+        task.setHeight(height+1);
+        return height+1;
+    }
+
+    /**
+     * A task waiting in the executor queue, ordered so the task with the greatest height runs first.
+     */
+    private abstract static class Runner implements Runnable, Comparable<Runner>
+    {
+        private DeploymentTask task;
+        private long sequence;
+
+        Runner(DeploymentTask task, long sequence)
+        {
+            this.task = task;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Runner other)
+        {
+            if(task.getHeight() != other.task.getHeight())
+                return task.getHeight() > other.task.getHeight() ? -1 : 1;
+            return sequence < other.sequence ? -1 : (sequence > other.sequence ? 1 : 0);
+        }
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "TaskGraph [tasks="+tasks.size()+"]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.deploy;
+
+/**
+ * An error found in a row of a sheet during validation.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class ValidationError
+{
+    private String sheet;
+    private int row;
+    private String message;
+
+    /**
+     * Constructor that takes the sheet, row and message.
+     * @param sheet The name of the sheet
+     * @param row The number of the row in the sheet, counting the header row as row 1, or 0 if the error is not in a row
+     * @param message The message describing the error
+     */
+    public ValidationError(String sheet, int row, String message)
+    {
+        this.sheet = sheet;
+        this.row = row;
+        this.message = message;
+    }
+
+    /**
+     * Returns the name of the sheet.
+     * @return The name of the sheet
+     */
+    public String getSheet()
+    {
+        return sheet;
+    }
+
+    /**
+     * Returns the number of the row in the sheet, counting the header row as row 1.
+     * @return The number of the row in the sheet, or 0 if the error is not in a row
+     */
+    public int getRow()
+    {
+        return row;
+    }
+
+    /**
+     * Returns the message describing the error.
+     * @return The message describing the error
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return sheet+(row > 0 ? " row "+row : "")+": "+message;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,4 @@
+/**
+ * The deployment classes used for New Relic.
+ */
+package com.opsmatters.newrelic.batch.deploy;
\ No newline at end of file
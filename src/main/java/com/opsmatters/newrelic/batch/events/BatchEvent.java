@@ -0,0 +1,435 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.events;
+
+import java.io.InputStream;
+import java.io.FilterInputStream;
+import java.io.OutputStream;
+import java.io.FilterOutputStream;
+import java.io.Reader;
+import java.io.FilterReader;
+import java.io.Writer;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.opsmatters.newrelic.batch.templates.TemplateFactory;
+
+/**
+ * Represents a timed batch operation such as an API call, a worksheet parse, a render or a YAML dump.
+ * <P>
+ * An event is started using one of the <CODE>begin</CODE> methods and passed to the
+ * registered listeners when committed. When no listeners are registered a shared disabled
+ * event is returned and all operations on it do nothing.
+ * Events are committed whether or not the operation succeeds, so a failed operation is reported
+ * with its success flag cleared.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class BatchEvent
+{
+    /**
+     * The types of batch event.
+     */
+    public enum Type
+    {
+        API_CALL,
+        PARSE,
+        RENDER,
+        YAML_PARSE,
+        YAML_DUMP
+    }
+
+    private static final BatchEvent DISABLED = new BatchEvent(null, null, null, false);
+
+    private Type type;
+    private String name;
+    private String entityType;
+    private boolean enabled;
+    private long startTime;
+    private long duration;
+    private long rows;
+    private AtomicLong bytes = new AtomicLong();
+    private boolean success;
+    private String thread;
+
+    /**
+     * Constructor that takes the type, name and entity type.
+     * @param type The type of the event
+     * @param name The name of the event, eg. the API endpoint or filename
+     * @param entityType The entity type of the event, eg. "alert-policy"
+     * @param enabled <CODE>true</CODE> if the event should be passed to the listeners
+     */
+    private BatchEvent(Type type, String name, String entityType, boolean enabled)
+    {
+        this.type = type;
+        this.name = name;
+        this.entityType = entityType;
+        this.enabled = enabled;
+        if(enabled)
+        {
+            this.thread = Thread.currentThread().getName();
+            this.startTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Starts an event with the given type, name and entity type.
+     * @param type The type of the event
+     * @param name The name of the event, eg. the API endpoint or filename
+     * @param entityType The entity type of the event, eg. "alert-policy"
+     * @return The started event, or a disabled event if no listeners are registered
+     */
+    public static BatchEvent begin(Type type, String name, String entityType)
+    {
+        if(!BatchEvents.isEnabled())
+            return DISABLED;
+        return new BatchEvent(type, name, entityType, true);
+    }
+
+    /**
+     * Starts an event for a file operation on the entity type of the given parser or renderer.
+     * @param type The type of the event
+     * @param c The parser or renderer class registered with the template for the entity type
+     * @param filename The name of the file
+     * @param worksheet For XLS and XLSX files, the name of the worksheet in the file
+     * @return The started event, or a disabled event if no listeners are registered
+     */
+    public static BatchEvent begin(Type type, Class c, String filename, String worksheet)
+    {
+        if(!BatchEvents.isEnabled())
+            return DISABLED;
+        return new BatchEvent(type, filename+(worksheet != null ? "/"+worksheet : ""),
+            TemplateFactory.getTemplate(c).getType(), true);
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the event will be passed to the listeners.
+     * @return <CODE>true</CODE> if the event will be passed to the listeners
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Returns the type of the event.
+     * @return The type of the event
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Returns the name of the event, eg. the API endpoint or filename.
+     * @return The name of the event
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the entity type of the event, eg. "alert-policy".
+     * @return The entity type of the event
+     */
+    public String getEntityType()
+    {
+        return entityType;
+    }
+
+    /**
+     * Returns the name of the thread that started the event.
+     * @return The name of the thread that started the event
+     */
+    public String getThread()
+    {
+        return thread;
+    }
+
+    /**
+     * Returns the start time of the event in nanoseconds, as given by {@link System#nanoTime()}.
+     * @return The start time of the event in nanoseconds
+     */
+    public long getStartTime()
+    {
+        return startTime;
+    }
+
+    /**
+     * Returns the duration of the event in microseconds.
+     * @return The duration of the event in microseconds
+     */
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * Returns the number of rows or items processed by the operation.
+     * @return The number of rows or items processed by the operation
+     */
+    public long getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of bytes or characters read or written by the operation.
+     * @return The number of bytes or characters read or written by the operation
+     */
+    public long getBytes()
+    {
+        return bytes.get();
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the operation was successful.
+     * @return <CODE>true</CODE> if the operation was successful
+     */
+    public boolean isSuccess()
+    {
+        return success;
+    }
+
+    /**
+     * Returns a stream that counts the bytes read from the given stream.
+     * @param stream The stream to be counted
+     * @return The counting stream, or the original stream if the event is disabled
+     */
+    public InputStream wrap(InputStream stream)
+    {
+        if(!enabled || stream == null)
+            return stream;
+        return new CountingInputStream(stream, bytes);
+    }
+
+    /**
+     * Returns a stream that counts the bytes written to the given stream.
+     * @param stream The stream to be counted
+     * @return The counting stream, or the original stream if the event is disabled
+     */
+    public OutputStream wrap(OutputStream stream)
+    {
+        if(!enabled || stream == null)
+            return stream;
+        return new CountingOutputStream(stream, bytes);
+    }
+
+    /**
+     * Returns a reader that counts the characters read from the given reader.
+     * @param reader The reader to be counted
+     * @return The counting reader, or the original reader if the event is disabled
+     */
+    public Reader wrap(Reader reader)
+    {
+        if(!enabled || reader == null)
+            return reader;
+        return new CountingReader(reader, bytes);
+    }
+
+    /**
+     * Returns a writer that counts the characters written to the given writer.
+     * @param writer The writer to be counted
+     * @return The counting writer, or the original writer if the event is disabled
+     */
+    public Writer wrap(Writer writer)
+    {
+        if(!enabled || writer == null)
+            return writer;
+        return new CountingWriter(writer, bytes);
+    }
+
+    /**
+     * Completes the event and passes it to the registered listeners.
+     * @param rows The number of rows or items processed by the operation
+     * @param success <CODE>true</CODE> if the operation was successful
+     */
+    public void commit(long rows, boolean success)
+    {
+        if(!enabled)
+            return;
+        this.duration = TimeUnit.NANOSECONDS.toMicros(System.nanoTime()-startTime);
+        this.rows = rows;
+        this.success = success;
+        BatchEvents.fire(this);
+    }
+
+    /**
+     * Completes a successful event and passes it to the registered listeners.
+     * @param rows The number of rows or items processed by the operation
+     */
+    public void commit(long rows)
+    {
+        commit(rows, true);
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "BatchEvent [type="+type
+            +", name="+name
+            +", entityType="+entityType
+            +", thread="+thread
+            +", duration="+duration
+            +", rows="+rows
+            +", bytes="+bytes
+            +", success="+success
+            +"]";
+    }
+
+    /**
+     * Input stream that counts the bytes read.
+     */
+    private static class CountingInputStream extends FilterInputStream
+    {
+        private AtomicLong count;
+
+        CountingInputStream(InputStream in, AtomicLong count)
+        {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int ret = super.read();
+            if(ret >= 0)
+                count.incrementAndGet();
+            return ret;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int ret = super.read(b, off, len);
+            if(ret > 0)
+                count.addAndGet(ret);
+            return ret;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long ret = super.skip(n);
+            count.addAndGet(ret);
+            return ret;
+        }
+    }
+
+    /**
+     * Output stream that counts the bytes written.
+     */
+    private static class CountingOutputStream extends FilterOutputStream
+    {
+        private AtomicLong count;
+
+        CountingOutputStream(OutputStream out, AtomicLong count)
+        {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count.addAndGet(len);
+        }
+    }
+
+    /**
+     * Reader that counts the characters read.
+     */
+    private static class CountingReader extends FilterReader
+    {
+        private AtomicLong count;
+
+        CountingReader(Reader in, AtomicLong count)
+        {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int ret = super.read();
+            if(ret >= 0)
+                count.incrementAndGet();
+            return ret;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException
+        {
+            int ret = super.read(cbuf, off, len);
+            if(ret > 0)
+                count.addAndGet(ret);
+            return ret;
+        }
+    }
+
+    /**
+     * Writer that counts the characters written.
+     */
+    private static class CountingWriter extends FilterWriter
+    {
+        private AtomicLong count;
+
+        CountingWriter(Writer out, AtomicLong count)
+        {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int c) throws IOException
+        {
+            super.write(c);
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException
+        {
+            super.write(cbuf, off, len);
+            count.addAndGet(len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException
+        {
+            super.write(str, off, len);
+            count.addAndGet(len);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.events;
+
+/**
+ * Interface for a listener that receives the batch events emitted by the managers.
+ * <P>
+ * Listeners are called on the thread that completed the operation, so should return quickly.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public interface BatchEventListener
+{
+    /**
+     * Called when a batch operation has completed.
+     * @param event The event for the completed operation
+     */
+    public void onEvent(BatchEvent event);
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.events;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * Registry of the listeners for batch events.
+ * <P>
+ * Events are only created while at least one listener is registered,
+ * so the cost of the instrumentation is a single volatile read when no listener is present.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class BatchEvents
+{
+    private static final Logger logger = Logger.getLogger(BatchEvents.class.getName());
+
+    private static List<BatchEventListener> listeners = new CopyOnWriteArrayList<BatchEventListener>();
+    private static volatile boolean enabled = false;
+
+    /**
+     * Private constructor.
+     */
+    private BatchEvents()
+    {
+    }
+
+    /**
+     * Registers the given listener for batch events.
+     * @param listener The listener to register
+     */
+    public static synchronized void addListener(BatchEventListener listener)
+    {
+        if(listener == null)
+            throw new IllegalArgumentException("null listener");
+        listeners.add(listener);
+        enabled = true;
+    }
+
+    /**
+     * Removes the given listener for batch events.
+     * @param listener The listener to remove
+     */
+    public static synchronized void removeListener(BatchEventListener listener)
+    {
+        listeners.remove(listener);
+        enabled = listeners.size() > 0;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if at least one listener is registered.
+     * @return <CODE>true</CODE> if at least one listener is registered
+     */
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Passes the given event to all the registered listeners.
+     * <P>
+     * An exception thrown by a listener is logged and does not affect the batch operation.
+     * </P>
+     * @param event The event to pass to the listeners
+     */
+    static void fire(BatchEvent event)
+    {
+        for(BatchEventListener listener : listeners)
+        {
+            try
+            {
+                listener.onEvent(event);
+            }
+            catch(RuntimeException e)
+            {
+                logger.warning("Batch event listener failed: "+e.getMessage());
+            }
+        }
+    }
+}
\ No newline at end of file
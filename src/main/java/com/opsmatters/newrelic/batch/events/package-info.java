@@ -0,0 +1,4 @@
+/**
+ * The event classes used for New Relic.
+ */
+package com.opsmatters.newrelic.batch.events;
\ No newline at end of file
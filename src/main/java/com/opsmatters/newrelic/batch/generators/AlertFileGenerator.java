@@ -0,0 +1,787 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.generators;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.logging.Logger;
+import com.opsmatters.core.documents.OutputFileWriter;
+import com.opsmatters.core.documents.Workbook;
+import com.opsmatters.newrelic.api.model.alerts.IncidentPreference;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicyChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.EmailChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.EmailConfiguration;
+import com.opsmatters.newrelic.api.model.alerts.channels.SlackChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.SlackConfiguration;
+import com.opsmatters.newrelic.api.model.alerts.channels.HipChatChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.HipChatConfiguration;
+import com.opsmatters.newrelic.api.model.alerts.channels.CampfireChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.CampfireConfiguration;
+import com.opsmatters.newrelic.api.model.alerts.channels.OpsGenieChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.OpsGenieConfiguration;
+import com.opsmatters.newrelic.api.model.alerts.channels.PagerDutyChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.PagerDutyConfiguration;
+import com.opsmatters.newrelic.api.model.alerts.channels.UserChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.UserConfiguration;
+import com.opsmatters.newrelic.api.model.alerts.channels.VictorOpsChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.VictorOpsConfiguration;
+import com.opsmatters.newrelic.api.model.alerts.channels.xMattersChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.xMattersConfiguration;
+import com.opsmatters.newrelic.api.model.alerts.conditions.AlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ApmAppAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ApmKeyTransactionAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ApmJvmAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ServersAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.BrowserAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.MobileAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ExternalServiceAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ApmExternalServiceAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.MobileExternalServiceAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.NrqlAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.Nrql;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraMetricAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraProcessRunningAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraHostNotReportingAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.AlertThreshold;
+import com.opsmatters.newrelic.api.model.alerts.conditions.Term;
+import com.opsmatters.newrelic.api.model.alerts.conditions.TimeFunction;
+import com.opsmatters.newrelic.batch.parsers.*;
+import com.opsmatters.newrelic.batch.templates.FileTemplate;
+import com.opsmatters.newrelic.batch.templates.TemplateColumn;
+import com.opsmatters.newrelic.batch.templates.TemplateFactory;
+
+/**
+ * Generates synthetic alert channel, policy and condition files for sizing and benchmarking runs.
+ * <P>
+ * The lines are laid out using the registered file templates, so the output can be read back
+ * using the standard parsers. The same seed always produces the same output.
+ * </P>
+ *
+ * @author Gerald Curley (opsmatters)
+ */
+public class AlertFileGenerator
+{
+    private static final Logger logger = Logger.getLogger(AlertFileGenerator.class.getName());
+
+    // The worksheet names
+    public static final String ALERT_POLICY_SHEET = "alert policies";
+    public static final String EMAIL_CHANNEL_SHEET = "email channels";
+    public static final String SLACK_CHANNEL_SHEET = "slack channels";
+    public static final String HIPCHAT_CHANNEL_SHEET = "hipchat channels";
+    public static final String CAMPFIRE_CHANNEL_SHEET = "campfire channels";
+    public static final String OPSGENIE_CHANNEL_SHEET = "opsgenie channels";
+    public static final String PAGERDUTY_CHANNEL_SHEET = "pagerduty channels";
+    public static final String USER_CHANNEL_SHEET = "user channels";
+    public static final String VICTOROPS_CHANNEL_SHEET = "victorops channels";
+    public static final String XMATTERS_CHANNEL_SHEET = "xmatters channels";
+    public static final String ALERT_CONDITION_SHEET = "alert conditions";
+    public static final String EXTERNAL_SERVICE_CONDITION_SHEET = "external service conditions";
+    public static final String NRQL_CONDITION_SHEET = "nrql conditions";
+    public static final String INFRA_METRIC_CONDITION_SHEET = "infra metric conditions";
+    public static final String INFRA_PROCESS_CONDITION_SHEET = "infra process conditions";
+    public static final String INFRA_HOST_CONDITION_SHEET = "infra host conditions";
+
+    private static final String[] DURATIONS = {"5", "10", "15", "30", "60"};
+    private static final String[] OPERATORS = {"above", "below"};
+    private static final String[] COMPARISONS = {"above", "below", "equal"};
+    private static final String[][] INFRA_METRICS = {
+        {"SystemSample", "cpuPercent"},
+        {"SystemSample", "memoryUsedBytes"},
+        {"StorageSample", "diskUsedPercent"},
+        {"NetworkSample", "receiveBytesPerSecond"}
+    };
+    private static final String[] PROCESSES = {"java", "nginx", "postgres", "sshd"};
+
+    private int channels = 10;
+    private int policies = 10;
+    private int conditions = 100;
+    private int entities = 50;
+    private int channelsPerPolicy = 2;
+    private long seed = 0L;
+
+    private Random random;
+    private List<String> channelNames = new ArrayList<String>();
+
+    /**
+     * Default constructor.
+     */
+    public AlertFileGenerator()
+    {
+    }
+
+    /**
+     * Sets the number of channels to generate for each channel type.
+     * @param channels The number of channels to generate for each channel type
+     */
+    public void setChannels(int channels)
+    {
+        this.channels = channels;
+    }
+
+    /**
+     * Returns the number of channels to generate for each channel type.
+     * @return The number of channels to generate for each channel type
+     */
+    public int getChannels()
+    {
+        return channels;
+    }
+
+    /**
+     * Sets the number of policies to generate.
+     * <P>
+     * This is also the cardinality of the policy names used by the conditions.
+     * </P>
+     * @param policies The number of policies to generate
+     */
+    public void setPolicies(int policies)
+    {
+        this.policies = policies;
+    }
+
+    /**
+     * Returns the number of policies to generate.
+     * @return The number of policies to generate
+     */
+    public int getPolicies()
+    {
+        return policies;
+    }
+
+    /**
+     * Sets the number of conditions to generate for each condition type.
+     * @param conditions The number of conditions to generate for each condition type
+     */
+    public void setConditions(int conditions)
+    {
+        this.conditions = conditions;
+    }
+
+    /**
+     * Returns the number of conditions to generate for each condition type.
+     * @return The number of conditions to generate for each condition type
+     */
+    public int getConditions()
+    {
+        return conditions;
+    }
+
+    /**
+     * Sets the cardinality of the entity names used by the conditions.
+     * @param entities The cardinality of the entity names used by the conditions
+     */
+    public void setEntities(int entities)
+    {
+        this.entities = entities;
+    }
+
+    /**
+     * Returns the cardinality of the entity names used by the conditions.
+     * @return The cardinality of the entity names used by the conditions
+     */
+    public int getEntities()
+    {
+        return entities;
+    }
+
+    /**
+     * Sets the number of channels linked to each policy.
+     * @param channelsPerPolicy The number of channels linked to each policy
+     */
+    public void setChannelsPerPolicy(int channelsPerPolicy)
+    {
+        this.channelsPerPolicy = channelsPerPolicy;
+    }
+
+    /**
+     * Returns the number of channels linked to each policy.
+     * @return The number of channels linked to each policy
+     */
+    public int getChannelsPerPolicy()
+    {
+        return channelsPerPolicy;
+    }
+
+    /**
+     * Sets the seed of the random number generator.
+     * @param seed The seed of the random number generator
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the seed of the random number generator.
+     * @return The seed of the random number generator
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Returns the name of the policy with the given index.
+     * @param i The index of the policy
+     * @return The name of the policy
+     */
+    public static String getPolicyName(int i)
+    {
+        return String.format("policy-%05d", i);
+    }
+
+    /**
+     * Returns the name of the entity with the given index.
+     * @param i The index of the entity
+     * @return The name of the entity
+     */
+    public static String getEntityName(int i)
+    {
+        return String.format("entity-%05d", i);
+    }
+
+    /**
+     * Generates the lines for all the channel, policy and condition types.
+     * <P>
+     * The first line of each set of lines contains the headers.
+     * </P>
+     * @return The lines for each type, keyed by the worksheet name
+     */
+    public Map<String,List<String[]>> generate()
+    {
+        Map<String,List<String[]>> ret = new LinkedHashMap<String,List<String[]>>();
+        random = new Random(seed);
+        channelNames.clear();
+
+        ret.put(EMAIL_CHANNEL_SHEET, getLines(EmailChannelParser.class, channels));
+        ret.put(SLACK_CHANNEL_SHEET, getLines(SlackChannelParser.class, channels));
+        ret.put(HIPCHAT_CHANNEL_SHEET, getLines(HipChatChannelParser.class, channels));
+        ret.put(CAMPFIRE_CHANNEL_SHEET, getLines(CampfireChannelParser.class, channels));
+        ret.put(OPSGENIE_CHANNEL_SHEET, getLines(OpsGenieChannelParser.class, channels));
+        ret.put(PAGERDUTY_CHANNEL_SHEET, getLines(PagerDutyChannelParser.class, channels));
+        ret.put(USER_CHANNEL_SHEET, getLines(UserChannelParser.class, channels));
+        ret.put(VICTOROPS_CHANNEL_SHEET, getLines(VictorOpsChannelParser.class, channels));
+        ret.put(XMATTERS_CHANNEL_SHEET, getLines(xMattersChannelParser.class, channels));
+        ret.put(ALERT_POLICY_SHEET, getLines(AlertPolicyParser.class, policies));
+        ret.put(ALERT_CONDITION_SHEET, getLines(AlertConditionParser.class, conditions));
+        ret.put(EXTERNAL_SERVICE_CONDITION_SHEET, getLines(ExternalServiceAlertConditionParser.class, conditions));
+        ret.put(NRQL_CONDITION_SHEET, getLines(NrqlAlertConditionParser.class, conditions));
+        ret.put(INFRA_METRIC_CONDITION_SHEET, getLines(InfraMetricAlertConditionParser.class, conditions));
+        ret.put(INFRA_PROCESS_CONDITION_SHEET, getLines(InfraProcessRunningAlertConditionParser.class, conditions));
+        ret.put(INFRA_HOST_CONDITION_SHEET, getLines(InfraHostNotReportingAlertConditionParser.class, conditions));
+
+        return ret;
+    }
+
+    /**
+     * Generates all the lines and writes them as worksheets to the given XLS or XLSX file.
+     * @param file The workbook file to write
+     * @throws IOException if there was an error writing the file
+     */
+    public void writeWorkbook(File file) throws IOException
+    {
+        boolean first = true;
+        for(Map.Entry<String,List<String[]>> entry : generate().entrySet())
+        {
+            Workbook workbook = first ? null : Workbook.getWorkbook(file);
+            write(file.getName(), entry.getKey(), entry.getValue(), new FileOutputStream(file), workbook);
+            first = false;
+        }
+
+        logger.info("Generated alert workbook: "+file.getName());
+    }
+
+    /**
+     * Generates all the lines and writes them as separate files to the given directory.
+     * <P>
+     * The name of each file is derived from the worksheet name, eg. "email-channels.csv".
+     * </P>
+     * @param directory The directory to write the files to
+     * @param extension The extension of the files, either "csv", "xls" or "xlsx"
+     * @throws IOException if there was an error writing the files
+     */
+    public void writeFiles(File directory, String extension) throws IOException
+    {
+        if(!directory.exists() && !directory.mkdirs())
+            throw new IOException("unable to create directory: "+directory.getPath());
+
+        for(Map.Entry<String,List<String[]>> entry : generate().entrySet())
+        {
+            String filename = entry.getKey().replace(' ', '-')+"."+extension;
+            write(filename, entry.getKey(), entry.getValue(), new FileOutputStream(new File(directory, filename)), null);
+        }
+
+        logger.info("Generated alert files: "+directory.getPath());
+    }
+
+    /**
+     * Writes the given lines to the given stream.
+     * Closes the stream after writing the file.
+     */
+    private void write(String filename, String worksheet, List<String[]> lines, OutputStream stream, Workbook workbook)
+        throws IOException
+    {
+        OutputFileWriter writer = null;
+
+        try
+        {
+            writer = OutputFileWriter.builder()
+                .name(filename)
+                .worksheet(worksheet)
+                .withOutputStream(stream)
+                .withWorkbook(workbook)
+                .build();
+            writer.write(lines);
+            logger.fine("Generated "+(lines.size()-1)+" lines: "+filename+"/"+worksheet);
+        }
+        finally
+        {
+            try
+            {
+                stream.close();
+            }
+            catch(IOException e)
+            {
+            }
+
+            if(writer != null)
+                writer.close();
+        }
+    }
+
+    /**
+     * Returns the given number of lines for the template of the given parser.
+     */
+    private List<String[]> getLines(Class c, int count)
+    {
+        List<String[]> ret = new ArrayList<String[]>();
+        FileTemplate template = TemplateFactory.getTemplate(c);
+        ret.add(template.getOutputHeaders());
+        for(int i = 1; i <= count; i++)
+        {
+            Map<String,String> values = new HashMap<String,String>();
+            values.put(FileTemplate.TEMPLATE_TYPE.getName(), template.getType());
+            addValues(c, i, values);
+            ret.add(toLine(template, values));
+        }
+        return ret;
+    }
+
+    /**
+     * Converts the given values to a line using the output columns of the template.
+     */
+    private String[] toLine(FileTemplate template, Map<String,String> values)
+    {
+        List<String> line = new ArrayList<String>();
+        for(TemplateColumn column : template.getColumns().values())
+        {
+            if(column.isOutput())
+            {
+                String value = values.get(column.getName());
+                line.add(value != null ? value : "");
+            }
+        }
+        return line.toArray(new String[]{});
+    }
+
+    /**
+     * Adds the column values for the given parser to the map.
+     */
+    private void addValues(Class c, int i, Map<String,String> values)
+    {
+        if(c == EmailChannelParser.class)
+        {
+            values.put(EmailChannel.NAME, getChannelName("email", i));
+            values.put(EmailConfiguration.RECIPIENTS, String.format("alerts-%05d@example.com", i));
+            values.put(EmailConfiguration.INCLUDE_JSON_ATTACHMENT, Boolean.toString(random.nextBoolean()));
+        }
+        else if(c == SlackChannelParser.class)
+        {
+            values.put(SlackChannel.NAME, getChannelName("slack", i));
+            values.put(SlackConfiguration.URL, String.format("https://hooks.slack.com/services/T0000/B%05d", i));
+            values.put(SlackConfiguration.CHANNEL, String.format("#alerts-%05d", i));
+        }
+        else if(c == HipChatChannelParser.class)
+        {
+            values.put(HipChatChannel.NAME, getChannelName("hipchat", i));
+            values.put(HipChatConfiguration.AUTH_TOKEN, getToken());
+            values.put(HipChatConfiguration.ROOM_ID, Integer.toString(1000+i));
+        }
+        else if(c == CampfireChannelParser.class)
+        {
+            values.put(CampfireChannel.NAME, getChannelName("campfire", i));
+            values.put(CampfireConfiguration.SUBDOMAIN, String.format("team-%05d", i));
+            values.put(CampfireConfiguration.TOKEN, getToken());
+            values.put(CampfireConfiguration.ROOM, String.format("room-%05d", i));
+        }
+        else if(c == OpsGenieChannelParser.class)
+        {
+            values.put(OpsGenieChannel.NAME, getChannelName("opsgenie", i));
+            values.put(OpsGenieConfiguration.API_KEY, getToken());
+            values.put(OpsGenieConfiguration.TEAMS, String.format("team-%03d", random.nextInt(100)));
+            values.put(OpsGenieConfiguration.TAGS, "generated");
+            values.put(OpsGenieConfiguration.RECIPIENTS, String.format("oncall-%05d@example.com", i));
+        }
+        else if(c == PagerDutyChannelParser.class)
+        {
+            values.put(PagerDutyChannel.NAME, getChannelName("pagerduty", i));
+            values.put(PagerDutyConfiguration.SERVICE_KEY, getToken());
+        }
+        else if(c == UserChannelParser.class)
+        {
+            values.put(UserChannel.NAME, getChannelName("user", i));
+            values.put(UserConfiguration.USER_ID, Integer.toString(100000+i));
+        }
+        else if(c == VictorOpsChannelParser.class)
+        {
+            values.put(VictorOpsChannel.NAME, getChannelName("victorops", i));
+            values.put(VictorOpsConfiguration.KEY, getToken());
+            values.put(VictorOpsConfiguration.ROUTE_KEY, String.format("route-%05d", i));
+        }
+        else if(c == xMattersChannelParser.class)
+        {
+            values.put(xMattersChannel.NAME, getChannelName("xmatters", i));
+            values.put(xMattersConfiguration.URL, String.format("https://example.xmatters.com/api/%05d", i));
+            values.put(xMattersConfiguration.CHANNEL, String.format("channel-%05d", i));
+        }
+        else if(c == AlertPolicyParser.class)
+        {
+            IncidentPreference[] preferences = IncidentPreference.values();
+            values.put(AlertPolicy.NAME, getPolicyName(i));
+            values.put(AlertPolicy.INCIDENT_PREFERENCE, preferences[random.nextInt(preferences.length)].name());
+            values.put(AlertPolicyChannel.CHANNELS, getPolicyChannels());
+        }
+        else if(c == AlertConditionParser.class)
+        {
+            AlertCondition.ConditionType[] types = AlertCondition.ConditionType.values();
+            AlertCondition.ConditionType type = types[random.nextInt(types.length)];
+            AlertCondition.ViolationCloseTimerInterval[] timers = AlertCondition.ViolationCloseTimerInterval.values();
+            values.put(AlertCondition.POLICY_NAME, getRandomPolicyName());
+            values.put(AlertCondition.NAME, getConditionName("alert", i));
+            values.put(AlertCondition.CONDITION_TYPE, type.value());
+            values.put(AlertCondition.CONDITION_SCOPE, "application");
+            values.put(AlertCondition.METRIC, getMetric(type));
+            values.put(AlertCondition.VIOLATION_CLOSE_TIMER, Integer.toString(timers[random.nextInt(timers.length)].value()));
+            values.put(AlertCondition.ENTITIES, getRandomEntityNames());
+            addTermValues(values);
+        }
+        else if(c == ExternalServiceAlertConditionParser.class)
+        {
+            ExternalServiceAlertCondition.ConditionType[] types = ExternalServiceAlertCondition.ConditionType.values();
+            ExternalServiceAlertCondition.ConditionType type = types[random.nextInt(types.length)];
+            values.put(ExternalServiceAlertCondition.POLICY_NAME, getRandomPolicyName());
+            values.put(ExternalServiceAlertCondition.NAME, getConditionName("external-service", i));
+            values.put(ExternalServiceAlertCondition.CONDITION_TYPE, type.value());
+            values.put(ExternalServiceAlertCondition.METRIC, getMetric(type));
+            values.put(ExternalServiceAlertCondition.EXTERNAL_SERVICE_URL, String.format("service-%03d.example.com", random.nextInt(1000)));
+            values.put(ExternalServiceAlertCondition.ENTITIES, getRandomEntityNames());
+            addTermValues(values);
+        }
+        else if(c == NrqlAlertConditionParser.class)
+        {
+            NrqlAlertCondition.ValueFunction[] functions = NrqlAlertCondition.ValueFunction.values();
+            values.put(NrqlAlertCondition.POLICY_NAME, getRandomPolicyName());
+            values.put(NrqlAlertCondition.NAME, getConditionName("nrql", i));
+            values.put(Nrql.QUERY, "SELECT count(*) FROM Transaction WHERE appName = '"+getRandomEntityName()+"'");
+            values.put(NrqlAlertCondition.VALUE_FUNCTION, functions[random.nextInt(functions.length)].value());
+            values.put(Nrql.SINCE_VALUE, Integer.toString(1+random.nextInt(5)));
+            addTermValues(values);
+        }
+        else if(c == InfraMetricAlertConditionParser.class)
+        {
+            String[] metric = INFRA_METRICS[random.nextInt(INFRA_METRICS.length)];
+            int critical = 50+random.nextInt(50);
+            values.put(InfraMetricAlertCondition.POLICY_NAME, getRandomPolicyName());
+            values.put(InfraMetricAlertCondition.NAME, getConditionName("infra-metric", i));
+            values.put(InfraMetricAlertCondition.EVENT_TYPE, metric[0]);
+            values.put(InfraMetricAlertCondition.SELECT_VALUE, metric[1]);
+            values.put(InfraMetricAlertCondition.COMPARISON, "above");
+            values.put(InfraMetricAlertCondition.WARNING_THRESHOLD, Integer.toString(critical-10));
+            values.put(InfraMetricAlertCondition.CRITICAL_THRESHOLD, Integer.toString(critical));
+            values.put(AlertThreshold.DURATION, getRandom(DURATIONS));
+            values.put(AlertThreshold.TIME_FUNCTION, getTimeFunction());
+            values.put(InfraMetricAlertCondition.WHERE_CLAUSE, getWhereClause());
+        }
+        else if(c == InfraProcessRunningAlertConditionParser.class)
+        {
+            values.put(InfraProcessRunningAlertCondition.POLICY_NAME, getRandomPolicyName());
+            values.put(InfraProcessRunningAlertCondition.NAME, getConditionName("infra-process", i));
+            values.put(InfraProcessRunningAlertCondition.COMPARISON, getRandom(COMPARISONS));
+            values.put(InfraProcessRunningAlertCondition.CRITICAL_THRESHOLD, Integer.toString(random.nextInt(5)));
+            values.put(AlertThreshold.DURATION, getRandom(DURATIONS));
+            values.put(InfraProcessRunningAlertCondition.PROCESS_WHERE_CLAUSE, "(`commandName` = '"+getRandom(PROCESSES)+"')");
+            values.put(InfraProcessRunningAlertCondition.WHERE_CLAUSE, getWhereClause());
+        }
+        else if(c == InfraHostNotReportingAlertConditionParser.class)
+        {
+            values.put(InfraHostNotReportingAlertCondition.POLICY_NAME, getRandomPolicyName());
+            values.put(InfraHostNotReportingAlertCondition.NAME, getConditionName("infra-host", i));
+            values.put(AlertThreshold.DURATION, getRandom(DURATIONS));
+            values.put(InfraHostNotReportingAlertCondition.WHERE_CLAUSE, getWhereClause());
+        }
+    }
+
+    /**
+     * Adds the values for the critical and warning terms of a condition.
+     */
+    private void addTermValues(Map<String,String> values)
+    {
+        int critical = 10+random.nextInt(90);
+        values.put(Term.OPERATOR, OPERATORS[0]);
+        values.put(Term.CRITICAL_THRESHOLD, Integer.toString(critical));
+        values.put(Term.WARNING_THRESHOLD, random.nextBoolean() ? Integer.toString(critical/2) : "");
+        values.put(Term.DURATION, getRandom(DURATIONS));
+        values.put(Term.TIME_FUNCTION, getTimeFunction());
+    }
+
+    /**
+     * Returns a valid metric for the given alert condition type.
+     */
+    private String getMetric(AlertCondition.ConditionType type)
+    {
+        switch(type)
+        {
+            case APM_APP:
+                return ApmAppAlertCondition.Metric.values()[random.nextInt(ApmAppAlertCondition.Metric.values().length)].value();
+            case APM_KEY_TRANSACTION:
+                return ApmKeyTransactionAlertCondition.Metric.values()[random.nextInt(ApmKeyTransactionAlertCondition.Metric.values().length)].value();
+            case APM_JVM:
+                return ApmJvmAlertCondition.Metric.values()[random.nextInt(ApmJvmAlertCondition.Metric.values().length)].value();
+            case SERVERS:
+                return ServersAlertCondition.Metric.values()[random.nextInt(ServersAlertCondition.Metric.values().length)].value();
+            case BROWSER:
+                return BrowserAlertCondition.Metric.values()[random.nextInt(BrowserAlertCondition.Metric.values().length)].value();
+            case MOBILE:
+                return MobileAlertCondition.Metric.values()[random.nextInt(MobileAlertCondition.Metric.values().length)].value();
+        }
+        return null;
+    }
+
+    /**
+     * Returns a valid metric for the given external service alert condition type.
+     */
+    private String getMetric(ExternalServiceAlertCondition.ConditionType type)
+    {
+        switch(type)
+        {
+            case APM:
+                return ApmExternalServiceAlertCondition.Metric.values()[random.nextInt(ApmExternalServiceAlertCondition.Metric.values().length)].value();
+            case MOBILE:
+                return MobileExternalServiceAlertCondition.Metric.values()[random.nextInt(MobileExternalServiceAlertCondition.Metric.values().length)].value();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of a channel and adds it to the list of channel names.
+     */
+    private String getChannelName(String type, int i)
+    {
+        String ret = String.format("%s-channel-%05d", type, i);
+        channelNames.add(ret);
+        return ret;
+    }
+
+    /**
+     * Returns the name of a condition.
+     */
+    private String getConditionName(String type, int i)
+    {
+        return String.format("%s-condition-%06d", type, i);
+    }
+
+    /**
+     * Returns a comma-separated list of random channel names for a policy.
+     */
+    private String getPolicyChannels()
+    {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < channelsPerPolicy && channelNames.size() > 0; i++)
+        {
+            if(sb.length() > 0)
+                sb.append(",");
+            sb.append(channelNames.get(random.nextInt(channelNames.size())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the name of a random policy.
+     */
+    private String getRandomPolicyName()
+    {
+        return getPolicyName(1+random.nextInt(Math.max(policies, 1)));
+    }
+
+    /**
+     * Returns the name of a random entity.
+     */
+    private String getRandomEntityName()
+    {
+        return getEntityName(1+random.nextInt(Math.max(entities, 1)));
+    }
+
+    /**
+     * Returns a comma-separated list of random entity names for a condition.
+     */
+    private String getRandomEntityNames()
+    {
+        StringBuilder sb = new StringBuilder();
+        int count = 1+random.nextInt(3);
+        for(int i = 0; i < count; i++)
+        {
+            if(sb.length() > 0)
+                sb.append(",");
+            sb.append(getRandomEntityName());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a where clause for a random entity.
+     */
+    private String getWhereClause()
+    {
+        return "(`hostname` LIKE '"+getRandomEntityName()+"%')";
+    }
+
+    /**
+     * Returns a random time function.
+     */
+    private String getTimeFunction()
+    {
+        TimeFunction[] functions = TimeFunction.values();
+        return functions[random.nextInt(functions.length)].value();
+    }
+
+    /**
+     * Returns a random token.
+     */
+    private String getToken()
+    {
+        return Long.toHexString(random.nextLong())+Long.toHexString(random.nextLong());
+    }
+
+    /**
+     * Returns a random item from the given array.
+     */
+    private String getRandom(String[] items)
+    {
+        return items[random.nextInt(items.length)];
+    }
+
+    /**
+     * Returns a builder for the generator.
+     * @return The builder instance.
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Builder to make generator construction easier.
+     */
+    public static class Builder
+    {
+        private AlertFileGenerator generator = new AlertFileGenerator();
+
+        /**
+         * Sets the number of channels to generate for each channel type.
+         * @param channels The number of channels to generate for each channel type
+         * @return This object
+         */
+        public Builder channels(int channels)
+        {
+            generator.setChannels(channels);
+            return this;
+        }
+
+        /**
+         * Sets the number of policies to generate.
+         * @param policies The number of policies to generate
+         * @return This object
+         */
+        public Builder policies(int policies)
+        {
+            generator.setPolicies(policies);
+            return this;
+        }
+
+        /**
+         * Sets the number of conditions to generate for each condition type.
+         * @param conditions The number of conditions to generate for each condition type
+         * @return This object
+         */
+        public Builder conditions(int conditions)
+        {
+            generator.setConditions(conditions);
+            return this;
+        }
+
+        /**
+         * Sets the cardinality of the entity names used by the conditions.
+         * @param entities The cardinality of the entity names used by the conditions
+         * @return This object
+         */
+        public Builder entities(int entities)
+        {
+            generator.setEntities(entities);
+            return this;
+        }
+
+        /**
+         * Sets the number of channels linked to each policy.
+         * @param channelsPerPolicy The number of channels linked to each policy
+         * @return This object
+         */
+        public Builder channelsPerPolicy(int channelsPerPolicy)
+        {
+            generator.setChannelsPerPolicy(channelsPerPolicy);
+            return this;
+        }
+
+        /**
+         * Sets the seed of the random number generator.
+         * @param seed The seed of the random number generator
+         * @return This object
+         */
+        public Builder seed(long seed)
+        {
+            generator.setSeed(seed);
+            return this;
+        }
+
+        /**
+         * Returns the configured generator instance
+         * @return The generator instance
+         */
+        public AlertFileGenerator build()
+        {
+            return generator;
+        }
+    }
+}
\ No newline at end of file
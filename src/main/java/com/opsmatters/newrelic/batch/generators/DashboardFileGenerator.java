@@ -0,0 +1,537 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.generators;
+
+import java.io.Writer;
+import java.io.IOException;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Logger;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.DumperOptions;
+import com.opsmatters.newrelic.api.model.insights.Dashboard;
+import com.opsmatters.newrelic.api.model.insights.Metadata;
+import com.opsmatters.newrelic.api.model.insights.Filter;
+import com.opsmatters.newrelic.api.model.insights.widgets.Widget;
+import com.opsmatters.newrelic.api.model.insights.widgets.MarkdownData;
+import com.opsmatters.newrelic.api.model.insights.widgets.EventsData;
+import com.opsmatters.newrelic.api.model.insights.widgets.MetricsData;
+import com.opsmatters.newrelic.api.model.insights.widgets.InventoryData;
+import com.opsmatters.newrelic.api.model.insights.widgets.Threshold;
+import com.opsmatters.newrelic.api.model.insights.widgets.TrafficLight;
+import com.opsmatters.newrelic.api.model.insights.widgets.TrafficLightState;
+import com.opsmatters.newrelic.api.model.insights.widgets.Presentation;
+import com.opsmatters.newrelic.api.model.insights.widgets.DrilldownPresentation;
+import com.opsmatters.newrelic.api.model.insights.widgets.ThresholdPresentation;
+import com.opsmatters.newrelic.api.model.insights.widgets.TrafficLightPresentation;
+import com.opsmatters.newrelic.api.model.metrics.Metric;
+import com.opsmatters.newrelic.batch.renderers.DashboardRenderer;
+
+/**
+ * Generates synthetic dashboard YAML documents for sizing and benchmarking runs.
+ * <P>
+ * The documents use the same layout as the YAML read by the dashboard parser.
+ * The NRQL queries reference the policy and entity names produced by the {@link AlertFileGenerator}.
+ * The same seed always produces the same output.
+ * </P>
+ *
+ * @author Gerald Curley (opsmatters)
+ */
+public class DashboardFileGenerator
+{
+    private static final Logger logger = Logger.getLogger(DashboardFileGenerator.class.getName());
+
+    // The supported visualizations
+    public static final String MARKDOWN = "markdown";
+    public static final String HISTOGRAM = "histogram";
+    public static final String GAUGE = "gauge";
+    public static final String FACET_PIE_CHART = "facet_pie_chart";
+    public static final String FACET_BAR_CHART = "facet_bar_chart";
+    public static final String APPLICATION_BREAKDOWN = "application_breakdown";
+    public static final String METRIC_LINE_CHART = "metric_line_chart";
+    public static final String TRAFFIC_LIGHT = "traffic_light";
+    public static final String INVENTORY = "inventory";
+
+    private static final int COLUMNS = 3;
+
+    private int dashboards = 10;
+    private int widgets = 9;
+    private int policies = 10;
+    private int entities = 50;
+    private int accountId = 0;
+    private long seed = 0L;
+    private Map<String,Integer> mix = new LinkedHashMap<String,Integer>();
+
+    private Random random;
+
+    /**
+     * Default constructor.
+     */
+    public DashboardFileGenerator()
+    {
+        // Use an even mix of widgets by default
+        for(String visualization : Arrays.asList(MARKDOWN, HISTOGRAM, GAUGE, FACET_PIE_CHART, FACET_BAR_CHART,
+            APPLICATION_BREAKDOWN, METRIC_LINE_CHART, TRAFFIC_LIGHT, INVENTORY))
+        {
+            mix.put(visualization, 1);
+        }
+    }
+
+    /**
+     * Sets the number of dashboards to generate.
+     * @param dashboards The number of dashboards to generate
+     */
+    public void setDashboards(int dashboards)
+    {
+        this.dashboards = dashboards;
+    }
+
+    /**
+     * Returns the number of dashboards to generate.
+     * @return The number of dashboards to generate
+     */
+    public int getDashboards()
+    {
+        return dashboards;
+    }
+
+    /**
+     * Sets the number of widgets to generate for each dashboard.
+     * @param widgets The number of widgets to generate for each dashboard
+     */
+    public void setWidgets(int widgets)
+    {
+        this.widgets = widgets;
+    }
+
+    /**
+     * Returns the number of widgets to generate for each dashboard.
+     * @return The number of widgets to generate for each dashboard
+     */
+    public int getWidgets()
+    {
+        return widgets;
+    }
+
+    /**
+     * Sets the cardinality of the policy names used by the widget queries.
+     * @param policies The cardinality of the policy names used by the widget queries
+     */
+    public void setPolicies(int policies)
+    {
+        this.policies = policies;
+    }
+
+    /**
+     * Returns the cardinality of the policy names used by the widget queries.
+     * @return The cardinality of the policy names used by the widget queries
+     */
+    public int getPolicies()
+    {
+        return policies;
+    }
+
+    /**
+     * Sets the cardinality of the entities used by the widgets.
+     * @param entities The cardinality of the entities used by the widgets
+     */
+    public void setEntities(int entities)
+    {
+        this.entities = entities;
+    }
+
+    /**
+     * Returns the cardinality of the entities used by the widgets.
+     * @return The cardinality of the entities used by the widgets
+     */
+    public int getEntities()
+    {
+        return entities;
+    }
+
+    /**
+     * Sets the account id of the widgets.
+     * @param accountId The account id of the widgets
+     */
+    public void setAccountId(int accountId)
+    {
+        this.accountId = accountId;
+    }
+
+    /**
+     * Returns the account id of the widgets.
+     * @return The account id of the widgets
+     */
+    public int getAccountId()
+    {
+        return accountId;
+    }
+
+    /**
+     * Sets the seed of the random number generator.
+     * @param seed The seed of the random number generator
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the seed of the random number generator.
+     * @return The seed of the random number generator
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Sets the relative weight of the given visualization in the widget mix.
+     * <P>
+     * A weight of zero removes the visualization from the mix.
+     * </P>
+     * @param visualization The visualization of the widget
+     * @param weight The relative weight of the visualization
+     */
+    public void setWeight(String visualization, int weight)
+    {
+        if(!mix.containsKey(visualization))
+            throw new IllegalArgumentException("unsupported visualization: "+visualization);
+        if(weight < 0)
+            throw new IllegalArgumentException("weight cannot be negative: "+weight);
+        mix.put(visualization, weight);
+    }
+
+    /**
+     * Returns the relative weight of each visualization in the widget mix.
+     * @return The relative weight of each visualization in the widget mix
+     */
+    public Map<String,Integer> getMix()
+    {
+        return mix;
+    }
+
+    /**
+     * Returns the id of the entity with the given index.
+     * @param i The index of the entity
+     * @return The id of the entity
+     */
+    public static int getEntityId(int i)
+    {
+        return 100000000+i;
+    }
+
+    /**
+     * Generates the dashboards as YAML documents.
+     * @return The dashboards as a map, keyed by dashboard title
+     */
+    public Map<String,Object> generate()
+    {
+        Map<String,Object> ret = new LinkedHashMap<String,Object>();
+        random = new Random(seed);
+        for(int i = 1; i <= dashboards; i++)
+            ret.put(String.format("dashboard-%05d", i), getDashboard());
+        return ret;
+    }
+
+    /**
+     * Generates the dashboards and writes them as YAML to the given writer.
+     * @param writer The writer to write the dashboards to
+     * @throws IOException if there was an error writing the dashboards
+     */
+    public void write(Writer writer) throws IOException
+    {
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.AUTO);
+        writer.write(new DashboardRenderer().getBanner("Generated dashboards"));
+        new Yaml(options).dump(generate(), writer);
+        logger.info("Generated "+dashboards+" dashboards");
+    }
+
+    /**
+     * Returns a generated dashboard.
+     */
+    private Map<String,Object> getDashboard()
+    {
+        Map<String,Object> ret = new LinkedHashMap<String,Object>();
+        ret.put(Dashboard.ICON, "line-chart");
+        ret.put(Metadata.VERSION, 1);
+        ret.put(Dashboard.VISIBILITY, "all");
+        ret.put(Dashboard.EDITABLE, "editable_by_all");
+
+        Map<String,Object> widgetMap = new LinkedHashMap<String,Object>();
+        for(int i = 0; i < widgets; i++)
+        {
+            String visualization = getVisualization();
+            widgetMap.put(String.format("%s widget %d", visualization, i+1), getWidget(visualization, i));
+        }
+        ret.put(Dashboard.WIDGETS, widgetMap);
+
+        Map<String,Object> filter = new LinkedHashMap<String,Object>();
+        filter.put(Filter.EVENT_TYPES, Arrays.asList("SystemSample"));
+        filter.put(Filter.ATTRIBUTES, Arrays.asList("cpuPercent"));
+        ret.put(Dashboard.FILTER, filter);
+
+        return ret;
+    }
+
+    /**
+     * Returns a generated widget with the given visualization.
+     */
+    private Map<String,Object> getWidget(String visualization, int i)
+    {
+        Map<String,Object> ret = new LinkedHashMap<String,Object>();
+        ret.put(Widget.VISUALIZATION, visualization);
+        ret.put(Presentation.NOTES, "generated widget");
+        ret.put(Widget.LAYOUT, Arrays.asList((i/COLUMNS)+1, (i%COLUMNS)+1, 1, 1));
+        ret.put(Widget.ACCOUNT_ID, accountId);
+
+        Map<String,Object> data = new LinkedHashMap<String,Object>();
+        if(visualization.equals(MARKDOWN))
+        {
+            data.put(MarkdownData.SOURCE, "# Dashboard Notes\n\nGenerated notes for "+getPolicyName());
+        }
+        else if(visualization.equals(HISTOGRAM))
+        {
+            data.put(EventsData.NRQL, "SELECT histogram(threadCount,10,20) FROM ProcessSample WHERE hostname = '"
+                +getEntityName()+"' SINCE yesterday");
+        }
+        else if(visualization.equals(GAUGE))
+        {
+            data.put(EventsData.NRQL, "SELECT average(cpuPercent) FROM SystemSample WHERE hostname = '"
+                +getEntityName()+"' SINCE 10 minutes ago");
+            Map<String,Object> threshold = new LinkedHashMap<String,Object>();
+            threshold.put(Threshold.RED, 90);
+            threshold.put(Threshold.YELLOW, 70);
+            ret.put(ThresholdPresentation.THRESHOLD, threshold);
+        }
+        else if(visualization.equals(FACET_PIE_CHART) || visualization.equals(FACET_BAR_CHART))
+        {
+            data.put(EventsData.NRQL, "SELECT count(*) FROM NrAiIncident WHERE policyName = '"
+                +getPolicyName()+"' SINCE 1 day ago FACET conditionName");
+            ret.put(DrilldownPresentation.DRILLDOWN_DASHBOARD_ID, 1+random.nextInt(dashboards));
+        }
+        else if(visualization.equals(APPLICATION_BREAKDOWN))
+        {
+            data.put(MetricsData.DURATION, 86400000);
+            data.put(MetricsData.ENTITY_IDS, getEntityIds());
+        }
+        else if(visualization.equals(METRIC_LINE_CHART))
+        {
+            Map<String,Object> metric = new LinkedHashMap<String,Object>();
+            metric.put(Metric.NAME, "Apdex");
+            metric.put(Metric.VALUES, Arrays.asList("score"));
+            data.put(MetricsData.DURATION, 43200000);
+            data.put(MetricsData.ENTITY_IDS, getEntityIds());
+            data.put(MetricsData.METRICS, Arrays.asList(metric));
+            data.put(MetricsData.ORDER_BY, "score");
+            data.put(MetricsData.LIMIT, 20);
+        }
+        else if(visualization.equals(TRAFFIC_LIGHT))
+        {
+            data.put(EventsData.NRQL, "SELECT max(cpuPercent) FROM SystemSample WHERE hostname = '"
+                +getEntityName()+"' SINCE 10 minutes ago");
+            Map<String,Object> trafficLight = new LinkedHashMap<String,Object>();
+            trafficLight.put(TrafficLight.ID, String.format("light-%05d", i+1));
+            trafficLight.put(TrafficLight.TITLE, "cpu-percent");
+            trafficLight.put(TrafficLight.SUBTITLE, "maximum");
+            trafficLight.put(TrafficLight.STATES, Arrays.asList(getState("ok", 0, 70),
+                getState("warning", 70, 90), getState("wrong", 90, 100)));
+            ret.put(TrafficLightPresentation.TRAFFIC_LIGHT, trafficLight);
+        }
+        else if(visualization.equals(INVENTORY))
+        {
+            Map<String,Object> filters = new LinkedHashMap<String,Object>();
+            filters.put("operatingSystem", "linux");
+            data.put(InventoryData.SOURCES, Arrays.asList("metadata/system"));
+            data.put(InventoryData.FILTERS, filters);
+        }
+        ret.put(Widget.DATA, data);
+
+        return ret;
+    }
+
+    /**
+     * Returns a traffic light state.
+     */
+    private Map<String,Object> getState(String type, int min, int max)
+    {
+        Map<String,Object> ret = new LinkedHashMap<String,Object>();
+        ret.put(TrafficLightState.TYPE, type);
+        ret.put(TrafficLightState.MIN, min);
+        ret.put(TrafficLightState.MAX, max);
+        return ret;
+    }
+
+    /**
+     * Returns a random visualization using the weights of the widget mix.
+     */
+    private String getVisualization()
+    {
+        int total = 0;
+        for(Integer weight : mix.values())
+            total += weight;
+        if(total == 0)
+            throw new IllegalStateException("widget mix is empty");
+
+        int value = random.nextInt(total);
+        for(Map.Entry<String,Integer> entry : mix.entrySet())
+        {
+            value -= entry.getValue();
+            if(value < 0)
+                return entry.getKey();
+        }
+
+        return MARKDOWN;
+    }
+
+    /**
+     * Returns the name of a random policy.
+     */
+    private String getPolicyName()
+    {
+        return AlertFileGenerator.getPolicyName(1+random.nextInt(Math.max(policies, 1)));
+    }
+
+    /**
+     * Returns the name of a random entity.
+     */
+    private String getEntityName()
+    {
+        return AlertFileGenerator.getEntityName(1+random.nextInt(Math.max(entities, 1)));
+    }
+
+    /**
+     * Returns a list of random entity ids.
+     */
+    private List<Integer> getEntityIds()
+    {
+        List<Integer> ret = new ArrayList<Integer>();
+        int count = 1+random.nextInt(3);
+        for(int i = 0; i < count; i++)
+            ret.add(getEntityId(1+random.nextInt(Math.max(entities, 1))));
+        return ret;
+    }
+
+    /**
+     * Returns a builder for the generator.
+     * @return The builder instance.
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Builder to make generator construction easier.
+     */
+    public static class Builder
+    {
+        private DashboardFileGenerator generator = new DashboardFileGenerator();
+
+        /**
+         * Sets the number of dashboards to generate.
+         * @param dashboards The number of dashboards to generate
+         * @return This object
+         */
+        public Builder dashboards(int dashboards)
+        {
+            generator.setDashboards(dashboards);
+            return this;
+        }
+
+        /**
+         * Sets the number of widgets to generate for each dashboard.
+         * @param widgets The number of widgets to generate for each dashboard
+         * @return This object
+         */
+        public Builder widgets(int widgets)
+        {
+            generator.setWidgets(widgets);
+            return this;
+        }
+
+        /**
+         * Sets the cardinality of the policy names used by the widget queries.
+         * @param policies The cardinality of the policy names used by the widget queries
+         * @return This object
+         */
+        public Builder policies(int policies)
+        {
+            generator.setPolicies(policies);
+            return this;
+        }
+
+        /**
+         * Sets the cardinality of the entities used by the widgets.
+         * @param entities The cardinality of the entities used by the widgets
+         * @return This object
+         */
+        public Builder entities(int entities)
+        {
+            generator.setEntities(entities);
+            return this;
+        }
+
+        /**
+         * Sets the account id of the widgets.
+         * @param accountId The account id of the widgets
+         * @return This object
+         */
+        public Builder accountId(int accountId)
+        {
+            generator.setAccountId(accountId);
+            return this;
+        }
+
+        /**
+         * Sets the relative weight of the given visualization in the widget mix.
+         * @param visualization The visualization of the widget
+         * @param weight The relative weight of the visualization
+         * @return This object
+         */
+        public Builder weight(String visualization, int weight)
+        {
+            generator.setWeight(visualization, weight);
+            return this;
+        }
+
+        /**
+         * Sets the seed of the random number generator.
+         * @param seed The seed of the random number generator
+         * @return This object
+         */
+        public Builder seed(long seed)
+        {
+            generator.setSeed(seed);
+            return this;
+        }
+
+        /**
+         * Returns the configured generator instance
+         * @return The generator instance
+         */
+        public DashboardFileGenerator build()
+        {
+            return generator;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,4 @@
+/**
+ * The generator classes used for New Relic.
+ */
+package com.opsmatters.newrelic.batch.generators;
\ No newline at end of file
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.limits;
+
+import java.util.Map;
+import java.util.EnumMap;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.batch.limits.ConcurrencyLimiter.Family;
+
+/**
+ * Stops API calls to a family of endpoints while the API is failing, and probes for its recovery.
+ * <P>
+ * The breaker for a family opens when the share of overloaded calls (429, 5xx or timeouts)
+ * among its recent calls crosses a threshold. While it is open, new calls are parked in a queue
+ * instead of each waiting for its own timeout. Once the open period has passed, a single
+ * half-open probe call is let through: if it succeeds the breaker closes and the parked calls
+ * resume, otherwise the breaker opens again for twice as long.
+ * Calls parked for longer than the maximum wait fail fast.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class CircuitBreaker
+{
+    private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+    /**
+     * The default number of recent calls used to calculate the error rate.
+     */
+    public static final int DEFAULT_WINDOW = 20;
+
+    /**
+     * The default minimum number of recent calls before the breaker can open.
+     */
+    public static final int DEFAULT_MIN_CALLS = 10;
+
+    /**
+     * The default share of failed calls that opens the breaker.
+     */
+    public static final double DEFAULT_THRESHOLD = 0.5d;
+
+    /**
+     * The default time the breaker stays open before the first probe.
+     */
+    public static final long DEFAULT_OPEN_TIME = 10000L;
+
+    /**
+     * The default maximum time the breaker stays open before a probe.
+     */
+    public static final long DEFAULT_MAX_OPEN_TIME = 300000L;
+
+    /**
+     * The default maximum time a call is parked while the breaker is open.
+     */
+    public static final long DEFAULT_MAX_WAIT = 600000L;
+
+    /**
+     * The states of the breaker.
+     */
+    public enum State
+    {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private int window = DEFAULT_WINDOW;
+    private int minCalls = DEFAULT_MIN_CALLS;
+    private double threshold = DEFAULT_THRESHOLD;
+    private long openTime = DEFAULT_OPEN_TIME;
+    private long maxOpenTime = DEFAULT_MAX_OPEN_TIME;
+    private volatile long maxWait = DEFAULT_MAX_WAIT;
+    private Map<Family,Circuit> circuits = new EnumMap<Family,Circuit>(Family.class);
+
+    /**
+     * Default constructor.
+     */
+    public CircuitBreaker()
+    {
+        this(DEFAULT_WINDOW, DEFAULT_MIN_CALLS, DEFAULT_THRESHOLD, DEFAULT_OPEN_TIME);
+    }
+
+    /**
+     * Constructor that takes the settings for opening the breaker.
+     * @param window The number of recent calls used to calculate the error rate
+     * @param minCalls The minimum number of recent calls before the breaker can open
+     * @param threshold The share of failed calls that opens the breaker, between 0.0 and 1.0
+     * @param openTime The time the breaker stays open before the first probe in milliseconds
+     */
+    public CircuitBreaker(int window, int minCalls, double threshold, long openTime)
+    {
+        if(window < 1)
+            throw new IllegalArgumentException("window must be at least 1: "+window);
+        if(minCalls < 1 || minCalls > window)
+            throw new IllegalArgumentException("minimum calls out of range: "+minCalls);
+        if(threshold <= 0.0d || threshold > 1.0d)
+            throw new IllegalArgumentException("invalid threshold: "+threshold);
+        if(openTime <= 0L)
+            throw new IllegalArgumentException("open time must be positive: "+openTime);
+
+        this.window = window;
+        this.minCalls = minCalls;
+        this.threshold = threshold;
+        this.openTime = openTime;
+        this.maxOpenTime = Math.max(openTime, DEFAULT_MAX_OPEN_TIME);
+        for(Family family : Family.values())
+            circuits.put(family, new Circuit(family));
+    }
+
+    /**
+     * Sets the maximum time a call is parked while the breaker is open.
+     * @param maxWait The maximum time a call is parked in milliseconds, or 0 to fail fast without parking
+     */
+    public void setMaxWait(long maxWait)
+    {
+        if(maxWait < 0L)
+            throw new IllegalArgumentException("maximum wait cannot be negative: "+maxWait);
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Returns the maximum time a call is parked while the breaker is open.
+     * @return The maximum time a call is parked in milliseconds
+     */
+    public long getMaxWait()
+    {
+        return maxWait;
+    }
+
+    /**
+     * Waits until a call to the given endpoint is allowed.
+     * @param endpoint The name of the API endpoint, eg. "infraAlertConditions.create"
+     * @return The permit for the call, which must be released when the call completes
+     * @throws IllegalStateException if the breaker stays open for longer than the maximum wait,
+     *     or the thread is interrupted while waiting
+     */
+    public Permit acquire(String endpoint)
+    {
+        Circuit circuit = circuits.get(ConcurrencyLimiter.getFamily(endpoint));
+        try
+        {
+            return circuit.acquire(maxWait);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for circuit breaker", e);
+        }
+    }
+
+    /**
+     * Returns the state of the breaker for the given family.
+     * @param family The family of API endpoints
+     * @return The state of the breaker
+     */
+    public State getState(Family family)
+    {
+        return circuits.get(family).getState();
+    }
+
+    /**
+     * Returns the number of calls parked while the breaker for the given family is open.
+     * @param family The family of API endpoints
+     * @return The number of calls parked
+     */
+    public int getParked(Family family)
+    {
+        return circuits.get(family).getParked();
+    }
+
+    /**
+     * Returns the number of calls that failed fast for the given family.
+     * @param family The family of API endpoints
+     * @return The number of calls that failed fast
+     */
+    public long getRejected(Family family)
+    {
+        return circuits.get(family).getRejected();
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "CircuitBreaker [window="+window
+            +", minCalls="+minCalls
+            +", threshold="+threshold
+            +", openTime="+openTime
+            +", maxWait="+maxWait
+            +", circuits="+circuits.values()
+            +"]";
+    }
+
+    /**
+     * Permission for a single call through the breaker.
+     */
+    public static class Permit
+    {
+        private Circuit circuit;
+        private boolean probe;
+        private boolean released = false;
+
+        private Permit(Circuit circuit, boolean probe)
+        {
+            this.circuit = circuit;
+            this.probe = probe;
+        }
+
+        /**
+         * Records the outcome of the call.
+         * @param failed <CODE>true</CODE> if the call showed the API is failing
+         */
+        public void release(boolean failed)
+        {
+            if(released)
+                return;
+            released = true;
+            circuit.release(probe, failed);
+        }
+
+        /**
+         * Releases the permit without recording an outcome, eg. if the call was never made.
+         */
+        public void cancel()
+        {
+            if(released)
+                return;
+            released = true;
+            circuit.cancel(probe);
+        }
+    }
+
+    /**
+     * The breaker for a family of API endpoints.
+     */
+    private class Circuit
+    {
+        private Family family;
+        private State state = State.CLOSED;
+        private boolean[] outcomes = new boolean[window];
+        private int index = 0;
+        private int calls = 0;
+        private int failures = 0;
+        private long currentOpenTime = openTime;
+        private long retryAt = 0L;
+        private int parked = 0;
+        private long rejected = 0L;
+
+        Circuit(Family family)
+        {
+            this.family = family;
+        }
+
+        synchronized Permit acquire(long maxWait) throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis()+maxWait;
+            while(true)
+            {
+                if(state == State.CLOSED)
+                    return new Permit(this, false);
+
+                long now = System.currentTimeMillis();
+                if(state == State.OPEN && now >= retryAt)
+                {
+                    state = State.HALF_OPEN;
+                    logger.info("Probing "+family+" endpoints");
+                    return new Permit(this, true);
+                }
+
+                if(now >= deadline)
+                {
+                    ++rejected;
+                    throw new IllegalStateException("circuit open for "+family+" endpoints");
+                }
+
+                // Park the call until the breaker changes state
+                long wait = deadline-now;
+                if(state == State.OPEN)
+                    wait = Math.min(wait, retryAt-now);
+                ++parked;
+                try
+                {
+                    wait(Math.max(wait, 1L));
+                }
+                finally
+                {
+                    --parked;
+                }
+            }
+        }
+
+        synchronized void release(boolean probe, boolean failed)
+        {
+            if(probe)
+            {
+                if(failed)
+                {
+                    currentOpenTime = Math.min(maxOpenTime, currentOpenTime*2L);
+                    open();
+                }
+                else
+                {
+                    close();
+                }
+            }
+            else if(state == State.CLOSED)
+            {
+                // Replace the oldest outcome in the window
+                if(calls == window)
+                {
+                    if(outcomes[index])
+                        --failures;
+                }
+                else
+                {
+                    ++calls;
+                }
+                outcomes[index] = failed;
+                if(failed)
+                    ++failures;
+                index = (index+1)%window;
+
+                if(calls >= minCalls && failures >= threshold*calls)
+                    open();
+            }
+        }
+
+        synchronized void cancel(boolean probe)
+        {
+            if(probe && state == State.HALF_OPEN)
+            {
+                state = State.OPEN;
+                retryAt = System.currentTimeMillis();
+                notifyAll();
+            }
+        }
+
+        private void open()
+        {
+            state = State.OPEN;
+            retryAt = System.currentTimeMillis()+currentOpenTime;
+            logger.warning("Opened circuit for "+family+" endpoints for "+currentOpenTime+"ms: failures="+failures+"/"+calls);
+            notifyAll();
+        }
+
+        private void close()
+        {
+            state = State.CLOSED;
+            outcomes = new boolean[window];
+            index = 0;
+            calls = 0;
+            failures = 0;
+            currentOpenTime = openTime;
+            logger.info("Closed circuit for "+family+" endpoints: resuming "+parked+" parked calls");
+            notifyAll();
+        }
+
+        synchronized State getState()
+        {
+            return state;
+        }
+
+        synchronized int getParked()
+        {
+            return parked;
+        }
+
+        synchronized long getRejected()
+        {
+            return rejected;
+        }
+
+        @Override
+        public synchronized String toString()
+        {
+            return family+"="+state;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.limits;
+
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.ws.rs.WebApplicationException;
+import com.opsmatters.newrelic.batch.metrics.LatencyHistogram;
+
+/**
+ * Limits the number of API calls in flight, adjusting the limit for each family of endpoints
+ * from the responses it sees.
+ * <P>
+ * The limit follows an additive increase, multiplicative decrease (AIMD) scheme.
+ * While the calls of a family are using the whole limit and completing normally,
+ * the limit grows by one for each round of calls. A throttled (429) or server error (5xx) response
+ * or a timeout halves the limit, and a p90 latency well above the best seen
+ * reduces it more gently. Only calls started after the last reduction can reduce the limit again,
+ * so a burst of failures from the same round counts once.
+ * </P>
+ * <P>
+ * The limiter only caps the number of calls in flight, it does not start calls by itself.
+ * The bulk operations of the managers make their calls one at a time from the calling thread,
+ * so the limit only changes their throughput when several threads share the managers.
+ * The {@link com.opsmatters.newrelic.batch.deploy.AlertDeploymentScheduler} sizes its thread pool
+ * to the maximum limit so that the current limit of each family decides how many calls are in flight.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class ConcurrencyLimiter
+{
+    private static final Logger logger = Logger.getLogger(ConcurrencyLimiter.class.getName());
+
+    /**
+     * The default initial number of calls in flight for each family.
+     */
+    public static final int DEFAULT_INITIAL_LIMIT = 4;
+
+    /**
+     * The default minimum number of calls in flight for each family.
+     */
+    public static final int DEFAULT_MIN_LIMIT = 1;
+
+    /**
+     * The default maximum number of calls in flight for each family.
+     */
+    public static final int DEFAULT_MAX_LIMIT = 32;
+
+    private static final double OVERLOAD_BACKOFF = 0.5d;
+    private static final double LATENCY_BACKOFF = 0.9d;
+    private static final double LATENCY_TOLERANCE = 2.0d;
+    private static final int LATENCY_WINDOW = 50;
+
+    /**
+     * The families of API endpoints, each with its own limit.
+     */
+    public enum Family
+    {
+        REST_ALERTS,
+        INFRA_ALERTS,
+        DASHBOARDS
+    }
+
+    private int minLimit;
+    private int maxLimit;
+    private Map<Family,Limit> limits = new EnumMap<Family,Limit>(Family.class);
+
+    /**
+     * Default constructor.
+     */
+    public ConcurrencyLimiter()
+    {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+    }
+
+    /**
+     * Constructor that takes the initial, minimum and maximum number of calls in flight for each family.
+     * @param initialLimit The initial number of calls in flight
+     * @param minLimit The minimum number of calls in flight
+     * @param maxLimit The maximum number of calls in flight
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit)
+    {
+        if(minLimit < 1)
+            throw new IllegalArgumentException("minimum limit must be at least 1: "+minLimit);
+        if(maxLimit < minLimit)
+            throw new IllegalArgumentException("maximum limit cannot be less than the minimum: "+maxLimit);
+        if(initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("initial limit out of range: "+initialLimit);
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        for(Family family : Family.values())
+            limits.put(family, new Limit(family, initialLimit));
+    }
+
+    /**
+     * Returns the family of the given API endpoint.
+     * @param endpoint The name of the API endpoint, eg. "alertPolicies.create"
+     * @return The family of the API endpoint
+     */
+    public static Family getFamily(String endpoint)
+    {
+        if(endpoint != null)
+        {
+            if(endpoint.startsWith("infra"))
+                return Family.INFRA_ALERTS;
+            if(endpoint.startsWith("dashboards"))
+                return Family.DASHBOARDS;
+        }
+        return Family.REST_ALERTS;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the given error shows the API is overloaded.
+     * <P>
+     * The API is overloaded if the error or one of its causes is a 429 or 5xx response, or a timeout.
+     * </P>
+     * @param e The error thrown by the API call
+     * @return <CODE>true</CODE> if the error shows the API is overloaded
+     */
+    public static boolean isOverload(Throwable e)
+    {
+        for(Throwable t = e; t != null; t = t.getCause())
+        {
+            if(t instanceof SocketTimeoutException)
+                return true;
+            if(t instanceof WebApplicationException)
+            {
+                WebApplicationException ex = (WebApplicationException)t;
+                int status = ex.getResponse() != null ? ex.getResponse().getStatus() : 0;
+                return status == 429 || status >= 500;
+            }
+            if(t.getCause() == t)
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the given error shows the call was throttled.
+     * <P>
+     * The call was throttled if the error or one of its causes is a 429 response,
+     * in which case the call was not carried out and can safely be made again.
+     * </P>
+     * @param e The error thrown by the API call
+     * @return <CODE>true</CODE> if the error shows the call was throttled
+     */
+    public static boolean isThrottled(Throwable e)
+    {
+        for(Throwable t = e; t != null; t = t.getCause())
+        {
+            if(t instanceof WebApplicationException)
+            {
+                WebApplicationException ex = (WebApplicationException)t;
+                return ex.getResponse() != null && ex.getResponse().getStatus() == 429;
+            }
+            if(t.getCause() == t)
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * Waits until a call to the given endpoint is allowed.
+     * @param endpoint The name of the API endpoint, eg. "alertPolicies.create"
+     * @return The permit for the call, which must be released when the call completes
+     * @throws IllegalStateException if the thread is interrupted while waiting
+     */
+    public Permit acquire(String endpoint)
+    {
+        Limit limit = limits.get(getFamily(endpoint));
+        try
+        {
+            limit.acquire();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for concurrency limiter", e);
+        }
+        return new Permit(limit);
+    }
+
+    /**
+     * Returns the minimum number of calls allowed in flight for each family.
+     * @return The minimum number of calls allowed in flight
+     */
+    public int getMinLimit()
+    {
+        return minLimit;
+    }
+
+    /**
+     * Returns the maximum number of calls allowed in flight for each family.
+     * @return The maximum number of calls allowed in flight
+     */
+    public int getMaxLimit()
+    {
+        return maxLimit;
+    }
+
+    /**
+     * Returns the current number of calls allowed in flight for the given family.
+     * @param family The family of API endpoints
+     * @return The current number of calls allowed in flight
+     */
+    public int getLimit(Family family)
+    {
+        return limits.get(family).getLimit();
+    }
+
+    /**
+     * Returns the number of calls in flight for the given family.
+     * @param family The family of API endpoints
+     * @return The number of calls in flight
+     */
+    public int getInFlight(Family family)
+    {
+        return limits.get(family).getInFlight();
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "ConcurrencyLimiter [minLimit="+minLimit
+            +", maxLimit="+maxLimit
+            +", limits="+limits.values()
+            +"]";
+    }
+
+    /**
+     * Permission for a single call, holding its place in the limit of its family.
+     */
+    public static class Permit
+    {
+        private Limit limit;
+        private long start = System.nanoTime();
+        private boolean released = false;
+
+        private Permit(Limit limit)
+        {
+            this.limit = limit;
+        }
+
+        /**
+         * Releases the place of the call, adjusting the limit using the latency and outcome of the call.
+         * @param overloaded <CODE>true</CODE> if the call showed the API is overloaded
+         */
+        public void release(boolean overloaded)
+        {
+            if(released)
+                return;
+            released = true;
+            limit.release(start, System.nanoTime()-start, overloaded);
+        }
+    }
+
+    /**
+     * The limit for a family of API endpoints.
+     */
+    private class Limit
+    {
+        private Family family;
+        private double limit;
+        private int inFlight = 0;
+        private long lastDecrease = System.nanoTime();
+        private long baseline = 0L;
+        private LatencyHistogram window = new LatencyHistogram();
+
+        Limit(Family family, int limit)
+        {
+            this.family = family;
+            this.limit = limit;
+        }
+
+        synchronized void acquire() throws InterruptedException
+        {
+            while(inFlight >= (int)limit)
+                wait();
+            ++inFlight;
+        }
+
+        synchronized void release(long start, long nanos, boolean overloaded)
+        {
+            boolean saturated = inFlight >= (int)limit;
+            --inFlight;
+
+            if(overloaded)
+            {
+                decrease(start, OVERLOAD_BACKOFF, "overload");
+            }
+            else
+            {
+                window.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+                if(window.getCount() >= LATENCY_WINDOW)
+                {
+                    // Compare the latency of the window with the best seen, allowing the baseline to drift up slowly
+                    long p90 = window.getValueAtPercentile(90.0d);
+                    window.reset();
+                    if(baseline == 0L || p90 < baseline)
+                        baseline = p90;
+                    else
+                        baseline += (p90-baseline)/16L;
+                    if(p90 > baseline*LATENCY_TOLERANCE)
+                        decrease(start, LATENCY_BACKOFF, "latency p90="+p90+"us");
+                }
+                else if(saturated)
+                {
+                    limit = Math.min(maxLimit, limit+(1.0d/limit));
+                }
+            }
+
+            notifyAll();
+        }
+
+        /**
+         * Reduces the limit by the given factor, unless the call started before the last reduction.
+         */
+        private void decrease(long start, double factor, String reason)
+        {
+            if(start-lastDecrease < 0L)
+                return;
+            int previous = (int)limit;
+            limit = Math.max(minLimit, limit*factor);
+            lastDecrease = System.nanoTime();
+            if((int)limit != previous)
+                logger.fine("Reduced concurrency limit for "+family+" from "+previous+" to "+(int)limit+": "+reason);
+        }
+
+        synchronized int getLimit()
+        {
+            return (int)limit;
+        }
+
+        synchronized int getInFlight()
+        {
+            return inFlight;
+        }
+
+        @Override
+        public synchronized String toString()
+        {
+            return family+"="+(int)limit+"/"+inFlight;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.limits;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of API calls by spacing them evenly.
+ * <P>
+ * Each call reserves the next free slot, so concurrent callers are queued fairly
+ * and the rate is never exceeded, whatever the number of threads.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class RateLimiter
+{
+    private volatile double rate;
+    private volatile long interval;
+    private long next = 0L;
+
+    /**
+     * Constructor that takes a rate.
+     * @param rate The maximum number of calls per second
+     */
+    public RateLimiter(double rate)
+    {
+        setRate(rate);
+    }
+
+    /**
+     * Sets the maximum number of calls per second.
+     * @param rate The maximum number of calls per second
+     */
+    public void setRate(double rate)
+    {
+        if(rate <= 0.0d)
+            throw new IllegalArgumentException("rate must be positive: "+rate);
+        this.rate = rate;
+        this.interval = (long)(TimeUnit.SECONDS.toNanos(1L)/rate);
+    }
+
+    /**
+     * Returns the maximum number of calls per second.
+     * @return The maximum number of calls per second
+     */
+    public double getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * Waits until the next call is allowed.
+     * @throws IllegalStateException if the thread is interrupted while waiting
+     */
+    public void acquire()
+    {
+        long delay = reserve();
+        if(delay > 0L)
+        {
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for rate limiter", e);
+            }
+        }
+    }
+
+    /**
+     * Reserves the next free slot and returns the time to wait for it.
+     */
+    private synchronized long reserve()
+    {
+        long now = System.nanoTime();
+        long slot = Math.max(now, next);
+        next = slot+interval;
+        return slot-now;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "RateLimiter [rate="+rate+"]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,4 @@
+/**
+ * The rate limiting classes used for New Relic.
+ */
+package com.opsmatters.newrelic.batch.limits;
\ No newline at end of file
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the call counts, error counts, retries, in-flight calls and latencies for an API endpoint.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class EndpointMetrics
+{
+    private String name;
+    private AtomicLong calls = new AtomicLong();
+    private AtomicLong errors = new AtomicLong();
+    private AtomicLong retries = new AtomicLong();
+    private AtomicInteger inFlight = new AtomicInteger();
+    private LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Constructor that takes a name.
+     * @param name The name of the endpoint, eg. "alertPolicies.create"
+     */
+    public EndpointMetrics(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the endpoint.
+     * @return The name of the endpoint
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Called when a call to the endpoint starts.
+     * @return The start time of the call in nanoseconds
+     */
+    public long start()
+    {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Called when a call to the endpoint completes.
+     * @param start The start time of the call in nanoseconds
+     * @param success <CODE>true</CODE> if the call was successful
+     */
+    public void stop(long start, boolean success)
+    {
+        inFlight.decrementAndGet();
+        calls.incrementAndGet();
+        if(!success)
+            errors.incrementAndGet();
+        latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime()-start));
+    }
+
+    /**
+     * Records a retry of a call to the endpoint.
+     */
+    public void retry()
+    {
+        retries.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of calls to the endpoint.
+     * @return The number of calls to the endpoint
+     */
+    public long getCalls()
+    {
+        return calls.get();
+    }
+
+    /**
+     * Returns the number of calls to the endpoint that failed.
+     * @return The number of calls to the endpoint that failed
+     */
+    public long getErrors()
+    {
+        return errors.get();
+    }
+
+    /**
+     * Returns the number of calls to the endpoint that were retried.
+     * @return The number of calls to the endpoint that were retried
+     */
+    public long getRetries()
+    {
+        return retries.get();
+    }
+
+    /**
+     * Returns the number of calls to the endpoint currently in progress.
+     * @return The number of calls to the endpoint currently in progress
+     */
+    public int getInFlight()
+    {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the latency histogram of the endpoint.
+     * @return The latency histogram of the endpoint
+     */
+    public LatencyHistogram getLatency()
+    {
+        return latency;
+    }
+
+    /**
+     * Returns a snapshot of the current metrics of the endpoint.
+     * @return A snapshot of the current metrics of the endpoint
+     */
+    public EndpointSnapshot getSnapshot()
+    {
+        return new EndpointSnapshot(this);
+    }
+
+    /**
+     * Clears the counts and latencies of the endpoint.
+     */
+    public void reset()
+    {
+        calls.set(0L);
+        errors.set(0L);
+        retries.set(0L);
+        latency.reset();
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return getSnapshot().toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.metrics;
+
+/**
+ * An immutable snapshot of the metrics of an API endpoint.
+ * <P>
+ * All latencies are in microseconds.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class EndpointSnapshot
+{
+    private String name;
+    private long calls;
+    private long errors;
+    private long retries;
+    private int inFlight;
+    private long totalTime;
+    private long minLatency;
+    private long maxLatency;
+    private double meanLatency;
+    private long p50Latency;
+    private long p90Latency;
+    private long p99Latency;
+
+    /**
+     * Constructor that takes the metrics of an endpoint.
+     * @param metrics The metrics of the endpoint
+     */
+    public EndpointSnapshot(EndpointMetrics metrics)
+    {
+        LatencyHistogram latency = metrics.getLatency();
+        this.name = metrics.getName();
+        this.calls = metrics.getCalls();
+        this.errors = metrics.getErrors();
+        this.retries = metrics.getRetries();
+        this.inFlight = metrics.getInFlight();
+        this.totalTime = latency.getTotal();
+        this.minLatency = latency.getMin();
+        this.maxLatency = latency.getMax();
+        this.meanLatency = latency.getMean();
+        this.p50Latency = latency.getValueAtPercentile(50.0d);
+        this.p90Latency = latency.getValueAtPercentile(90.0d);
+        this.p99Latency = latency.getValueAtPercentile(99.0d);
+    }
+
+    /**
+     * Returns the name of the endpoint.
+     * @return The name of the endpoint
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the number of calls to the endpoint.
+     * @return The number of calls to the endpoint
+     */
+    public long getCalls()
+    {
+        return calls;
+    }
+
+    /**
+     * Returns the number of calls to the endpoint that failed.
+     * @return The number of calls to the endpoint that failed
+     */
+    public long getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Returns the number of calls to the endpoint that were retried.
+     * @return The number of calls to the endpoint that were retried
+     */
+    public long getRetries()
+    {
+        return retries;
+    }
+
+    /**
+     * Returns the number of calls to the endpoint in progress.
+     * @return The number of calls to the endpoint in progress
+     */
+    public int getInFlight()
+    {
+        return inFlight;
+    }
+
+    /**
+     * Returns the total time spent in calls to the endpoint.
+     * @return The total time spent in calls to the endpoint
+     */
+    public long getTotalTime()
+    {
+        return totalTime;
+    }
+
+    /**
+     * Returns the smallest latency of the endpoint.
+     * @return The smallest latency of the endpoint
+     */
+    public long getMinLatency()
+    {
+        return minLatency;
+    }
+
+    /**
+     * Returns the largest latency of the endpoint.
+     * @return The largest latency of the endpoint
+     */
+    public long getMaxLatency()
+    {
+        return maxLatency;
+    }
+
+    /**
+     * Returns the mean latency of the endpoint.
+     * @return The mean latency of the endpoint
+     */
+    public double getMeanLatency()
+    {
+        return meanLatency;
+    }
+
+    /**
+     * Returns the median latency of the endpoint.
+     * @return The median latency of the endpoint
+     */
+    public long getP50Latency()
+    {
+        return p50Latency;
+    }
+
+    /**
+     * Returns the 90th percentile latency of the endpoint.
+     * @return The 90th percentile latency of the endpoint
+     */
+    public long getP90Latency()
+    {
+        return p90Latency;
+    }
+
+    /**
+     * Returns the 99th percentile latency of the endpoint.
+     * @return The 99th percentile latency of the endpoint
+     */
+    public long getP99Latency()
+    {
+        return p99Latency;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "EndpointSnapshot [name="+name
+            +", calls="+calls
+            +", errors="+errors
+            +", retries="+retries
+            +", inFlight="+inFlight
+            +", totalTime="+totalTime
+            +", min="+minLatency
+            +", mean="+String.format("%.1f", meanLatency)
+            +", p50="+p50Latency
+            +", p90="+p90Latency
+            +", p99="+p99Latency
+            +", max="+maxLatency
+            +"]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with logarithmic buckets.
+ * <P>
+ * Values are recorded in microseconds. Each power of two is split into 16 linear sub-buckets,
+ * giving a worst case error of about 6% across the full range of values
+ * in a fixed footprint, in the same manner as an HdrHistogram.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKETS = 16;
+    private static final int LINEAR_BUCKETS = 2*SUB_BUCKETS;
+    private static final int BUCKETS = LINEAR_BUCKETS+(64-5)*SUB_BUCKETS;
+
+    private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private AtomicLong count = new AtomicLong();
+    private AtomicLong total = new AtomicLong();
+    private AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private AtomicLong max = new AtomicLong();
+
+    /**
+     * Default constructor.
+     */
+    public LatencyHistogram()
+    {
+    }
+
+    /**
+     * Records the given value.
+     * @param micros The value to record in microseconds
+     */
+    public void record(long micros)
+    {
+        if(micros < 0L)
+            micros = 0L;
+
+        counts.incrementAndGet(getIndex(micros));
+        count.incrementAndGet();
+        total.addAndGet(micros);
+
+        long current = min.get();
+        while(micros < current && !min.compareAndSet(current, micros))
+            current = min.get();
+        current = max.get();
+        while(micros > current && !max.compareAndSet(current, micros))
+            current = max.get();
+    }
+
+    /**
+     * Returns the number of values recorded.
+     * @return The number of values recorded
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * Returns the total of the values recorded in microseconds.
+     * @return The total of the values recorded in microseconds
+     */
+    public long getTotal()
+    {
+        return total.get();
+    }
+
+    /**
+     * Returns the smallest value recorded in microseconds.
+     * @return The smallest value recorded in microseconds, or 0 if no values have been recorded
+     */
+    public long getMin()
+    {
+        long ret = min.get();
+        return ret == Long.MAX_VALUE ? 0L : ret;
+    }
+
+    /**
+     * Returns the largest value recorded in microseconds.
+     * @return The largest value recorded in microseconds
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the values recorded in microseconds.
+     * @return The mean of the values recorded in microseconds
+     */
+    public double getMean()
+    {
+        long n = count.get();
+        return n > 0L ? (double)total.get()/n : 0.0d;
+    }
+
+    /**
+     * Returns the value at the given percentile in microseconds.
+     * <P>
+     * The value returned is the upper bound of the bucket containing the percentile,
+     * limited to the largest value recorded.
+     * </P>
+     * @param percentile The percentile, between 0.0 and 100.0
+     * @return The value at the given percentile in microseconds
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        if(percentile < 0.0d || percentile > 100.0d)
+            throw new IllegalArgumentException("invalid percentile: "+percentile);
+
+        long n = count.get();
+        if(n == 0L)
+            return 0L;
+
+        long target = Math.max(1L, (long)Math.ceil((percentile/100.0d)*n));
+        long sum = 0L;
+        for(int i = 0; i < BUCKETS; i++)
+        {
+            sum += counts.get(i);
+            if(sum >= target)
+                return Math.min(getUpperBound(i), getMax());
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Clears all the values recorded.
+     */
+    public void reset()
+    {
+        for(int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0L);
+        count.set(0L);
+        total.set(0L);
+        min.set(Long.MAX_VALUE);
+        max.set(0L);
+    }
+
+    /**
+     * Returns the index of the bucket for the given value.
+     * @param value The value
+     * @return The index of the bucket
+     */
+    static int getIndex(long value)
+    {
+        if(value < LINEAR_BUCKETS)
+            return (int)value;
+        int shift = 63-Long.numberOfLeadingZeros(value)-4;
+        int sub = (int)(value >>> shift);
+        return LINEAR_BUCKETS+((shift-1)*SUB_BUCKETS)+(sub-SUB_BUCKETS);
+    }
+
+    /**
+     * Returns the largest value that would be recorded in the given bucket.
+     * @param index The index of the bucket
+     * @return The largest value of the bucket
+     */
+    static long getUpperBound(int index)
+    {
+        if(index < LINEAR_BUCKETS)
+            return index;
+        int shift = ((index-LINEAR_BUCKETS)/SUB_BUCKETS)+1;
+        long sub = ((index-LINEAR_BUCKETS)%SUB_BUCKETS)+SUB_BUCKETS;
+        return ((sub+1L) << shift)-1L;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.metrics;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.JMException;
+
+/**
+ * Registry of the metrics for each API endpoint called by a manager.
+ * <P>
+ * Endpoints are named after the client resource and operation, eg. "alertPolicies.create"
+ * or "infraAlertConditions.list".
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class MetricsRegistry implements MetricsRegistryMXBean
+{
+    private static final Logger logger = Logger.getLogger(MetricsRegistry.class.getName());
+
+    /**
+     * The default JMX object name of the registry.
+     */
+    public static final String OBJECT_NAME = "com.opsmatters.newrelic.batch:type=MetricsRegistry";
+
+    private ConcurrentMap<String,EndpointMetrics> endpoints = new ConcurrentHashMap<String,EndpointMetrics>();
+    private ObjectName objectName;
+
+    /**
+     * Default constructor.
+     */
+    public MetricsRegistry()
+    {
+    }
+
+    /**
+     * Returns the metrics for the given endpoint, creating them if necessary.
+     * @param name The name of the endpoint
+     * @return The metrics for the endpoint
+     */
+    public EndpointMetrics getEndpoint(String name)
+    {
+        EndpointMetrics ret = endpoints.get(name);
+        if(ret == null)
+        {
+            EndpointMetrics metrics = new EndpointMetrics(name);
+            ret = endpoints.putIfAbsent(name, metrics);
+            if(ret == null)
+                ret = metrics;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the metrics for the given endpoint without creating them.
+     * @param name The name of the endpoint
+     * @return The metrics for the endpoint, or null if the endpoint has not been called
+     */
+    public EndpointMetrics findEndpoint(String name)
+    {
+        return endpoints.get(name);
+    }
+
+    /**
+     * Records a retry of a call to the given endpoint.
+     * @param name The name of the endpoint
+     */
+    public void retry(String name)
+    {
+        getEndpoint(name).retry();
+    }
+
+    /**
+     * Returns a snapshot of the metrics of all the API endpoints, sorted by endpoint name.
+     * @return A snapshot of the metrics of all the API endpoints
+     */
+    @Override
+    public List<EndpointSnapshot> getEndpoints()
+    {
+        Map<String,EndpointMetrics> sorted = new TreeMap<String,EndpointMetrics>(endpoints);
+        List<EndpointSnapshot> ret = new ArrayList<EndpointSnapshot>();
+        for(EndpointMetrics metrics : sorted.values())
+            ret.add(metrics.getSnapshot());
+        return ret;
+    }
+
+    /**
+     * Returns the total number of calls to all the API endpoints.
+     * @return The total number of calls to all the API endpoints
+     */
+    @Override
+    public long getCalls()
+    {
+        long ret = 0L;
+        for(EndpointMetrics metrics : endpoints.values())
+            ret += metrics.getCalls();
+        return ret;
+    }
+
+    /**
+     * Returns the total number of calls to all the API endpoints that failed.
+     * @return The total number of calls to all the API endpoints that failed
+     */
+    @Override
+    public long getErrors()
+    {
+        long ret = 0L;
+        for(EndpointMetrics metrics : endpoints.values())
+            ret += metrics.getErrors();
+        return ret;
+    }
+
+    /**
+     * Returns the total number of calls to all the API endpoints currently in progress.
+     * @return The total number of calls to all the API endpoints currently in progress
+     */
+    @Override
+    public int getInFlight()
+    {
+        int ret = 0;
+        for(EndpointMetrics metrics : endpoints.values())
+            ret += metrics.getInFlight();
+        return ret;
+    }
+
+    /**
+     * Clears the metrics of all the API endpoints.
+     */
+    @Override
+    public void reset()
+    {
+        for(EndpointMetrics metrics : endpoints.values())
+            metrics.reset();
+    }
+
+    /**
+     * Registers the registry with the platform MBean server using the default object name.
+     */
+    public void register()
+    {
+        register(OBJECT_NAME);
+    }
+
+    /**
+     * Registers the registry with the platform MBean server.
+     * @param name The JMX object name of the registry
+     */
+    public synchronized void register(String name)
+    {
+        if(objectName != null)
+            throw new IllegalStateException("metrics registry already registered: "+objectName);
+
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            server.registerMBean(this, objectName);
+            this.objectName = objectName;
+            logger.fine("Registered metrics registry: "+name);
+        }
+        catch(JMException e)
+        {
+            throw new IllegalArgumentException("unable to register metrics registry: "+name, e);
+        }
+    }
+
+    /**
+     * Unregisters the registry from the platform MBean server.
+     */
+    public synchronized void unregister()
+    {
+        if(objectName == null)
+            return;
+
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            logger.fine("Unregistered metrics registry: "+objectName);
+        }
+        catch(JMException e)
+        {
+            logger.warning("Unable to unregister metrics registry: "+e.getMessage());
+        }
+
+        objectName = null;
+    }
+
+    /**
+     * Returns a summary of the metrics of all the API endpoints, one endpoint per line.
+     * @return A summary of the metrics of all the API endpoints
+     */
+    public String getSummary()
+    {
+        StringBuilder sb = new StringBuilder();
+        for(EndpointSnapshot snapshot : getEndpoints())
+            sb.append(snapshot.toString()).append("\n");
+        return sb.toString();
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "MetricsRegistry [endpoints="+endpoints.size()
+            +", calls="+getCalls()
+            +", errors="+getErrors()
+            +", inFlight="+getInFlight()
+            +"]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.metrics;
+
+import java.util.List;
+
+/**
+ * The management interface used to expose the API endpoint metrics via JMX.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public interface MetricsRegistryMXBean
+{
+    /**
+     * Returns a snapshot of the metrics of all the API endpoints.
+     * @return A snapshot of the metrics of all the API endpoints
+     */
+    public List<EndpointSnapshot> getEndpoints();
+
+    /**
+     * Returns the total number of calls to all the API endpoints.
+     * @return The total number of calls to all the API endpoints
+     */
+    public long getCalls();
+
+    /**
+     * Returns the total number of calls to all the API endpoints that failed.
+     * @return The total number of calls to all the API endpoints that failed
+     */
+    public long getErrors();
+
+    /**
+     * Returns the total number of calls to all the API endpoints currently in progress.
+     * @return The total number of calls to all the API endpoints currently in progress
+     */
+    public int getInFlight();
+
+    /**
+     * Clears the metrics of all the API endpoints.
+     */
+    public void reset();
+}
\ No newline at end of file
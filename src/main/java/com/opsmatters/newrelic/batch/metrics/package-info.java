@@ -0,0 +1,4 @@
+/**
+ * The metrics classes used for New Relic.
+ */
+package com.opsmatters.newrelic.batch.metrics;
\ No newline at end of file
@@ -18,6 +18,10 @@ package com.opsmatters.newrelic.batch.model;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
 import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
@@ -41,6 +45,17 @@ import com.opsmatters.newrelic.api.model.alerts.conditions.InfraHostNotReporting
 
 /**
  * Represents a set of alert policies, conditions and channels.
+ * <P>
+ * The channels and infrastructure conditions are partitioned by type, and the policies and
+ * channels are indexed by name and id, as they are added.
+ * A lookup by name or id that finds a stale entry, eg. after the objects have been created
+ * and given their ids, rebuilds the index and tries again.
+ * </P>
+ * <P>
+ * The lists of objects are returned as read-only views, so objects must be added using the
+ * add and set methods, which keep the partitions and indexes up to date.
+ * Callers that added objects to the returned lists directly must use the add methods instead.
+ * </P>
  * 
  * @author Gerald Curley (opsmatters)
  */
@@ -48,6 +63,27 @@ public class AlertConfiguration
 {
     private static final Logger logger = Logger.getLogger(AlertConfiguration.class.getName());
 
+    private static final List<Class<? extends AlertChannel>> CHANNEL_TYPES = new ArrayList<Class<? extends AlertChannel>>();
+    private static final List<Class<? extends InfraAlertCondition>> INFRA_TYPES = new ArrayList<Class<? extends InfraAlertCondition>>();
+    private static final Map<Class<?>,Class<?>> PARTITION_TYPES = new ConcurrentHashMap<Class<?>,Class<?>>();
+
+    static
+    {
+        CHANNEL_TYPES.add(EmailChannel.class);
+        CHANNEL_TYPES.add(SlackChannel.class);
+        CHANNEL_TYPES.add(HipChatChannel.class);
+        CHANNEL_TYPES.add(CampfireChannel.class);
+        CHANNEL_TYPES.add(OpsGenieChannel.class);
+        CHANNEL_TYPES.add(PagerDutyChannel.class);
+        CHANNEL_TYPES.add(UserChannel.class);
+        CHANNEL_TYPES.add(VictorOpsChannel.class);
+        CHANNEL_TYPES.add(WebhookChannel.class);
+        CHANNEL_TYPES.add(xMattersChannel.class);
+        INFRA_TYPES.add(InfraMetricAlertCondition.class);
+        INFRA_TYPES.add(InfraProcessRunningAlertCondition.class);
+        INFRA_TYPES.add(InfraHostNotReportingAlertCondition.class);
+    }
+
     private List<AlertPolicy> policies = new ArrayList<AlertPolicy>();
     private List<AlertChannel> channels = new ArrayList<AlertChannel>();
     private List<AlertCondition> alertConditions = new ArrayList<AlertCondition>();
@@ -55,6 +91,13 @@ public class AlertConfiguration
     private List<NrqlAlertCondition> nrqlConditions = new ArrayList<NrqlAlertCondition>();
     private List<InfraAlertCondition> infraConditions = new ArrayList<InfraAlertCondition>();
 
+    private Map<String,AlertPolicy> policiesByName = new HashMap<String,AlertPolicy>();
+    private Map<Long,AlertPolicy> policiesById = new HashMap<Long,AlertPolicy>();
+    private Map<String,AlertChannel> channelsByName = new HashMap<String,AlertChannel>();
+    private Map<Long,AlertChannel> channelsById = new HashMap<Long,AlertChannel>();
+    private Map<Class<?>,List<AlertChannel>> channelsByType = new HashMap<Class<?>,List<AlertChannel>>();
+    private Map<Class<?>,List<InfraAlertCondition>> infraConditionsByType = new HashMap<Class<?>,List<InfraAlertCondition>>();
+
     /**
      * Default constructor.
      */
@@ -69,7 +112,9 @@ public class AlertConfiguration
     public void setAlertPolicies(List<AlertPolicy> policies)
     {
         this.policies.clear();
-        this.policies.addAll(policies);
+        this.policiesByName.clear();
+        this.policiesById.clear();
+        addAlertPolicies(policies);
     }
 
     /**
@@ -78,7 +123,11 @@ public class AlertConfiguration
      */
     public void addAlertPolicies(List<AlertPolicy> policies)
     {
-        this.policies.addAll(policies);
+        for(AlertPolicy policy : policies)
+        {
+            this.policies.add(policy);
+            indexPolicy(policy);
+        }
     }
 
     /**
@@ -87,7 +136,39 @@ public class AlertConfiguration
      */
     public List<AlertPolicy> getAlertPolicies()
     {
-        return policies;
+        return Collections.unmodifiableList(policies);
+    }
+
+    /**
+     * Returns the alert policy with the given name.
+     * @param name The name of the policy
+     * @return The alert policy, or null if the policy was not found
+     */
+    public AlertPolicy getAlertPolicy(String name)
+    {
+        AlertPolicy ret = policiesByName.get(name);
+        if(ret == null || !name.equals(ret.getName()))
+        {
+            reindexPolicies();
+            ret = policiesByName.get(name);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the alert policy with the given id.
+     * @param id The id of the policy
+     * @return The alert policy, or null if the policy was not found
+     */
+    public AlertPolicy getAlertPolicy(Long id)
+    {
+        AlertPolicy ret = policiesById.get(id);
+        if(ret == null || !id.equals(ret.getId()))
+        {
+            reindexPolicies();
+            ret = policiesById.get(id);
+        }
+        return ret;
     }
 
     /**
@@ -106,7 +187,10 @@ public class AlertConfiguration
     public void setAlertChannels(List<? extends AlertChannel> channels)
     {
         this.channels.clear();
-        this.channels.addAll(channels);
+        this.channelsByName.clear();
+        this.channelsById.clear();
+        this.channelsByType.clear();
+        addAlertChannels(channels);
     }
 
     /**
@@ -115,7 +199,11 @@ public class AlertConfiguration
      */
     public void addAlertChannels(List<? extends AlertChannel> channels)
     {
-        this.channels.addAll(channels);
+        for(AlertChannel channel : channels)
+        {
+            this.channels.add(channel);
+            indexChannel(channel);
+        }
     }
 
     /**
@@ -124,7 +212,39 @@ public class AlertConfiguration
      */
     public List<AlertChannel> getAlertChannels()
     {
-        return channels;
+        return Collections.unmodifiableList(channels);
+    }
+
+    /**
+     * Returns the first alert channel with the given name.
+     * @param name The name of the channel
+     * @return The alert channel, or null if the channel was not found
+     */
+    public AlertChannel getAlertChannel(String name)
+    {
+        AlertChannel ret = channelsByName.get(name);
+        if(ret == null || !name.equals(ret.getName()))
+        {
+            reindexChannels();
+            ret = channelsByName.get(name);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the alert channel with the given id.
+     * @param id The id of the channel
+     * @return The alert channel, or null if the channel was not found
+     */
+    public AlertChannel getAlertChannel(Long id)
+    {
+        AlertChannel ret = channelsById.get(id);
+        if(ret == null || !id.equals(ret.getId()))
+        {
+            reindexChannels();
+            ret = channelsById.get(id);
+        }
+        return ret;
     }
 
     /**
@@ -133,13 +253,7 @@ public class AlertConfiguration
      */
     public List<EmailChannel> getEmailChannels()
     {
-        List<EmailChannel> channels = new ArrayList<EmailChannel>();
-        for(AlertChannel channel : this.channels)
-        {
-            if(channel instanceof EmailChannel)
-                channels.add((EmailChannel)channel);
-        }
-        return channels;
+        return getChannels(EmailChannel.class);
     }
 
     /**
@@ -148,13 +262,7 @@ public class AlertConfiguration
      */
     public List<SlackChannel> getSlackChannels()
     {
-        List<SlackChannel> channels = new ArrayList<SlackChannel>();
-        for(AlertChannel channel : this.channels)
-        {
-            if(channel instanceof SlackChannel)
-                channels.add((SlackChannel)channel);
-        }
-        return channels;
+        return getChannels(SlackChannel.class);
     }
 
     /**
@@ -163,13 +271,7 @@ public class AlertConfiguration
      */
     public List<HipChatChannel> getHipChatChannels()
     {
-        List<HipChatChannel> channels = new ArrayList<HipChatChannel>();
-        for(AlertChannel channel : this.channels)
-        {
-            if(channel instanceof HipChatChannel)
-                channels.add((HipChatChannel)channel);
-        }
-        return channels;
+        return getChannels(HipChatChannel.class);
     }
 
     /**
@@ -178,13 +280,7 @@ public class AlertConfiguration
      */
     public List<CampfireChannel> getCampfireChannels()
     {
-        List<CampfireChannel> channels = new ArrayList<CampfireChannel>();
-        for(AlertChannel channel : this.channels)
-        {
-            if(channel instanceof CampfireChannel)
-                channels.add((CampfireChannel)channel);
-        }
-        return channels;
+        return getChannels(CampfireChannel.class);
     }
 
     /**
@@ -193,13 +289,7 @@ public class AlertConfiguration
      */
     public List<OpsGenieChannel> getOpsGenieChannels()
     {
-        List<OpsGenieChannel> channels = new ArrayList<OpsGenieChannel>();
-        for(AlertChannel channel : this.channels)
-        {
-            if(channel instanceof OpsGenieChannel)
-                channels.add((OpsGenieChannel)channel);
-        }
-        return channels;
+        return getChannels(OpsGenieChannel.class);
     }
 
     /**
@@ -208,13 +298,7 @@ public class AlertConfiguration
      */
     public List<PagerDutyChannel> getPagerDutyChannels()
     {
-        List<PagerDutyChannel> channels = new ArrayList<PagerDutyChannel>();
-        for(AlertChannel channel : this.channels)
-        {
-            if(channel instanceof PagerDutyChannel)
-                channels.add((PagerDutyChannel)channel);
-        }
-        return channels;
+        return getChannels(PagerDutyChannel.class);
     }
 
     /**
@@ -223,13 +307,7 @@ public class AlertConfiguration
      */
     public List<UserChannel> getUserChannels()
     {
-        List<UserChannel> channels = new ArrayList<UserChannel>();
-        for(AlertChannel channel : this.channels)
-        {
-            if(channel instanceof UserChannel)
-                channels.add((UserChannel)channel);
-        }
-        return channels;
+        return getChannels(UserChannel.class);
     }
 
     /**
@@ -238,13 +316,7 @@ public class AlertConfiguration
      */
     public List<VictorOpsChannel> getVictorOpsChannels()
     {
-        List<VictorOpsChannel> channels = new ArrayList<VictorOpsChannel>();
-        for(AlertChannel channel : this.channels)
-        {
-            if(channel instanceof VictorOpsChannel)
-                channels.add((VictorOpsChannel)channel);
-        }
-        return channels;
+        return getChannels(VictorOpsChannel.class);
     }
 
     /**
@@ -253,13 +325,7 @@ public class AlertConfiguration
      */
     public List<WebhookChannel> getWebhookChannels()
     {
-        List<WebhookChannel> channels = new ArrayList<WebhookChannel>();
-        for(AlertChannel channel : this.channels)
-        {
-            if(channel instanceof WebhookChannel)
-                channels.add((WebhookChannel)channel);
-        }
-        return channels;
+        return getChannels(WebhookChannel.class);
     }
 
     /**
@@ -268,13 +334,7 @@ public class AlertConfiguration
      */
     public List<xMattersChannel> getxMattersChannels()
     {
-        List<xMattersChannel> channels = new ArrayList<xMattersChannel>();
-        for(AlertChannel channel : this.channels)
-        {
-            if(channel instanceof xMattersChannel)
-                channels.add((xMattersChannel)channel);
-        }
-        return channels;
+        return getChannels(xMattersChannel.class);
     }
 
     /**
@@ -311,7 +371,7 @@ public class AlertConfiguration
      */
     public List<AlertCondition> getAlertConditions()
     {
-        return alertConditions;
+        return Collections.unmodifiableList(alertConditions);
     }
 
     /**
@@ -348,7 +408,7 @@ public class AlertConfiguration
      */
     public List<ExternalServiceAlertCondition> getExternalServiceAlertConditions()
     {
-        return externalServiceConditions;
+        return Collections.unmodifiableList(externalServiceConditions);
     }
 
     /**
@@ -385,7 +445,7 @@ public class AlertConfiguration
      */
     public List<NrqlAlertCondition> getNrqlAlertConditions()
     {
-        return nrqlConditions;
+        return Collections.unmodifiableList(nrqlConditions);
     }
 
     /**
@@ -404,7 +464,8 @@ public class AlertConfiguration
     public void setInfraAlertConditions(List<? extends InfraAlertCondition> infraConditions)
     {
         this.infraConditions.clear();
-        this.infraConditions.addAll(infraConditions);
+        this.infraConditionsByType.clear();
+        addInfraAlertConditions(infraConditions);
     }
 
     /**
@@ -413,7 +474,14 @@ public class AlertConfiguration
      */
     public void addInfraAlertConditions(List<? extends InfraAlertCondition> infraConditions)
     {
-        this.infraConditions.addAll(infraConditions);
+        for(InfraAlertCondition condition : infraConditions)
+        {
+            this.infraConditions.add(condition);
+            List<InfraAlertCondition> partition = getPartition(infraConditionsByType,
+                getPartitionType(INFRA_TYPES, condition.getClass()));
+            if(partition != null)
+                partition.add(condition);
+        }
     }
 
     /**
@@ -422,7 +490,7 @@ public class AlertConfiguration
      */
     public List<InfraAlertCondition> getInfraAlertConditions()
     {
-        return infraConditions;
+        return Collections.unmodifiableList(infraConditions);
     }
 
     /**
@@ -431,13 +499,7 @@ public class AlertConfiguration
      */
     public List<InfraMetricAlertCondition> getInfraMetricAlertConditions()
     {
-        List<InfraMetricAlertCondition> conditions = new ArrayList<InfraMetricAlertCondition>();
-        for(InfraAlertCondition condition : this.infraConditions)
-        {
-            if(condition instanceof InfraMetricAlertCondition)
-                conditions.add((InfraMetricAlertCondition)condition);
-        }
-        return conditions;
+        return getInfraConditions(InfraMetricAlertCondition.class);
     }
 
     /**
@@ -446,13 +508,7 @@ public class AlertConfiguration
      */
     public List<InfraProcessRunningAlertCondition> getInfraProcessRunningAlertConditions()
     {
-        List<InfraProcessRunningAlertCondition> conditions = new ArrayList<InfraProcessRunningAlertCondition>();
-        for(InfraAlertCondition condition : this.infraConditions)
-        {
-            if(condition instanceof InfraProcessRunningAlertCondition)
-                conditions.add((InfraProcessRunningAlertCondition)condition);
-        }
-        return conditions;
+        return getInfraConditions(InfraProcessRunningAlertCondition.class);
     }
 
     /**
@@ -461,13 +517,7 @@ public class AlertConfiguration
      */
     public List<InfraHostNotReportingAlertCondition> getInfraHostNotReportingAlertConditions()
     {
-        List<InfraHostNotReportingAlertCondition> conditions = new ArrayList<InfraHostNotReportingAlertCondition>();
-        for(InfraAlertCondition condition : this.infraConditions)
-        {
-            if(condition instanceof InfraHostNotReportingAlertCondition)
-                conditions.add((InfraHostNotReportingAlertCondition)condition);
-        }
-        return conditions;
+        return getInfraConditions(InfraHostNotReportingAlertCondition.class);
     }
 
     /**
@@ -479,6 +529,135 @@ public class AlertConfiguration
         return infraConditions.size();
     }
 
+    /**
+     * Rebuilds the name and id indexes of the policies and channels.
+     * <P>
+     * The lookups rebuild the indexes when they find a stale entry, so this only needs to be called
+     * to avoid that cost after the names or ids of many policies or channels have changed.
+     * </P>
+     */
+    public void reindex()
+    {
+        reindexPolicies();
+        reindexChannels();
+    }
+
+    /**
+     * Rebuilds the name and id indexes of the policies.
+     */
+    private void reindexPolicies()
+    {
+        policiesByName.clear();
+        policiesById.clear();
+        for(AlertPolicy policy : policies)
+            indexPolicy(policy);
+    }
+
+    /**
+     * Rebuilds the name and id indexes of the channels.
+     */
+    private void reindexChannels()
+    {
+        channelsByName.clear();
+        channelsById.clear();
+        for(AlertChannel channel : channels)
+        {
+            if(channel.getName() != null && !channelsByName.containsKey(channel.getName()))
+                channelsByName.put(channel.getName(), channel);
+            if(channel.getId() != null && !channelsById.containsKey(channel.getId()))
+                channelsById.put(channel.getId(), channel);
+        }
+    }
+
+    /**
+     * Adds the given policy to the indexes.
+     */
+    private void indexPolicy(AlertPolicy policy)
+    {
+        if(policy.getName() != null && !policiesByName.containsKey(policy.getName()))
+            policiesByName.put(policy.getName(), policy);
+        if(policy.getId() != null && !policiesById.containsKey(policy.getId()))
+            policiesById.put(policy.getId(), policy);
+    }
+
+    /**
+     * Adds the given channel to the indexes and the partition for its type.
+     */
+    private void indexChannel(AlertChannel channel)
+    {
+        if(channel.getName() != null && !channelsByName.containsKey(channel.getName()))
+            channelsByName.put(channel.getName(), channel);
+        if(channel.getId() != null && !channelsById.containsKey(channel.getId()))
+            channelsById.put(channel.getId(), channel);
+        List<AlertChannel> partition = getPartition(channelsByType,
+            getPartitionType(CHANNEL_TYPES, channel.getClass()));
+        if(partition != null)
+            partition.add(channel);
+    }
+
+    /**
+     * Returns the channels with the given type.
+     */
+    private <T extends AlertChannel> List<T> getChannels(Class<T> type)
+    {
+        List<AlertChannel> ret = channelsByType.get(type);
+        if(ret == null)
+            return Collections.<T>emptyList();
+        @SuppressWarnings("unchecked") // the partition only holds channels of the given type
+        List<T> channels = (List<T>)(List<?>)ret;
+        return Collections.unmodifiableList(channels);
+    }
+
+    /**
+     * Returns the infrastructure conditions with the given type.
+     */
+    private <T extends InfraAlertCondition> List<T> getInfraConditions(Class<T> type)
+    {
+        List<InfraAlertCondition> ret = infraConditionsByType.get(type);
+        if(ret == null)
+            return Collections.<T>emptyList();
+        @SuppressWarnings("unchecked") // the partition only holds conditions of the given type
+        List<T> conditions = (List<T>)(List<?>)ret;
+        return Collections.unmodifiableList(conditions);
+    }
+
+    /**
+     * Returns the partition for the given type, creating it if necessary.
+     */
+    private static <T> List<T> getPartition(Map<Class<?>,List<T>> partitions, Class<?> type)
+    {
+        if(type == null)
+            return null;
+        List<T> ret = partitions.get(type);
+        if(ret == null)
+        {
+            ret = new ArrayList<T>();
+            partitions.put(type, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the partition type of the given class, or null if it does not belong to any of the given types.
+     */
+    private static Class<?> getPartitionType(List<? extends Class<?>> types, Class<?> c)
+    {
+        Class<?> ret = PARTITION_TYPES.get(c);
+        if(ret == null)
+        {
+            for(Class<?> type : types)
+            {
+                if(type.isAssignableFrom(c))
+                {
+                    ret = type;
+                    PARTITION_TYPES.put(c, ret);
+                    break;
+                }
+            }
+        }
+        return ret;
+    }
+
     /**
      * Returns a string representation of the object.
      */
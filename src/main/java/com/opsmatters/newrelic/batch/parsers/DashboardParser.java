@@ -85,6 +85,19 @@ public class DashboardParser extends BaseParser
         return new DashboardParser().getDashboards(new Yaml().load(reader));
     }
 
+    /**
+     * Reads the dashboards from the given YAML document that has already been loaded.
+     * <P>
+     * The document is not modified so it can be shared between several readers.
+     * </P>
+     * @param document The YAML document
+     * @return The dashboards read from the YAML document
+     */
+    public static List<Dashboard> parseDocument(Object document)
+    {
+        return new DashboardParser().getDashboards(document);
+    }
+
     /**
      * Reads the dashboards from the given object.
      * @param o The dashboards as a map
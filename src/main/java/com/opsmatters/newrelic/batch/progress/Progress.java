@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.progress;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of the progress of a phase of a bulk operation.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class Progress
+{
+    private String phase;
+    private int total;
+    private int completed;
+    private int failed;
+    private long elapsed;
+    private boolean finished;
+
+    /**
+     * Constructor that takes the counts for the phase.
+     * @param phase The name of the phase, eg. "Creating alert policies"
+     * @param total The total number of items in the phase
+     * @param completed The number of items completed successfully
+     * @param failed The number of items that failed
+     * @param elapsed The time elapsed since the start of the phase in milliseconds
+     * @param finished <CODE>true</CODE> if the phase has finished
+     */
+    public Progress(String phase, int total, int completed, int failed, long elapsed, boolean finished)
+    {
+        this.phase = phase;
+        this.total = total;
+        this.completed = completed;
+        this.failed = failed;
+        this.elapsed = elapsed;
+        this.finished = finished;
+    }
+
+    /**
+     * Returns the name of the phase.
+     * @return The name of the phase
+     */
+    public String getPhase()
+    {
+        return phase;
+    }
+
+    /**
+     * Returns the total number of items in the phase.
+     * @return The total number of items in the phase
+     */
+    public int getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * Returns the number of items completed successfully.
+     * @return The number of items completed successfully
+     */
+    public int getCompleted()
+    {
+        return completed;
+    }
+
+    /**
+     * Returns the number of items that failed.
+     * @return The number of items that failed
+     */
+    public int getFailed()
+    {
+        return failed;
+    }
+
+    /**
+     * Returns the number of items remaining.
+     * @return The number of items remaining
+     */
+    public int getRemaining()
+    {
+        return Math.max(total-completed-failed, 0);
+    }
+
+    /**
+     * Returns the time elapsed since the start of the phase in milliseconds.
+     * @return The time elapsed since the start of the phase in milliseconds
+     */
+    public long getElapsed()
+    {
+        return elapsed;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the phase has finished.
+     * @return <CODE>true</CODE> if the phase has finished
+     */
+    public boolean isFinished()
+    {
+        return finished;
+    }
+
+    /**
+     * Returns the percentage of items processed.
+     * @return The percentage of items processed
+     */
+    public double getPercentComplete()
+    {
+        return total > 0 ? ((completed+failed)*100.0d)/total : 100.0d;
+    }
+
+    /**
+     * Returns the number of items processed per second.
+     * @return The number of items processed per second
+     */
+    public double getItemsPerSecond()
+    {
+        return elapsed > 0L ? ((completed+failed)*1000.0d)/elapsed : 0.0d;
+    }
+
+    /**
+     * Returns the estimated time remaining in milliseconds.
+     * @return The estimated time remaining in milliseconds, or -1 if it cannot be estimated yet
+     */
+    public long getEta()
+    {
+        if(finished)
+            return 0L;
+        double rate = getItemsPerSecond();
+        if(rate <= 0.0d)
+            return -1L;
+        return (long)((getRemaining()*1000.0d)/rate);
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        long eta = getEta();
+        return phase+": "+completed+"/"+total+" completed, "+failed+" failed, "+getRemaining()+" remaining, "
+            +String.format("%.1f", getItemsPerSecond())+"/s"
+            +(finished ? ", took "+TimeUnit.MILLISECONDS.toSeconds(elapsed)+"s"
+                : (eta >= 0L ? ", ETA "+TimeUnit.MILLISECONDS.toSeconds(eta)+"s" : ""));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.progress;
+
+/**
+ * Interface for a listener that receives the progress of a bulk operation.
+ * <P>
+ * Updates are sent periodically while the operation is running and once when it finishes.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public interface ProgressListener
+{
+    /**
+     * Called with the current progress of a bulk operation.
+     * @param progress The current progress of the operation
+     */
+    public void onProgress(Progress progress);
+}
\ No newline at end of file
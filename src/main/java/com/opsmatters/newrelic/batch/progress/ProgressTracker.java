@@ -0,0 +1,233 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.progress;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the progress of a phase of a bulk operation.
+ * <P>
+ * The listeners are notified at most once per notify interval, and a summary is logged
+ * at most once per log interval, instead of a log line for every item.
+ * The tracker can be updated concurrently from several threads.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class ProgressTracker
+{
+    private static final Logger logger = Logger.getLogger(ProgressTracker.class.getName());
+
+    /**
+     * The default interval between notifications to the listeners in milliseconds.
+     */
+    public static final long DEFAULT_NOTIFY_INTERVAL = 1000L;
+
+    /**
+     * The default interval between log summaries in milliseconds.
+     */
+    public static final long DEFAULT_LOG_INTERVAL = 10000L;
+
+    private String phase;
+    private int total;
+    private List<ProgressListener> listeners = new ArrayList<ProgressListener>();
+    private long notifyInterval = DEFAULT_NOTIFY_INTERVAL;
+    private long logInterval = DEFAULT_LOG_INTERVAL;
+    private long startTime;
+    private AtomicInteger started = new AtomicInteger();
+    private AtomicInteger completed = new AtomicInteger();
+    private AtomicInteger failed = new AtomicInteger();
+    private AtomicLong lastNotify = new AtomicLong();
+    private AtomicLong lastLog = new AtomicLong();
+    private volatile boolean finished = false;
+
+    /**
+     * Constructor that takes a phase and the total number of items.
+     * @param phase The name of the phase, eg. "Creating alert policies"
+     * @param total The total number of items in the phase
+     */
+    public ProgressTracker(String phase, int total)
+    {
+        this.phase = phase;
+        this.total = total;
+        this.startTime = System.currentTimeMillis();
+        this.lastNotify.set(startTime);
+        this.lastLog.set(startTime);
+    }
+
+    /**
+     * Returns the name of the phase.
+     * @return The name of the phase
+     */
+    public String getPhase()
+    {
+        return phase;
+    }
+
+    /**
+     * Adds the given listener to be notified of progress.
+     * @param listener The listener to add
+     */
+    public void addListener(ProgressListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Adds the given listeners to be notified of progress.
+     * @param listeners The listeners to add
+     */
+    public void addListeners(List<ProgressListener> listeners)
+    {
+        this.listeners.addAll(listeners);
+    }
+
+    /**
+     * Sets the minimum interval between notifications to the listeners.
+     * @param notifyInterval The minimum interval between notifications in milliseconds
+     */
+    public void setNotifyInterval(long notifyInterval)
+    {
+        this.notifyInterval = notifyInterval;
+    }
+
+    /**
+     * Sets the minimum interval between log summaries.
+     * @param logInterval The minimum interval between log summaries in milliseconds
+     */
+    public void setLogInterval(long logInterval)
+    {
+        this.logInterval = logInterval;
+    }
+
+    /**
+     * Called when the processing of an item has started.
+     * <P>
+     * Any item started but not completed when the phase finishes is counted as failed.
+     * </P>
+     */
+    public void started()
+    {
+        started.incrementAndGet();
+    }
+
+    /**
+     * Called when an item has been completed successfully.
+     */
+    public void completed()
+    {
+        completed.incrementAndGet();
+        update();
+    }
+
+    /**
+     * Called when an item has failed.
+     */
+    public void failed()
+    {
+        failed.incrementAndGet();
+        update();
+    }
+
+    /**
+     * Called when the phase has finished, successfully or not.
+     * <P>
+     * Sends the final progress to the listeners and logs the final summary.
+     * </P>
+     */
+    public void finish()
+    {
+        if(finished)
+            return;
+        finished = true;
+
+        int unfinished = started.get()-completed.get()-failed.get();
+        if(unfinished > 0)
+            failed.addAndGet(unfinished);
+
+        Progress progress = getProgress();
+        sendProgress(progress);
+        if(progress.getTotal() > 0)
+            logger.info(progress.toString());
+    }
+
+    /**
+     * Returns the current progress of the phase.
+     * @return The current progress of the phase
+     */
+    public Progress getProgress()
+    {
+        return new Progress(phase, total, completed.get(), failed.get(),
+            System.currentTimeMillis()-startTime, finished);
+    }
+
+    /**
+     * Notifies the listeners and logs a summary if the intervals have elapsed.
+     */
+    private void update()
+    {
+        long now = System.currentTimeMillis();
+        Progress progress = null;
+
+        long last = lastNotify.get();
+        if(listeners.size() > 0 && now-last >= notifyInterval && lastNotify.compareAndSet(last, now))
+        {
+            progress = getProgress();
+            sendProgress(progress);
+        }
+
+        last = lastLog.get();
+        if(now-last >= logInterval && lastLog.compareAndSet(last, now))
+        {
+            if(progress == null)
+                progress = getProgress();
+            logger.info(progress.toString());
+        }
+    }
+
+    /**
+     * Sends the given progress to the listeners.
+     */
+    private void sendProgress(Progress progress)
+    {
+        for(ProgressListener listener : listeners)
+        {
+            try
+            {
+                listener.onProgress(progress);
+            }
+            catch(RuntimeException e)
+            {
+                logger.warning("Progress listener failed: "+e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return getProgress().toString();
+    }
+}
\ No newline at end of file
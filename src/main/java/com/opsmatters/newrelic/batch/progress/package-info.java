@@ -0,0 +1,4 @@
+/**
+ * The progress classes used for New Relic.
+ */
+package com.opsmatters.newrelic.batch.progress;
\ No newline at end of file
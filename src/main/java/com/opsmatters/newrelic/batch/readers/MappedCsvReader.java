@@ -0,0 +1,384 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.readers;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.batch.templates.FileTemplate;
+import com.opsmatters.newrelic.batch.templates.TemplateColumn;
+
+/**
+ * Reads the rows of a CSV file by memory-mapping it.
+ * <P>
+ * The fields of each row are found as offsets into the mapped file, and a string is only created
+ * for the columns that will be read, eg. the columns of a template. The other fields are left as
+ * <CODE>null</CODE>. Quoted fields may contain separators, line breaks, tabs and doubled quotes.
+ * A UTF-8 byte order mark at the start of the file is skipped.
+ * </P>
+ * <P>
+ * Large files are mapped in windows, so a single row cannot be longer than the window.
+ * The headers and rows are returned in the same form as an <CODE>InputFileReader</CODE>
+ * so they can be passed directly to the parsers.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class MappedCsvReader
+{
+    private static final Logger logger = Logger.getLogger(MappedCsvReader.class.getName());
+
+    /**
+     * The default size of the window of the file mapped at a time.
+     */
+    public static final int DEFAULT_WINDOW = 256*1024*1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File file;
+    private byte separator = ',';
+    private int window = DEFAULT_WINDOW;
+    private Set<String> columns;
+    private String[] headers;
+    private List<String[]> rows;
+    private boolean[] wanted;
+
+    // The fields of the current row
+    private int fields = 0;
+    private int[] starts = new int[32];
+    private int[] ends = new int[32];
+    private boolean[] escaped = new boolean[32];
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Constructor that takes a file.
+     * @param file The CSV file to read
+     */
+    public MappedCsvReader(File file)
+    {
+        if(file == null)
+            throw new IllegalArgumentException("null file");
+        this.file = file;
+    }
+
+    /**
+     * Sets the character used to separate the fields.
+     * @param separator The character used to separate the fields, which must be ASCII
+     */
+    public void setSeparator(char separator)
+    {
+        if(separator > 127 || separator == '"' || separator == '\n' || separator == '\r')
+            throw new IllegalArgumentException("invalid separator: "+separator);
+        this.separator = (byte)separator;
+    }
+
+    /**
+     * Sets the size of the window of the file mapped at a time.
+     * @param window The size of the window in bytes
+     */
+    public void setWindow(int window)
+    {
+        if(window < 1024)
+            throw new IllegalArgumentException("window must be at least 1024: "+window);
+        this.window = window;
+    }
+
+    /**
+     * Sets the headers of the columns that will be read, ignoring case.
+     * @param columns The headers of the columns that will be read, or null to read all the columns
+     */
+    public void setColumns(Collection<String> columns)
+    {
+        if(columns == null)
+        {
+            this.columns = null;
+            return;
+        }
+
+        this.columns = new HashSet<String>();
+        for(String column : columns)
+            this.columns.add(column.toLowerCase());
+    }
+
+    /**
+     * Adds the headers of the columns of the given templates to the columns that will be read.
+     * @param templates The templates with the columns that will be read
+     */
+    public void addTemplates(FileTemplate... templates)
+    {
+        if(columns == null)
+            columns = new HashSet<String>();
+        for(FileTemplate template : templates)
+        {
+            for(TemplateColumn column : template.getColumns().values())
+                columns.add(column.getHeader().toLowerCase());
+        }
+    }
+
+    /**
+     * Reads the headers and rows from the file.
+     * @throws IOException if there is a problem reading the file
+     */
+    public void parse() throws IOException
+    {
+        long start = System.currentTimeMillis();
+        headers = null;
+        rows = new ArrayList<String[]>();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            long base = 0L;
+            while(base < size)
+            {
+                int length = (int)Math.min(window, size-base);
+                boolean last = base+length == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+                ByteBuffer slice = buffer.duplicate();
+
+                // Skip the UTF-8 byte order mark at the start of the file
+                int pos = 0;
+                if(base == 0L && isBom(buffer, length))
+                    pos = 3;
+
+                int begin = pos;
+                while(pos < length)
+                {
+                    int next = parseRow(buffer, pos, length, last);
+                    if(next < 0)
+                        break;
+                    addRow(slice);
+                    pos = next;
+                }
+
+                // Map the next window from the start of a row that was not completed
+                if(pos == begin && !last)
+                    throw new IOException("row longer than "+window+" bytes at offset "+base+" in file: "+file.getName());
+                base += pos;
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        if(headers == null)
+            headers = new String[0];
+        logger.fine("Read CSV file: "+file.getName()+" headers="+headers.length
+            +" rows="+rows.size()+" duration="+(System.currentTimeMillis()-start));
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the given buffer starts with a UTF-8 byte order mark.
+     */
+    private static boolean isBom(ByteBuffer buffer, int limit)
+    {
+        return limit >= 3 && buffer.get(0) == (byte)0xEF && buffer.get(1) == (byte)0xBB && buffer.get(2) == (byte)0xBF;
+    }
+
+    /**
+     * Finds the fields of the row starting at the given position.
+     * @return The position after the row, or -1 if the row continues beyond the window
+     */
+    private int parseRow(ByteBuffer buffer, int pos, int limit, boolean last) throws IOException
+    {
+        fields = 0;
+        int i = pos;
+        while(true)
+        {
+            int start;
+            int end;
+            boolean quoted = false;
+            if(i < limit && buffer.get(i) == '"')
+            {
+                // Find the closing quote, skipping doubled quotes
+                start = ++i;
+                while(true)
+                {
+                    if(i >= limit)
+                    {
+                        if(!last)
+                            return -1;
+                        throw new IOException("unterminated quoted field in file: "+file.getName());
+                    }
+                    if(buffer.get(i) == '"')
+                    {
+                        if(i+1 >= limit && !last)
+                            return -1;
+                        if(i+1 < limit && buffer.get(i+1) == '"')
+                        {
+                            quoted = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    ++i;
+                }
+                end = i++;
+
+                // Ignore anything between the closing quote and the separator
+                while(i < limit && buffer.get(i) != separator && buffer.get(i) != '\n')
+                    ++i;
+            }
+            else
+            {
+                start = i;
+                while(i < limit && buffer.get(i) != separator && buffer.get(i) != '\n')
+                    ++i;
+                end = i;
+                if(end > start && buffer.get(end-1) == '\r')
+                    --end;
+            }
+
+            if(i >= limit && !last)
+                return -1;
+            addField(start, end, quoted);
+
+            if(i >= limit)
+                return i;
+            if(buffer.get(i++) == '\n')
+                return i;
+        }
+    }
+
+    /**
+     * Adds the offsets of a field to the current row.
+     */
+    private void addField(int start, int end, boolean quoted)
+    {
+        if(fields == starts.length)
+        {
+            starts = Arrays.copyOf(starts, fields*2);
+            ends = Arrays.copyOf(ends, fields*2);
+            escaped = Arrays.copyOf(escaped, fields*2);
+        }
+        starts[fields] = start;
+        ends[fields] = end;
+        escaped[fields] = quoted;
+        ++fields;
+    }
+
+    /**
+     * Creates the headers or a row from the fields of the current row.
+     */
+    private void addRow(ByteBuffer buffer)
+    {
+        // Skip blank lines
+        if(fields == 1 && starts[0] == ends[0])
+            return;
+
+        if(headers == null)
+        {
+            headers = new String[fields];
+            wanted = new boolean[fields];
+            for(int i = 0; i < fields; i++)
+            {
+                headers[i] = getString(buffer, i);
+                wanted[i] = columns == null || columns.contains(headers[i].trim().toLowerCase());
+            }
+            return;
+        }
+
+        String[] row = new String[headers.length];
+        for(int i = 0; i < fields && i < row.length; i++)
+        {
+            if(wanted[i])
+                row[i] = getString(buffer, i);
+        }
+        rows.add(row);
+    }
+
+    /**
+     * Returns the given field of the current row as a string.
+     */
+    private String getString(ByteBuffer buffer, int field)
+    {
+        int start = starts[field];
+        int length = ends[field]-start;
+        if(length == 0)
+            return "";
+        if(scratch.length < length)
+            scratch = new byte[Math.max(length, scratch.length*2)];
+
+        buffer.limit(start+length);
+        buffer.position(start);
+        buffer.get(scratch, 0, length);
+        buffer.limit(buffer.capacity());
+
+        // Replace doubled quotes with a single quote
+        if(escaped[field])
+        {
+            int n = 0;
+            for(int i = 0; i < length; i++)
+            {
+                scratch[n++] = scratch[i];
+                if(scratch[i] == '"' && i+1 < length && scratch[i+1] == '"')
+                    ++i;
+            }
+            length = n;
+        }
+
+        return new String(scratch, 0, length, UTF_8);
+    }
+
+    /**
+     * Returns the headers of the file.
+     * @return The headers of the file
+     */
+    public String[] getHeaders()
+    {
+        return headers;
+    }
+
+    /**
+     * Returns the rows of the file, with <CODE>null</CODE> for the fields of the columns that are not read.
+     * @return The rows of the file
+     */
+    public List<String[]> getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "MappedCsvReader [file="+file.getName()
+            +", separator="+(char)separator
+            +", window="+window
+            +", columns="+(columns != null ? columns.size() : "all")
+            +", rows="+(rows != null ? rows.size() : 0)
+            +"]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,4 @@
+/**
+ * The reader classes used for New Relic.
+ */
+package com.opsmatters.newrelic.batch.readers;
\ No newline at end of file
@@ -63,6 +63,17 @@ public class AlertPolicyRenderer extends OutputFileRenderer<AlertPolicy>
         new AlertPolicyRenderer().render(channels, policies, writer);
     }
 
+    /**
+     * Returns the lines for the given alert policies, including the headers.
+     * @param channels The set of alert channels for the policies
+     * @param policies The alert policies to be serialized
+     * @return The lines representing the alert policies
+     */
+    public static List<String[]> getLines(List<AlertChannel> channels, List<AlertPolicy> policies)
+    {
+        return new AlertPolicyRenderer().toLines(channels, policies);
+    }
+
     /**
      * Writes the given alert policies to a writer.
      * @param channels The set of alert channels for the policies
@@ -71,6 +82,17 @@ public class AlertPolicyRenderer extends OutputFileRenderer<AlertPolicy>
      * @throws IOException if there was an error writing the alert policies
      */
     public void render(List<AlertChannel> channels, List<AlertPolicy> policies, OutputFileWriter writer) throws IOException
+    {
+        writer.write(toLines(channels, policies));
+    }
+
+    /**
+     * Serializes the given alert policies to lines, including the headers.
+     * @param channels The set of alert channels for the policies
+     * @param policies The alert policies to be serialized
+     * @return The lines representing the alert policies
+     */
+    public List<String[]> toLines(List<AlertChannel> channels, List<AlertPolicy> policies)
     {
         List<String[]> lines = new ArrayList<String[]>();
         FileTemplate template = TemplateFactory.getTemplate(getClass());
@@ -80,7 +102,7 @@ public class AlertPolicyRenderer extends OutputFileRenderer<AlertPolicy>
             lines.add(serialize(channels, template, policy));
 
         logger.fine("Rendering "+template.getType()+" file: headers="+headers.length+" lines="+lines.size());
-        writer.write(lines);
+        return lines;
     }
 
     /**
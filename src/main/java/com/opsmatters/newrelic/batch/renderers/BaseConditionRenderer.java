@@ -51,6 +51,17 @@ public abstract class BaseConditionRenderer<T extends BaseCondition> extends Out
      * @throws IOException if there was an error writing the alert conditions
      */
     public void render(List<AlertPolicy> policies, List<T> conditions, OutputFileWriter writer) throws IOException
+    {
+        writer.write(toLines(policies, conditions));
+    }
+
+    /**
+     * Serializes the given alert conditions to lines, including the headers.
+     * @param policies The set of alert policies for the conditions
+     * @param conditions The alert conditions to be serialized
+     * @return The lines representing the alert conditions
+     */
+    public List<String[]> toLines(List<AlertPolicy> policies, List<T> conditions)
     {
         List<String[]> lines = new ArrayList<String[]>();
         FileTemplate template = TemplateFactory.getTemplate(getClass());
@@ -69,7 +80,7 @@ public abstract class BaseConditionRenderer<T extends BaseCondition> extends Out
         }
 
         logger.fine("Rendering "+template.getType()+" file: headers="+headers.length+" lines="+lines.size());
-        writer.write(lines);
+        return lines;
     }
 
     /**
@@ -67,6 +67,18 @@ public class ExternalServiceAlertConditionRenderer extends MetricConditionRender
         new ExternalServiceAlertConditionRenderer().render(policies, entities, conditions, writer);
     }
 
+    /**
+     * Returns the lines for the given alert conditions, including the headers.
+     * @param policies The set of alert policies for the conditions
+     * @param entities The set of entities for the condition
+     * @param conditions The alert conditions to be serialized
+     * @return The lines representing the alert conditions
+     */
+    public static List<String[]> getLines(List<AlertPolicy> policies, List<Entity> entities, List<ExternalServiceAlertCondition> conditions)
+    {
+        return new ExternalServiceAlertConditionRenderer().toLines(policies, entities, conditions);
+    }
+
     /**
      * Serializes the alert condition to a line.
      * @param entities The set of entities for the condition
@@ -64,6 +64,17 @@ public class InfraMetricAlertConditionRenderer extends BaseConditionRenderer<Inf
         new InfraMetricAlertConditionRenderer().render(policies, conditions, writer);
     }
 
+    /**
+     * Returns the lines for the given alert conditions, including the headers.
+     * @param policies The set of alert policies for the conditions
+     * @param conditions The alert conditions to be serialized
+     * @return The lines representing the alert conditions
+     */
+    public static List<String[]> getLines(List<AlertPolicy> policies, List<InfraMetricAlertCondition> conditions)
+    {
+        return new InfraMetricAlertConditionRenderer().toLines(policies, conditions);
+    }
+
     /**
      * Serializes the alert condition to a line.
      * @param template The template with the columns
@@ -55,6 +55,18 @@ public abstract class MetricConditionRenderer<T extends MetricCondition> extends
      */
     public void render(List<AlertPolicy> policies, List<Entity> entities, List<T> conditions, OutputFileWriter writer)
         throws IOException
+    {
+        writer.write(toLines(policies, entities, conditions));
+    }
+
+    /**
+     * Serializes the given alert conditions to lines, including the headers.
+     * @param policies The set of alert policies for the conditions
+     * @param entities The set of entities for the condition
+     * @param conditions The alert conditions to be serialized
+     * @return The lines representing the alert conditions
+     */
+    public List<String[]> toLines(List<AlertPolicy> policies, List<Entity> entities, List<T> conditions)
     {
         List<String[]> lines = new ArrayList<String[]>();
         FileTemplate template = TemplateFactory.getTemplate(getClass());
@@ -74,7 +86,7 @@ public abstract class MetricConditionRenderer<T extends MetricCondition> extends
         }
 
         logger.fine("Rendering "+template.getType()+" file: headers="+headers.length+" lines="+lines.size());
-        writer.write(lines);
+        return lines;
     }
 
     /**
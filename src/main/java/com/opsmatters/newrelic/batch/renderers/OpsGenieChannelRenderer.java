@@ -62,6 +62,16 @@ public class OpsGenieChannelRenderer extends OutputFileRenderer<OpsGenieChannel>
         new OpsGenieChannelRenderer().render(channels, writer);
     }
 
+    /**
+     * Returns the lines for the given alert channels, including the headers.
+     * @param channels The alert channels to be serialized
+     * @return The lines representing the alert channels
+     */
+    public static List<String[]> getLines(List<OpsGenieChannel> channels)
+    {
+        return new OpsGenieChannelRenderer().toLines(channels);
+    }
+
     /**
      * Serializes the alert channel to a line.
      * @param template The file instance with the columns
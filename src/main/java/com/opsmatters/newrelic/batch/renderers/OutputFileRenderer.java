@@ -41,6 +41,16 @@ public abstract class OutputFileRenderer<T>
      * @throws IOException if there was an error writing the items
      */
     public void render(List<T> items, OutputFileWriter writer) throws IOException
+    {
+        writer.write(toLines(items));
+    }
+
+    /**
+     * Serializes the given items to lines, including the headers.
+     * @param items The items to be serialized
+     * @return The lines representing the items
+     */
+    public List<String[]> toLines(List<T> items)
     {
         List<String[]> lines = new ArrayList<String[]>();
         FileTemplate template = TemplateFactory.getTemplate(getClass());
@@ -50,7 +60,7 @@ public abstract class OutputFileRenderer<T>
             lines.add(serialize(template, item));
 
         logger.fine("Rendering "+template.getType()+" file: headers="+headers.length+" lines="+lines.size());
-        writer.write(lines);
+        return lines;
     }
 
     /**
@@ -62,6 +62,16 @@ public class SlackChannelRenderer extends OutputFileRenderer<SlackChannel>
         new SlackChannelRenderer().render(channels, writer);
     }
 
+    /**
+     * Returns the lines for the given alert channels, including the headers.
+     * @param channels The alert channels to be serialized
+     * @return The lines representing the alert channels
+     */
+    public static List<String[]> getLines(List<SlackChannel> channels)
+    {
+        return new SlackChannelRenderer().toLines(channels);
+    }
+
     /**
      * Serializes the alert channel to a line.
      * @param template The template with the columns
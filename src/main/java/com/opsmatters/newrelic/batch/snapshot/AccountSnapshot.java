@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.snapshot;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.api.model.Entity;
+import com.opsmatters.newrelic.api.model.insights.Dashboard;
+import com.opsmatters.newrelic.batch.model.AlertConfiguration;
+
+/**
+ * Represents the alert configuration and dashboards of an account at a point in time.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class AccountSnapshot
+{
+    private static final Logger logger = Logger.getLogger(AccountSnapshot.class.getName());
+
+    private AlertConfiguration config;
+    private List<Entity> entities = new ArrayList<Entity>();
+    private List<Dashboard> dashboards = new ArrayList<Dashboard>();
+    private long created = System.currentTimeMillis();
+    private long duration = 0L;
+
+    /**
+     * Constructor that takes the alert configuration.
+     * @param config The alert configuration of the account
+     */
+    public AccountSnapshot(AlertConfiguration config)
+    {
+        this.config = config;
+    }
+
+    /**
+     * Returns the alert configuration of the account.
+     * @return The alert configuration of the account
+     */
+    public AlertConfiguration getAlertConfiguration()
+    {
+        return config;
+    }
+
+    /**
+     * Sets the entities of the account.
+     * @param entities The entities of the account
+     */
+    public void setEntities(List<Entity> entities)
+    {
+        this.entities.clear();
+        this.entities.addAll(entities);
+    }
+
+    /**
+     * Returns the entities of the account.
+     * @return The entities of the account
+     */
+    public List<Entity> getEntities()
+    {
+        return entities;
+    }
+
+    /**
+     * Sets the dashboards of the account.
+     * @param dashboards The dashboards of the account
+     */
+    public void setDashboards(List<Dashboard> dashboards)
+    {
+        this.dashboards.clear();
+        this.dashboards.addAll(dashboards);
+    }
+
+    /**
+     * Returns the dashboards of the account.
+     * @return The dashboards of the account
+     */
+    public List<Dashboard> getDashboards()
+    {
+        return dashboards;
+    }
+
+    /**
+     * Returns the time the snapshot was created.
+     * @return The time the snapshot was created
+     */
+    public long getCreated()
+    {
+        return created;
+    }
+
+    /**
+     * Sets the time taken to take the snapshot.
+     * @param duration The time taken to take the snapshot in milliseconds
+     */
+    public void setDuration(long duration)
+    {
+        this.duration = duration;
+    }
+
+    /**
+     * Returns the time taken to take the snapshot.
+     * @return The time taken to take the snapshot in milliseconds
+     */
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "AccountSnapshot [channels="+config.numAlertChannels()
+            +", policies="+config.numAlertPolicies()
+            +", alertConditions="+config.numAlertConditions()
+            +", externalServiceConditions="+config.numExternalServiceAlertConditions()
+            +", nrqlConditions="+config.numNrqlAlertConditions()
+            +", infraConditions="+config.numInfraAlertConditions()
+            +", entities="+entities.size()
+            +", dashboards="+dashboards.size()
+            +", duration="+duration
+            +"]";
+    }
+}
\ No newline at end of file
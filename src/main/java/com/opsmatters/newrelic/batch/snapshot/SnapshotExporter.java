@@ -0,0 +1,663 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.snapshot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+import com.opsmatters.core.documents.Workbook;
+import com.opsmatters.newrelic.api.model.Entity;
+import com.opsmatters.newrelic.api.model.applications.Application;
+import com.opsmatters.newrelic.api.model.servers.Server;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.api.model.alerts.conditions.AlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ExternalServiceAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.NrqlAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraAlertCondition;
+import com.opsmatters.newrelic.api.model.insights.Dashboard;
+import com.opsmatters.newrelic.batch.AlertManager;
+import com.opsmatters.newrelic.batch.DashboardManager;
+import com.opsmatters.newrelic.batch.model.AlertConfiguration;
+import com.opsmatters.newrelic.batch.generators.AlertFileGenerator;
+
+/**
+ * Takes a snapshot of all the alert objects and dashboards of an account.
+ * <P>
+ * The list calls are made concurrently, with a separate call for each policy
+ * and family of alert conditions. Each sheet is written as soon as the objects
+ * it needs have been retrieved, while the remaining calls are still in progress.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class SnapshotExporter
+{
+    private static final Logger logger = Logger.getLogger(SnapshotExporter.class.getName());
+
+    /**
+     * The default number of concurrent API calls.
+     */
+    public static final int DEFAULT_THREADS = 8;
+
+    /**
+     * The name of the file containing the dashboards.
+     */
+    public static final String DASHBOARD_FILENAME = "dashboards.yml";
+
+    private AlertManager alertManager;
+    private DashboardManager dashboardManager;
+    private int threads = DEFAULT_THREADS;
+
+    /**
+     * Constructor that takes the managers.
+     * @param alertManager The manager used to retrieve the alert objects
+     * @param dashboardManager The manager used to retrieve the dashboards, or null to exclude the dashboards
+     */
+    public SnapshotExporter(AlertManager alertManager, DashboardManager dashboardManager)
+    {
+        if(alertManager == null)
+            throw new IllegalArgumentException("null alert manager");
+        this.alertManager = alertManager;
+        this.dashboardManager = dashboardManager;
+    }
+
+    /**
+     * Sets the number of concurrent API calls.
+     * @param threads The number of concurrent API calls
+     */
+    public void setThreads(int threads)
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1: "+threads);
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of concurrent API calls.
+     * @return The number of concurrent API calls
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Returns a snapshot of the account without writing any files.
+     * @return The snapshot of the account
+     * @throws InterruptedException if the thread is interrupted while waiting for the API calls
+     */
+    public AccountSnapshot getSnapshot() throws InterruptedException
+    {
+        try
+        {
+            return export(null);
+        }
+        catch(IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the account and writes each object type as a worksheet to the given XLS or XLSX file.
+     * <P>
+     * The dashboards are written to a YAML file in the same directory.
+     * </P>
+     * @param file The workbook file to write
+     * @return The snapshot of the account
+     * @throws IOException if there was an error writing the file
+     * @throws InterruptedException if the thread is interrupted while waiting for the API calls
+     */
+    public AccountSnapshot exportWorkbook(File file) throws IOException, InterruptedException
+    {
+        AccountSnapshot ret = export(new WorkbookOutput(file));
+        logger.info("Exported account snapshot to workbook: "+file.getName());
+        return ret;
+    }
+
+    /**
+     * Takes a snapshot of the account and writes each object type as a separate file to the given directory.
+     * <P>
+     * The name of each file is derived from the worksheet name, eg. "email-channels.csv".
+     * The files are written in the background while the remaining API calls are in progress.
+     * </P>
+     * @param directory The directory to write the files to
+     * @param extension The extension of the files, either "csv", "xls" or "xlsx"
+     * @return The snapshot of the account
+     * @throws IOException if there was an error writing the files
+     * @throws InterruptedException if the thread is interrupted while waiting for the API calls
+     */
+    public AccountSnapshot exportFiles(File directory, String extension) throws IOException, InterruptedException
+    {
+        if(!directory.exists() && !directory.mkdirs())
+            throw new IOException("unable to create directory: "+directory.getPath());
+
+        AccountSnapshot ret = export(new DirectoryOutput(directory, extension));
+        logger.info("Exported account snapshot to directory: "+directory.getPath());
+        return ret;
+    }
+
+    /**
+     * Takes a snapshot of the account, writing each sheet to the given output as soon as it is available.
+     * @param output The output for the sheets, or null if the sheets should not be written
+     * @return The snapshot of the account
+     */
+    private AccountSnapshot export(Output output) throws IOException, InterruptedException
+    {
+        long start = System.currentTimeMillis();
+        AlertConfiguration config = new AlertConfiguration();
+        AccountSnapshot ret = new AccountSnapshot(config);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try
+        {
+            // Start the top-level list calls
+            Future<List<AlertPolicy>> policiesFuture = executor.submit(new Callable<List<AlertPolicy>>()
+            {
+                public List<AlertPolicy> call() throws Exception
+                {
+                    return alertManager.getAlertPolicies();
+                }
+            });
+            Future<List<AlertChannel>> channelsFuture = executor.submit(new Callable<List<AlertChannel>>()
+            {
+                public List<AlertChannel> call() throws Exception
+                {
+                    return alertManager.getAlertChannels();
+                }
+            });
+            Future<List<Application>> applicationsFuture = executor.submit(new Callable<List<Application>>()
+            {
+                public List<Application> call() throws Exception
+                {
+                    return alertManager.getApplications();
+                }
+            });
+            Future<List<Server>> serversFuture = executor.submit(new Callable<List<Server>>()
+            {
+                public List<Server> call() throws Exception
+                {
+                    return alertManager.getServers();
+                }
+            });
+            Future<List<Dashboard>> dashboardsFuture = null;
+            if(dashboardManager != null)
+            {
+                dashboardsFuture = executor.submit(new Callable<List<Dashboard>>()
+                {
+                    public List<Dashboard> call() throws Exception
+                    {
+                        return dashboardManager.getDashboards(false);
+                    }
+                });
+            }
+
+            // Start the condition list calls for each policy
+            final List<AlertPolicy> policies = get(policiesFuture);
+            List<Future<List<AlertCondition>>> alertFutures = new ArrayList<Future<List<AlertCondition>>>();
+            List<Future<List<ExternalServiceAlertCondition>>> externalServiceFutures = new ArrayList<Future<List<ExternalServiceAlertCondition>>>();
+            List<Future<List<NrqlAlertCondition>>> nrqlFutures = new ArrayList<Future<List<NrqlAlertCondition>>>();
+            List<Future<List<InfraAlertCondition>>> infraFutures = new ArrayList<Future<List<InfraAlertCondition>>>();
+            for(AlertPolicy policy : policies)
+            {
+                final List<AlertPolicy> policyList = Collections.singletonList(policy);
+                alertFutures.add(executor.submit(new Callable<List<AlertCondition>>()
+                {
+                    public List<AlertCondition> call() throws Exception
+                    {
+                        return alertManager.getAlertConditions(policyList);
+                    }
+                }));
+                externalServiceFutures.add(executor.submit(new Callable<List<ExternalServiceAlertCondition>>()
+                {
+                    public List<ExternalServiceAlertCondition> call() throws Exception
+                    {
+                        return alertManager.getExternalServiceAlertConditions(policyList);
+                    }
+                }));
+                nrqlFutures.add(executor.submit(new Callable<List<NrqlAlertCondition>>()
+                {
+                    public List<NrqlAlertCondition> call() throws Exception
+                    {
+                        return alertManager.getNrqlAlertConditions(policyList);
+                    }
+                }));
+                infraFutures.add(executor.submit(new Callable<List<InfraAlertCondition>>()
+                {
+                    public List<InfraAlertCondition> call() throws Exception
+                    {
+                        return alertManager.getInfraAlertConditions(policyList);
+                    }
+                }));
+            }
+
+            // Start the detail calls for each dashboard
+            List<Future<Dashboard>> dashboardFutures = new ArrayList<Future<Dashboard>>();
+            if(dashboardsFuture != null)
+            {
+                for(final Dashboard dashboard : get(dashboardsFuture))
+                {
+                    dashboardFutures.add(executor.submit(new Callable<Dashboard>()
+                    {
+                        public Dashboard call() throws Exception
+                        {
+                            return dashboardManager.getDashboard(dashboard.getId());
+                        }
+                    }));
+                }
+            }
+
+            // Collect the results in order, writing each sheet as it becomes available
+            final List<AlertChannel> channels = get(channelsFuture);
+            config.setAlertChannels(channels);
+            config.setAlertPolicies(policies);
+            if(output != null)
+                writeChannels(output, config, channels);
+
+            final List<Entity> entities = new ArrayList<Entity>();
+            entities.addAll(get(applicationsFuture));
+            entities.addAll(get(serversFuture));
+            ret.setEntities(entities);
+
+            final List<AlertCondition> alertConditions = new ArrayList<AlertCondition>();
+            for(Future<List<AlertCondition>> future : alertFutures)
+                alertConditions.addAll(get(future));
+            config.setAlertConditions(alertConditions);
+            if(output != null)
+            {
+                output.write(AlertFileGenerator.ALERT_CONDITION_SHEET, new Sheet()
+                {
+                    public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+                    {
+                        alertManager.writeAlertConditions(policies, entities, alertConditions, filename, worksheet, stream, workbook);
+                    }
+                });
+            }
+
+            final List<ExternalServiceAlertCondition> externalServiceConditions = new ArrayList<ExternalServiceAlertCondition>();
+            for(Future<List<ExternalServiceAlertCondition>> future : externalServiceFutures)
+                externalServiceConditions.addAll(get(future));
+            config.setExternalServiceAlertConditions(externalServiceConditions);
+            if(output != null)
+            {
+                output.write(AlertFileGenerator.EXTERNAL_SERVICE_CONDITION_SHEET, new Sheet()
+                {
+                    public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+                    {
+                        alertManager.writeExternalServiceAlertConditions(policies, entities, externalServiceConditions,
+                            filename, worksheet, stream, workbook);
+                    }
+                });
+            }
+
+            final List<NrqlAlertCondition> nrqlConditions = new ArrayList<NrqlAlertCondition>();
+            for(Future<List<NrqlAlertCondition>> future : nrqlFutures)
+                nrqlConditions.addAll(get(future));
+            config.setNrqlAlertConditions(nrqlConditions);
+            if(output != null)
+            {
+                output.write(AlertFileGenerator.NRQL_CONDITION_SHEET, new Sheet()
+                {
+                    public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+                    {
+                        alertManager.writeNrqlAlertConditions(policies, nrqlConditions, filename, worksheet, stream, workbook);
+                    }
+                });
+            }
+
+            List<InfraAlertCondition> infraConditions = new ArrayList<InfraAlertCondition>();
+            for(Future<List<InfraAlertCondition>> future : infraFutures)
+                infraConditions.addAll(get(future));
+            config.setInfraAlertConditions(infraConditions);
+            if(output != null)
+                writeInfraConditions(output, config, policies);
+
+            List<Dashboard> dashboards = new ArrayList<Dashboard>();
+            for(Future<Dashboard> future : dashboardFutures)
+            {
+                Dashboard dashboard = get(future);
+                if(dashboard != null)
+                    dashboards.add(dashboard);
+            }
+            ret.setDashboards(dashboards);
+            if(output != null && dashboardManager != null)
+                output.writeDashboards(dashboards);
+
+            if(output != null)
+                output.close();
+        }
+        finally
+        {
+            executor.shutdownNow();
+            if(output != null)
+                output.shutdown();
+        }
+
+        ret.setDuration(System.currentTimeMillis()-start);
+        logger.info("Took account snapshot: "+ret);
+        return ret;
+    }
+
+    /**
+     * Writes the alert channel and alert policy sheets to the given output.
+     */
+    private void writeChannels(Output output, final AlertConfiguration config, final List<AlertChannel> channels)
+        throws IOException
+    {
+        output.write(AlertFileGenerator.EMAIL_CHANNEL_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writeEmailChannels(config.getEmailChannels(), filename, worksheet, stream, workbook);
+            }
+        });
+        output.write(AlertFileGenerator.SLACK_CHANNEL_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writeSlackChannels(config.getSlackChannels(), filename, worksheet, stream, workbook);
+            }
+        });
+        output.write(AlertFileGenerator.HIPCHAT_CHANNEL_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writeHipChatChannels(config.getHipChatChannels(), filename, worksheet, stream, workbook);
+            }
+        });
+        output.write(AlertFileGenerator.CAMPFIRE_CHANNEL_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writeCampfireChannels(config.getCampfireChannels(), filename, worksheet, stream, workbook);
+            }
+        });
+        output.write(AlertFileGenerator.OPSGENIE_CHANNEL_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writeOpsGenieChannels(config.getOpsGenieChannels(), filename, worksheet, stream, workbook);
+            }
+        });
+        output.write(AlertFileGenerator.PAGERDUTY_CHANNEL_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writePagerDutyChannels(config.getPagerDutyChannels(), filename, worksheet, stream, workbook);
+            }
+        });
+        output.write(AlertFileGenerator.USER_CHANNEL_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writeUserChannels(config.getUserChannels(), filename, worksheet, stream, workbook);
+            }
+        });
+        output.write(AlertFileGenerator.VICTOROPS_CHANNEL_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writeVictorOpsChannels(config.getVictorOpsChannels(), filename, worksheet, stream, workbook);
+            }
+        });
+        output.write(AlertFileGenerator.XMATTERS_CHANNEL_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writexMattersChannels(config.getxMattersChannels(), filename, worksheet, stream, workbook);
+            }
+        });
+        output.write(AlertFileGenerator.ALERT_POLICY_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writeAlertPolicies(channels, config.getAlertPolicies(), filename, worksheet, stream, workbook);
+            }
+        });
+    }
+
+    /**
+     * Writes the infrastructure alert condition sheets to the given output.
+     */
+    private void writeInfraConditions(Output output, final AlertConfiguration config, final List<AlertPolicy> policies)
+        throws IOException
+    {
+        output.write(AlertFileGenerator.INFRA_METRIC_CONDITION_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writeInfraMetricAlertConditions(policies, config.getInfraMetricAlertConditions(),
+                    filename, worksheet, stream, workbook);
+            }
+        });
+        output.write(AlertFileGenerator.INFRA_PROCESS_CONDITION_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writeInfraProcessRunningAlertConditions(policies, config.getInfraProcessRunningAlertConditions(),
+                    filename, worksheet, stream, workbook);
+            }
+        });
+        output.write(AlertFileGenerator.INFRA_HOST_CONDITION_SHEET, new Sheet()
+        {
+            public void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException
+            {
+                alertManager.writeInfraHostNotReportingAlertConditions(policies, config.getInfraHostNotReportingAlertConditions(),
+                    filename, worksheet, stream, workbook);
+            }
+        });
+    }
+
+    /**
+     * Returns the result of the given future, rethrowing any exception from the task.
+     */
+    private static <T> T get(Future<T> future) throws IOException, InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch(ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException)
+                throw (IOException)cause;
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if(cause instanceof Error)
+                throw (Error)cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "SnapshotExporter [threads="+threads
+            +", dashboards="+(dashboardManager != null)
+            +"]";
+    }
+
+    /**
+     * Writes a sheet using the given file details.
+     */
+    private interface Sheet
+    {
+        /**
+         * Writes the sheet.
+         * @param filename The name of the file to export to
+         * @param worksheet For XLS and XLSX files, the name of the worksheet in the file
+         * @param stream An output stream for the file
+         * @param workbook For XLS and XLSX files, the workbook to append the worksheet to (or null to create a new workbook)
+         * @throws IOException if there is an error writing the file
+         */
+        void write(String filename, String worksheet, OutputStream stream, Workbook workbook) throws IOException;
+    }
+
+    /**
+     * The destination for the sheets of the snapshot.
+     */
+    private abstract class Output
+    {
+        /**
+         * Writes the given sheet.
+         * @param name The name of the sheet
+         * @param sheet The sheet to write
+         * @throws IOException if there is an error writing the sheet
+         */
+        abstract void write(String name, Sheet sheet) throws IOException;
+
+        /**
+         * Writes the given dashboards as a YAML file.
+         * @param dashboards The dashboards to write
+         * @throws IOException if there is an error writing the file
+         */
+        abstract void writeDashboards(List<Dashboard> dashboards) throws IOException;
+
+        /**
+         * Waits for all the sheets to be written.
+         * @throws IOException if there was an error writing any of the sheets
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        abstract void close() throws IOException, InterruptedException;
+
+        /**
+         * Releases any resources used by the output.
+         */
+        void shutdown()
+        {
+        }
+    }
+
+    /**
+     * Writes all the sheets in turn to a single workbook.
+     */
+    private class WorkbookOutput extends Output
+    {
+        private File file;
+        private boolean first = true;
+
+        /**
+         * Constructor that takes the workbook file.
+         * @param file The workbook file to write
+         */
+        WorkbookOutput(File file)
+        {
+            this.file = file;
+        }
+
+        @Override
+        void write(String name, Sheet sheet) throws IOException
+        {
+            Workbook workbook = first ? null : Workbook.getWorkbook(file);
+            sheet.write(file.getName(), name, new FileOutputStream(file), workbook);
+            first = false;
+        }
+
+        @Override
+        void writeDashboards(List<Dashboard> dashboards) throws IOException
+        {
+            File parent = file.getAbsoluteFile().getParentFile();
+            dashboardManager.writeDashboards(dashboards, DASHBOARD_FILENAME,
+                new FileWriter(new File(parent, DASHBOARD_FILENAME)));
+        }
+
+        @Override
+        void close()
+        {
+        }
+    }
+
+    /**
+     * Writes each sheet concurrently to a separate file in a directory.
+     */
+    private class DirectoryOutput extends Output
+    {
+        private File directory;
+        private String extension;
+        private ExecutorService executor = Executors.newSingleThreadExecutor();
+        private List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+        /**
+         * Constructor that takes the directory and file extension.
+         * @param directory The directory to write the files to
+         * @param extension The extension of the files, either "csv", "xls" or "xlsx"
+         */
+        DirectoryOutput(File directory, String extension)
+        {
+            this.directory = directory;
+            this.extension = extension;
+        }
+
+        @Override
+        void write(final String name, final Sheet sheet)
+        {
+            final String filename = name.replace(' ', '-')+"."+extension;
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    sheet.write(filename, name, new FileOutputStream(new File(directory, filename)), null);
+                    return null;
+                }
+            }));
+        }
+
+        @Override
+        void writeDashboards(final List<Dashboard> dashboards)
+        {
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    dashboardManager.writeDashboards(dashboards, DASHBOARD_FILENAME,
+                        new FileWriter(new File(directory, DASHBOARD_FILENAME)));
+                    return null;
+                }
+            }));
+        }
+
+        @Override
+        void close() throws IOException, InterruptedException
+        {
+            for(Future<Void> future : futures)
+                get(future);
+        }
+
+        @Override
+        void shutdown()
+        {
+            executor.shutdownNow();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,641 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.snapshot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.LinkedHashSet;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.DataFormatException;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.api.model.Entity;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.batch.model.AlertConfiguration;
+import com.opsmatters.newrelic.batch.model.DashboardConfiguration;
+import com.opsmatters.newrelic.batch.deploy.DeploymentDefinitions;
+import com.opsmatters.newrelic.batch.generators.AlertFileGenerator;
+import com.opsmatters.newrelic.batch.parsers.DashboardParser;
+import com.opsmatters.newrelic.batch.renderers.EmailChannelRenderer;
+import com.opsmatters.newrelic.batch.renderers.SlackChannelRenderer;
+import com.opsmatters.newrelic.batch.renderers.HipChatChannelRenderer;
+import com.opsmatters.newrelic.batch.renderers.CampfireChannelRenderer;
+import com.opsmatters.newrelic.batch.renderers.OpsGenieChannelRenderer;
+import com.opsmatters.newrelic.batch.renderers.PagerDutyChannelRenderer;
+import com.opsmatters.newrelic.batch.renderers.UserChannelRenderer;
+import com.opsmatters.newrelic.batch.renderers.VictorOpsChannelRenderer;
+import com.opsmatters.newrelic.batch.renderers.xMattersChannelRenderer;
+import com.opsmatters.newrelic.batch.renderers.AlertPolicyRenderer;
+import com.opsmatters.newrelic.batch.renderers.AlertConditionRenderer;
+import com.opsmatters.newrelic.batch.renderers.ExternalServiceAlertConditionRenderer;
+import com.opsmatters.newrelic.batch.renderers.NrqlAlertConditionRenderer;
+import com.opsmatters.newrelic.batch.renderers.InfraMetricAlertConditionRenderer;
+import com.opsmatters.newrelic.batch.renderers.InfraProcessRunningAlertConditionRenderer;
+import com.opsmatters.newrelic.batch.renderers.InfraHostNotReportingAlertConditionRenderer;
+import com.opsmatters.newrelic.batch.renderers.DashboardRenderer;
+
+/**
+ * A compact binary file containing the alert configuration and dashboards of an account.
+ * <P>
+ * The alert objects are stored as the same sheets of lines used for the export files,
+ * and the dashboards as the YAML document. Each distinct string is stored once in a dictionary
+ * and each cell is a varint: either a reference to the dictionary or a numeric value such as an id.
+ * The body can optionally be compressed.
+ * </P>
+ * <P>
+ * The file is read using memory-mapped I/O and the lines are turned back into objects
+ * using the usual parsers, which is much faster than reading a workbook.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class SnapshotFile
+{
+    private static final Logger logger = Logger.getLogger(SnapshotFile.class.getName());
+
+    /**
+     * The identifier at the start of every snapshot file, "NRBS".
+     */
+    public static final int MAGIC = 0x4E524253;
+
+    /**
+     * The current version of the file format.
+     */
+    public static final int VERSION = 1;
+
+    private static final int FLAG_COMPRESSED = 0x01;
+    private static final int HEADER_LENGTH = 18;
+    private static final int MAX_NUMBER_LENGTH = 18;
+
+    private static final Map<String,DeploymentDefinitions.SheetType> SHEET_TYPES
+        = new LinkedHashMap<String,DeploymentDefinitions.SheetType>();
+
+    static
+    {
+        SHEET_TYPES.put(AlertFileGenerator.EMAIL_CHANNEL_SHEET, DeploymentDefinitions.SheetType.EMAIL_CHANNELS);
+        SHEET_TYPES.put(AlertFileGenerator.SLACK_CHANNEL_SHEET, DeploymentDefinitions.SheetType.SLACK_CHANNELS);
+        SHEET_TYPES.put(AlertFileGenerator.HIPCHAT_CHANNEL_SHEET, DeploymentDefinitions.SheetType.HIPCHAT_CHANNELS);
+        SHEET_TYPES.put(AlertFileGenerator.CAMPFIRE_CHANNEL_SHEET, DeploymentDefinitions.SheetType.CAMPFIRE_CHANNELS);
+        SHEET_TYPES.put(AlertFileGenerator.OPSGENIE_CHANNEL_SHEET, DeploymentDefinitions.SheetType.OPSGENIE_CHANNELS);
+        SHEET_TYPES.put(AlertFileGenerator.PAGERDUTY_CHANNEL_SHEET, DeploymentDefinitions.SheetType.PAGERDUTY_CHANNELS);
+        SHEET_TYPES.put(AlertFileGenerator.USER_CHANNEL_SHEET, DeploymentDefinitions.SheetType.USER_CHANNELS);
+        SHEET_TYPES.put(AlertFileGenerator.VICTOROPS_CHANNEL_SHEET, DeploymentDefinitions.SheetType.VICTOROPS_CHANNELS);
+        SHEET_TYPES.put(AlertFileGenerator.XMATTERS_CHANNEL_SHEET, DeploymentDefinitions.SheetType.XMATTERS_CHANNELS);
+        SHEET_TYPES.put(AlertFileGenerator.ALERT_POLICY_SHEET, DeploymentDefinitions.SheetType.ALERT_POLICIES);
+        SHEET_TYPES.put(AlertFileGenerator.ALERT_CONDITION_SHEET, DeploymentDefinitions.SheetType.ALERT_CONDITIONS);
+        SHEET_TYPES.put(AlertFileGenerator.EXTERNAL_SERVICE_CONDITION_SHEET, DeploymentDefinitions.SheetType.EXTERNAL_SERVICE_ALERT_CONDITIONS);
+        SHEET_TYPES.put(AlertFileGenerator.NRQL_CONDITION_SHEET, DeploymentDefinitions.SheetType.NRQL_ALERT_CONDITIONS);
+        SHEET_TYPES.put(AlertFileGenerator.INFRA_METRIC_CONDITION_SHEET, DeploymentDefinitions.SheetType.INFRA_METRIC_ALERT_CONDITIONS);
+        SHEET_TYPES.put(AlertFileGenerator.INFRA_PROCESS_CONDITION_SHEET, DeploymentDefinitions.SheetType.INFRA_PROCESS_RUNNING_ALERT_CONDITIONS);
+        SHEET_TYPES.put(AlertFileGenerator.INFRA_HOST_CONDITION_SHEET, DeploymentDefinitions.SheetType.INFRA_HOST_NOT_REPORTING_ALERT_CONDITIONS);
+    }
+
+    private Map<String,List<String[]>> sheets = new LinkedHashMap<String,List<String[]>>();
+    private String dashboards;
+    private long created;
+
+    /**
+     * Default constructor.
+     */
+    public SnapshotFile()
+    {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Constructor that takes the creation time.
+     * @param created The time the snapshot was created
+     */
+    public SnapshotFile(long created)
+    {
+        this.created = created;
+    }
+
+    /**
+     * Returns a snapshot file containing the given account snapshot.
+     * @param snapshot The account snapshot
+     * @return The snapshot file
+     */
+    public static SnapshotFile of(AccountSnapshot snapshot)
+    {
+        DashboardConfiguration dashboards = new DashboardConfiguration();
+        dashboards.setDashboards(snapshot.getDashboards());
+        SnapshotFile ret = of(snapshot.getAlertConfiguration(), snapshot.getEntities(), dashboards);
+        ret.created = snapshot.getCreated();
+        return ret;
+    }
+
+    /**
+     * Returns a snapshot file containing the given alert configuration and dashboards.
+     * @param config The alert configuration
+     * @param entities The entities used by the alert conditions
+     * @param dashboards The dashboards, or null to exclude the dashboards
+     * @return The snapshot file
+     */
+    public static SnapshotFile of(AlertConfiguration config, List<Entity> entities, DashboardConfiguration dashboards)
+    {
+        SnapshotFile ret = new SnapshotFile();
+        List<AlertChannel> channels = config.getAlertChannels();
+        List<AlertPolicy> policies = config.getAlertPolicies();
+
+        ret.putSheet(AlertFileGenerator.EMAIL_CHANNEL_SHEET, EmailChannelRenderer.getLines(config.getEmailChannels()));
+        ret.putSheet(AlertFileGenerator.SLACK_CHANNEL_SHEET, SlackChannelRenderer.getLines(config.getSlackChannels()));
+        ret.putSheet(AlertFileGenerator.HIPCHAT_CHANNEL_SHEET, HipChatChannelRenderer.getLines(config.getHipChatChannels()));
+        ret.putSheet(AlertFileGenerator.CAMPFIRE_CHANNEL_SHEET, CampfireChannelRenderer.getLines(config.getCampfireChannels()));
+        ret.putSheet(AlertFileGenerator.OPSGENIE_CHANNEL_SHEET, OpsGenieChannelRenderer.getLines(config.getOpsGenieChannels()));
+        ret.putSheet(AlertFileGenerator.PAGERDUTY_CHANNEL_SHEET, PagerDutyChannelRenderer.getLines(config.getPagerDutyChannels()));
+        ret.putSheet(AlertFileGenerator.USER_CHANNEL_SHEET, UserChannelRenderer.getLines(config.getUserChannels()));
+        ret.putSheet(AlertFileGenerator.VICTOROPS_CHANNEL_SHEET, VictorOpsChannelRenderer.getLines(config.getVictorOpsChannels()));
+        ret.putSheet(AlertFileGenerator.XMATTERS_CHANNEL_SHEET, xMattersChannelRenderer.getLines(config.getxMattersChannels()));
+        ret.putSheet(AlertFileGenerator.ALERT_POLICY_SHEET, AlertPolicyRenderer.getLines(channels, policies));
+        ret.putSheet(AlertFileGenerator.ALERT_CONDITION_SHEET,
+            AlertConditionRenderer.getLines(policies, entities, config.getAlertConditions()));
+        ret.putSheet(AlertFileGenerator.EXTERNAL_SERVICE_CONDITION_SHEET,
+            ExternalServiceAlertConditionRenderer.getLines(policies, entities, config.getExternalServiceAlertConditions()));
+        ret.putSheet(AlertFileGenerator.NRQL_CONDITION_SHEET,
+            NrqlAlertConditionRenderer.getLines(policies, config.getNrqlAlertConditions()));
+        ret.putSheet(AlertFileGenerator.INFRA_METRIC_CONDITION_SHEET,
+            InfraMetricAlertConditionRenderer.getLines(policies, config.getInfraMetricAlertConditions()));
+        ret.putSheet(AlertFileGenerator.INFRA_PROCESS_CONDITION_SHEET,
+            InfraProcessRunningAlertConditionRenderer.getLines(policies, config.getInfraProcessRunningAlertConditions()));
+        ret.putSheet(AlertFileGenerator.INFRA_HOST_CONDITION_SHEET,
+            InfraHostNotReportingAlertConditionRenderer.getLines(policies, config.getInfraHostNotReportingAlertConditions()));
+
+        if(dashboards != null)
+            ret.dashboards = DashboardRenderer.writeYaml(dashboards.getDashboards());
+
+        return ret;
+    }
+
+    /**
+     * Returns the time the snapshot was created.
+     * @return The time the snapshot was created
+     */
+    public long getCreated()
+    {
+        return created;
+    }
+
+    /**
+     * Sets the lines of the given sheet.
+     * @param name The name of the sheet
+     * @param lines The lines of the sheet, with the headers as the first line
+     */
+    public void putSheet(String name, List<String[]> lines)
+    {
+        if(name == null)
+            throw new IllegalArgumentException("null sheet name");
+        sheets.put(name, new ArrayList<String[]>(lines));
+    }
+
+    /**
+     * Returns the names of the sheets.
+     * @return The names of the sheets
+     */
+    public List<String> getSheetNames()
+    {
+        return new ArrayList<String>(sheets.keySet());
+    }
+
+    /**
+     * Returns the lines of the given sheet.
+     * @param name The name of the sheet
+     * @return The lines of the sheet, with the headers as the first line, or null if the sheet does not exist
+     */
+    public List<String[]> getLines(String name)
+    {
+        return sheets.get(name);
+    }
+
+    /**
+     * Returns the dashboards as a YAML document.
+     * @return The dashboards as a YAML document, or null if the snapshot does not include the dashboards
+     */
+    public String getDashboardYaml()
+    {
+        return dashboards;
+    }
+
+    /**
+     * Returns a new set of dashboards created from the snapshot.
+     * @return The dashboards created from the snapshot
+     */
+    public DashboardConfiguration getDashboardConfiguration()
+    {
+        DashboardConfiguration ret = new DashboardConfiguration();
+        if(dashboards != null)
+            ret.setDashboards(DashboardParser.parseYaml(dashboards));
+        return ret;
+    }
+
+    /**
+     * Returns the definitions in the snapshot, so they can be deployed to one or more accounts.
+     * @return The definitions in the snapshot
+     */
+    public DeploymentDefinitions getDefinitions()
+    {
+        DeploymentDefinitions ret = new DeploymentDefinitions();
+        for(Map.Entry<String,List<String[]>> entry : sheets.entrySet())
+        {
+            DeploymentDefinitions.SheetType type = SHEET_TYPES.get(entry.getKey());
+            List<String[]> lines = entry.getValue();
+            if(type != null && lines.size() > 0)
+                ret.putSheet(type, lines.get(0), lines.subList(1, lines.size()));
+        }
+        if(dashboards != null)
+            ret.readDashboards(dashboards);
+        return ret;
+    }
+
+    /**
+     * Returns a new alert configuration created from the snapshot.
+     * <P>
+     * The channels and policies are given placeholder ids.
+     * </P>
+     * @param entities The entities used to resolve the alert conditions
+     * @return The alert configuration created from the snapshot
+     */
+    public AlertConfiguration getAlertConfiguration(List<Entity> entities)
+    {
+        return getDefinitions().getAlertConfiguration(entities);
+    }
+
+    /**
+     * Returns the differences between this snapshot and the given snapshot.
+     * <P>
+     * Each difference is a line of the form "+ sheet: line" for a line that has been added in
+     * this snapshot, or "- sheet: line" for a line that has been removed.
+     * </P>
+     * @param previous The earlier snapshot to compare with
+     * @return The differences between the snapshots
+     */
+    public List<String> diff(SnapshotFile previous)
+    {
+        List<String> ret = new ArrayList<String>();
+        Set<String> names = new LinkedHashSet<String>(previous.sheets.keySet());
+        names.addAll(sheets.keySet());
+        for(String name : names)
+        {
+            Set<List<String>> before = getRows(previous.sheets.get(name));
+            Set<List<String>> after = getRows(sheets.get(name));
+            for(List<String> row : before)
+            {
+                if(!after.contains(row))
+                    ret.add("- "+name+": "+row);
+            }
+            for(List<String> row : after)
+            {
+                if(!before.contains(row))
+                    ret.add("+ "+name+": "+row);
+            }
+        }
+
+        if(dashboards != null ? !dashboards.equals(previous.dashboards) : previous.dashboards != null)
+            ret.add("~ dashboards");
+
+        return ret;
+    }
+
+    /**
+     * Returns the rows of the given lines, excluding the headers.
+     */
+    private static Set<List<String>> getRows(List<String[]> lines)
+    {
+        Set<List<String>> ret = new LinkedHashSet<List<String>>();
+        if(lines != null)
+        {
+            for(int i = 1; i < lines.size(); i++)
+                ret.add(Arrays.asList(lines.get(i)));
+        }
+        return ret;
+    }
+
+    /**
+     * Writes the snapshot to the given file.
+     * @param file The file to write
+     * @param compress <CODE>true</CODE> if the body of the file should be compressed
+     * @throws IOException if there was an error writing the file
+     */
+    public void write(File file, boolean compress) throws IOException
+    {
+        byte[] body = encode();
+        int length = body.length;
+        if(compress)
+        {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try
+            {
+                deflater.setInput(body);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length/4));
+                byte[] buffer = new byte[8192];
+                while(!deflater.finished())
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                body = out.toByteArray();
+            }
+            finally
+            {
+                deflater.end();
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC);
+        header.put((byte)VERSION);
+        header.put((byte)(compress ? FLAG_COMPRESSED : 0));
+        header.putLong(created);
+        header.putInt(length);
+
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(header.array());
+            out.write(body);
+        }
+        finally
+        {
+            out.close();
+        }
+
+        logger.fine("Wrote snapshot file: "+file.getName()+" size="+(HEADER_LENGTH+body.length));
+    }
+
+    /**
+     * Reads a snapshot from the given file.
+     * @param file The file to read
+     * @return The snapshot read from the file
+     * @throws IOException if there was an error reading the file or it is not a snapshot file
+     */
+    public static SnapshotFile read(File file) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try
+        {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            if(buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC)
+                throw new IOException("not a snapshot file: "+file.getName());
+            int version = buffer.get();
+            if(version != VERSION)
+                throw new IOException("unsupported snapshot version "+version+": "+file.getName());
+            int flags = buffer.get();
+            long created = buffer.getLong();
+            int length = buffer.getInt();
+
+            if((flags & FLAG_COMPRESSED) != 0)
+                buffer = inflate(buffer, length);
+
+            SnapshotFile ret = new SnapshotFile(created);
+            ret.decode(buffer);
+            logger.fine("Read snapshot file: "+file.getName()+" sheets="+ret.sheets.size());
+            return ret;
+        }
+        catch(RuntimeException e)
+        {
+            throw new IOException("corrupt snapshot file: "+file.getName(), e);
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the uncompressed body of the file.
+     */
+    private static ByteBuffer inflate(ByteBuffer buffer, int length) throws IOException
+    {
+        byte[] input = new byte[buffer.remaining()];
+        buffer.get(input);
+        byte[] output = new byte[length];
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(input);
+            int count = 0;
+            while(count < length && !inflater.finished())
+            {
+                int n = inflater.inflate(output, count, length-count);
+                if(n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("truncated snapshot body");
+                count += n;
+            }
+            if(count != length)
+                throw new IOException("snapshot body length mismatch: expected "+length+" but was "+count);
+        }
+        catch(DataFormatException e)
+        {
+            throw new IOException("invalid compressed snapshot body", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(output);
+    }
+
+    /**
+     * Returns the body of the file as bytes.
+     */
+    private byte[] encode()
+    {
+        Map<String,Integer> dictionary = new LinkedHashMap<String,Integer>();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        writeVarint(data, sheets.size());
+        for(Map.Entry<String,List<String[]>> entry : sheets.entrySet())
+        {
+            writeVarint(data, getTag(dictionary, entry.getKey()));
+            List<String[]> lines = entry.getValue();
+            writeVarint(data, lines.size());
+            for(String[] line : lines)
+            {
+                writeVarint(data, line.length);
+                for(String cell : line)
+                    writeVarint(data, getTag(dictionary, cell));
+            }
+        }
+        writeVarint(data, getTag(dictionary, dashboards));
+
+        ByteArrayOutputStream ret = new ByteArrayOutputStream(data.size()+dictionary.size()*16);
+        writeVarint(ret, dictionary.size());
+        for(String str : dictionary.keySet())
+        {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeVarint(ret, bytes.length);
+            ret.write(bytes, 0, bytes.length);
+        }
+        byte[] bytes = data.toByteArray();
+        ret.write(bytes, 0, bytes.length);
+        return ret.toByteArray();
+    }
+
+    /**
+     * Reads the body of the file from the given buffer.
+     */
+    private void decode(ByteBuffer buffer)
+    {
+        int size = (int)readVarint(buffer);
+        String[] dictionary = new String[size];
+        for(int i = 0; i < size; i++)
+        {
+            byte[] bytes = new byte[(int)readVarint(buffer)];
+            buffer.get(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Share the numeric values that appear more than once, such as policy ids
+        Map<Long,String> numbers = new HashMap<Long,String>();
+
+        int count = (int)readVarint(buffer);
+        for(int i = 0; i < count; i++)
+        {
+            String name = getValue(dictionary, numbers, readVarint(buffer));
+            int rows = (int)readVarint(buffer);
+            List<String[]> lines = new ArrayList<String[]>(rows);
+            for(int j = 0; j < rows; j++)
+            {
+                String[] line = new String[(int)readVarint(buffer)];
+                for(int k = 0; k < line.length; k++)
+                    line[k] = getValue(dictionary, numbers, readVarint(buffer));
+                lines.add(line);
+            }
+            sheets.put(name, lines);
+        }
+        dashboards = getValue(dictionary, numbers, readVarint(buffer));
+    }
+
+    /**
+     * Returns the tag for the given value, adding the value to the dictionary if necessary.
+     * <P>
+     * A null value is 0, a number is stored inline as an odd value
+     * and any other string is an even reference to the dictionary.
+     * </P>
+     */
+    private static long getTag(Map<String,Integer> dictionary, String value)
+    {
+        if(value == null)
+            return 0L;
+        if(isNumber(value))
+            return (Long.parseLong(value) << 1) | 1L;
+
+        Integer index = dictionary.get(value);
+        if(index == null)
+        {
+            index = dictionary.size();
+            dictionary.put(value, index);
+        }
+        return (index+1L) << 1;
+    }
+
+    /**
+     * Returns the value for the given tag.
+     */
+    private static String getValue(String[] dictionary, Map<Long,String> numbers, long tag)
+    {
+        if(tag == 0L)
+            return null;
+        if((tag & 1L) != 0L)
+        {
+            Long number = tag >>> 1;
+            String ret = numbers.get(number);
+            if(ret == null)
+            {
+                ret = Long.toString(number);
+                numbers.put(number, ret);
+            }
+            return ret;
+        }
+        return dictionary[(int)((tag >>> 1)-1L)];
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the given value is a number that can be stored inline
+     * and converted back to exactly the same string.
+     */
+    private static boolean isNumber(String value)
+    {
+        int length = value.length();
+        if(length == 0 || length > MAX_NUMBER_LENGTH)
+            return false;
+        if(length > 1 && value.charAt(0) == '0')
+            return false;
+        for(int i = 0; i < length; i++)
+        {
+            char c = value.charAt(i);
+            if(c < '0' || c > '9')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the given value as an unsigned varint.
+     */
+    private static void writeVarint(ByteArrayOutputStream out, long value)
+    {
+        while((value & ~0x7FL) != 0L)
+        {
+            out.write((int)((value & 0x7FL) | 0x80L));
+            value >>>= 7;
+        }
+        out.write((int)value);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     */
+    private static long readVarint(ByteBuffer buffer)
+    {
+        long ret = 0L;
+        for(int shift = 0; shift < 64; shift += 7)
+        {
+            byte b = buffer.get();
+            ret |= (long)(b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return ret;
+        }
+        throw new IllegalStateException("invalid varint");
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "SnapshotFile [created="+created
+            +", sheets="+sheets.size()
+            +", dashboards="+(dashboards != null)
+            +"]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,4 @@
+/**
+ * The snapshot classes used for New Relic.
+ */
+package com.opsmatters.newrelic.batch.snapshot;
\ No newline at end of file
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.sync;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.EnumMap;
+import com.opsmatters.newrelic.batch.model.AlertConfiguration;
+
+/**
+ * Represents the ordered set of changes required to make the live alert configuration
+ * match the desired configuration.
+ * <P>
+ * The actions are held in the order in which they must be applied.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class AlertPlan
+{
+    private AlertConfiguration live;
+    private List<PlanAction> actions = new ArrayList<PlanAction>();
+
+    /**
+     * Constructor that takes the live configuration the plan was created from.
+     * @param live The live configuration the plan was created from
+     */
+    public AlertPlan(AlertConfiguration live)
+    {
+        this.live = live;
+    }
+
+    /**
+     * Returns the live configuration the plan was created from.
+     * @return The live configuration the plan was created from
+     */
+    public AlertConfiguration getLive()
+    {
+        return live;
+    }
+
+    /**
+     * Adds the given action to the end of the plan.
+     * @param action The action to add
+     */
+    public void add(PlanAction action)
+    {
+        actions.add(action);
+    }
+
+    /**
+     * Returns the actions in the plan.
+     * @return The actions in the plan
+     */
+    public List<PlanAction> getActions()
+    {
+        return actions;
+    }
+
+    /**
+     * Returns the actions in the plan with the given operation.
+     * @param operation The operation of the actions
+     * @return The actions in the plan with the given operation
+     */
+    public List<PlanAction> getActions(PlanAction.Operation operation)
+    {
+        List<PlanAction> ret = new ArrayList<PlanAction>();
+        for(PlanAction action : actions)
+        {
+            if(action.getOperation() == operation)
+                ret.add(action);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the actions in the plan for the given kind of object.
+     * @param kind The kind of object of the actions
+     * @return The actions in the plan for the given kind of object
+     */
+    public List<PlanAction> getActions(PlanAction.Kind kind)
+    {
+        List<PlanAction> ret = new ArrayList<PlanAction>();
+        for(PlanAction action : actions)
+        {
+            if(action.getKind() == kind)
+                ret.add(action);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of actions in the plan.
+     * @return The number of actions in the plan
+     */
+    public int size()
+    {
+        return actions.size();
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the plan has no actions.
+     * @return <CODE>true</CODE> if the plan has no actions
+     */
+    public boolean isEmpty()
+    {
+        return actions.isEmpty();
+    }
+
+    /**
+     * Returns a description of each action in the plan, one per line.
+     * @return A description of each action in the plan
+     */
+    public String getSummary()
+    {
+        StringBuilder sb = new StringBuilder();
+        for(PlanAction action : actions)
+            sb.append(action.toString()).append("\n");
+        return sb.toString();
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        Map<PlanAction.Operation,Integer> counts = new EnumMap<PlanAction.Operation,Integer>(PlanAction.Operation.class);
+        for(PlanAction action : actions)
+        {
+            Integer count = counts.get(action.getOperation());
+            counts.put(action.getOperation(), count != null ? count+1 : 1);
+        }
+        return "AlertPlan [actions="+actions.size()+", "+counts+"]";
+    }
+}
\ No newline at end of file
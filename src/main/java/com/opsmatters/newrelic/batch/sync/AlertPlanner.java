@@ -0,0 +1,417 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.sync;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.api.model.alerts.conditions.BaseCondition;
+import com.opsmatters.newrelic.batch.model.AlertConfiguration;
+
+/**
+ * Compares a desired alert configuration with the live configuration and produces the
+ * minimal plan of changes needed to make the live configuration match.
+ * <P>
+ * Channels, policies and conditions are matched by name, with conditions matched within their policy and subtype.
+ * Objects that exist in both configurations are compared using their canonical form
+ * and are only changed if the canonical forms differ.
+ * Live objects that are not in the desired configuration are only deleted if pruning is enabled.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class AlertPlanner
+{
+    private static final Logger logger = Logger.getLogger(AlertPlanner.class.getName());
+
+    private boolean prune = false;
+
+    /**
+     * Default constructor.
+     */
+    public AlertPlanner()
+    {
+    }
+
+    /**
+     * Set to <CODE>true</CODE> if live objects that are not in the desired configuration should be deleted.
+     * @param prune <CODE>true</CODE> if live objects that are not in the desired configuration should be deleted
+     */
+    public void setPrune(boolean prune)
+    {
+        this.prune = prune;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if live objects that are not in the desired configuration should be deleted.
+     * @return <CODE>true</CODE> if live objects that are not in the desired configuration should be deleted
+     */
+    public boolean prune()
+    {
+        return prune;
+    }
+
+    /**
+     * Returns the plan of changes needed to make the live configuration match the desired configuration.
+     * <P>
+     * The actions in the plan are in the order they need to be applied:
+     * channels, then policies, then the links between them, then conditions,
+     * and finally the deletes of any pruned policies and channels.
+     * </P>
+     * @param desired The desired configuration, usually read from import files
+     * @param live The live configuration fetched from the API
+     * @return The plan of changes
+     */
+    public AlertPlan plan(AlertConfiguration desired, AlertConfiguration live)
+    {
+        AlertPlan ret = new AlertPlan(live);
+
+        // Index the live and desired objects by name
+        Map<String,AlertChannel> liveChannels = getChannelsByName(live.getAlertChannels());
+        Map<String,AlertChannel> desiredChannels = getChannelsByName(desired.getAlertChannels());
+        Map<String,AlertPolicy> livePolicies = getPoliciesByName(live.getAlertPolicies());
+        Map<String,AlertPolicy> desiredPolicies = getPoliciesByName(desired.getAlertPolicies());
+
+        // Channels that do not exist yet are referenced by the placeholder ids in the desired configuration
+        Map<Long,String> channelNames = new HashMap<Long,String>();
+        for(AlertChannel channel : desired.getAlertChannels())
+        {
+            if(channel.getId() != null)
+                channelNames.put(channel.getId(), channel.getName());
+        }
+        for(AlertChannel channel : live.getAlertChannels())
+            channelNames.put(channel.getId(), channel.getName());
+        Map<Long,String> policyNames = new HashMap<Long,String>();
+        for(AlertPolicy policy : desired.getAlertPolicies())
+        {
+            if(policy.getId() != null)
+                policyNames.put(policy.getId(), policy.getName());
+        }
+        for(AlertPolicy policy : live.getAlertPolicies())
+            policyNames.put(policy.getId(), policy.getName());
+
+        // Channels have no update operation so changed channels are replaced
+        Set<String> replacedChannels = new HashSet<String>();
+        for(AlertChannel channel : desiredChannels.values())
+        {
+            AlertChannel liveChannel = liveChannels.get(channel.getName());
+            if(liveChannel == null)
+            {
+                ret.add(new PlanAction(PlanAction.Operation.CREATE, PlanAction.Kind.CHANNEL,
+                    null, channel.getName(), channel, null));
+            }
+            else if(!CanonicalForm.of(channel).equals(CanonicalForm.of(liveChannel)))
+            {
+                ret.add(new PlanAction(PlanAction.Operation.REPLACE, PlanAction.Kind.CHANNEL,
+                    null, channel.getName(), channel, liveChannel));
+                replacedChannels.add(channel.getName());
+            }
+        }
+
+        // Policies are created or updated in place
+        for(AlertPolicy policy : desiredPolicies.values())
+        {
+            AlertPolicy livePolicy = livePolicies.get(policy.getName());
+            if(livePolicy == null)
+            {
+                ret.add(new PlanAction(PlanAction.Operation.CREATE, PlanAction.Kind.POLICY,
+                    null, policy.getName(), policy, null));
+            }
+            else if(!CanonicalForm.of(policy).equals(CanonicalForm.of(livePolicy)))
+            {
+                ret.add(new PlanAction(PlanAction.Operation.UPDATE, PlanAction.Kind.POLICY,
+                    null, policy.getName(), policy, livePolicy));
+            }
+        }
+
+        // Links between policies and channels
+        Map<String,Set<String>> liveLinks = getLinks(live.getAlertChannels(), policyNames);
+        Set<String> managedPolicies = new HashSet<String>();
+        for(AlertPolicy policy : desiredPolicies.values())
+        {
+            if(policy.getChannels() == null)
+                continue;
+
+            managedPolicies.add(policy.getName());
+            boolean created = !livePolicies.containsKey(policy.getName());
+            Set<String> linked = liveLinks.get(policy.getName());
+            if(linked == null || created)
+                linked = new HashSet<String>();
+            Set<String> channels = new LinkedHashSet<String>();
+            for(Long channelId : policy.getChannels().getChannelIds())
+            {
+                String channelName = channelNames.get(channelId);
+                if(channelName != null)
+                    channels.add(channelName);
+            }
+
+            for(String channelName : linked)
+            {
+                if(!channels.contains(channelName) && !replacedChannels.contains(channelName)
+                    && !isPruned(channelName, desiredChannels))
+                {
+                    ret.add(new PlanAction(PlanAction.Operation.UNLINK, PlanAction.Kind.POLICY_CHANNEL,
+                        policy.getName(), channelName, null, null));
+                }
+            }
+
+            for(String channelName : channels)
+            {
+                if(!linked.contains(channelName) || replacedChannels.contains(channelName))
+                {
+                    ret.add(new PlanAction(PlanAction.Operation.LINK, PlanAction.Kind.POLICY_CHANNEL,
+                        policy.getName(), channelName, null, null));
+                }
+            }
+        }
+
+        // Replaced channels lose their links, so restore them for the policies that are not managed
+        for(Map.Entry<String,Set<String>> entry : liveLinks.entrySet())
+        {
+            String policyName = entry.getKey();
+            if(managedPolicies.contains(policyName) || isPruned(policyName, desiredPolicies))
+                continue;
+            for(String channelName : entry.getValue())
+            {
+                if(replacedChannels.contains(channelName))
+                {
+                    ret.add(new PlanAction(PlanAction.Operation.LINK, PlanAction.Kind.POLICY_CHANNEL,
+                        policyName, channelName, null, null));
+                }
+            }
+        }
+
+        // Conditions for each condition family
+        planConditions(ret, PlanAction.Kind.ALERT_CONDITION, desired.getAlertConditions(),
+            live.getAlertConditions(), policyNames, desiredPolicies.keySet());
+        planConditions(ret, PlanAction.Kind.EXTERNAL_SERVICE_ALERT_CONDITION, desired.getExternalServiceAlertConditions(),
+            live.getExternalServiceAlertConditions(), policyNames, desiredPolicies.keySet());
+        planConditions(ret, PlanAction.Kind.NRQL_ALERT_CONDITION, desired.getNrqlAlertConditions(),
+            live.getNrqlAlertConditions(), policyNames, desiredPolicies.keySet());
+        planConditions(ret, PlanAction.Kind.INFRA_ALERT_CONDITION, desired.getInfraAlertConditions(),
+            live.getInfraAlertConditions(), policyNames, desiredPolicies.keySet());
+
+        // Deleting a policy also deletes its conditions and links
+        if(prune)
+        {
+            for(AlertPolicy policy : livePolicies.values())
+            {
+                if(!desiredPolicies.containsKey(policy.getName()))
+                {
+                    ret.add(new PlanAction(PlanAction.Operation.DELETE, PlanAction.Kind.POLICY,
+                        null, policy.getName(), null, policy));
+                }
+            }
+
+            for(AlertChannel channel : liveChannels.values())
+            {
+                if(!desiredChannels.containsKey(channel.getName()))
+                {
+                    ret.add(new PlanAction(PlanAction.Operation.DELETE, PlanAction.Kind.CHANNEL,
+                        null, channel.getName(), null, channel));
+                }
+            }
+        }
+
+        logger.info("Planned alert changes: "+ret);
+        return ret;
+    }
+
+    /**
+     * Adds the actions for a condition family to the given plan.
+     * <P>
+     * Changed conditions are updated in place. Conditions are only pruned from the policies in the desired configuration.
+     * </P>
+     */
+    private void planConditions(AlertPlan plan, PlanAction.Kind kind, List<? extends BaseCondition> desired,
+        List<? extends BaseCondition> live, Map<Long,String> policyNames, Set<String> policies)
+    {
+        Map<String,BaseCondition> liveConditions = getConditionsByName(live, policyNames);
+        Map<String,BaseCondition> desiredConditions = getConditionsByName(desired, policyNames);
+
+        for(Map.Entry<String,BaseCondition> entry : desiredConditions.entrySet())
+        {
+            BaseCondition condition = entry.getValue();
+            String policyName = policyNames.get(condition.getPolicyId());
+            BaseCondition liveCondition = liveConditions.get(entry.getKey());
+            if(liveCondition == null)
+            {
+                plan.add(new PlanAction(PlanAction.Operation.CREATE, kind,
+                    policyName, condition.getName(), condition, null));
+            }
+            else if(!CanonicalForm.of(condition).equals(CanonicalForm.of(liveCondition)))
+            {
+                plan.add(new PlanAction(PlanAction.Operation.UPDATE, kind,
+                    policyName, condition.getName(), condition, liveCondition));
+            }
+        }
+
+        if(prune)
+        {
+            for(Map.Entry<String,BaseCondition> entry : liveConditions.entrySet())
+            {
+                BaseCondition condition = entry.getValue();
+                String policyName = policyNames.get(condition.getPolicyId());
+                if(policies.contains(policyName) && !desiredConditions.containsKey(entry.getKey()))
+                {
+                    plan.add(new PlanAction(PlanAction.Operation.DELETE, kind,
+                        policyName, condition.getName(), null, condition));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the object with the given name will be deleted by the plan.
+     */
+    private boolean isPruned(String name, Map<String,?> desired)
+    {
+        return prune && !desired.containsKey(name);
+    }
+
+    /**
+     * Returns the given channels indexed by name.
+     */
+    private static Map<String,AlertChannel> getChannelsByName(List<AlertChannel> channels)
+    {
+        Map<String,AlertChannel> ret = new LinkedHashMap<String,AlertChannel>();
+        for(AlertChannel channel : channels)
+        {
+            if(!ret.containsKey(channel.getName()))
+                ret.put(channel.getName(), channel);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the given policies indexed by name.
+     */
+    private static Map<String,AlertPolicy> getPoliciesByName(List<AlertPolicy> policies)
+    {
+        Map<String,AlertPolicy> ret = new LinkedHashMap<String,AlertPolicy>();
+        for(AlertPolicy policy : policies)
+        {
+            if(!ret.containsKey(policy.getName()))
+                ret.put(policy.getName(), policy);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the given conditions indexed by policy name and condition name.
+     */
+    private static Map<String,BaseCondition> getConditionsByName(List<? extends BaseCondition> conditions,
+        Map<Long,String> policyNames)
+    {
+        Map<String,BaseCondition> ret = new LinkedHashMap<String,BaseCondition>();
+        for(BaseCondition condition : conditions)
+        {
+            String key = getKey(policyNames.get(condition.getPolicyId()), condition);
+            if(!ret.containsKey(key))
+                ret.put(key, condition);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the names of the channels linked to each policy, indexed by policy name.
+     */
+    private static Map<String,Set<String>> getLinks(List<AlertChannel> channels, Map<Long,String> policyNames)
+    {
+        Map<String,Set<String>> ret = new LinkedHashMap<String,Set<String>>();
+        for(AlertChannel channel : channels)
+        {
+            if(channel.getLinks() == null || channel.getLinks().getPolicyIds() == null)
+                continue;
+            for(Long policyId : channel.getLinks().getPolicyIds())
+            {
+                String policyName = policyNames.get(policyId);
+                if(policyName == null)
+                    continue;
+                Set<String> linked = ret.get(policyName);
+                if(linked == null)
+                {
+                    linked = new LinkedHashSet<String>();
+                    ret.put(policyName, linked);
+                }
+                linked.add(channel.getName());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the key of a condition within a policy.
+     * <P>
+     * The key includes the subtype of the condition, so infrastructure conditions of different kinds
+     * with the same name are not matched with each other.
+     * </P>
+     * @param policyName The name of the policy of the condition
+     * @param condition The condition
+     * @return The key of the condition
+     */
+    public static String getKey(String policyName, BaseCondition condition)
+    {
+        return StateFile.getSubtype(condition)+"/"+policyName+"/"+condition.getName();
+    }
+
+    /**
+     * Returns a builder for the planner.
+     * @return The builder instance.
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Builder to make planner construction easier.
+     */
+    public static class Builder
+    {
+        private AlertPlanner planner = new AlertPlanner();
+
+        /**
+         * Set to <CODE>true</CODE> if live objects that are not in the desired configuration should be deleted.
+         * @param prune <CODE>true</CODE> if live objects that are not in the desired configuration should be deleted
+         * @return This object
+         */
+        public Builder prune(boolean prune)
+        {
+            planner.setPrune(prune);
+            return this;
+        }
+
+        /**
+         * Returns the configured planner instance
+         * @return The planner instance
+         */
+        public AlertPlanner build()
+        {
+            return planner;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,389 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.sync;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.api.model.alerts.conditions.BaseCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.AlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ExternalServiceAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.NrqlAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraAlertCondition;
+import com.opsmatters.newrelic.batch.AlertManager;
+import com.opsmatters.newrelic.batch.model.AlertConfiguration;
+import com.opsmatters.newrelic.batch.progress.ProgressTracker;
+
+/**
+ * Reconciles a desired alert configuration with the live configuration of an account.
+ * <P>
+ * The live configuration is fetched using the alert manager and compared with the desired configuration
+ * to produce a plan, and only the actions in the plan are applied.
+ * This means that a small change to the import files only costs a few API calls,
+ * instead of deleting and re-creating every object.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class AlertReconciler
+{
+    private static final Logger logger = Logger.getLogger(AlertReconciler.class.getName());
+
+    private AlertManager manager;
+    private AlertPlanner planner;
+
+    /**
+     * Constructor that takes a manager.
+     * @param manager The alert manager used to fetch and change the live configuration
+     */
+    public AlertReconciler(AlertManager manager)
+    {
+        this(manager, false);
+    }
+
+    /**
+     * Constructor that takes a manager and a prune flag.
+     * @param manager The alert manager used to fetch and change the live configuration
+     * @param prune <CODE>true</CODE> if live objects that are not in the desired configuration should be deleted
+     */
+    public AlertReconciler(AlertManager manager, boolean prune)
+    {
+        this.manager = manager;
+        this.planner = AlertPlanner.builder().prune(prune).build();
+    }
+
+    /**
+     * Returns the alert manager used to fetch and change the live configuration.
+     * @return The alert manager used to fetch and change the live configuration
+     */
+    public AlertManager getManager()
+    {
+        return manager;
+    }
+
+    /**
+     * Returns the planner used to compare the configurations.
+     * @return The planner used to compare the configurations
+     */
+    public AlertPlanner getPlanner()
+    {
+        return planner;
+    }
+
+    /**
+     * Returns the live configuration needed to reconcile the given desired configuration.
+     * <P>
+     * All channels and policies are fetched, but conditions are only fetched for the policies in the
+     * desired configuration, and only for the condition families present in the desired configuration
+     * unless pruning is enabled.
+     * </P>
+     * @param desired The desired configuration
+     * @return The live configuration
+     */
+    public AlertConfiguration getLiveConfiguration(AlertConfiguration desired)
+    {
+        AlertConfiguration ret = new AlertConfiguration();
+        ret.setAlertChannels(manager.getAlertChannels());
+        ret.setAlertPolicies(manager.getAlertPolicies());
+
+        // Only fetch the conditions for the policies being managed
+        Set<String> names = new HashSet<String>();
+        for(AlertPolicy policy : desired.getAlertPolicies())
+            names.add(policy.getName());
+        List<AlertPolicy> policies = new ArrayList<AlertPolicy>();
+        for(AlertPolicy policy : ret.getAlertPolicies())
+        {
+            if(names.contains(policy.getName()))
+                policies.add(policy);
+        }
+
+        boolean prune = planner.prune();
+        if(prune || desired.numAlertConditions() > 0)
+            ret.setAlertConditions(manager.getAlertConditions(policies));
+        if(prune || desired.numExternalServiceAlertConditions() > 0)
+            ret.setExternalServiceAlertConditions(manager.getExternalServiceAlertConditions(policies));
+        if(prune || desired.numNrqlAlertConditions() > 0)
+            ret.setNrqlAlertConditions(manager.getNrqlAlertConditions(policies));
+        if(prune || desired.numInfraAlertConditions() > 0)
+            ret.setInfraAlertConditions(manager.getInfraAlertConditions(policies));
+
+        return ret;
+    }
+
+    /**
+     * Returns the plan of changes needed to make the live configuration match the given desired configuration.
+     * @param desired The desired configuration
+     * @return The plan of changes
+     */
+    public AlertPlan plan(AlertConfiguration desired)
+    {
+        return plan(desired, getLiveConfiguration(desired));
+    }
+
+    /**
+     * Returns the plan of changes needed to make the given live configuration match the given desired configuration.
+     * @param desired The desired configuration
+     * @param live The live configuration
+     * @return The plan of changes
+     */
+    public AlertPlan plan(AlertConfiguration desired, AlertConfiguration live)
+    {
+        return planner.plan(desired, live);
+    }
+
+    /**
+     * Applies the actions in the given plan in order.
+     * @param plan The plan to apply
+     * @throws IllegalStateException if an action cannot be applied
+     */
+    public void apply(AlertPlan plan)
+    {
+        // The ids of the channels and policies, updated as they are created
+        Map<String,Long> channelIds = new HashMap<String,Long>();
+        for(AlertChannel channel : plan.getLive().getAlertChannels())
+        {
+            if(!channelIds.containsKey(channel.getName()))
+                channelIds.put(channel.getName(), channel.getId());
+        }
+        Map<String,Long> policyIds = new HashMap<String,Long>();
+        for(AlertPolicy policy : plan.getLive().getAlertPolicies())
+        {
+            if(!policyIds.containsKey(policy.getName()))
+                policyIds.put(policy.getName(), policy.getId());
+        }
+
+        ProgressTracker progress = new ProgressTracker("Applying alert plan", plan.size());
+        progress.addListeners(manager.getProgressListeners());
+        try
+        {
+            for(PlanAction action : plan.getActions())
+            {
+                progress.started();
+                logger.fine("Applying action: "+action);
+                switch(action.getKind())
+                {
+                    case CHANNEL:
+                        applyChannel(action, channelIds);
+                        break;
+                    case POLICY:
+                        applyPolicy(action, policyIds);
+                        break;
+                    case POLICY_CHANNEL:
+                        applyLink(action, policyIds, channelIds);
+                        break;
+                    default:
+                        applyCondition(action, policyIds);
+                        break;
+                }
+                progress.completed();
+            }
+        }
+        finally
+        {
+            progress.finish();
+        }
+    }
+
+    /**
+     * Applies the given channel action.
+     * <P>
+     * The live channel is deleted using its id.
+     * A replaced channel is re-created with a new id and loses its links to policies,
+     * so the planner adds link actions to restore them, which use the new id recorded here.
+     * </P>
+     */
+    private void applyChannel(PlanAction action, Map<String,Long> channelIds)
+    {
+        if(action.getLive() != null && action.getOperation() != PlanAction.Operation.CREATE)
+            manager.deleteAlertChannel((AlertChannel)action.getLive());
+        if(action.getDesired() != null && action.getOperation() != PlanAction.Operation.DELETE)
+        {
+            AlertChannel channel = manager.createAlertChannel((AlertChannel)action.getDesired());
+            channelIds.put(channel.getName(), channel.getId());
+        }
+    }
+
+    /**
+     * Applies the given policy action.
+     * <P>
+     * The channels of the policy are linked by separate actions.
+     * </P>
+     */
+    private void applyPolicy(PlanAction action, Map<String,Long> policyIds)
+    {
+        switch(action.getOperation())
+        {
+            case CREATE:
+            case UPDATE:
+                AlertPolicy desired = (AlertPolicy)action.getDesired();
+                AlertPolicy policy = AlertPolicy.builder()
+                    .name(desired.getName())
+                    .incidentPreference(desired.getIncidentPreference())
+                    .build();
+                if(action.getOperation() == PlanAction.Operation.CREATE)
+                {
+                    policy = manager.createAlertPolicy(policy);
+                    policyIds.put(policy.getName(), policy.getId());
+                }
+                else
+                {
+                    policy.setId(((AlertPolicy)action.getLive()).getId());
+                    manager.updateAlertPolicy(policy);
+                }
+                break;
+            case DELETE:
+                manager.deleteAlertPolicy((AlertPolicy)action.getLive());
+                break;
+            default:
+                throw new IllegalStateException("unsupported operation for policy: "+action.getOperation());
+        }
+    }
+
+    /**
+     * Applies the given policy channel link action.
+     */
+    private void applyLink(PlanAction action, Map<String,Long> policyIds, Map<String,Long> channelIds)
+    {
+        Long policyId = policyIds.get(action.getPolicyName());
+        if(policyId == null)
+            throw new IllegalStateException("missing policy_id: "+action.getPolicyName());
+        Long channelId = channelIds.get(action.getName());
+        if(channelId == null)
+            throw new IllegalStateException("missing channel_id: "+action.getName());
+
+        if(action.getOperation() == PlanAction.Operation.LINK)
+            manager.addAlertPolicyChannel(policyId, channelId);
+        else if(action.getOperation() == PlanAction.Operation.UNLINK)
+            manager.removeAlertPolicyChannel(policyId, channelId);
+        else
+            throw new IllegalStateException("unsupported operation for link: "+action.getOperation());
+    }
+
+    /**
+     * Applies the given condition action.
+     * <P>
+     * A changed condition is updated in place using the id of the live condition.
+     * </P>
+     */
+    private void applyCondition(PlanAction action, Map<String,Long> policyIds)
+    {
+        switch(action.getOperation())
+        {
+            case CREATE:
+            case UPDATE:
+                BaseCondition condition = (BaseCondition)action.getDesired();
+                Long policyId = policyIds.get(action.getPolicyName());
+                if(policyId == null)
+                    throw new IllegalStateException("missing policy_id: "+action.getPolicyName());
+                condition.setPolicyId(policyId);
+                if(action.getOperation() == PlanAction.Operation.CREATE)
+                {
+                    createCondition(action.getKind(), condition);
+                }
+                else
+                {
+                    condition.setId(((BaseCondition)action.getLive()).getId());
+                    updateCondition(action.getKind(), condition);
+                }
+                break;
+            case DELETE:
+                deleteCondition(action.getKind(), (BaseCondition)action.getLive());
+                break;
+            default:
+                throw new IllegalStateException("unsupported operation for condition: "+action.getOperation());
+        }
+    }
+
+    /**
+     * Creates the given condition using the manager method for its family.
+     */
+    private void createCondition(PlanAction.Kind kind, BaseCondition condition)
+    {
+        switch(kind)
+        {
+            case ALERT_CONDITION:
+                manager.createAlertCondition((AlertCondition)condition);
+                break;
+            case EXTERNAL_SERVICE_ALERT_CONDITION:
+                manager.createExternalServiceAlertCondition((ExternalServiceAlertCondition)condition);
+                break;
+            case NRQL_ALERT_CONDITION:
+                manager.createNrqlAlertCondition((NrqlAlertCondition)condition);
+                break;
+            case INFRA_ALERT_CONDITION:
+                manager.createInfraAlertCondition((InfraAlertCondition)condition);
+                break;
+            default:
+                throw new IllegalStateException("unsupported condition kind: "+kind);
+        }
+    }
+
+    /**
+     * Updates the given condition using the manager method for its family.
+     */
+    private void updateCondition(PlanAction.Kind kind, BaseCondition condition)
+    {
+        switch(kind)
+        {
+            case ALERT_CONDITION:
+                manager.updateAlertCondition((AlertCondition)condition);
+                break;
+            case EXTERNAL_SERVICE_ALERT_CONDITION:
+                manager.updateExternalServiceAlertCondition((ExternalServiceAlertCondition)condition);
+                break;
+            case NRQL_ALERT_CONDITION:
+                manager.updateNrqlAlertCondition((NrqlAlertCondition)condition);
+                break;
+            case INFRA_ALERT_CONDITION:
+                manager.updateInfraAlertCondition((InfraAlertCondition)condition);
+                break;
+            default:
+                throw new IllegalStateException("unsupported condition kind: "+kind);
+        }
+    }
+
+    /**
+     * Deletes the given live condition by its id using the manager method for its family.
+     */
+    private void deleteCondition(PlanAction.Kind kind, BaseCondition condition)
+    {
+        switch(kind)
+        {
+            case ALERT_CONDITION:
+                manager.deleteAlertCondition((AlertCondition)condition);
+                break;
+            case EXTERNAL_SERVICE_ALERT_CONDITION:
+                manager.deleteExternalServiceAlertCondition((ExternalServiceAlertCondition)condition);
+                break;
+            case NRQL_ALERT_CONDITION:
+                manager.deleteNrqlAlertCondition((NrqlAlertCondition)condition);
+                break;
+            case INFRA_ALERT_CONDITION:
+                manager.deleteInfraAlertCondition((InfraAlertCondition)condition);
+                break;
+            default:
+                throw new IllegalStateException("unsupported condition kind: "+kind);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.sync;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.EmailChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.SlackChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.HipChatChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.CampfireChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.OpsGenieChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.PagerDutyChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.UserChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.VictorOpsChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.xMattersChannel;
+import com.opsmatters.newrelic.api.model.alerts.conditions.BaseCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.AlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ExternalServiceAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.NrqlAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraMetricAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraProcessRunningAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraHostNotReportingAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.AlertThreshold;
+import com.opsmatters.newrelic.api.model.alerts.conditions.Term;
+
+/**
+ * Produces a canonical string for an alert channel, policy or condition.
+ * <P>
+ * The canonical form only contains the attributes that are managed through the import files,
+ * so that an object read from a file can be compared with the same object fetched from the API.
+ * Ids and the owning policy are excluded, numbers are normalised, and the terms and entities
+ * are sorted so that their order does not matter.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class CanonicalForm
+{
+    private static final char SEPARATOR = '|';
+
+    /**
+     * Private constructor.
+     */
+    private CanonicalForm()
+    {
+    }
+
+    /**
+     * Returns the canonical form of the given alert policy, excluding its channels.
+     * @param policy The alert policy
+     * @return The canonical form of the alert policy
+     */
+    public static String of(AlertPolicy policy)
+    {
+        StringBuilder sb = new StringBuilder("policy");
+        append(sb, policy.getName());
+        append(sb, policy.getIncidentPreference());
+        return sb.toString();
+    }
+
+    /**
+     * Returns the canonical form of the given alert channel.
+     * @param channel The alert channel
+     * @return The canonical form of the alert channel
+     */
+    public static String of(AlertChannel channel)
+    {
+        StringBuilder sb = new StringBuilder("channel");
+        append(sb, channel.getType());
+        append(sb, channel.getName());
+
+        if(channel instanceof EmailChannel)
+        {
+            EmailChannel c = (EmailChannel)channel;
+            append(sb, c.getConfiguration().getRecipients());
+            append(sb, c.getConfiguration().getIncludeJsonAttachment());
+        }
+        else if(channel instanceof SlackChannel)
+        {
+            SlackChannel c = (SlackChannel)channel;
+            append(sb, c.getConfiguration().getUrl());
+            append(sb, c.getConfiguration().getChannel());
+        }
+        else if(channel instanceof HipChatChannel)
+        {
+            HipChatChannel c = (HipChatChannel)channel;
+            append(sb, c.getConfiguration().getAuthToken());
+            append(sb, c.getConfiguration().getRoomId());
+        }
+        else if(channel instanceof CampfireChannel)
+        {
+            CampfireChannel c = (CampfireChannel)channel;
+            append(sb, c.getConfiguration().getSubdomain());
+            append(sb, c.getConfiguration().getToken());
+            append(sb, c.getConfiguration().getRoom());
+        }
+        else if(channel instanceof OpsGenieChannel)
+        {
+            OpsGenieChannel c = (OpsGenieChannel)channel;
+            append(sb, c.getConfiguration().getApiKey());
+            append(sb, c.getConfiguration().getTeams());
+            append(sb, c.getConfiguration().getTags());
+            append(sb, c.getConfiguration().getRecipients());
+        }
+        else if(channel instanceof PagerDutyChannel)
+        {
+            PagerDutyChannel c = (PagerDutyChannel)channel;
+            append(sb, c.getConfiguration().getServiceKey());
+        }
+        else if(channel instanceof UserChannel)
+        {
+            UserChannel c = (UserChannel)channel;
+            append(sb, c.getConfiguration().getUserId());
+        }
+        else if(channel instanceof VictorOpsChannel)
+        {
+            VictorOpsChannel c = (VictorOpsChannel)channel;
+            append(sb, c.getConfiguration().getKey());
+            append(sb, c.getConfiguration().getRouteKey());
+        }
+        else if(channel instanceof xMattersChannel)
+        {
+            xMattersChannel c = (xMattersChannel)channel;
+            append(sb, c.getConfiguration().getUrl());
+            append(sb, c.getConfiguration().getChannel());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the canonical form of the given alert condition.
+     * @param condition The alert condition
+     * @return The canonical form of the alert condition
+     */
+    public static String of(AlertCondition condition)
+    {
+        StringBuilder sb = new StringBuilder("alert-condition");
+        append(sb, condition.getName());
+        append(sb, condition.getType());
+        append(sb, condition.getConditionScope());
+        append(sb, condition.getMetric());
+        append(sb, condition.getViolationCloseTimer());
+        appendEntities(sb, condition.getEntities());
+        appendTerms(sb, condition.getTerms());
+        return sb.toString();
+    }
+
+    /**
+     * Returns the canonical form of the given external service alert condition.
+     * @param condition The external service alert condition
+     * @return The canonical form of the external service alert condition
+     */
+    public static String of(ExternalServiceAlertCondition condition)
+    {
+        StringBuilder sb = new StringBuilder("external-service-alert-condition");
+        append(sb, condition.getName());
+        append(sb, condition.getType());
+        append(sb, condition.getMetric());
+        append(sb, condition.getExternalServiceUrl());
+        appendEntities(sb, condition.getEntities());
+        appendTerms(sb, condition.getTerms());
+        return sb.toString();
+    }
+
+    /**
+     * Returns the canonical form of the given NRQL alert condition.
+     * @param condition The NRQL alert condition
+     * @return The canonical form of the NRQL alert condition
+     */
+    public static String of(NrqlAlertCondition condition)
+    {
+        StringBuilder sb = new StringBuilder("nrql-alert-condition");
+        append(sb, condition.getName());
+        append(sb, condition.getValueFunction());
+        if(condition.getNrql() != null)
+        {
+            append(sb, condition.getNrql().getQuery());
+            append(sb, condition.getNrql().getSinceValue());
+        }
+        appendTerms(sb, condition.getTerms());
+        return sb.toString();
+    }
+
+    /**
+     * Returns the canonical form of the given infrastructure alert condition.
+     * @param condition The infrastructure alert condition
+     * @return The canonical form of the infrastructure alert condition
+     */
+    public static String of(InfraAlertCondition condition)
+    {
+        StringBuilder sb = new StringBuilder();
+
+        if(condition instanceof InfraMetricAlertCondition)
+        {
+            InfraMetricAlertCondition c = (InfraMetricAlertCondition)condition;
+            sb.append("infra-metric-alert-condition");
+            append(sb, c.getName());
+            append(sb, c.getEventType());
+            append(sb, c.getSelectValue());
+            append(sb, c.getComparison());
+            appendThreshold(sb, c.getCriticalThreshold());
+            appendThreshold(sb, c.getWarningThreshold());
+            append(sb, c.getWhereClause());
+        }
+        else if(condition instanceof InfraProcessRunningAlertCondition)
+        {
+            InfraProcessRunningAlertCondition c = (InfraProcessRunningAlertCondition)condition;
+            sb.append("infra-process-alert-condition");
+            append(sb, c.getName());
+            append(sb, c.getComparison());
+            appendThreshold(sb, c.getCriticalThreshold());
+            append(sb, c.getProcessWhereClause());
+            append(sb, c.getWhereClause());
+        }
+        else if(condition instanceof InfraHostNotReportingAlertCondition)
+        {
+            InfraHostNotReportingAlertCondition c = (InfraHostNotReportingAlertCondition)condition;
+            sb.append("infra-host-alert-condition");
+            append(sb, c.getName());
+            appendThreshold(sb, c.getCriticalThreshold());
+            append(sb, c.getWhereClause());
+        }
+        else
+        {
+            sb.append("infra-alert-condition");
+            append(sb, condition.getName());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the canonical form of the given condition of any type.
+     * @param condition The condition
+     * @return The canonical form of the condition
+     * @throws IllegalArgumentException if the type of the condition is not supported
+     */
+    public static String of(BaseCondition condition)
+    {
+        if(condition instanceof AlertCondition)
+            return of((AlertCondition)condition);
+        else if(condition instanceof ExternalServiceAlertCondition)
+            return of((ExternalServiceAlertCondition)condition);
+        else if(condition instanceof NrqlAlertCondition)
+            return of((NrqlAlertCondition)condition);
+        else if(condition instanceof InfraAlertCondition)
+            return of((InfraAlertCondition)condition);
+        throw new IllegalArgumentException("unsupported condition type: "+condition.getClass().getName());
+    }
+
+    /**
+     * Appends the given value to the canonical form.
+     */
+    private static void append(StringBuilder sb, Object value)
+    {
+        sb.append(SEPARATOR).append(normalize(value));
+    }
+
+    /**
+     * Appends the given entity ids to the canonical form in ascending order.
+     */
+    private static void appendEntities(StringBuilder sb, List<Long> entities)
+    {
+        List<Long> sorted = new ArrayList<Long>();
+        if(entities != null)
+            sorted.addAll(entities);
+        Collections.sort(sorted);
+        append(sb, sorted.toString());
+    }
+
+    /**
+     * Appends the given terms to the canonical form ordered by priority.
+     */
+    private static void appendTerms(StringBuilder sb, List<Term> terms)
+    {
+        List<String> sorted = new ArrayList<String>();
+        if(terms != null)
+        {
+            for(Term term : terms)
+            {
+                sorted.add(normalize(term.getPriority())
+                    +","+normalize(term.getOperator())
+                    +","+normalize(term.getThreshold())
+                    +","+normalize(term.getDuration())
+                    +","+normalize(term.getTimeFunction()));
+            }
+        }
+        Collections.sort(sorted);
+        append(sb, sorted.toString());
+    }
+
+    /**
+     * Appends the given threshold to the canonical form.
+     */
+    private static void appendThreshold(StringBuilder sb, AlertThreshold threshold)
+    {
+        if(threshold != null)
+        {
+            append(sb, threshold.getValue()
+                +","+threshold.getDurationMinutes()
+                +","+normalize(threshold.getTimeFunction()));
+        }
+        else
+        {
+            append(sb, null);
+        }
+    }
+
+    /**
+     * Returns the normalised string for the given value.
+     * <P>
+     * Nulls become empty strings, strings are trimmed and numbers lose any trailing zeros.
+     * </P>
+     */
+    private static String normalize(Object value)
+    {
+        if(value == null)
+            return "";
+        String ret = value.toString().trim();
+        if(ret.length() > 0 && (Character.isDigit(ret.charAt(0)) || ret.charAt(0) == '-'))
+        {
+            try
+            {
+                ret = new BigDecimal(ret).stripTrailingZeros().toPlainString();
+            }
+            catch(NumberFormatException e)
+            {
+            }
+        }
+        return ret;
+    }
+}
\ No newline at end of file
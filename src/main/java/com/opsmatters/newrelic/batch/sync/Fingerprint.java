@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.sync;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.api.model.alerts.conditions.BaseCondition;
+
+/**
+ * Produces a content hash for an alert channel, policy or condition.
+ * <P>
+ * The hash is the SHA-256 digest of the canonical form of the object,
+ * so two objects with the same managed attributes have the same fingerprint
+ * whatever the order of their terms, entities or channels.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class Fingerprint
+{
+    private static final String ALGORITHM = "SHA-256";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Private constructor.
+     */
+    private Fingerprint()
+    {
+    }
+
+    /**
+     * Returns the fingerprint of the given alert policy, including its channels.
+     * @param policy The alert policy
+     * @return The fingerprint of the alert policy
+     */
+    public static String of(AlertPolicy policy)
+    {
+        List<Long> channelIds = new ArrayList<Long>();
+        if(policy.getChannels() != null && policy.getChannels().getChannelIds() != null)
+            channelIds.addAll(policy.getChannels().getChannelIds());
+        channelIds.removeAll(Collections.singleton(null));
+        Collections.sort(channelIds);
+        return hash(CanonicalForm.of(policy)+"|"+channelIds);
+    }
+
+    /**
+     * Returns the fingerprint of the given alert channel.
+     * @param channel The alert channel
+     * @return The fingerprint of the alert channel
+     */
+    public static String of(AlertChannel channel)
+    {
+        return hash(CanonicalForm.of(channel));
+    }
+
+    /**
+     * Returns the fingerprint of the given condition.
+     * @param condition The condition
+     * @return The fingerprint of the condition
+     */
+    public static String of(BaseCondition condition)
+    {
+        return hash(CanonicalForm.of(condition));
+    }
+
+    /**
+     * Returns the hex-encoded SHA-256 digest of the given string.
+     * @param str The string to hash
+     * @return The hex-encoded digest of the string
+     */
+    public static String hash(String str)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] bytes = digest.digest(str.getBytes(UTF8));
+        char[] ret = new char[bytes.length*2];
+        for(int i = 0; i < bytes.length; i++)
+        {
+            ret[i*2] = HEX[(bytes[i] >> 4) & 0x0f];
+            ret[i*2+1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(ret);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.sync;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Set;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Write-ahead journal of the operations in a bulk operation, used to resume the operation after it was interrupted.
+ * <P>
+ * Each operation is recorded when it begins and again with the id of the object when it completes.
+ * When an existing journal is opened it is replayed, so that completed operations can be skipped
+ * and operations that began but did not complete can be checked before they are repeated.
+ * </P>
+ * <P>
+ * Each record is written to the operating system as soon as it is appended, so it survives the process dying.
+ * The file is only forced to disk every sync interval records or sync delay milliseconds, to keep the journal cheap.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class Journal
+{
+    private static final Logger logger = Logger.getLogger(Journal.class.getName());
+
+    /**
+     * The default number of records between syncs to disk.
+     */
+    public static final int DEFAULT_SYNC_INTERVAL = 100;
+
+    /**
+     * The default maximum time between syncs to disk in milliseconds.
+     */
+    public static final long DEFAULT_SYNC_DELAY = 1000L;
+
+    /**
+     * The operation name for creates.
+     */
+    public static final String CREATE = "create";
+
+    /**
+     * The operation name for deletes.
+     */
+    public static final String DELETE = "delete";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SEPARATOR = "\t";
+    private static final String BEGIN = "B";
+    private static final String COMPLETE = "C";
+
+    private File file;
+    private int syncInterval = DEFAULT_SYNC_INTERVAL;
+    private long syncDelay = DEFAULT_SYNC_DELAY;
+    private Map<String,Long> completed = new ConcurrentHashMap<String,Long>();
+    private Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+    private FileOutputStream out;
+    private int unsynced = 0;
+    private long lastSync = 0L;
+
+    /**
+     * Constructor that takes a file.
+     * @param file The journal file
+     */
+    public Journal(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Returns the journal file.
+     * @return The journal file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Sets the number of records between syncs to disk.
+     * @param syncInterval The number of records between syncs to disk
+     */
+    public void setSyncInterval(int syncInterval)
+    {
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * Sets the maximum time between syncs to disk.
+     * @param syncDelay The maximum time between syncs to disk in milliseconds
+     */
+    public void setSyncDelay(long syncDelay)
+    {
+        this.syncDelay = syncDelay;
+    }
+
+    /**
+     * Opens the journal, replaying the records of an existing journal.
+     * <P>
+     * A partial last line left by a crash is discarded.
+     * </P>
+     * @throws IOException if the journal cannot be read or opened
+     */
+    public synchronized void open() throws IOException
+    {
+        close();
+        completed.clear();
+        pending.clear();
+
+        if(file.exists())
+        {
+            String contents = read();
+            int start = 0;
+            int end;
+            while((end = contents.indexOf('\n', start)) >= 0)
+            {
+                replay(contents.substring(start, end));
+                start = end+1;
+            }
+
+            // Rewrite the journal without the partial line
+            if(start < contents.length())
+            {
+                logger.warning("Discarding partial last line in journal: "+file.getName());
+                FileOutputStream tmp = new FileOutputStream(file, true);
+                try
+                {
+                    tmp.getChannel().truncate(contents.substring(0, start).getBytes(UTF8).length);
+                }
+                finally
+                {
+                    tmp.close();
+                }
+            }
+
+            logger.info("Replayed journal: "+file.getName()+": completed="+completed.size()+" pending="+pending.size());
+        }
+
+        out = new FileOutputStream(file, true);
+        lastSync = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the journal had records when it was opened.
+     * @return <CODE>true</CODE> if the journal had records when it was opened
+     */
+    public boolean isResuming()
+    {
+        return completed.size() > 0 || pending.size() > 0;
+    }
+
+    /**
+     * Returns the id of the object if the operation with the given key has completed.
+     * @param key The key of the operation
+     * @return The id of the object, or null if the operation has not completed
+     */
+    public Long getCompletedId(String key)
+    {
+        return completed.get(key);
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the operation with the given key began but did not complete.
+     * <P>
+     * The outcome of the operation is unknown, so the object may or may not exist.
+     * </P>
+     * @param key The key of the operation
+     * @return <CODE>true</CODE> if the operation with the given key began but did not complete
+     */
+    public boolean isPending(String key)
+    {
+        return pending.contains(key);
+    }
+
+    /**
+     * Records that the operation with the given key is about to begin.
+     * @param key The key of the operation
+     * @throws IOException if the journal cannot be written
+     */
+    public void begin(String key) throws IOException
+    {
+        pending.add(key);
+        append(BEGIN+SEPARATOR+key);
+    }
+
+    /**
+     * Records that the operation with the given key has completed.
+     * @param key The key of the operation
+     * @param id The id of the object
+     * @throws IOException if the journal cannot be written
+     */
+    public void complete(String key, long id) throws IOException
+    {
+        completed.put(key, id);
+        pending.remove(key);
+        append(COMPLETE+SEPARATOR+id+SEPARATOR+key);
+    }
+
+    /**
+     * Forces the records written so far to disk.
+     * @throws IOException if the journal cannot be synced
+     */
+    public synchronized void sync() throws IOException
+    {
+        if(out != null && unsynced > 0)
+        {
+            out.getFD().sync();
+            unsynced = 0;
+        }
+        lastSync = System.currentTimeMillis();
+    }
+
+    /**
+     * Syncs and closes the journal.
+     * @throws IOException if the journal cannot be closed
+     */
+    public synchronized void close() throws IOException
+    {
+        if(out != null)
+        {
+            sync();
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Closes and deletes the journal once the bulk operation has completed.
+     * @throws IOException if the journal cannot be deleted
+     */
+    public synchronized void delete() throws IOException
+    {
+        close();
+        completed.clear();
+        pending.clear();
+        if(file.exists() && !file.delete())
+            throw new IOException("unable to delete journal: "+file.getName());
+    }
+
+    /**
+     * Appends the given record to the journal, syncing it to disk if the sync interval or delay has been reached.
+     */
+    private synchronized void append(String record) throws IOException
+    {
+        if(out == null)
+            throw new IllegalStateException("journal not open: "+file.getName());
+        out.write((record+"\n").getBytes(UTF8));
+        ++unsynced;
+        if(unsynced >= syncInterval || System.currentTimeMillis()-lastSync >= syncDelay)
+            sync();
+    }
+
+    /**
+     * Applies the given journal record.
+     */
+    private void replay(String line)
+    {
+        if(line.startsWith(BEGIN+SEPARATOR))
+        {
+            pending.add(line.substring(BEGIN.length()+SEPARATOR.length()));
+            return;
+        }
+
+        String[] fields = line.split(SEPARATOR, 3);
+        if(fields.length == 3 && fields[0].equals(COMPLETE))
+        {
+            try
+            {
+                completed.put(fields[2], Long.parseLong(fields[1]));
+                pending.remove(fields[2]);
+                return;
+            }
+            catch(NumberFormatException e)
+            {
+            }
+        }
+        logger.warning("Ignoring invalid line in journal: "+line);
+    }
+
+    /**
+     * Returns the contents of the journal.
+     */
+    private String read() throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        Reader reader = null;
+        try
+        {
+            reader = new InputStreamReader(new FileInputStream(file), UTF8);
+            char[] buffer = new char[8192];
+            int count;
+            while((count = reader.read(buffer)) > 0)
+                sb.append(buffer, 0, count);
+        }
+        finally
+        {
+            if(reader != null)
+                reader.close();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "Journal [file="+file
+            +", completed="+completed.size()
+            +", pending="+pending.size()
+            +"]";
+    }
+}
\ No newline at end of file
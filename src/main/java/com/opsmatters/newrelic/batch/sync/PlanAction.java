@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.sync;
+
+/**
+ * Represents a single change in a reconciliation plan.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class PlanAction
+{
+    /**
+     * The operations that can be performed by an action.
+     */
+    public enum Operation
+    {
+        CREATE,
+        UPDATE,
+        REPLACE,
+        DELETE,
+        LINK,
+        UNLINK
+    }
+
+    /**
+     * The kinds of object that can be changed by an action.
+     */
+    public enum Kind
+    {
+        CHANNEL,
+        POLICY,
+        POLICY_CHANNEL,
+        ALERT_CONDITION,
+        EXTERNAL_SERVICE_ALERT_CONDITION,
+        NRQL_ALERT_CONDITION,
+        INFRA_ALERT_CONDITION
+    }
+
+    private Operation operation;
+    private Kind kind;
+    private String policyName;
+    private String name;
+    private Object desired;
+    private Object live;
+
+    /**
+     * Constructor that takes the details of the action.
+     * @param operation The operation to perform
+     * @param kind The kind of object to change
+     * @param policyName The name of the policy that owns the object, or null for channels and policies
+     * @param name The name of the object, or the name of the channel for links
+     * @param desired The desired state of the object, or null for deletes and links
+     * @param live The live state of the object, or null for creates and links
+     */
+    public PlanAction(Operation operation, Kind kind, String policyName, String name, Object desired, Object live)
+    {
+        this.operation = operation;
+        this.kind = kind;
+        this.policyName = policyName;
+        this.name = name;
+        this.desired = desired;
+        this.live = live;
+    }
+
+    /**
+     * Returns the operation to perform.
+     * @return The operation to perform
+     */
+    public Operation getOperation()
+    {
+        return operation;
+    }
+
+    /**
+     * Returns the kind of object to change.
+     * @return The kind of object to change
+     */
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * Returns the name of the policy that owns the object.
+     * @return The name of the policy that owns the object, or null for channels and policies
+     */
+    public String getPolicyName()
+    {
+        return policyName;
+    }
+
+    /**
+     * Returns the name of the object, or the name of the channel for links.
+     * @return The name of the object
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the desired state of the object.
+     * @return The desired state of the object, or null for deletes and links
+     */
+    public Object getDesired()
+    {
+        return desired;
+    }
+
+    /**
+     * Returns the live state of the object.
+     * @return The live state of the object, or null for creates and links
+     */
+    public Object getLive()
+    {
+        return live;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return operation+" "+kind+" "+(policyName != null ? policyName+"/" : "")+name;
+    }
+}
\ No newline at end of file
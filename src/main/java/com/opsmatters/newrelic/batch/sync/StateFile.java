@@ -0,0 +1,669 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.opsmatters.newrelic.batch.sync;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.api.model.alerts.conditions.BaseCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.AlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ExternalServiceAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.NrqlAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraMetricAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraProcessRunningAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraHostNotReportingAlertCondition;
+import com.opsmatters.newrelic.api.model.insights.Dashboard;
+
+/**
+ * Local store that records the remote id, type, policy and fingerprint of each object created by an import.
+ * <P>
+ * The store allows the id of an object to be resolved by name without listing the objects in the account,
+ * and an object whose fingerprint matches the recorded fingerprint to be skipped.
+ * Entries older than the maximum age are treated as stale and their ids are not used to find objects,
+ * but an object whose fingerprint matches is skipped however old its entry is, as the entry is not
+ * refreshed when the object is skipped and the object would otherwise be created again as a duplicate.
+ * </P>
+ * <P>
+ * The file is an append-only log: each change is appended and flushed as a single line,
+ * so a crash can at most lose a partial last line, which is discarded when the file is loaded.
+ * The log is compacted to one line per entry when it grows to more than twice the number of entries.
+ * If the log has not been loaded it is loaded before the first change, so that changes are never
+ * appended after a partial line and a compaction never drops the entries of earlier runs.
+ * </P>
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class StateFile
+{
+    private static final Logger logger = Logger.getLogger(StateFile.class.getName());
+
+    /**
+     * The default maximum age of an entry in milliseconds.
+     */
+    public static final long DEFAULT_MAX_AGE = 24*60*60*1000L;
+
+    /**
+     * The type of alert channels.
+     */
+    public static final String CHANNEL = "channel";
+
+    /**
+     * The type of alert policies.
+     */
+    public static final String POLICY = "policy";
+
+    /**
+     * The type of APM, browser and mobile alert conditions.
+     */
+    public static final String ALERT_CONDITION = "alert_condition";
+
+    /**
+     * The type of external service alert conditions.
+     */
+    public static final String EXTERNAL_SERVICE_ALERT_CONDITION = "external_service_alert_condition";
+
+    /**
+     * The type of NRQL alert conditions.
+     */
+    public static final String NRQL_ALERT_CONDITION = "nrql_alert_condition";
+
+    /**
+     * The type of infrastructure alert conditions.
+     */
+    public static final String INFRA_ALERT_CONDITION = "infra_alert_condition";
+
+    /**
+     * The type of dashboards.
+     */
+    public static final String DASHBOARD = "dashboard";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SEPARATOR = "\t";
+    private static final String PUT = "P";
+    private static final String DELETE = "D";
+    private static final int MIN_COMPACT_RECORDS = 1000;
+
+    private File file;
+    private long maxAge = DEFAULT_MAX_AGE;
+    private Map<String,Entry> entries = new ConcurrentHashMap<String,Entry>();
+    private Writer writer;
+    private int records = 0;
+    private boolean loaded = false;
+
+    /**
+     * The details recorded for an object.
+     */
+    public static class Entry
+    {
+        private long id;
+        private String type;
+        private Long policyId;
+        private String fingerprint;
+        private long updated;
+
+        /**
+         * Constructor that takes the details of the object.
+         * @param id The remote id of the object
+         * @param type The type of the object, eg. {@link #POLICY}
+         * @param policyId The id of the policy of the object, or null if the object does not belong to a policy
+         * @param fingerprint The fingerprint of the object, or an empty string if the object has no fingerprint
+         * @param updated The time the entry was recorded
+         */
+        public Entry(long id, String type, Long policyId, String fingerprint, long updated)
+        {
+            this.id = id;
+            this.type = type;
+            this.policyId = policyId;
+            this.fingerprint = fingerprint;
+            this.updated = updated;
+        }
+
+        /**
+         * Returns the remote id of the object.
+         * @return The remote id of the object
+         */
+        public long getId()
+        {
+            return id;
+        }
+
+        /**
+         * Returns the type of the object.
+         * @return The type of the object
+         */
+        public String getType()
+        {
+            return type;
+        }
+
+        /**
+         * Returns the id of the policy of the object.
+         * @return The id of the policy of the object, or null if the object does not belong to a policy
+         */
+        public Long getPolicyId()
+        {
+            return policyId;
+        }
+
+        /**
+         * Returns the fingerprint of the object.
+         * @return The fingerprint of the object, or an empty string if the object has no fingerprint
+         */
+        public String getFingerprint()
+        {
+            return fingerprint;
+        }
+
+        /**
+         * Returns the time the entry was recorded.
+         * @return The time the entry was recorded
+         */
+        public long getUpdated()
+        {
+            return updated;
+        }
+
+        /**
+         * Returns <CODE>true</CODE> if the entry is older than the given maximum age.
+         * @param maxAge The maximum age of an entry in milliseconds, or zero if entries do not expire
+         * @return <CODE>true</CODE> if the entry is older than the given maximum age
+         */
+        public boolean isStale(long maxAge)
+        {
+            return maxAge > 0L && System.currentTimeMillis()-updated > maxAge;
+        }
+
+        /**
+         * Returns a string representation of the object.
+         */
+        @Override
+        public String toString()
+        {
+            return "Entry [id="+id
+                +", type="+type
+                +", policyId="+policyId
+                +", fingerprint="+fingerprint
+                +", updated="+updated
+                +"]";
+        }
+    }
+
+    /**
+     * Constructor that takes a file.
+     * @param file The state file
+     */
+    public StateFile(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Returns the state file.
+     * @return The state file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Sets the maximum age of an entry before it is treated as stale.
+     * @param maxAge The maximum age of an entry in milliseconds, or zero if entries do not expire
+     */
+    public void setMaxAge(long maxAge)
+    {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Returns the maximum age of an entry before it is treated as stale.
+     * @return The maximum age of an entry in milliseconds, or zero if entries do not expire
+     */
+    public long getMaxAge()
+    {
+        return maxAge;
+    }
+
+    /**
+     * Returns the key of the alert channel with the given name.
+     * @param name The name of the alert channel
+     * @return The key of the alert channel
+     */
+    public static String getChannelKey(String name)
+    {
+        return CHANNEL+"/"+name;
+    }
+
+    /**
+     * Returns the key of the alert policy with the given name.
+     * @param name The name of the alert policy
+     * @return The key of the alert policy
+     */
+    public static String getPolicyKey(String name)
+    {
+        return POLICY+"/"+name;
+    }
+
+    /**
+     * Returns the key of a condition, which includes the type and policy of the condition.
+     * @param type The type of the condition, eg. {@link #NRQL_ALERT_CONDITION}
+     * @param policyId The id of the policy of the condition
+     * @param name The name of the condition
+     * @return The key of the condition
+     */
+    public static String getConditionKey(String type, Long policyId, String name)
+    {
+        return type+"/"+policyId+"/"+name;
+    }
+
+    /**
+     * Returns the type of the given condition.
+     * <P>
+     * All the infrastructure conditions have the same type as they are managed through the same endpoint.
+     * </P>
+     * @param condition The condition
+     * @return The type of the condition
+     */
+    public static String getType(BaseCondition condition)
+    {
+        if(condition instanceof InfraAlertCondition)
+            return INFRA_ALERT_CONDITION;
+        else if(condition instanceof NrqlAlertCondition)
+            return NRQL_ALERT_CONDITION;
+        else if(condition instanceof ExternalServiceAlertCondition)
+            return EXTERNAL_SERVICE_ALERT_CONDITION;
+        else if(condition instanceof AlertCondition)
+            return ALERT_CONDITION;
+        throw new IllegalArgumentException("unsupported condition type: "+condition.getClass().getName());
+    }
+
+    /**
+     * Returns the subtype of the given condition.
+     * <P>
+     * The infrastructure conditions have a subtype for each kind of condition, as conditions of
+     * different kinds can have the same name in a policy. Other conditions have the same subtype as type.
+     * </P>
+     * @param condition The condition
+     * @return The subtype of the condition
+     */
+    public static String getSubtype(BaseCondition condition)
+    {
+        if(condition instanceof InfraMetricAlertCondition)
+            return "infra_metric";
+        else if(condition instanceof InfraProcessRunningAlertCondition)
+            return "infra_process_running";
+        else if(condition instanceof InfraHostNotReportingAlertCondition)
+            return "infra_host_not_reporting";
+        return getType(condition);
+    }
+
+    /**
+     * Returns the key of the dashboard with the given title.
+     * @param title The title of the dashboard
+     * @return The key of the dashboard
+     */
+    public static String getDashboardKey(String title)
+    {
+        return DASHBOARD+"/"+title;
+    }
+
+    /**
+     * Returns the key of the given alert channel.
+     * @param channel The alert channel
+     * @return The key of the alert channel
+     */
+    public static String getKey(AlertChannel channel)
+    {
+        return getChannelKey(channel.getName());
+    }
+
+    /**
+     * Returns the key of the given alert policy.
+     * @param policy The alert policy
+     * @return The key of the alert policy
+     */
+    public static String getKey(AlertPolicy policy)
+    {
+        return getPolicyKey(policy.getName());
+    }
+
+    /**
+     * Returns the key of the given condition.
+     * @param condition The condition
+     * @return The key of the condition
+     */
+    public static String getKey(BaseCondition condition)
+    {
+        return getConditionKey(getType(condition), condition.getPolicyId(), condition.getName());
+    }
+
+    /**
+     * Returns the key of the given dashboard.
+     * @param dashboard The dashboard
+     * @return The key of the dashboard
+     */
+    public static String getKey(Dashboard dashboard)
+    {
+        return getDashboardKey(dashboard.getTitle());
+    }
+
+    /**
+     * Returns the entry for the given key, even if it is stale.
+     * @param key The key of the object
+     * @return The entry for the key, or null if the object has not been recorded
+     */
+    public Entry get(String key)
+    {
+        return entries.get(key);
+    }
+
+    /**
+     * Returns the id recorded for the given key if the entry is not stale.
+     * @param key The key of the object
+     * @return The id of the object, or null if the object has not been recorded or the entry is stale
+     */
+    public Long getId(String key)
+    {
+        Entry entry = entries.get(key);
+        if(entry != null && !entry.isStale(maxAge))
+            return entry.getId();
+        return null;
+    }
+
+    /**
+     * Returns the id recorded for the given key if the recorded fingerprint matches the given fingerprint.
+     * <P>
+     * The maximum age does not apply, so an unchanged object is never created again once its entry is stale.
+     * </P>
+     * @param key The key of the object
+     * @param fingerprint The current fingerprint of the object
+     * @return The id of the unchanged object, or null if the object is new or has changed
+     */
+    public Long getUnchangedId(String key, String fingerprint)
+    {
+        Entry entry = entries.get(key);
+        if(entry != null && entry.getFingerprint().equals(fingerprint))
+            return entry.getId();
+        return null;
+    }
+
+    /**
+     * Records the details of an object and appends them to the log.
+     * <P>
+     * The entry is recorded and appended under the same lock, so the log has the same final entry as the store.
+     * </P>
+     * @param key The key of the object
+     * @param id The remote id of the object
+     * @param type The type of the object, eg. {@link #POLICY}
+     * @param policyId The id of the policy of the object, or null if the object does not belong to a policy
+     * @param fingerprint The fingerprint of the object, or null if the object has no fingerprint
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void put(String key, long id, String type, Long policyId, String fingerprint) throws IOException
+    {
+        if(!loaded)
+            load();
+        Entry entry = new Entry(id, type, policyId, fingerprint != null ? fingerprint : "", System.currentTimeMillis());
+        entries.put(key, entry);
+        append(format(key, entry));
+    }
+
+    /**
+     * Removes the entry for the given key and appends the delete to the log.
+     * <P>
+     * The entry is removed and the delete appended under the same lock.
+     * </P>
+     * @param key The key of the object
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void remove(String key) throws IOException
+    {
+        if(!loaded)
+            load();
+        if(entries.remove(key) != null)
+            append(DELETE+SEPARATOR+key);
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return The number of entries
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Reads the entries from the log, if it exists.
+     * <P>
+     * A partial last line left by a crash is discarded, and the log is compacted if it has grown too large.
+     * </P>
+     * @throws IOException if the log cannot be read
+     */
+    public synchronized void load() throws IOException
+    {
+        close();
+        entries.clear();
+        records = 0;
+        loaded = true;
+        if(!file.exists())
+            return;
+
+        String contents = read();
+        int lines = 0;
+        int start = 0;
+        int end;
+        while((end = contents.indexOf('\n', start)) >= 0)
+        {
+            parse(contents.substring(start, end));
+            start = end+1;
+            ++lines;
+        }
+
+        records = lines;
+        boolean partial = start < contents.length();
+        if(partial)
+            logger.warning("Discarding partial last line in state file: "+file.getName());
+        logger.info("Loaded "+entries.size()+" entries from state file: "+file.getName());
+
+        if(partial || isCompactable())
+            compact();
+    }
+
+    /**
+     * Flushes the log and compacts it if it has grown to more than twice the number of entries.
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void save() throws IOException
+    {
+        if(writer != null)
+            writer.flush();
+        if(isCompactable())
+            compact();
+    }
+
+    /**
+     * Rewrites the log with one line per entry.
+     * <P>
+     * The entries are written to a temporary file which is forced to disk and then atomically replaces the log.
+     * The log is loaded first if it has not been loaded, so that the entries of earlier runs are kept.
+     * </P>
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void compact() throws IOException
+    {
+        if(!loaded)
+            load();
+        close();
+
+        File tmp = new File(file.getPath()+".tmp");
+        FileOutputStream stream = null;
+        try
+        {
+            stream = new FileOutputStream(tmp);
+            Writer out = new BufferedWriter(new OutputStreamWriter(stream, UTF8));
+            for(Map.Entry<String,Entry> entry : new TreeMap<String,Entry>(entries).entrySet())
+            {
+                out.write(format(entry.getKey(), entry.getValue()));
+                out.write('\n');
+            }
+
+            // The contents must be on disk before the rename, or a crash could leave an empty log
+            out.flush();
+            stream.getChannel().force(true);
+        }
+        finally
+        {
+            if(stream != null)
+                stream.close();
+        }
+
+        Files.move(tmp.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = entries.size();
+        logger.fine("Compacted state file: "+file.getName()+" to "+records+" entries");
+    }
+
+    /**
+     * Closes the log.
+     * @throws IOException if the log cannot be closed
+     */
+    public synchronized void close() throws IOException
+    {
+        if(writer != null)
+        {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * Appends the given record to the log and flushes it.
+     */
+    private synchronized void append(String record) throws IOException
+    {
+        if(writer == null)
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF8));
+        writer.write(record+"\n");
+        writer.flush();
+        ++records;
+    }
+
+    /**
+     * Returns <CODE>true</CODE> if the log has grown to more than twice the number of entries.
+     */
+    private boolean isCompactable()
+    {
+        return records > MIN_COMPACT_RECORDS && records > entries.size()*2;
+    }
+
+    /**
+     * Returns the contents of the log.
+     */
+    private String read() throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        Reader reader = null;
+        try
+        {
+            reader = new InputStreamReader(new FileInputStream(file), UTF8);
+            char[] buffer = new char[8192];
+            int count;
+            while((count = reader.read(buffer)) > 0)
+                sb.append(buffer, 0, count);
+        }
+        finally
+        {
+            if(reader != null)
+                reader.close();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Applies the given log record to the entries.
+     */
+    private void parse(String line)
+    {
+        if(line.startsWith(DELETE+SEPARATOR))
+        {
+            entries.remove(line.substring(DELETE.length()+SEPARATOR.length()));
+            return;
+        }
+
+        String[] fields = line.split(SEPARATOR, 7);
+        try
+        {
+            if(fields.length == 7 && fields[0].equals(PUT))
+            {
+                Long policyId = fields[2].length() > 0 ? Long.valueOf(fields[2]) : null;
+                entries.put(fields[6], new Entry(Long.parseLong(fields[1]), fields[3], policyId,
+                    fields[5], Long.parseLong(fields[4])));
+                return;
+            }
+        }
+        catch(NumberFormatException e)
+        {
+        }
+        logger.warning("Ignoring invalid line in state file: "+line);
+    }
+
+    /**
+     * Returns the log record for the given entry.
+     */
+    private static String format(String key, Entry entry)
+    {
+        return PUT
+            +SEPARATOR+entry.getId()
+            +SEPARATOR+(entry.getPolicyId() != null ? entry.getPolicyId() : "")
+            +SEPARATOR+entry.getType()
+            +SEPARATOR+entry.getUpdated()
+            +SEPARATOR+entry.getFingerprint()
+            +SEPARATOR+key;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+        return "StateFile [file="+file
+            +", entries="+entries.size()
+            +", records="+records
+            +", loaded="+loaded
+            +", maxAge="+maxAge
+            +"]";
+    }
+}
\ No newline at end of file
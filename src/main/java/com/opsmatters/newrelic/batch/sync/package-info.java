@@ -0,0 +1,4 @@
+/**
+ * The synchronization classes used for New Relic.
+ */
+package com.opsmatters.newrelic.batch.sync;
\ No newline at end of file
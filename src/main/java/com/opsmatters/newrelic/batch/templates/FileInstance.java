@@ -18,16 +18,32 @@ package com.opsmatters.newrelic.batch.templates;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 /**
  * Class representing an instance of a file template.
+ * <P>
+ * The string values read from the lines are shared through a dictionary for each column,
+ * so that a value repeated on many lines, eg. a policy name or operator, is held by a single string.
+ * Each dictionary keeps the most recently used values up to a maximum size, so a column of unique values,
+ * eg. a condition name, neither grows without bound nor stops the values of the other columns being shared.
+ * An instance is used by a single parse and is not thread-safe.
+ * </P>
  * 
  * @author Gerald Curley (opsmatters)
  */
 public class FileInstance
 {
+    /**
+     * The maximum number of values held by the dictionary of each column.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 4096;
+
     private FileTemplate template;
     private List<String> headers = new ArrayList<String>();
+    private Map<String,Dictionary> dictionaries = new HashMap<String,Dictionary>();
 
     /**
      * Constructor that takes a set of headers.
@@ -99,11 +115,22 @@ public class FileInstance
 
     /**
      * Returns the string value of the given column in the given line.
+     * <P>
+     * Values that have been read before are returned as the same string.
+     * </P>
      * @param name The name of the column
      * @param line The line of the file
      * @return The value of the column from the line
      */
     public String getString(String name, String[] line)
+    {
+        return share(name, getValue(name, line));
+    }
+
+    /**
+     * Returns the trimmed value of the given column in the given line, or its default value.
+     */
+    private String getValue(String name, String[] line)
     {
         String ret = null;
         TemplateColumn column = template.getColumn(name);
@@ -117,6 +144,28 @@ public class FileInstance
         return ret != null ? ret.trim() : null;
     }
 
+    /**
+     * Returns the string in the dictionary of the given column equal to the given value, adding the value if it is missing.
+     */
+    private String share(String name, String value)
+    {
+        if(value == null)
+            return null;
+        Dictionary dictionary = dictionaries.get(name);
+        if(dictionary == null)
+        {
+            dictionary = new Dictionary();
+            dictionaries.put(name, dictionary);
+        }
+        String ret = dictionary.get(value);
+        if(ret == null)
+        {
+            ret = value;
+            dictionary.put(value, value);
+        }
+        return ret;
+    }
+
     /**
      * Returns the boolean value of the given column in the given line.
      * <P>
@@ -128,7 +177,7 @@ public class FileInstance
      */
     public Boolean getBoolean(String name, String[] line)
     {
-        String str = getString(name, line);
+        String str = getValue(name, line);
         return str != null && str.length() > 0 ? Boolean.valueOf(str) : null;
     }
 
@@ -143,7 +192,26 @@ public class FileInstance
      */
     public Integer getInteger(String name, String[] line)
     {
-        String str = getString(name, line);
+        String str = getValue(name, line);
         return str != null && str.length() > 0 ? Integer.valueOf(str) : null;
     }
+
+    /**
+     * The values of a column, evicting the least recently used value when the dictionary is full.
+     */
+    private static class Dictionary extends LinkedHashMap<String,String>
+    {
+        private static final long serialVersionUID = 1L;
+
+        Dictionary()
+        {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,String> eldest)
+        {
+            return size() > MAX_DICTIONARY_SIZE;
+        }
+    }
 }
\ No newline at end of file
@@ -33,6 +33,7 @@ public class TemplateFactory
 
     // The templates
     private static final Map<Class,FileTemplate> templates = new HashMap<Class,FileTemplate>();
+    private static final Map<String,FileTemplate> types = new HashMap<String,FileTemplate>();
     private static final FileTemplate alertPolicyTemplate = new AlertPolicyTemplate();
     private static final FileTemplate emailChannelTemplate = new EmailChannelTemplate();
     private static final FileTemplate slackChannelTemplate = new SlackChannelTemplate();
@@ -102,6 +103,7 @@ public class TemplateFactory
     public static void registerTemplate(Class c, FileTemplate template)
     {
         templates.put(c, template);
+        types.put(template.getType(), template);
     }
 
     /**
@@ -116,4 +118,14 @@ public class TemplateFactory
             throw new IllegalArgumentException("not a valid template type");
         return ret;
     }  
+
+    /**
+     * Returns the template with the given type, eg. "email-channel".
+     * @param type The value of the "Type" column for the template
+     * @return The template for the type, or null if there is no template with the type
+     */
+    public static FileTemplate getTemplate(String type)
+    {
+        return type != null ? types.get(type) : null;
+    }
 }
\ No newline at end of file
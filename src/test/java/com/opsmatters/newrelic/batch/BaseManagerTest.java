@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch;
+
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+import com.opsmatters.newrelic.batch.deploy.DryRun;
+import com.opsmatters.newrelic.batch.progress.ProgressListener;
+import com.opsmatters.newrelic.batch.progress.Progress;
+
+/**
+ * The set of tests used for the API calls made by the managers in a dry run.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class BaseManagerTest
+{
+    private static final Logger logger = Logger.getLogger(BaseManagerTest.class.getName());
+
+    @Test
+    public void testDryRun()
+    {
+        String testName = "BaseManagerDryRunTest";
+        logger.info("Starting test: "+testName);
+
+        DryRun dryRun = new DryRun();
+        dryRun.setReadThrough(false);
+        TestManager manager = new TestManager();
+        manager.setDryRun(dryRun);
+        AtomicInteger made = new AtomicInteger();
+
+        // No calls are made, lists are empty and other reads return null
+        Collection<String> names = manager.readList("alertPolicies.list", "policy", new Names(made));
+        Assert.assertNotNull(names);
+        Assert.assertTrue(names.isEmpty());
+        Assert.assertNull(manager.read("dashboards.show", "1", new Name(made)));
+        Assert.assertEquals("policy", manager.call("alertPolicies.create", "policy", new Name(made)));
+        Assert.assertEquals(0, made.get());
+
+        Assert.assertEquals(3L, dryRun.getCount());
+        Assert.assertEquals(Long.valueOf(1L), dryRun.getCalls().get("alertPolicies.list"));
+        Assert.assertEquals(Long.valueOf(1L), dryRun.getCalls().get("dashboards.show"));
+
+        // Reads are made when the dry run reads through, but writes are still skipped
+        dryRun.setReadThrough(true);
+        Assert.assertEquals(Arrays.asList("name"), manager.readList("alertPolicies.list", "policy", new Names(made)));
+        Assert.assertEquals("name", manager.read("dashboards.show", "1", new Name(made)));
+        Assert.assertEquals("policy", manager.call("alertPolicies.create", "policy", new Name(made)));
+        Assert.assertEquals(2, made.get());
+        Assert.assertEquals(6L, dryRun.getCount());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testProgressListeners()
+    {
+        String testName = "BaseManagerProgressListenersTest";
+        logger.info("Starting test: "+testName);
+
+        TestManager manager = new TestManager();
+        ProgressListener listener = new ProgressListener()
+        {
+            public void onProgress(Progress progress)
+            {
+            }
+        };
+        manager.addProgressListener(listener);
+        Assert.assertEquals(Arrays.asList(listener), manager.getProgressListeners());
+
+        // The listeners can only be changed through the manager
+        try
+        {
+            manager.getProgressListeners().clear();
+            Assert.fail("expected read-only list");
+        }
+        catch(UnsupportedOperationException e)
+        {
+        }
+        manager.removeProgressListener(listener);
+        Assert.assertTrue(manager.getProgressListeners().isEmpty());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * A manager that exposes the API calls of the base class.
+     */
+    private static class TestManager extends BaseManager
+    {
+        TestManager()
+        {
+            super("key", false);
+        }
+    }
+
+    /**
+     * A read call that returns a single name, counting the calls made.
+     */
+    private static class Name implements Callable<String>
+    {
+        private AtomicInteger made;
+
+        Name(AtomicInteger made)
+        {
+            this.made = made;
+        }
+
+        public String call() throws Exception
+        {
+            made.incrementAndGet();
+            return "name";
+        }
+    }
+
+    /**
+     * A list call that returns a single name, counting the calls made.
+     */
+    private static class Names implements Callable<Collection<String>>
+    {
+        private AtomicInteger made;
+
+        Names(AtomicInteger made)
+        {
+            this.made = made;
+        }
+
+        public Collection<String> call() throws Exception
+        {
+            made.incrementAndGet();
+            return Arrays.asList("name");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for caching the lists of entities.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class EntityCacheTest
+{
+    private static final Logger logger = Logger.getLogger(EntityCacheTest.class.getName());
+
+    @Test
+    public void testHits()
+    {
+        String testName = "EntityCacheHitsTest";
+        logger.info("Starting test: "+testName);
+
+        EntityCache cache = new EntityCache(60000L, 100);
+        AtomicInteger loads = new AtomicInteger();
+        List<String> first = cache.get("key1|applications", new Names(3, loads));
+        List<String> second = cache.get("key1|applications", new Names(3, loads));
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1L, cache.getHits());
+        Assert.assertEquals(1L, cache.getMisses());
+        Assert.assertEquals(3, cache.size());
+
+        // The cached list cannot be changed by the caller
+        try
+        {
+            first.add("entity");
+            Assert.fail("expected the cached list to be read-only");
+        }
+        catch(UnsupportedOperationException e)
+        {
+        }
+
+        // Invalidating the lists of an account reloads them on the next call
+        cache.get("key1|servers", new Names(2, loads));
+        cache.get("key2|servers", new Names(2, loads));
+        cache.invalidatePrefix("key1|");
+        Assert.assertEquals(2, cache.size());
+        cache.get("key1|applications", new Names(3, loads));
+        Assert.assertEquals(4, loads.get());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testEviction()
+    {
+        String testName = "EntityCacheEvictionTest";
+        logger.info("Starting test: "+testName);
+
+        EntityCache cache = new EntityCache(60000L, 5);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("key1|applications", new Names(2, loads));
+        cache.get("key1|servers", new Names(2, loads));
+
+        // The least recently used list is evicted to make room for a new list
+        cache.get("key1|applications", new Names(2, loads));
+        cache.get("key2|applications", new Names(3, loads));
+        Assert.assertEquals(1L, cache.getEvictions());
+        Assert.assertEquals(5, cache.size());
+        cache.get("key1|applications", new Names(2, loads));
+        Assert.assertEquals(3, loads.get());
+
+        // A list larger than the maximum is returned but not cached
+        cache.get("key3|applications", new Names(6, loads));
+        cache.get("key3|applications", new Names(6, loads));
+        Assert.assertEquals(5, loads.get());
+        Assert.assertEquals(5, cache.size());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        String testName = "EntityCacheDisabledTest";
+        logger.info("Starting test: "+testName);
+
+        // A ttl of zero disables the cache
+        EntityCache cache = new EntityCache(0L, 100);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("key1|applications", new Names(1, loads));
+        cache.get("key1|applications", new Names(1, loads));
+        Assert.assertEquals(2, loads.get());
+        Assert.assertEquals(0, cache.size());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testLoadFailed()
+    {
+        new EntityCache().get("key1|applications", new Callable<List<String>>()
+        {
+            public List<String> call() throws Exception
+            {
+                throw new Exception("list failed");
+            }
+        });
+    }
+
+    /**
+     * Loader that returns a list of the given number of names and counts the loads.
+     */
+    private static class Names implements Callable<List<String>>
+    {
+        private int count;
+        private AtomicInteger loads;
+
+        Names(int count, AtomicInteger loads)
+        {
+            this.count = count;
+            this.loads = loads;
+        }
+
+        public List<String> call()
+        {
+            loads.incrementAndGet();
+            List<String> ret = new ArrayList<String>();
+            for(int i = 0; i < count; i++)
+                ret.add("entity"+i);
+            return ret;
+        }
+    }
+}
\ No newline at end of file
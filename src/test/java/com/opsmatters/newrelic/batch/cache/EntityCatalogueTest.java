@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.cache;
+
+import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+import com.opsmatters.newrelic.api.model.Entity;
+import com.opsmatters.newrelic.api.model.applications.Application;
+import com.opsmatters.newrelic.api.model.servers.Server;
+
+/**
+ * The set of tests used for loading and indexing the entities of an account.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class EntityCatalogueTest
+{
+    private static final Logger logger = Logger.getLogger(EntityCatalogueTest.class.getName());
+
+    @Test(timeout=10000L)
+    public void testLoad() throws Exception
+    {
+        String testName = "EntityCatalogueLoadTest";
+        logger.info("Starting test: "+testName);
+
+        // The sources wait for each other, so the load only completes if they run concurrently
+        final CountDownLatch latch = new CountDownLatch(2);
+        EntityCatalogue catalogue = new EntityCatalogue();
+        catalogue.addSource("applications", new Source(latch, getApplication(1L, "web"), getApplication(2L, "api")));
+        catalogue.addSource("servers", new Source(latch, getServer(3L, "host-1"), getServer(4L, "web")));
+
+        List<Entity> entities = catalogue.load();
+        Assert.assertEquals(4, entities.size());
+        Assert.assertEquals(4, catalogue.size());
+        Assert.assertEquals(Long.valueOf(2L), catalogue.getId("api"));
+        Assert.assertEquals(Long.valueOf(3L), catalogue.getId("host-1"));
+        Assert.assertNull(catalogue.getId("missing"));
+        Assert.assertTrue(catalogue.getIds("missing").isEmpty());
+
+        // The application and server with the same name are both kept
+        Assert.assertEquals(2, catalogue.getIds("web").size());
+        Assert.assertTrue(catalogue.getIds("web").containsAll(Arrays.asList(1L, 4L)));
+        try
+        {
+            catalogue.getId("web");
+            Assert.fail("expected duplicate name");
+        }
+        catch(IllegalStateException e)
+        {
+        }
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testReload() throws Exception
+    {
+        String testName = "EntityCatalogueReloadTest";
+        logger.info("Starting test: "+testName);
+
+        EntityCatalogue catalogue = new EntityCatalogue();
+        Assert.assertTrue(catalogue.load().isEmpty());
+
+        catalogue.addSource("applications", new Source(null, getApplication(1L, "web")));
+        catalogue.load();
+        catalogue.load();
+
+        // A reload replaces the previous entities rather than adding to them
+        Assert.assertEquals(1, catalogue.size());
+        Assert.assertEquals(Long.valueOf(1L), catalogue.getId("web"));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testFailedSource() throws Exception
+    {
+        String testName = "EntityCatalogueFailedSourceTest";
+        logger.info("Starting test: "+testName);
+
+        EntityCatalogue catalogue = new EntityCatalogue();
+        catalogue.addSource("servers", new Callable<List<? extends Entity>>()
+        {
+            public List<? extends Entity> call() throws Exception
+            {
+                throw new IllegalStateException("servers unavailable");
+            }
+        });
+
+        try
+        {
+            catalogue.load();
+            Assert.fail("expected failed source");
+        }
+        catch(IllegalStateException e)
+        {
+            Assert.assertEquals("servers unavailable", e.getMessage());
+        }
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Returns an application with the given id and name.
+     */
+    private static Application getApplication(long id, String name)
+    {
+        Application ret = new Application();
+        ret.setId(id);
+        ret.setName(name);
+        return ret;
+    }
+
+    /**
+     * Returns a server with the given id and name.
+     */
+    private static Server getServer(long id, String name)
+    {
+        Server ret = new Server();
+        ret.setId(id);
+        ret.setName(name);
+        return ret;
+    }
+
+    /**
+     * A source that returns the given entities, after waiting for the other sources if given a latch.
+     */
+    private static class Source implements Callable<List<? extends Entity>>
+    {
+        private CountDownLatch latch;
+        private List<Entity> entities;
+
+        Source(CountDownLatch latch, Entity... entities)
+        {
+            this.latch = latch;
+            this.entities = Arrays.asList(entities);
+        }
+
+        public List<? extends Entity> call() throws Exception
+        {
+            if(latch != null)
+            {
+                latch.countDown();
+                latch.await();
+            }
+            return entities;
+        }
+    }
+}
\ No newline at end of file
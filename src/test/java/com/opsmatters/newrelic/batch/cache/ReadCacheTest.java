@@ -0,0 +1,264 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.cache;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for coalescing and keeping the results of read calls.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class ReadCacheTest
+{
+    private static final Logger logger = Logger.getLogger(ReadCacheTest.class.getName());
+
+    @Test
+    public void testKeptResult()
+    {
+        String testName = "ReadCacheKeptResultTest";
+        logger.info("Starting test: "+testName);
+
+        ReadCache cache = new ReadCache(60000L);
+        Counter loader = new Counter("value");
+        Assert.assertEquals("value", cache.get("alertPolicies", "alertPolicies.list|a", loader));
+        Assert.assertEquals("value", cache.get("alertPolicies", "alertPolicies.list|a", loader));
+        Assert.assertEquals(1, loader.count.get());
+        Assert.assertEquals(1L, cache.getHits());
+        Assert.assertEquals(1L, cache.getMisses());
+
+        // Results are not kept with a zero ttl
+        ReadCache uncached = new ReadCache(0L);
+        Counter other = new Counter("value");
+        uncached.get("alertPolicies", "alertPolicies.list|a", other);
+        uncached.get("alertPolicies", "alertPolicies.list|a", other);
+        Assert.assertEquals(2, other.count.get());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testCoalesced() throws Exception
+    {
+        String testName = "ReadCacheCoalescedTest";
+        logger.info("Starting test: "+testName);
+
+        final ReadCache cache = new ReadCache(0L);
+        final Blocker loader = new Blocker("value");
+        Reader first = new Reader(cache, "alertPolicies", "alertPolicies.list|a", loader);
+        first.start();
+        loader.started.await();
+
+        // The second read waits for the read in flight instead of calling the loader
+        Reader second = new Reader(cache, "alertPolicies", "alertPolicies.list|a", new Counter("other"));
+        second.start();
+        waitUntilWaiting(second);
+        loader.release.countDown();
+        first.join();
+        second.join();
+
+        Assert.assertEquals("value", first.result.get());
+        Assert.assertEquals("value", second.result.get());
+        Assert.assertEquals(1, loader.count.get());
+        Assert.assertEquals(1L, cache.getCoalesced());
+        Assert.assertEquals(1L, cache.getMisses());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testInvalidateResource()
+    {
+        String testName = "ReadCacheInvalidateResourceTest";
+        logger.info("Starting test: "+testName);
+
+        ReadCache cache = new ReadCache(60000L);
+        Counter policies = new Counter("policies");
+        Counter channels = new Counter("channels");
+        cache.get("alertPolicies", "alertPolicies.list|a", policies);
+        cache.get("alertChannels", "alertChannels.list|a", channels);
+
+        // A write only discards the results of its own resource
+        cache.invalidate("alertPolicies");
+        cache.get("alertPolicies", "alertPolicies.list|a", policies);
+        cache.get("alertChannels", "alertChannels.list|a", channels);
+        Assert.assertEquals(2, policies.count.get());
+        Assert.assertEquals(1, channels.count.get());
+
+        // Invalidating the cache discards every result
+        cache.invalidate();
+        cache.get("alertPolicies", "alertPolicies.list|a", policies);
+        cache.get("alertChannels", "alertChannels.list|a", channels);
+        Assert.assertEquals(3, policies.count.get());
+        Assert.assertEquals(2, channels.count.get());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testReadBeforeWrite() throws Exception
+    {
+        String testName = "ReadCacheReadBeforeWriteTest";
+        logger.info("Starting test: "+testName);
+
+        ReadCache cache = new ReadCache(60000L);
+        Blocker loader = new Blocker("old");
+        Reader first = new Reader(cache, "alertPolicies", "alertPolicies.list|a", loader);
+        first.start();
+        loader.started.await();
+
+        // A read after a write does not share the read that started before the write
+        cache.invalidate("alertPolicies");
+        Counter after = new Counter("new");
+        Assert.assertEquals("new", cache.get("alertPolicies", "alertPolicies.list|a", after));
+        Assert.assertEquals(0L, cache.getCoalesced());
+
+        // The result of the earlier read is not kept
+        loader.release.countDown();
+        first.join();
+        Assert.assertEquals("old", first.result.get());
+        Assert.assertEquals("new", cache.get("alertPolicies", "alertPolicies.list|a", after));
+        Assert.assertEquals(1, after.count.get());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testFailedRead()
+    {
+        String testName = "ReadCacheFailedReadTest";
+        logger.info("Starting test: "+testName);
+
+        ReadCache cache = new ReadCache(60000L);
+        try
+        {
+            cache.get("alertPolicies", "alertPolicies.list|a", new Callable<String>()
+            {
+                public String call() throws Exception
+                {
+                    throw new IOException("failed");
+                }
+            });
+            Assert.fail("expected IllegalStateException");
+        }
+        catch(IllegalStateException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+
+        // A failed read is not kept
+        Counter loader = new Counter("value");
+        Assert.assertEquals("value", cache.get("alertPolicies", "alertPolicies.list|a", loader));
+        Assert.assertEquals(1, loader.count.get());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Waits until the given thread is waiting for a read in flight.
+     */
+    private static void waitUntilWaiting(Thread thread) throws InterruptedException
+    {
+        long timeout = System.currentTimeMillis()+10000L;
+        while(thread.getState() != Thread.State.WAITING)
+        {
+            if(System.currentTimeMillis() > timeout)
+                Assert.fail("thread not waiting: "+thread.getState());
+            Thread.sleep(5L);
+        }
+    }
+
+    /**
+     * A loader that counts its calls.
+     */
+    private static class Counter implements Callable<String>
+    {
+        AtomicInteger count = new AtomicInteger();
+        String value;
+
+        Counter(String value)
+        {
+            this.value = value;
+        }
+
+        public String call()
+        {
+            count.incrementAndGet();
+            return value;
+        }
+    }
+
+    /**
+     * A loader that blocks until it is released.
+     */
+    private static class Blocker extends Counter
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Blocker(String value)
+        {
+            super(value);
+        }
+
+        public String call()
+        {
+            started.countDown();
+            try
+            {
+                release.await();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return super.call();
+        }
+    }
+
+    /**
+     * A thread that makes a read.
+     */
+    private static class Reader extends Thread
+    {
+        ReadCache cache;
+        String resource;
+        String key;
+        Callable<String> loader;
+        AtomicReference<String> result = new AtomicReference<String>();
+
+        Reader(ReadCache cache, String resource, String key, Callable<String> loader)
+        {
+            this.cache = cache;
+            this.resource = resource;
+            this.key = key;
+            this.loader = loader;
+        }
+
+        public void run()
+        {
+            result.set(cache.get(resource, key, loader));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.client;
+
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for sharing the API clients between managers.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class ClientContextTest
+{
+    private static final Logger logger = Logger.getLogger(ClientContextTest.class.getName());
+
+    @Test
+    public void testShared()
+    {
+        String testName = "ClientContextSharedTest";
+        logger.info("Starting test: "+testName);
+
+        ClientContext context = ClientContext.builder()
+            .maxConnections(4)
+            .idleTimeout(0L)
+            .build();
+        Assert.assertEquals(4, context.getMaxConnections());
+
+        // The clients are created once for each API key
+        Assert.assertSame(context.getApiClient("key1"), context.getApiClient("key1"));
+        Assert.assertSame(context.getInfraApiClient("key1"), context.getInfraApiClient("key1"));
+        Assert.assertNotSame(context.getApiClient("key1"), context.getApiClient("key2"));
+        Assert.assertEquals(2, context.size());
+
+        context.clear();
+        Assert.assertEquals(0, context.size());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testEvictIdle() throws InterruptedException
+    {
+        String testName = "ClientContextEvictIdleTest";
+        logger.info("Starting test: "+testName);
+
+        ClientContext context = ClientContext.builder()
+            .idleTimeout(50L)
+            .build();
+        context.getApiClient("key1");
+        Thread.sleep(100L);
+
+        // The clients for the idle account are evicted when another account is used
+        context.getApiClient("key2");
+        Assert.assertEquals(1, context.size());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNullApiKey()
+    {
+        new ClientContext().getApiClient(null);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidMaxConnections()
+    {
+        ClientContext.builder().maxConnections(0);
+    }
+}
\ No newline at end of file
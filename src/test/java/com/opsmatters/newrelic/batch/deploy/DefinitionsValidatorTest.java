@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.batch.deploy.DeploymentDefinitions.SheetType;
+
+/**
+ * The set of tests used for checking the rows of the definitions in chunks.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class DefinitionsValidatorTest
+{
+    private static final Logger logger = Logger.getLogger(DefinitionsValidatorTest.class.getName());
+
+    private static final String[] POLICY_HEADERS = {"Name", "Type", "Incident Preference", "Channels"};
+    private static final String[] CONDITION_HEADERS = {"Alert Policy", "Name", "Type", "Duration", "Where Clause"};
+
+    @Test
+    public void testChunks() throws Exception
+    {
+        String testName = "DefinitionsValidatorChunksTest";
+        logger.info("Starting test: "+testName);
+
+        DeploymentDefinitions definitions = new DeploymentDefinitions();
+        definitions.putSheet(SheetType.ALERT_POLICIES, POLICY_HEADERS,
+            rows(new String[] {"policy", "alert-policy", "PER_POLICY", ""}));
+
+        // The bad rows are in different chunks, and the chunk in between is valid
+        definitions.putSheet(SheetType.INFRA_HOST_NOT_REPORTING_ALERT_CONDITIONS, CONDITION_HEADERS, rows(
+            getCondition("policy", "host-1"),
+            getCondition("missing", "host-2"),
+            getCondition("policy", "host-3"),
+            getCondition("policy", "host-4"),
+            getCondition("policy", "host-5"),
+            getCondition("missing", "host-6")));
+
+        DefinitionsValidator validator = new DefinitionsValidator(definitions);
+        validator.setChunkSize(2);
+        validator.setThreads(3);
+        List<ValidationError> errors = validator.validate(null);
+
+        // Every bad row is found, in row order, with the row number in the sheet
+        Assert.assertEquals(2, errors.size());
+        Assert.assertEquals(SheetType.INFRA_HOST_NOT_REPORTING_ALERT_CONDITIONS.name(), errors.get(0).getSheet());
+        Assert.assertEquals(3, errors.get(0).getRow());
+        Assert.assertTrue(errors.get(0).getMessage().contains("missing"));
+        Assert.assertEquals(7, errors.get(1).getRow());
+
+        try
+        {
+            validator.check(null);
+            Assert.fail("expected errors");
+        }
+        catch(IllegalStateException e)
+        {
+            Assert.assertTrue(e.getMessage().startsWith("2 errors found"));
+        }
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testChunkObjects()
+    {
+        String testName = "DefinitionsValidatorChunkObjectsTest";
+        logger.info("Starting test: "+testName);
+
+        List<String[]> rows = rows(
+            new String[] {"policy-1", "alert-policy", "PER_POLICY", ""},
+            new String[] {"policy-2", "alert-policy", "PER_CONDITION", ""});
+        DefinitionsValidator.Chunk<AlertPolicy> chunk = DefinitionsValidator.check(SheetType.ALERT_POLICIES,
+            POLICY_HEADERS, rows, 0, rows.size(), null, null, null, AlertPolicy.class);
+        Assert.assertEquals(2, chunk.getObjects().size());
+        Assert.assertEquals("policy-2", chunk.getObjects().get(1).getName());
+        Assert.assertTrue(chunk.getErrors().isEmpty());
+
+        // Objects of the wrong class are rejected as a whole
+        try
+        {
+            chunk.addObjects(Arrays.asList(AlertPolicy.builder().name("policy-3").build(), "policy-4"));
+            Assert.fail("expected class cast exception");
+        }
+        catch(ClassCastException e)
+        {
+        }
+        Assert.assertEquals(2, chunk.getObjects().size());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Returns an infrastructure host alert condition row for the given policy and name.
+     */
+    private static String[] getCondition(String policyName, String name)
+    {
+        return new String[] {policyName, name, "infra-host-alert-condition", "5", ""};
+    }
+
+    /**
+     * Returns a mutable list of the given rows.
+     */
+    private static List<String[]> rows(String[]... rows)
+    {
+        return new ArrayList<String[]>(Arrays.asList(rows));
+    }
+}
\ No newline at end of file
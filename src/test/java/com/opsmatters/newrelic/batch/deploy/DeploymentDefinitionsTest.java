@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+import com.opsmatters.newrelic.batch.deploy.DeploymentDefinitions.SheetType;
+
+/**
+ * The set of tests used for reading the definitions to be deployed to several accounts.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class DeploymentDefinitionsTest
+{
+    private static final Logger logger = Logger.getLogger(DeploymentDefinitionsTest.class.getName());
+
+    @Test
+    public void testSheetTypes()
+    {
+        String testName = "DeploymentDefinitionsSheetTypesTest";
+        logger.info("Starting test: "+testName);
+
+        // Every sheet type maps to its own value of the "Type" column and back
+        for(SheetType type : SheetType.values())
+            Assert.assertEquals(type, SheetType.fromTemplateType(type.getTemplateType()));
+        Assert.assertEquals("email-channel", SheetType.EMAIL_CHANNELS.getTemplateType());
+        Assert.assertNull(SheetType.fromTemplateType("unknown"));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testMixedSheet()
+    {
+        String testName = "DeploymentDefinitionsMixedSheetTest";
+        logger.info("Starting test: "+testName);
+
+        List<String[]> rows = new ArrayList<String[]>();
+        rows.add(new String[] { "email-channel", "ops" });
+        rows.add(new String[] { "alert-policy", "policy1" });
+        rows.add(new String[] { " email-channel ", "support" });
+        rows.add(new String[] { "unknown", "other" });
+        rows.add(new String[] { });
+
+        // The rows are dispatched by type and the rows with an unknown or missing type are skipped
+        DeploymentDefinitions definitions = new DeploymentDefinitions();
+        definitions.putMixedSheet(new String[] { "Type", "Name" }, rows);
+        Assert.assertTrue(definitions.hasSheet(SheetType.EMAIL_CHANNELS));
+        Assert.assertTrue(definitions.hasSheet(SheetType.ALERT_POLICIES));
+        Assert.assertFalse(definitions.hasSheet(SheetType.SLACK_CHANNELS));
+        Assert.assertFalse(definitions.hasEntityConditions());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testMissingTypeColumn()
+    {
+        new DeploymentDefinitions().putMixedSheet(new String[] { "Name" }, new ArrayList<String[]>());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for reporting a deployment to multiple accounts.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class FanOutReportTest
+{
+    private static final Logger logger = Logger.getLogger(FanOutReportTest.class.getName());
+
+    @Test
+    public void testSummary()
+    {
+        String testName = "FanOutReportSummaryTest";
+        logger.info("Starting test: "+testName);
+
+        AccountResult prod = new AccountResult("prod");
+        prod.setDashboards(2);
+        prod.setCalls(10L, 1L);
+        prod.setDuration(100L);
+        Assert.assertTrue(prod.isSuccessful());
+
+        // An account that failed before its tasks ran still has its error reported
+        AccountResult staging = new AccountResult("staging");
+        staging.setError(new IllegalStateException("invalid API key"));
+        Assert.assertFalse(staging.isSuccessful());
+
+        FanOutReport report = new FanOutReport(Arrays.asList(prod, staging), 250L);
+        Assert.assertFalse(report.isSuccessful());
+        Assert.assertEquals(2, report.getResults().size());
+        Assert.assertEquals(1, report.getFailures().size());
+        Assert.assertSame(staging, report.getFailures().get(0));
+        Assert.assertEquals(250L, report.getDuration());
+
+        String summary = report.getSummary();
+        Assert.assertTrue(summary.startsWith("Deployed to 2 accounts (1 failed) in 250ms:"));
+        Assert.assertTrue(summary.contains("dashboards=2 calls=10 errors=1"));
+        Assert.assertTrue(summary.contains("error=invalid API key"));
+
+        // The results cannot be changed through the report
+        report.getResults().clear();
+        Assert.assertEquals(2, report.getResults().size());
+
+        logger.info("Completed test: "+testName);
+    }
+}
\ No newline at end of file
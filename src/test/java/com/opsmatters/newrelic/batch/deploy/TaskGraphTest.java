@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.deploy;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for executing deployment tasks in dependency order.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class TaskGraphTest
+{
+    private static final Logger logger = Logger.getLogger(TaskGraphTest.class.getName());
+
+    @Test(timeout=10000L)
+    public void testDependencyOrder() throws Exception
+    {
+        String testName = "TaskGraphDependencyOrderTest";
+        logger.info("Starting test: "+testName);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        TaskGraph graph = new TaskGraph();
+        DeploymentTask c = graph.add(new DeploymentTask("c", new Work("c", order)));
+        DeploymentTask b = graph.add(new DeploymentTask("b", new Work("b", order)));
+        DeploymentTask a = graph.add(new DeploymentTask("a", new Work("a", order)));
+        b.dependsOn(a);
+        c.dependsOn(b);
+
+        graph.execute(4, null);
+        Assert.assertTrue(graph.isSuccessful());
+        Assert.assertEquals("[a, b, c]", order.toString());
+        Assert.assertEquals(3, a.getHeight());
+        Assert.assertEquals(1, c.getHeight());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(timeout=10000L)
+    public void testSkipPropagation() throws Exception
+    {
+        String testName = "TaskGraphSkipPropagationTest";
+        logger.info("Starting test: "+testName);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        Work failing = new Work("a", order, true);
+        TaskGraph graph = new TaskGraph();
+        DeploymentTask a = graph.add(new DeploymentTask("a", failing));
+        DeploymentTask b = graph.add(new DeploymentTask("b", new Work("b", order)));
+        DeploymentTask c = graph.add(new DeploymentTask("c", new Work("c", order)));
+        DeploymentTask d = graph.add(new DeploymentTask("d", new Work("d", order)));
+        DeploymentTask e = graph.add(new DeploymentTask("e", new Work("e", order)));
+        b.dependsOn(a);
+        c.dependsOn(b);
+        e.dependsOn(d);
+        e.dependsOn(a);
+
+        // The failure skips every task downstream of it but not the independent task
+        graph.execute(2, null);
+        Assert.assertFalse(graph.isSuccessful());
+        Assert.assertEquals(DeploymentTask.Status.FAILED, a.getStatus());
+        Assert.assertEquals("a failed", a.getError().getMessage());
+        Assert.assertEquals(DeploymentTask.Status.SKIPPED, b.getStatus());
+        Assert.assertEquals(DeploymentTask.Status.SKIPPED, c.getStatus());
+        Assert.assertEquals(DeploymentTask.Status.COMPLETED, d.getStatus());
+        Assert.assertEquals(DeploymentTask.Status.SKIPPED, e.getStatus());
+        Assert.assertEquals(3, graph.getTasks(DeploymentTask.Status.SKIPPED).size());
+        Assert.assertFalse(order.contains("b"));
+        Assert.assertFalse(order.contains("c"));
+        Assert.assertFalse(order.contains("e"));
+
+        // The graph can be executed again once the failure is fixed
+        failing.fail = false;
+        order.clear();
+        graph.execute(2, null);
+        Assert.assertTrue(graph.isSuccessful());
+        Assert.assertEquals(5, order.size());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(timeout=10000L)
+    public void testCriticalPathFirst() throws Exception
+    {
+        String testName = "TaskGraphCriticalPathFirstTest";
+        logger.info("Starting test: "+testName);
+
+        // The single thread is busy with the root while its dependents are queued,
+        // so the longer chain is started before the short task added first
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        TaskGraph graph = new TaskGraph();
+        DeploymentTask root = graph.add(new DeploymentTask("root", new Work("root", order)));
+        DeploymentTask s = graph.add(new DeploymentTask("s", new Work("s", order)));
+        DeploymentTask l1 = graph.add(new DeploymentTask("l1", new Work("l1", order)));
+        DeploymentTask l2 = graph.add(new DeploymentTask("l2", new Work("l2", order)));
+        DeploymentTask l3 = graph.add(new DeploymentTask("l3", new Work("l3", order)));
+        s.dependsOn(root);
+        l1.dependsOn(root);
+        l2.dependsOn(l1);
+        l3.dependsOn(l2);
+
+        graph.execute(1, null);
+        Assert.assertTrue(graph.isSuccessful());
+        Assert.assertEquals("[root, l1, l2, s, l3]", order.toString());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testCycle() throws Exception
+    {
+        String testName = "TaskGraphCycleTest";
+        logger.info("Starting test: "+testName);
+
+        List<String> order = new ArrayList<String>();
+        TaskGraph graph = new TaskGraph();
+        DeploymentTask a = graph.add(new DeploymentTask("a", new Work("a", order)));
+        DeploymentTask b = graph.add(new DeploymentTask("b", new Work("b", order)));
+        b.dependsOn(a);
+        a.dependsOn(b);
+
+        try
+        {
+            graph.execute(1, null);
+            Assert.fail("expected an exception for a cycle");
+        }
+        catch(IllegalStateException e)
+        {
+        }
+        Assert.assertTrue(order.isEmpty());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Work that records the order tasks are run in and optionally fails.
+     */
+    private static class Work implements Callable<Void>
+    {
+        private String name;
+        private List<String> order;
+        private volatile boolean fail;
+
+        Work(String name, List<String> order)
+        {
+            this(name, order, false);
+        }
+
+        Work(String name, List<String> order, boolean fail)
+        {
+            this.name = name;
+            this.order = order;
+            this.fail = fail;
+        }
+
+        @Override
+        public Void call() throws Exception
+        {
+            if(fail)
+                throw new IllegalStateException(name+" failed");
+            order.add(name);
+            return null;
+        }
+    }
+}
\ No newline at end of file
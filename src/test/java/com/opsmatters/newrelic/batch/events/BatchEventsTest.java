@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.events;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for emitting events around batch operations.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class BatchEventsTest
+{
+    private static final Logger logger = Logger.getLogger(BatchEventsTest.class.getName());
+
+    @Test
+    public void testDisabled() throws IOException
+    {
+        String testName = "BatchEventsDisabledTest";
+        logger.info("Starting test: "+testName);
+
+        // Without a listener the streams are not wrapped and nothing is counted
+        Assert.assertFalse(BatchEvents.isEnabled());
+        BatchEvent event = BatchEvent.begin(BatchEvent.Type.API_CALL, "alertPolicies.list", "policy");
+        Assert.assertFalse(event.isEnabled());
+        Reader reader = new StringReader("abc");
+        Assert.assertSame(reader, event.wrap(reader));
+        event.commit(1L);
+        Assert.assertEquals(0L, event.getRows());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testCounting() throws IOException
+    {
+        String testName = "BatchEventsCountingTest";
+        logger.info("Starting test: "+testName);
+
+        final List<BatchEvent> events = new ArrayList<BatchEvent>();
+        BatchEventListener listener = new BatchEventListener()
+        {
+            public void onEvent(BatchEvent event)
+            {
+                events.add(event);
+            }
+        };
+
+        BatchEvents.addListener(listener);
+        try
+        {
+            BatchEvent event = BatchEvent.begin(BatchEvent.Type.YAML_PARSE, "dashboards.yml", "dashboard");
+            Assert.assertTrue(event.isEnabled());
+            Reader reader = event.wrap(new StringReader("abcdef"));
+            char[] buffer = new char[4];
+            while(reader.read(buffer, 0, buffer.length) > 0);
+            InputStream in = event.wrap(new ByteArrayInputStream(new byte[10]));
+            in.read();
+            in.skip(4L);
+            Writer writer = event.wrap(new StringWriter());
+            writer.write("ghi");
+            OutputStream out = event.wrap(new ByteArrayOutputStream());
+            out.write(new byte[5], 0, 5);
+            out.write(1);
+            Assert.assertTrue(events.isEmpty());
+
+            // The event is only passed to the listener when it is committed
+            event.commit(3L);
+            Assert.assertEquals(1, events.size());
+            Assert.assertSame(event, events.get(0));
+            Assert.assertEquals(BatchEvent.Type.YAML_PARSE, event.getType());
+            Assert.assertEquals("dashboards.yml", event.getName());
+            Assert.assertEquals("dashboard", event.getEntityType());
+            Assert.assertEquals(3L, event.getRows());
+            Assert.assertEquals(6L+5L+3L+6L, event.getBytes());
+            Assert.assertTrue(event.isSuccess());
+            Assert.assertEquals(Thread.currentThread().getName(), event.getThread());
+
+            event = BatchEvent.begin(BatchEvent.Type.API_CALL, "alertPolicies.create", "policy");
+            event.commit(0L, false);
+            Assert.assertEquals(2, events.size());
+            Assert.assertFalse(events.get(1).isSuccess());
+        }
+        finally
+        {
+            BatchEvents.removeListener(listener);
+        }
+
+        Assert.assertFalse(BatchEvents.isEnabled());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testFailedListener()
+    {
+        String testName = "BatchEventsFailedListenerTest";
+        logger.info("Starting test: "+testName);
+
+        final List<BatchEvent> events = new ArrayList<BatchEvent>();
+        BatchEventListener failed = new BatchEventListener()
+        {
+            public void onEvent(BatchEvent event)
+            {
+                throw new IllegalStateException("listener failed");
+            }
+        };
+        BatchEventListener listener = new BatchEventListener()
+        {
+            public void onEvent(BatchEvent event)
+            {
+                events.add(event);
+            }
+        };
+
+        // A failed listener does not stop the other listeners or the operation
+        BatchEvents.addListener(failed);
+        BatchEvents.addListener(listener);
+        try
+        {
+            BatchEvent.begin(BatchEvent.Type.RENDER, "policies.csv", "policy").commit(1L);
+            Assert.assertEquals(1, events.size());
+        }
+        finally
+        {
+            BatchEvents.removeListener(failed);
+            BatchEvents.removeListener(listener);
+        }
+
+        logger.info("Completed test: "+testName);
+    }
+}
\ No newline at end of file
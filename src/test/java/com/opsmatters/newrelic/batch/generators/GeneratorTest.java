@@ -0,0 +1,303 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.generators;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.FileInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.logging.Logger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import junit.framework.Assert;
+import com.opsmatters.newrelic.api.model.Entity;
+import com.opsmatters.newrelic.api.model.applications.Application;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.EmailChannel;
+import com.opsmatters.newrelic.api.model.alerts.conditions.AlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.ExternalServiceAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.NrqlAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraMetricAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraProcessRunningAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraHostNotReportingAlertCondition;
+import com.opsmatters.newrelic.api.model.insights.Dashboard;
+import com.opsmatters.newrelic.batch.parsers.*;
+import com.opsmatters.core.documents.InputFileReader;
+
+/**
+ * The set of tests used for generating alert and dashboard files and reading them back with the parsers.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class GeneratorTest
+{
+    private static final Logger logger = Logger.getLogger(GeneratorTest.class.getName());
+
+    private static final int CHANNELS = 5;
+    private static final int POLICIES = 4;
+    private static final int CONDITIONS = 12;
+    private static final int ENTITIES = 6;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAlertRoundTrip()
+    {
+        String testName = "GeneratorAlertRoundTripTest";
+        logger.info("Starting test: "+testName);
+
+        Map<String,List<String[]>> sheets = getAlertGenerator().generate();
+        Assert.assertEquals(16, sheets.size());
+
+        // Read the channels back and give them ids
+        List<AlertChannel> channels = new ArrayList<AlertChannel>();
+        channels.addAll(toChannels(EmailChannelParser.parse(getHeaders(sheets, AlertFileGenerator.EMAIL_CHANNEL_SHEET),
+            getRows(sheets, AlertFileGenerator.EMAIL_CHANNEL_SHEET))));
+        channels.addAll(toChannels(SlackChannelParser.parse(getHeaders(sheets, AlertFileGenerator.SLACK_CHANNEL_SHEET),
+            getRows(sheets, AlertFileGenerator.SLACK_CHANNEL_SHEET))));
+        channels.addAll(toChannels(HipChatChannelParser.parse(getHeaders(sheets, AlertFileGenerator.HIPCHAT_CHANNEL_SHEET),
+            getRows(sheets, AlertFileGenerator.HIPCHAT_CHANNEL_SHEET))));
+        channels.addAll(toChannels(CampfireChannelParser.parse(getHeaders(sheets, AlertFileGenerator.CAMPFIRE_CHANNEL_SHEET),
+            getRows(sheets, AlertFileGenerator.CAMPFIRE_CHANNEL_SHEET))));
+        channels.addAll(toChannels(OpsGenieChannelParser.parse(getHeaders(sheets, AlertFileGenerator.OPSGENIE_CHANNEL_SHEET),
+            getRows(sheets, AlertFileGenerator.OPSGENIE_CHANNEL_SHEET))));
+        channels.addAll(toChannels(PagerDutyChannelParser.parse(getHeaders(sheets, AlertFileGenerator.PAGERDUTY_CHANNEL_SHEET),
+            getRows(sheets, AlertFileGenerator.PAGERDUTY_CHANNEL_SHEET))));
+        channels.addAll(toChannels(UserChannelParser.parse(getHeaders(sheets, AlertFileGenerator.USER_CHANNEL_SHEET),
+            getRows(sheets, AlertFileGenerator.USER_CHANNEL_SHEET))));
+        channels.addAll(toChannels(VictorOpsChannelParser.parse(getHeaders(sheets, AlertFileGenerator.VICTOROPS_CHANNEL_SHEET),
+            getRows(sheets, AlertFileGenerator.VICTOROPS_CHANNEL_SHEET))));
+        channels.addAll(toChannels(xMattersChannelParser.parse(getHeaders(sheets, AlertFileGenerator.XMATTERS_CHANNEL_SHEET),
+            getRows(sheets, AlertFileGenerator.XMATTERS_CHANNEL_SHEET))));
+        Assert.assertEquals(9*CHANNELS, channels.size());
+        for(int i = 0; i < channels.size(); i++)
+            channels.get(i).setId(1000L+i);
+
+        // Every policy should resolve all its channels
+        List<AlertPolicy> policies = AlertPolicyParser.parse(channels, getHeaders(sheets, AlertFileGenerator.ALERT_POLICY_SHEET),
+            getRows(sheets, AlertFileGenerator.ALERT_POLICY_SHEET));
+        Assert.assertEquals(POLICIES, policies.size());
+        for(int i = 0; i < policies.size(); i++)
+        {
+            AlertPolicy policy = policies.get(i);
+            Assert.assertEquals(AlertFileGenerator.getPolicyName(i+1), policy.getName());
+            Assert.assertEquals(2, policy.getChannels().getChannelIds().size());
+            policy.setId(2000L+i);
+        }
+
+        // Every condition should resolve its policy and entities
+        List<Entity> entities = getEntities();
+        List<AlertCondition> alertConditions = AlertConditionParser.parse(policies, entities,
+            getHeaders(sheets, AlertFileGenerator.ALERT_CONDITION_SHEET), getRows(sheets, AlertFileGenerator.ALERT_CONDITION_SHEET));
+        Assert.assertEquals(CONDITIONS, alertConditions.size());
+        for(AlertCondition condition : alertConditions)
+        {
+            Assert.assertNotNull(condition.getPolicyId());
+            Assert.assertFalse(condition.getEntities().isEmpty());
+        }
+        List<ExternalServiceAlertCondition> externalServiceConditions = ExternalServiceAlertConditionParser.parse(policies, entities,
+            getHeaders(sheets, AlertFileGenerator.EXTERNAL_SERVICE_CONDITION_SHEET),
+            getRows(sheets, AlertFileGenerator.EXTERNAL_SERVICE_CONDITION_SHEET));
+        Assert.assertEquals(CONDITIONS, externalServiceConditions.size());
+        for(ExternalServiceAlertCondition condition : externalServiceConditions)
+            Assert.assertFalse(condition.getEntities().isEmpty());
+        List<NrqlAlertCondition> nrqlConditions = NrqlAlertConditionParser.parse(policies,
+            getHeaders(sheets, AlertFileGenerator.NRQL_CONDITION_SHEET), getRows(sheets, AlertFileGenerator.NRQL_CONDITION_SHEET));
+        Assert.assertEquals(CONDITIONS, nrqlConditions.size());
+        List<InfraMetricAlertCondition> infraMetricConditions = InfraMetricAlertConditionParser.parse(policies,
+            getHeaders(sheets, AlertFileGenerator.INFRA_METRIC_CONDITION_SHEET), getRows(sheets, AlertFileGenerator.INFRA_METRIC_CONDITION_SHEET));
+        Assert.assertEquals(CONDITIONS, infraMetricConditions.size());
+        List<InfraProcessRunningAlertCondition> infraProcessConditions = InfraProcessRunningAlertConditionParser.parse(policies,
+            getHeaders(sheets, AlertFileGenerator.INFRA_PROCESS_CONDITION_SHEET), getRows(sheets, AlertFileGenerator.INFRA_PROCESS_CONDITION_SHEET));
+        Assert.assertEquals(CONDITIONS, infraProcessConditions.size());
+        List<InfraHostNotReportingAlertCondition> infraHostConditions = InfraHostNotReportingAlertConditionParser.parse(policies,
+            getHeaders(sheets, AlertFileGenerator.INFRA_HOST_CONDITION_SHEET), getRows(sheets, AlertFileGenerator.INFRA_HOST_CONDITION_SHEET));
+        Assert.assertEquals(CONDITIONS, infraHostConditions.size());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testAlertFiles() throws IOException
+    {
+        String testName = "GeneratorAlertFilesTest";
+        logger.info("Starting test: "+testName);
+
+        // Write one CSV file per sheet and read the channels and policies back from the files
+        File directory = folder.newFolder("alerts");
+        getAlertGenerator().writeFiles(directory, "csv");
+        Assert.assertEquals(16, directory.list().length);
+
+        List<EmailChannel> emailChannels = null;
+        InputStream stream = new FileInputStream(new File(directory, "email-channels.csv"));
+        try
+        {
+            emailChannels = EmailChannelParser.parse(getReader("email-channels.csv", AlertFileGenerator.EMAIL_CHANNEL_SHEET, stream));
+        }
+        finally
+        {
+            stream.close();
+        }
+        Assert.assertEquals(CHANNELS, emailChannels.size());
+        Assert.assertEquals("email-channel-00001", emailChannels.get(0).getName());
+        for(int i = 0; i < emailChannels.size(); i++)
+            emailChannels.get(i).setId(1000L+i);
+
+        List<AlertPolicy> policies = null;
+        stream = new FileInputStream(new File(directory, "alert-policies.csv"));
+        try
+        {
+            policies = AlertPolicyParser.parse(new ArrayList<AlertChannel>(emailChannels),
+                getReader("alert-policies.csv", AlertFileGenerator.ALERT_POLICY_SHEET, stream));
+        }
+        finally
+        {
+            stream.close();
+        }
+        Assert.assertEquals(POLICIES, policies.size());
+        Assert.assertEquals(AlertFileGenerator.getPolicyName(1), policies.get(0).getName());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testAlertSeed()
+    {
+        String testName = "GeneratorAlertSeedTest";
+        logger.info("Starting test: "+testName);
+
+        // The same seed always produces the same lines
+        Map<String,List<String[]>> first = getAlertGenerator().generate();
+        Map<String,List<String[]>> second = getAlertGenerator().generate();
+        Assert.assertEquals(first.keySet(), second.keySet());
+        for(String sheet : first.keySet())
+            Assert.assertTrue(Arrays.deepEquals(first.get(sheet).toArray(), second.get(sheet).toArray()));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testDashboardRoundTrip() throws IOException
+    {
+        String testName = "GeneratorDashboardRoundTripTest";
+        logger.info("Starting test: "+testName);
+
+        DashboardFileGenerator generator = DashboardFileGenerator.builder()
+            .dashboards(3)
+            .widgets(8)
+            .policies(POLICIES)
+            .entities(ENTITIES)
+            .seed(1L)
+            .build();
+        StringWriter writer = new StringWriter();
+        generator.write(writer);
+
+        List<Dashboard> dashboards = DashboardParser.parseYaml(new StringReader(writer.toString()));
+        Assert.assertEquals(3, dashboards.size());
+        for(int i = 0; i < dashboards.size(); i++)
+        {
+            Dashboard dashboard = dashboards.get(i);
+            Assert.assertEquals(String.format("dashboard-%05d", i+1), dashboard.getTitle());
+            Assert.assertEquals(8, dashboard.getWidgets().size());
+        }
+
+        // The same seed always produces the same YAML
+        StringWriter other = new StringWriter();
+        generator.write(other);
+        Assert.assertEquals(writer.toString(), other.toString());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Returns a generator for a small set of alert files.
+     */
+    private AlertFileGenerator getAlertGenerator()
+    {
+        return AlertFileGenerator.builder()
+            .channels(CHANNELS)
+            .policies(POLICIES)
+            .conditions(CONDITIONS)
+            .entities(ENTITIES)
+            .channelsPerPolicy(2)
+            .seed(1L)
+            .build();
+    }
+
+    /**
+     * Checks the number of channels read and returns them as alert channels.
+     */
+    private List<AlertChannel> toChannels(List<? extends AlertChannel> channels)
+    {
+        Assert.assertEquals(CHANNELS, channels.size());
+        return new ArrayList<AlertChannel>(channels);
+    }
+
+    /**
+     * Returns the headers of the given sheet.
+     */
+    private String[] getHeaders(Map<String,List<String[]>> sheets, String sheet)
+    {
+        return sheets.get(sheet).get(0);
+    }
+
+    /**
+     * Returns the rows of the given sheet, excluding the headers.
+     */
+    private List<String[]> getRows(Map<String,List<String[]>> sheets, String sheet)
+    {
+        List<String[]> lines = sheets.get(sheet);
+        return lines.subList(1, lines.size());
+    }
+
+    /**
+     * Returns the entities named by the generator.
+     */
+    private List<Entity> getEntities()
+    {
+        List<Entity> ret = new ArrayList<Entity>();
+        for(int i = 1; i <= ENTITIES; i++)
+        {
+            Application application = new Application();
+            application.setId(3000L+i);
+            application.setName(AlertFileGenerator.getEntityName(i));
+            ret.add(application);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a reader for the given file stream.
+     */
+    private InputFileReader getReader(String filename, String worksheet, InputStream stream)
+    {
+        return InputFileReader.builder()
+            .name(filename)
+            .worksheet(worksheet)
+            .withInputStream(stream)
+            .build();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.limits;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+import com.opsmatters.newrelic.batch.limits.CircuitBreaker.Permit;
+import com.opsmatters.newrelic.batch.limits.CircuitBreaker.State;
+import com.opsmatters.newrelic.batch.limits.ConcurrencyLimiter.Family;
+
+/**
+ * The set of tests used for stopping API calls while a family of endpoints is failing.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class CircuitBreakerTest
+{
+    private static final Logger logger = Logger.getLogger(CircuitBreakerTest.class.getName());
+
+    private static final String ENDPOINT = "alertPolicies.create";
+
+    @Test
+    public void testOpen()
+    {
+        String testName = "CircuitBreakerOpenTest";
+        logger.info("Starting test: "+testName);
+
+        CircuitBreaker breaker = new CircuitBreaker(4, 2, 0.5d, 60000L);
+        breaker.setMaxWait(0L);
+
+        // The breaker stays closed until it has seen the minimum number of calls
+        breaker.acquire(ENDPOINT).release(true);
+        Assert.assertEquals(State.CLOSED, breaker.getState(Family.REST_ALERTS));
+        breaker.acquire(ENDPOINT).release(false);
+        Assert.assertEquals(State.OPEN, breaker.getState(Family.REST_ALERTS));
+        Assert.assertEquals(State.CLOSED, breaker.getState(Family.INFRA_ALERTS));
+
+        // Calls fail fast while the breaker is open, but other families are not affected
+        try
+        {
+            breaker.acquire(ENDPOINT);
+            Assert.fail("expected an exception for an open circuit");
+        }
+        catch(IllegalStateException e)
+        {
+        }
+        Assert.assertEquals(1L, breaker.getRejected(Family.REST_ALERTS));
+        breaker.acquire("infraAlertConditions.create").release(false);
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testWindow()
+    {
+        String testName = "CircuitBreakerWindowTest";
+        logger.info("Starting test: "+testName);
+
+        // Older outcomes drop out of the window
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.75d, 60000L);
+        breaker.acquire(ENDPOINT).release(true);
+        breaker.acquire(ENDPOINT).release(true);
+        for(int i = 0; i < 4; i++)
+            breaker.acquire(ENDPOINT).release(false);
+        breaker.acquire(ENDPOINT).release(true);
+        breaker.acquire(ENDPOINT).release(true);
+        Assert.assertEquals(State.CLOSED, breaker.getState(Family.REST_ALERTS));
+        breaker.acquire(ENDPOINT).release(true);
+        Assert.assertEquals(State.OPEN, breaker.getState(Family.REST_ALERTS));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testProbeSucceeded() throws Exception
+    {
+        String testName = "CircuitBreakerProbeSucceededTest";
+        logger.info("Starting test: "+testName);
+
+        CircuitBreaker breaker = open(100L);
+        breaker.setMaxWait(0L);
+        Thread.sleep(150L);
+
+        // A single probe is let through once the open period has passed
+        Permit probe = breaker.acquire(ENDPOINT);
+        Assert.assertEquals(State.HALF_OPEN, breaker.getState(Family.REST_ALERTS));
+        try
+        {
+            breaker.acquire(ENDPOINT);
+            Assert.fail("expected an exception while probing");
+        }
+        catch(IllegalStateException e)
+        {
+        }
+
+        probe.release(false);
+        Assert.assertEquals(State.CLOSED, breaker.getState(Family.REST_ALERTS));
+        breaker.acquire(ENDPOINT).release(false);
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testProbeFailed() throws Exception
+    {
+        String testName = "CircuitBreakerProbeFailedTest";
+        logger.info("Starting test: "+testName);
+
+        CircuitBreaker breaker = open(100L);
+        breaker.setMaxWait(0L);
+        Thread.sleep(150L);
+
+        // A failed probe opens the breaker again for twice as long
+        breaker.acquire(ENDPOINT).release(true);
+        Assert.assertEquals(State.OPEN, breaker.getState(Family.REST_ALERTS));
+        Thread.sleep(120L);
+        try
+        {
+            breaker.acquire(ENDPOINT);
+            Assert.fail("expected an exception for an open circuit");
+        }
+        catch(IllegalStateException e)
+        {
+        }
+        Thread.sleep(200L);
+        breaker.acquire(ENDPOINT).release(false);
+        Assert.assertEquals(State.CLOSED, breaker.getState(Family.REST_ALERTS));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testProbeCancelled() throws Exception
+    {
+        String testName = "CircuitBreakerProbeCancelledTest";
+        logger.info("Starting test: "+testName);
+
+        CircuitBreaker breaker = open(100L);
+        breaker.setMaxWait(0L);
+        Thread.sleep(150L);
+
+        // A cancelled probe lets the next call probe straight away
+        breaker.acquire(ENDPOINT).cancel();
+        Assert.assertEquals(State.OPEN, breaker.getState(Family.REST_ALERTS));
+        Permit probe = breaker.acquire(ENDPOINT);
+        Assert.assertEquals(State.HALF_OPEN, breaker.getState(Family.REST_ALERTS));
+        probe.release(false);
+        Assert.assertEquals(State.CLOSED, breaker.getState(Family.REST_ALERTS));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(timeout=10000L)
+    public void testParked() throws Exception
+    {
+        String testName = "CircuitBreakerParkedTest";
+        logger.info("Starting test: "+testName);
+
+        final CircuitBreaker breaker = open(100L);
+        Thread.sleep(150L);
+        Permit probe = breaker.acquire(ENDPOINT);
+
+        // Calls made while probing are parked until the breaker closes
+        final AtomicReference<State> state = new AtomicReference<State>();
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                Permit permit = breaker.acquire(ENDPOINT);
+                state.set(breaker.getState(Family.REST_ALERTS));
+                permit.release(false);
+                acquired.countDown();
+            }
+        };
+        thread.start();
+
+        while(breaker.getParked(Family.REST_ALERTS) == 0)
+            Thread.sleep(10L);
+        Assert.assertEquals(1L, acquired.getCount());
+        probe.release(false);
+        Assert.assertTrue(acquired.await(5L, TimeUnit.SECONDS));
+        thread.join();
+        Assert.assertEquals(State.CLOSED, state.get());
+        Assert.assertEquals(0, breaker.getParked(Family.REST_ALERTS));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Returns a breaker whose circuit for the alert endpoints is open for the given time.
+     */
+    private CircuitBreaker open(long openTime)
+    {
+        CircuitBreaker breaker = new CircuitBreaker(2, 2, 0.5d, openTime);
+        breaker.acquire(ENDPOINT).release(true);
+        breaker.acquire(ENDPOINT).release(true);
+        Assert.assertEquals(State.OPEN, breaker.getState(Family.REST_ALERTS));
+        return breaker;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.limits;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+import com.opsmatters.newrelic.batch.limits.ConcurrencyLimiter.Family;
+import com.opsmatters.newrelic.batch.limits.ConcurrencyLimiter.Permit;
+
+/**
+ * The set of tests used for the adaptive limit on the number of API calls in flight.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class ConcurrencyLimiterTest
+{
+    private static final Logger logger = Logger.getLogger(ConcurrencyLimiterTest.class.getName());
+
+    @Test
+    public void testFamilies()
+    {
+        String testName = "ConcurrencyLimiterFamiliesTest";
+        logger.info("Starting test: "+testName);
+
+        Assert.assertEquals(Family.REST_ALERTS, ConcurrencyLimiter.getFamily("alertPolicies.create"));
+        Assert.assertEquals(Family.INFRA_ALERTS, ConcurrencyLimiter.getFamily("infraAlertConditions.list"));
+        Assert.assertEquals(Family.DASHBOARDS, ConcurrencyLimiter.getFamily("dashboards.update"));
+        Assert.assertEquals(Family.REST_ALERTS, ConcurrencyLimiter.getFamily(null));
+
+        Assert.assertTrue(ConcurrencyLimiter.isOverload(new SocketTimeoutException()));
+        Assert.assertTrue(ConcurrencyLimiter.isOverload(new RuntimeException(new SocketTimeoutException())));
+        Assert.assertFalse(ConcurrencyLimiter.isOverload(new IllegalStateException("not found")));
+        Assert.assertFalse(ConcurrencyLimiter.isOverload(null));
+        Assert.assertFalse(ConcurrencyLimiter.isThrottled(new SocketTimeoutException()));
+        Assert.assertFalse(ConcurrencyLimiter.isThrottled(null));
+
+        // Each family has its own limit
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 8);
+        Assert.assertEquals(1, limiter.getMinLimit());
+        Assert.assertEquals(8, limiter.getMaxLimit());
+        limiter.acquire("infraAlertConditions.create").release(true);
+        Assert.assertEquals(2, limiter.getLimit(Family.INFRA_ALERTS));
+        Assert.assertEquals(4, limiter.getLimit(Family.REST_ALERTS));
+        Assert.assertEquals(4, limiter.getLimit(Family.DASHBOARDS));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testAdditiveIncrease()
+    {
+        String testName = "ConcurrencyLimiterAdditiveIncreaseTest";
+        logger.info("Starting test: "+testName);
+
+        // Calls that do not use the whole limit leave it unchanged
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 4);
+        for(int i = 0; i < 5; i++)
+            limiter.acquire("alertPolicies.list").release(false);
+        Assert.assertEquals(2, limiter.getLimit(Family.REST_ALERTS));
+
+        // Rounds that use the whole limit grow it by about one each, up to the maximum
+        int rounds = 0;
+        while(limiter.getLimit(Family.REST_ALERTS) < 4 && rounds < 10)
+        {
+            round(limiter, limiter.getLimit(Family.REST_ALERTS));
+            ++rounds;
+        }
+        Assert.assertEquals(4, limiter.getLimit(Family.REST_ALERTS));
+        Assert.assertTrue(rounds <= 6);
+        round(limiter, 4);
+        Assert.assertEquals(4, limiter.getLimit(Family.REST_ALERTS));
+        Assert.assertEquals(0, limiter.getInFlight(Family.REST_ALERTS));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testMultiplicativeDecrease()
+    {
+        String testName = "ConcurrencyLimiterMultiplicativeDecreaseTest";
+        logger.info("Starting test: "+testName);
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 32);
+
+        // Failures from calls of the same round only halve the limit once
+        Permit first = limiter.acquire("alertPolicies.create");
+        Permit second = limiter.acquire("alertPolicies.create");
+        first.release(true);
+        Assert.assertEquals(4, limiter.getLimit(Family.REST_ALERTS));
+        second.release(true);
+        Assert.assertEquals(4, limiter.getLimit(Family.REST_ALERTS));
+
+        // Later failures halve it again, down to the minimum
+        limiter.acquire("alertPolicies.create").release(true);
+        Assert.assertEquals(2, limiter.getLimit(Family.REST_ALERTS));
+        limiter.acquire("alertPolicies.create").release(true);
+        Assert.assertEquals(1, limiter.getLimit(Family.REST_ALERTS));
+        limiter.acquire("alertPolicies.create").release(true);
+        Assert.assertEquals(1, limiter.getLimit(Family.REST_ALERTS));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testLatencyDecrease() throws Exception
+    {
+        String testName = "ConcurrencyLimiterLatencyDecreaseTest";
+        logger.info("Starting test: "+testName);
+
+        // A window of calls much slower than the baseline reduces the limit gently
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 8);
+        for(int i = 0; i < 50; i++)
+            call(limiter, 1L);
+        Assert.assertEquals(4, limiter.getLimit(Family.DASHBOARDS));
+        for(int i = 0; i < 50; i++)
+            call(limiter, 10L);
+        Assert.assertEquals(3, limiter.getLimit(Family.DASHBOARDS));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(timeout=10000L)
+    public void testBlocking() throws Exception
+    {
+        String testName = "ConcurrencyLimiterBlockingTest";
+        logger.info("Starting test: "+testName);
+
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1);
+        Permit permit = limiter.acquire("alertChannels.list");
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                limiter.acquire("alertChannels.list").release(false);
+                acquired.countDown();
+            }
+        };
+        thread.start();
+
+        // The second call waits until the first is released
+        Assert.assertFalse(acquired.await(200L, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, limiter.getInFlight(Family.REST_ALERTS));
+        permit.release(false);
+        Assert.assertTrue(acquired.await(5L, TimeUnit.SECONDS));
+        thread.join();
+
+        // Releasing a permit twice has no effect
+        permit.release(false);
+        Assert.assertEquals(0, limiter.getInFlight(Family.REST_ALERTS));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Acquires the given number of permits at once and releases them all.
+     */
+    private void round(ConcurrencyLimiter limiter, int calls)
+    {
+        Permit[] permits = new Permit[calls];
+        for(int i = 0; i < calls; i++)
+            permits[i] = limiter.acquire("alertPolicies.list");
+        for(Permit permit : permits)
+            permit.release(false);
+    }
+
+    /**
+     * Makes a call to a dashboard endpoint that takes the given time.
+     */
+    private void call(ConcurrencyLimiter limiter, long millis) throws InterruptedException
+    {
+        Permit permit = limiter.acquire("dashboards.list");
+        Thread.sleep(millis);
+        permit.release(false);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.limits;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for spacing the API calls made to an account.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class RateLimiterTest
+{
+    private static final Logger logger = Logger.getLogger(RateLimiterTest.class.getName());
+
+    @Test
+    public void testAcquire()
+    {
+        String testName = "RateLimiterAcquireTest";
+        logger.info("Starting test: "+testName);
+
+        // The first call is immediate and the rest are spaced by the interval
+        RateLimiter limiter = new RateLimiter(20.0d);
+        long start = System.nanoTime();
+        for(int i = 0; i < 5; i++)
+            limiter.acquire();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start);
+        Assert.assertTrue("elapsed="+elapsed, elapsed >= 190L);
+
+        limiter.setRate(1000.0d);
+        Assert.assertEquals(1000.0d, limiter.getRate(), 0.001d);
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidRate()
+    {
+        new RateLimiter(0.0d);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.metrics;
+
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for recording latencies and calculating percentiles.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class LatencyHistogramTest
+{
+    private static final Logger logger = Logger.getLogger(LatencyHistogramTest.class.getName());
+
+    @Test
+    public void testEmpty()
+    {
+        String testName = "LatencyHistogramEmptyTest";
+        logger.info("Starting test: "+testName);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0L, histogram.getCount());
+        Assert.assertEquals(0L, histogram.getMin());
+        Assert.assertEquals(0L, histogram.getMax());
+        Assert.assertEquals(0.0d, histogram.getMean());
+        Assert.assertEquals(0L, histogram.getValueAtPercentile(50.0d));
+        Assert.assertEquals(0L, histogram.getValueAtPercentile(99.0d));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testLinearPercentiles()
+    {
+        String testName = "LatencyHistogramLinearPercentilesTest";
+        logger.info("Starting test: "+testName);
+
+        // Values below 32 have a bucket each so the percentiles are exact
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long i = 1L; i <= 20L; i++)
+            histogram.record(i);
+        Assert.assertEquals(20L, histogram.getCount());
+        Assert.assertEquals(210L, histogram.getTotal());
+        Assert.assertEquals(1L, histogram.getMin());
+        Assert.assertEquals(20L, histogram.getMax());
+        Assert.assertEquals(10.5d, histogram.getMean());
+        Assert.assertEquals(1L, histogram.getValueAtPercentile(0.0d));
+        Assert.assertEquals(10L, histogram.getValueAtPercentile(50.0d));
+        Assert.assertEquals(18L, histogram.getValueAtPercentile(90.0d));
+        Assert.assertEquals(20L, histogram.getValueAtPercentile(100.0d));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testLogarithmicPercentiles()
+    {
+        String testName = "LatencyHistogramLogarithmicPercentilesTest";
+        logger.info("Starting test: "+testName);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long i = 1L; i <= 100000L; i++)
+            histogram.record(i);
+
+        checkPercentile(histogram, 50.0d, 50000L);
+        checkPercentile(histogram, 90.0d, 90000L);
+        checkPercentile(histogram, 99.0d, 99000L);
+        Assert.assertEquals(100000L, histogram.getValueAtPercentile(100.0d));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testLimitedToMax()
+    {
+        String testName = "LatencyHistogramLimitedToMaxTest";
+        logger.info("Starting test: "+testName);
+
+        // The upper bound of the bucket for 1000 is 1023
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000L);
+        Assert.assertEquals(1000L, histogram.getValueAtPercentile(50.0d));
+        Assert.assertEquals(1000L, histogram.getValueAtPercentile(99.0d));
+
+        // Negative values are recorded as zero
+        histogram.record(-5L);
+        Assert.assertEquals(0L, histogram.getMin());
+        Assert.assertEquals(0L, histogram.getValueAtPercentile(50.0d));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testBuckets()
+    {
+        String testName = "LatencyHistogramBucketsTest";
+        logger.info("Starting test: "+testName);
+
+        // Each value falls in the bucket whose bounds contain it and the buckets are contiguous
+        long[] values = {0L, 1L, 31L, 32L, 33L, 63L, 64L, 1000L, 65535L, 1000000L, 3600000000L, Long.MAX_VALUE/2L};
+        for(long value : values)
+        {
+            int index = LatencyHistogram.getIndex(value);
+            long upper = LatencyHistogram.getUpperBound(index);
+            Assert.assertTrue(upper >= value);
+            Assert.assertTrue(upper-value <= value/16L);
+            Assert.assertEquals(index, LatencyHistogram.getIndex(upper));
+            Assert.assertEquals(index+1, LatencyHistogram.getIndex(upper+1L));
+        }
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testReset()
+    {
+        String testName = "LatencyHistogramResetTest";
+        logger.info("Starting test: "+testName);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(500L);
+        histogram.reset();
+        Assert.assertEquals(0L, histogram.getCount());
+        Assert.assertEquals(0L, histogram.getTotal());
+        Assert.assertEquals(0L, histogram.getMin());
+        Assert.assertEquals(0L, histogram.getValueAtPercentile(50.0d));
+
+        try
+        {
+            histogram.getValueAtPercentile(101.0d);
+            Assert.fail("expected an exception for an invalid percentile");
+        }
+        catch(IllegalArgumentException e)
+        {
+        }
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Checks the given percentile is at or above the exact value and within the bucket error.
+     */
+    private void checkPercentile(LatencyHistogram histogram, double percentile, long expected)
+    {
+        long value = histogram.getValueAtPercentile(percentile);
+        Assert.assertTrue(value >= expected);
+        Assert.assertTrue(value-expected <= expected/16L);
+    }
+}
\ No newline at end of file
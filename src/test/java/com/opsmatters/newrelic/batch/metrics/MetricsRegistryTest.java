@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.metrics;
+
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for recording the metrics of API endpoints.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class MetricsRegistryTest
+{
+    private static final Logger logger = Logger.getLogger(MetricsRegistryTest.class.getName());
+
+    @Test
+    public void testCounters()
+    {
+        String testName = "MetricsRegistryCountersTest";
+        logger.info("Starting test: "+testName);
+
+        MetricsRegistry registry = new MetricsRegistry();
+        EndpointMetrics create = registry.getEndpoint("alertPolicies.create");
+        Assert.assertSame(create, registry.getEndpoint("alertPolicies.create"));
+        Assert.assertNull(registry.findEndpoint("infraAlertConditions.list"));
+
+        long start = create.start();
+        Assert.assertEquals(1, registry.getInFlight());
+        create.stop(start, true);
+        start = create.start();
+        create.stop(start, false);
+        registry.retry("alertPolicies.create");
+        registry.retry("infraAlertConditions.list");
+        Assert.assertEquals(0, registry.getInFlight());
+
+        // The endpoints are sorted by name
+        List<EndpointSnapshot> snapshots = registry.getEndpoints();
+        Assert.assertEquals(2, snapshots.size());
+        EndpointSnapshot snapshot = snapshots.get(0);
+        Assert.assertEquals("alertPolicies.create", snapshot.getName());
+        Assert.assertEquals(2L, snapshot.getCalls());
+        Assert.assertEquals(1L, snapshot.getErrors());
+        Assert.assertEquals(1L, snapshot.getRetries());
+        Assert.assertEquals(2L, create.getLatency().getCount());
+        Assert.assertEquals("infraAlertConditions.list", snapshots.get(1).getName());
+        Assert.assertEquals(0L, snapshots.get(1).getCalls());
+        Assert.assertEquals(1L, snapshots.get(1).getRetries());
+
+        Assert.assertEquals(2L, registry.getCalls());
+        Assert.assertEquals(1L, registry.getErrors());
+        Assert.assertTrue(registry.getSummary().contains("retries=1"));
+
+        registry.reset();
+        Assert.assertEquals(0L, registry.getCalls());
+        Assert.assertEquals(0L, create.getRetries());
+        Assert.assertEquals(0L, create.getLatency().getCount());
+
+        logger.info("Completed test: "+testName);
+    }
+}
\ No newline at end of file
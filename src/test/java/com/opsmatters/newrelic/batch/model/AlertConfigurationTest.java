@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.EmailChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.SlackChannel;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraMetricAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraProcessRunningAlertCondition;
+
+/**
+ * The set of tests used for partitioning and indexing an alert configuration.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class AlertConfigurationTest
+{
+    private static final Logger logger = Logger.getLogger(AlertConfigurationTest.class.getName());
+
+    @Test
+    public void testPartitions()
+    {
+        String testName = "AlertConfigurationPartitionsTest";
+        logger.info("Starting test: "+testName);
+
+        AlertConfiguration config = new AlertConfiguration();
+        EmailChannel email = EmailChannel.builder()
+            .name("ops")
+            .recipients("ops@example.com")
+            .includeJsonAttachment(false)
+            .build();
+        SlackChannel slack = SlackChannel.builder()
+            .name("chat")
+            .url("https://hooks.example.com")
+            .channel("alerts")
+            .build();
+        config.addAlertChannels(Arrays.<AlertChannel>asList(email, slack));
+        Assert.assertEquals(2, config.numAlertChannels());
+        Assert.assertEquals(Arrays.asList(email), config.getEmailChannels());
+        Assert.assertEquals(Arrays.asList(slack), config.getSlackChannels());
+        Assert.assertTrue(config.getWebhookChannels().isEmpty());
+
+        InfraMetricAlertCondition metric = InfraMetricAlertCondition.builder()
+            .policyId(20L)
+            .name("cpu")
+            .build();
+        InfraProcessRunningAlertCondition process = InfraProcessRunningAlertCondition.builder()
+            .policyId(20L)
+            .name("java")
+            .build();
+        config.addInfraAlertConditions(Arrays.<InfraAlertCondition>asList(metric, process));
+        Assert.assertEquals(2, config.numInfraAlertConditions());
+        Assert.assertEquals(Arrays.asList(metric), config.getInfraMetricAlertConditions());
+        Assert.assertEquals(Arrays.asList(process), config.getInfraProcessRunningAlertConditions());
+        Assert.assertTrue(config.getInfraHostNotReportingAlertConditions().isEmpty());
+
+        // Replacing the channels also replaces the partitions
+        config.setAlertChannels(Arrays.asList(slack));
+        Assert.assertTrue(config.getEmailChannels().isEmpty());
+        Assert.assertEquals(Arrays.asList(slack), config.getSlackChannels());
+
+        // The lists are read-only
+        try
+        {
+            config.getAlertChannels().add(email);
+            Assert.fail("expected read-only list");
+        }
+        catch(UnsupportedOperationException e)
+        {
+        }
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testIndexes()
+    {
+        String testName = "AlertConfigurationIndexesTest";
+        logger.info("Starting test: "+testName);
+
+        AlertConfiguration config = new AlertConfiguration();
+        AlertPolicy policy = getPolicy("policy");
+        EmailChannel channel = EmailChannel.builder()
+            .name("ops")
+            .recipients("ops@example.com")
+            .includeJsonAttachment(false)
+            .build();
+        config.addAlertPolicies(Arrays.asList(policy));
+        config.addAlertChannels(Arrays.asList(channel));
+        Assert.assertSame(policy, config.getAlertPolicy("policy"));
+        Assert.assertSame(channel, config.getAlertChannel("ops"));
+        Assert.assertNull(config.getAlertPolicy(20L));
+        Assert.assertNull(config.getAlertChannel(10L));
+
+        // The ids are assigned after the objects are added, eg. when they are created
+        policy.setId(20L);
+        channel.setId(10L);
+        Assert.assertSame(policy, config.getAlertPolicy(20L));
+        Assert.assertSame(channel, config.getAlertChannel(10L));
+
+        // A stale entry is not returned
+        policy.setId(21L);
+        Assert.assertNull(config.getAlertPolicy(20L));
+        Assert.assertSame(policy, config.getAlertPolicy(21L));
+        Assert.assertNull(config.getAlertPolicy("missing"));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Returns an alert policy with the given name.
+     */
+    private static AlertPolicy getPolicy(String name)
+    {
+        return AlertPolicy.builder()
+            .name(name)
+            .incidentPreference("PER_POLICY")
+            .build();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.progress;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for tracking the progress of bulk operations.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class ProgressTrackerTest
+{
+    private static final Logger logger = Logger.getLogger(ProgressTrackerTest.class.getName());
+
+    @Test
+    public void testNotify()
+    {
+        String testName = "ProgressTrackerNotifyTest";
+        logger.info("Starting test: "+testName);
+
+        ProgressTracker tracker = new ProgressTracker("Creating alert policies", 4);
+        List<Progress> updates = getListener(tracker);
+        tracker.setNotifyInterval(0L);
+
+        tracker.started();
+        tracker.completed();
+        tracker.started();
+        tracker.failed();
+        Assert.assertEquals(2, updates.size());
+        Progress progress = updates.get(1);
+        Assert.assertEquals("Creating alert policies", progress.getPhase());
+        Assert.assertEquals(1, progress.getCompleted());
+        Assert.assertEquals(1, progress.getFailed());
+        Assert.assertEquals(2, progress.getRemaining());
+        Assert.assertEquals(50.0d, progress.getPercentComplete(), 0.001d);
+        Assert.assertFalse(progress.isFinished());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testFinish()
+    {
+        String testName = "ProgressTrackerFinishTest";
+        logger.info("Starting test: "+testName);
+
+        ProgressTracker tracker = new ProgressTracker("Deleting alert policies", 3);
+        List<Progress> updates = getListener(tracker);
+        tracker.setNotifyInterval(60000L);
+
+        // Nothing is sent to the listeners until the interval has elapsed
+        tracker.started();
+        tracker.completed();
+        tracker.started();
+        Assert.assertTrue(updates.isEmpty());
+
+        // The item started but not completed is counted as failed
+        tracker.finish();
+        tracker.finish();
+        Assert.assertEquals(1, updates.size());
+        Progress progress = updates.get(0);
+        Assert.assertTrue(progress.isFinished());
+        Assert.assertEquals(1, progress.getCompleted());
+        Assert.assertEquals(1, progress.getFailed());
+        Assert.assertEquals(1, progress.getRemaining());
+        Assert.assertEquals(0L, progress.getEta());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testProgress()
+    {
+        String testName = "ProgressTest";
+        logger.info("Starting test: "+testName);
+
+        Progress progress = new Progress("Creating alert channels", 10, 3, 1, 2000L, false);
+        Assert.assertEquals(6, progress.getRemaining());
+        Assert.assertEquals(40.0d, progress.getPercentComplete(), 0.001d);
+        Assert.assertEquals(2.0d, progress.getItemsPerSecond(), 0.001d);
+        Assert.assertEquals(3000L, progress.getEta());
+        Assert.assertTrue(progress.toString().contains("ETA 3s"));
+
+        // The ETA is unknown until an item has been processed
+        Assert.assertEquals(-1L, new Progress("Creating alert channels", 10, 0, 0, 0L, false).getEta());
+        Assert.assertEquals(100.0d, new Progress("Creating alert channels", 0, 0, 0, 0L, true).getPercentComplete(), 0.001d);
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Adds a listener to the given tracker and returns the list of progress updates it receives.
+     */
+    private List<Progress> getListener(ProgressTracker tracker)
+    {
+        final List<Progress> ret = new ArrayList<Progress>();
+        tracker.addListener(new ProgressListener()
+        {
+            public void onProgress(Progress progress)
+            {
+                ret.add(progress);
+            }
+        });
+        return ret;
+    }
+}
\ No newline at end of file
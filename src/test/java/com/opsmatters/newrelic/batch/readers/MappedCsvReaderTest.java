@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.readers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for reading CSV files by memory-mapping them.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class MappedCsvReaderTest
+{
+    private static final Logger logger = Logger.getLogger(MappedCsvReaderTest.class.getName());
+
+    private static final String INPUT_PATH = "target/test-classes/";
+    private static final String INPUT_FILENAME = "test-alerts.csv";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAlertsFile() throws IOException
+    {
+        String testName = "MappedCsvAlertsFileTest";
+        logger.info("Starting test: "+testName);
+
+        MappedCsvReader reader = new MappedCsvReader(new File(INPUT_PATH+INPUT_FILENAME));
+        reader.parse();
+        assertRow(reader.getHeaders(), "Alert Policy", "Type", "Name");
+        Assert.assertEquals(1, reader.getRows().size());
+        assertRow(reader.getRows().get(0), "test-policy\t", "infra-metric", "disk-used-percent");
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testQuotedFields() throws IOException
+    {
+        String testName = "MappedCsvQuotedFieldsTest";
+        logger.info("Starting test: "+testName);
+
+        MappedCsvReader reader = getReader("a,b,c,d\n"
+            +"\"x\ty\",\"1,2\",\"say \"\"hi\"\"\",\"line1\nline2\"\n"
+            +"\"\",\"\"\"\",plain,\n");
+        reader.parse();
+        List<String[]> rows = reader.getRows();
+        Assert.assertEquals(2, rows.size());
+        assertRow(rows.get(0), "x\ty", "1,2", "say \"hi\"", "line1\nline2");
+        assertRow(rows.get(1), "", "\"", "plain", "");
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testLineEndings() throws IOException
+    {
+        String testName = "MappedCsvLineEndingsTest";
+        logger.info("Starting test: "+testName);
+
+        // CRLF line endings, blank lines and a last row without a line ending
+        MappedCsvReader reader = getReader("a,b\r\n1,2\r\n\r\n\"3\",\"4\"\r\n5,6");
+        reader.parse();
+        assertRow(reader.getHeaders(), "a", "b");
+        List<String[]> rows = reader.getRows();
+        Assert.assertEquals(3, rows.size());
+        assertRow(rows.get(0), "1", "2");
+        assertRow(rows.get(1), "3", "4");
+        assertRow(rows.get(2), "5", "6");
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testByteOrderMark() throws IOException
+    {
+        String testName = "MappedCsvByteOrderMarkTest";
+        logger.info("Starting test: "+testName);
+
+        MappedCsvReader reader = getReader("\uFEFFAlert Policy,Name\npolicy,condition\n");
+        reader.parse();
+        assertRow(reader.getHeaders(), "Alert Policy", "Name");
+        assertRow(reader.getRows().get(0), "policy", "condition");
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testColumns() throws IOException
+    {
+        String testName = "MappedCsvColumnsTest";
+        logger.info("Starting test: "+testName);
+
+        // Only the selected columns are read, ignoring case
+        MappedCsvReader reader = getReader("a,B,c\n1,2,3\n");
+        reader.setColumns(Arrays.asList("b"));
+        reader.parse();
+        assertRow(reader.getRows().get(0), null, "2", null);
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testWindows() throws IOException
+    {
+        String testName = "MappedCsvWindowsTest";
+        logger.info("Starting test: "+testName);
+
+        // Rows with quoted line breaks span the edges of the small windows
+        StringBuilder sb = new StringBuilder("id,name,description\r\n");
+        int count = 500;
+        for(int i = 0; i < count; i++)
+            sb.append(i).append(",name-").append(i).append(",\"first \"\"line\"\"\r\nsecond, line ").append(i).append("\"\r\n");
+
+        MappedCsvReader reader = getReader(sb.toString());
+        reader.setWindow(1024);
+        reader.parse();
+        List<String[]> rows = reader.getRows();
+        Assert.assertEquals(count, rows.size());
+        for(int i = 0; i < count; i++)
+            assertRow(rows.get(i), Integer.toString(i), "name-"+i, "first \"line\"\r\nsecond, line "+i);
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(expected=IOException.class)
+    public void testRowLongerThanWindow() throws IOException
+    {
+        StringBuilder sb = new StringBuilder("a,b\n1,\"");
+        for(int i = 0; i < 2048; i++)
+            sb.append('x');
+        sb.append("\"\n");
+
+        MappedCsvReader reader = getReader(sb.toString());
+        reader.setWindow(1024);
+        reader.parse();
+    }
+
+    @Test(expected=IOException.class)
+    public void testUnterminatedQuote() throws IOException
+    {
+        getReader("a,b\n1,\"2\n").parse();
+    }
+
+    /**
+     * Returns a reader for a file with the given contents.
+     */
+    private MappedCsvReader getReader(String contents) throws IOException
+    {
+        File file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(contents.getBytes(UTF8));
+        }
+        finally
+        {
+            out.close();
+        }
+        return new MappedCsvReader(file);
+    }
+
+    /**
+     * Checks the fields of the given row.
+     */
+    private static void assertRow(String[] row, String... expected)
+    {
+        Assert.assertEquals(expected.length, row.length);
+        for(int i = 0; i < expected.length; i++)
+            Assert.assertEquals(expected[i], row[i]);
+    }
+}
\ No newline at end of file
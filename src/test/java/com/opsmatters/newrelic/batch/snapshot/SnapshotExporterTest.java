@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.snapshot;
+
+import java.util.Map;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+import com.opsmatters.newrelic.batch.AlertManager;
+import com.opsmatters.newrelic.batch.DashboardManager;
+import com.opsmatters.newrelic.batch.deploy.DryRun;
+
+/**
+ * The set of tests used for exporting a snapshot of an account.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class SnapshotExporterTest
+{
+    private static final Logger logger = Logger.getLogger(SnapshotExporterTest.class.getName());
+
+    @Test
+    public void testDryRun() throws InterruptedException
+    {
+        String testName = "SnapshotExporterDryRunTest";
+        logger.info("Starting test: "+testName);
+
+        // A dry run without read-through makes no calls and returns empty lists
+        DryRun dryRun = new DryRun();
+        dryRun.setReadThrough(false);
+        AlertManager alertManager = new AlertManager(testName, false);
+        alertManager.setDryRun(dryRun);
+        DashboardManager dashboardManager = new DashboardManager(testName, false);
+        dashboardManager.setDryRun(dryRun);
+
+        SnapshotExporter exporter = new SnapshotExporter(alertManager, dashboardManager);
+        exporter.setThreads(2);
+        AccountSnapshot snapshot = exporter.getSnapshot();
+        Assert.assertEquals(0, snapshot.getAlertConfiguration().numAlertPolicies());
+        Assert.assertEquals(0, snapshot.getAlertConfiguration().numAlertChannels());
+        Assert.assertTrue(snapshot.getEntities().isEmpty());
+        Assert.assertTrue(snapshot.getDashboards().isEmpty());
+
+        // Each top-level list is called once, and there are no policies to list the conditions for
+        Map<String,Long> calls = dryRun.getCalls();
+        Assert.assertEquals(Long.valueOf(1L), calls.get("alertPolicies.list"));
+        Assert.assertEquals(Long.valueOf(1L), calls.get("alertChannels.list"));
+        Assert.assertEquals(Long.valueOf(1L), calls.get("dashboards.list"));
+        Assert.assertNull(calls.get("alertConditions.list"));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidThreads()
+    {
+        new SnapshotExporter(new AlertManager("SnapshotExporterInvalidThreadsTest", false), null).setThreads(0);
+    }
+}
\ No newline at end of file
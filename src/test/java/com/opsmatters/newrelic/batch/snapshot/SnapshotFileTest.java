@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.snapshot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for writing and reading compact binary snapshot files.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class SnapshotFileTest
+{
+    private static final Logger logger = Logger.getLogger(SnapshotFileTest.class.getName());
+
+    private static final String SHEET = "Email Channels";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        String testName = "SnapshotFileRoundTripTest";
+        logger.info("Starting test: "+testName);
+
+        SnapshotFile snapshot = new SnapshotFile(1234L);
+        snapshot.putSheet(SHEET, getLines());
+
+        // The compressed and uncompressed files contain the same lines
+        for(boolean compress : new boolean[] { false, true })
+        {
+            File file = folder.newFile("snapshot-"+compress+".nrbs");
+            snapshot.write(file, compress);
+            SnapshotFile read = SnapshotFile.read(file);
+            Assert.assertEquals(1234L, read.getCreated());
+            Assert.assertEquals(Arrays.asList(SHEET), read.getSheetNames());
+            Assert.assertNull(read.getDashboardYaml());
+
+            List<String[]> lines = read.getLines(SHEET);
+            Assert.assertEquals(getLines().size(), lines.size());
+            for(int i = 0; i < lines.size(); i++)
+                Assert.assertTrue(Arrays.equals(getLines().get(i), lines.get(i)));
+            Assert.assertTrue(snapshot.diff(read).isEmpty());
+        }
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testDiff()
+    {
+        String testName = "SnapshotFileDiffTest";
+        logger.info("Starting test: "+testName);
+
+        SnapshotFile previous = new SnapshotFile();
+        previous.putSheet(SHEET, getLines());
+
+        List<String[]> lines = new ArrayList<String[]>(getLines());
+        lines.remove(1);
+        lines.add(new String[] { "4", "support", "support@example.com" });
+        SnapshotFile snapshot = new SnapshotFile();
+        snapshot.putSheet(SHEET, lines);
+
+        List<String> diff = snapshot.diff(previous);
+        Assert.assertEquals(2, diff.size());
+        Assert.assertEquals("- "+SHEET+": [1, ops, ops@example.com]", diff.get(0));
+        Assert.assertEquals("+ "+SHEET+": [4, support, support@example.com]", diff.get(1));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(expected=IOException.class)
+    public void testInvalidFile() throws IOException
+    {
+        File file = folder.newFile("invalid.nrbs");
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write("not a snapshot file".getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+        SnapshotFile.read(file);
+    }
+
+    /**
+     * Returns the lines of a sheet, including values that must not be stored as numbers.
+     */
+    private static List<String[]> getLines()
+    {
+        List<String[]> ret = new ArrayList<String[]>();
+        ret.add(new String[] { "id", "name", "recipients" });
+        ret.add(new String[] { "1", "ops", "ops@example.com" });
+        ret.add(new String[] { "0", "007", null });
+        ret.add(new String[] { "12345678901234567890", "-1", "" });
+        ret.add(new String[] { "3", "ops", "\u00e9quipe@example.com" });
+        return ret;
+    }
+}
\ No newline at end of file
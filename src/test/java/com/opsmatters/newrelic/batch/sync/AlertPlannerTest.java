@@ -0,0 +1,285 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.sync;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+import com.opsmatters.newrelic.api.model.alerts.policies.AlertPolicy;
+import com.opsmatters.newrelic.api.model.alerts.channels.AlertChannel;
+import com.opsmatters.newrelic.api.model.alerts.channels.EmailChannel;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraMetricAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraProcessRunningAlertCondition;
+import com.opsmatters.newrelic.batch.model.AlertConfiguration;
+
+/**
+ * The set of tests used for planning the changes to alert channels, policies and conditions.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class AlertPlannerTest
+{
+    private static final Logger logger = Logger.getLogger(AlertPlannerTest.class.getName());
+
+    @Test
+    public void testNewPolicyNewChannel()
+    {
+        String testName = "NewPolicyNewChannelTest";
+        logger.info("Starting test: "+testName);
+
+        // The new channel only has a placeholder id
+        AlertConfiguration desired = new AlertConfiguration();
+        desired.addAlertChannels(Arrays.asList(getChannel(-1L, "ops", "ops@example.com")));
+        desired.addAlertPolicies(Arrays.asList(getPolicy(-2L, "policy", "PER_POLICY", -1L)));
+
+        AlertPlan plan = AlertPlanner.builder().build().plan(desired, new AlertConfiguration());
+        List<PlanAction> actions = plan.getActions();
+        Assert.assertEquals(3, actions.size());
+        assertAction(actions.get(0), PlanAction.Operation.CREATE, PlanAction.Kind.CHANNEL, null, "ops");
+        assertAction(actions.get(1), PlanAction.Operation.CREATE, PlanAction.Kind.POLICY, null, "policy");
+        assertAction(actions.get(2), PlanAction.Operation.LINK, PlanAction.Kind.POLICY_CHANNEL, "policy", "ops");
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testNewPolicyExistingChannel()
+    {
+        String testName = "NewPolicyExistingChannelTest";
+        logger.info("Starting test: "+testName);
+
+        AlertConfiguration live = new AlertConfiguration();
+        live.addAlertChannels(Arrays.asList(getChannel(10L, "ops", "ops@example.com")));
+
+        AlertConfiguration desired = new AlertConfiguration();
+        desired.addAlertPolicies(Arrays.asList(getPolicy(null, "policy", "PER_POLICY", 10L)));
+
+        AlertPlan plan = AlertPlanner.builder().build().plan(desired, live);
+        List<PlanAction> actions = plan.getActions();
+        Assert.assertEquals(2, actions.size());
+        assertAction(actions.get(0), PlanAction.Operation.CREATE, PlanAction.Kind.POLICY, null, "policy");
+        assertAction(actions.get(1), PlanAction.Operation.LINK, PlanAction.Kind.POLICY_CHANNEL, "policy", "ops");
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testUnchanged()
+    {
+        String testName = "UnchangedTest";
+        logger.info("Starting test: "+testName);
+
+        AlertConfiguration live = new AlertConfiguration();
+        live.addAlertChannels(Arrays.asList(getChannel(10L, "ops", "ops@example.com")));
+        live.addAlertPolicies(Arrays.asList(getPolicy(20L, "policy", "PER_POLICY")));
+
+        AlertConfiguration desired = new AlertConfiguration();
+        desired.addAlertChannels(Arrays.asList(getChannel(null, "ops", "ops@example.com")));
+        desired.addAlertPolicies(Arrays.asList(getPolicy(null, "policy", "PER_POLICY")));
+
+        AlertPlan plan = AlertPlanner.builder().prune(true).build().plan(desired, live);
+        Assert.assertTrue(plan.isEmpty());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testChangedObjects()
+    {
+        String testName = "ChangedObjectsTest";
+        logger.info("Starting test: "+testName);
+
+        AlertConfiguration live = new AlertConfiguration();
+        live.addAlertChannels(Arrays.asList(getChannel(10L, "ops", "ops@example.com")));
+        live.addAlertPolicies(Arrays.asList(getPolicy(20L, "policy", "PER_POLICY")));
+
+        AlertConfiguration desired = new AlertConfiguration();
+        desired.addAlertChannels(Arrays.asList(getChannel(null, "ops", "support@example.com")));
+        desired.addAlertPolicies(Arrays.asList(getPolicy(null, "policy", "PER_CONDITION")));
+
+        AlertPlan plan = AlertPlanner.builder().build().plan(desired, live);
+        List<PlanAction> actions = plan.getActions();
+        Assert.assertEquals(2, actions.size());
+        assertAction(actions.get(0), PlanAction.Operation.REPLACE, PlanAction.Kind.CHANNEL, null, "ops");
+        assertAction(actions.get(1), PlanAction.Operation.UPDATE, PlanAction.Kind.POLICY, null, "policy");
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testReplacedChannelRelinked()
+    {
+        String testName = "ReplacedChannelRelinkedTest";
+        logger.info("Starting test: "+testName);
+
+        AlertConfiguration live = new AlertConfiguration();
+        live.addAlertChannels(Arrays.asList(getChannel(10L, "ops", "ops@example.com")));
+        live.addAlertPolicies(Arrays.asList(getPolicy(20L, "policy", "PER_POLICY")));
+
+        AlertConfiguration desired = new AlertConfiguration();
+        desired.addAlertChannels(Arrays.asList(getChannel(null, "ops", "support@example.com")));
+        desired.addAlertPolicies(Arrays.asList(getPolicy(null, "policy", "PER_POLICY", 10L)));
+
+        // The re-created channel has a new id, so it is linked to the policy again
+        AlertPlan plan = AlertPlanner.builder().build().plan(desired, live);
+        List<PlanAction> actions = plan.getActions();
+        Assert.assertEquals(2, actions.size());
+        assertAction(actions.get(0), PlanAction.Operation.REPLACE, PlanAction.Kind.CHANNEL, null, "ops");
+        Assert.assertEquals(Long.valueOf(10L), ((AlertChannel)actions.get(0).getLive()).getId());
+        assertAction(actions.get(1), PlanAction.Operation.LINK, PlanAction.Kind.POLICY_CHANNEL, "policy", "ops");
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testPrune()
+    {
+        String testName = "PruneTest";
+        logger.info("Starting test: "+testName);
+
+        AlertConfiguration live = new AlertConfiguration();
+        live.addAlertChannels(Arrays.asList(getChannel(10L, "ops", "ops@example.com")));
+        live.addAlertPolicies(Arrays.asList(getPolicy(20L, "policy", "PER_POLICY")));
+        AlertConfiguration desired = new AlertConfiguration();
+
+        // Nothing is deleted unless pruning is enabled
+        Assert.assertTrue(AlertPlanner.builder().build().plan(desired, live).isEmpty());
+
+        AlertPlan plan = AlertPlanner.builder().prune(true).build().plan(desired, live);
+        List<PlanAction> actions = plan.getActions();
+        Assert.assertEquals(2, actions.size());
+        assertAction(actions.get(0), PlanAction.Operation.DELETE, PlanAction.Kind.POLICY, null, "policy");
+        assertAction(actions.get(1), PlanAction.Operation.DELETE, PlanAction.Kind.CHANNEL, null, "ops");
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testInfraConditionSubtypes()
+    {
+        String testName = "InfraConditionSubtypesTest";
+        logger.info("Starting test: "+testName);
+
+        // A live process condition with the same name as a desired metric condition
+        InfraProcessRunningAlertCondition process = InfraProcessRunningAlertCondition.builder()
+            .policyId(20L)
+            .name("cpu")
+            .build();
+        process.setId(30L);
+        AlertConfiguration live = new AlertConfiguration();
+        live.addAlertPolicies(Arrays.asList(getPolicy(20L, "policy", "PER_POLICY")));
+        live.addInfraAlertConditions(Arrays.asList(process));
+
+        InfraMetricAlertCondition metric = InfraMetricAlertCondition.builder()
+            .policyId(20L)
+            .name("cpu")
+            .build();
+        AlertConfiguration desired = new AlertConfiguration();
+        desired.addAlertPolicies(Arrays.asList(getPolicy(20L, "policy", "PER_POLICY")));
+        desired.addInfraAlertConditions(Arrays.asList(metric));
+
+        // The conditions are not matched, so the metric condition is created rather than updating the process condition
+        AlertPlan plan = AlertPlanner.builder().prune(true).build().plan(desired, live);
+        List<PlanAction> actions = plan.getActions();
+        Assert.assertEquals(2, actions.size());
+        assertAction(actions.get(0), PlanAction.Operation.CREATE, PlanAction.Kind.INFRA_ALERT_CONDITION, "policy", "cpu");
+        Assert.assertSame(metric, actions.get(0).getDesired());
+        assertAction(actions.get(1), PlanAction.Operation.DELETE, PlanAction.Kind.INFRA_ALERT_CONDITION, "policy", "cpu");
+        Assert.assertSame(process, actions.get(1).getLive());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testChangedCondition()
+    {
+        String testName = "ChangedConditionTest";
+        logger.info("Starting test: "+testName);
+
+        InfraMetricAlertCondition liveCondition = InfraMetricAlertCondition.builder()
+            .policyId(20L)
+            .name("cpu")
+            .comparison("above")
+            .build();
+        liveCondition.setId(30L);
+        AlertConfiguration live = new AlertConfiguration();
+        live.addAlertPolicies(Arrays.asList(getPolicy(20L, "policy", "PER_POLICY")));
+        live.addInfraAlertConditions(Arrays.asList(liveCondition));
+
+        InfraMetricAlertCondition condition = InfraMetricAlertCondition.builder()
+            .policyId(20L)
+            .name("cpu")
+            .comparison("below")
+            .build();
+        AlertConfiguration desired = new AlertConfiguration();
+        desired.addAlertPolicies(Arrays.asList(getPolicy(20L, "policy", "PER_POLICY")));
+        desired.addInfraAlertConditions(Arrays.asList(condition));
+
+        // The changed condition is updated in place rather than replaced
+        AlertPlan plan = AlertPlanner.builder().prune(true).build().plan(desired, live);
+        List<PlanAction> actions = plan.getActions();
+        Assert.assertEquals(1, actions.size());
+        assertAction(actions.get(0), PlanAction.Operation.UPDATE, PlanAction.Kind.INFRA_ALERT_CONDITION, "policy", "cpu");
+        Assert.assertSame(condition, actions.get(0).getDesired());
+        Assert.assertSame(liveCondition, actions.get(0).getLive());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Returns an email channel with the given id, name and recipients.
+     */
+    private static AlertChannel getChannel(Long id, String name, String recipients)
+    {
+        EmailChannel ret = EmailChannel.builder()
+            .name(name)
+            .recipients(recipients)
+            .includeJsonAttachment(false)
+            .build();
+        ret.setId(id);
+        return ret;
+    }
+
+    /**
+     * Returns an alert policy with the given id, name, incident preference and channels.
+     */
+    private static AlertPolicy getPolicy(Long id, String name, String incidentPreference, Long... channelIds)
+    {
+        AlertPolicy ret = AlertPolicy.builder()
+            .name(name)
+            .incidentPreference(incidentPreference)
+            .build();
+        ret.setId(id);
+        if(channelIds.length > 0)
+            ret.setChannelIds(Arrays.asList(channelIds));
+        return ret;
+    }
+
+    /**
+     * Checks the attributes of the given action.
+     */
+    private static void assertAction(PlanAction action, PlanAction.Operation operation, PlanAction.Kind kind,
+        String policyName, String name)
+    {
+        Assert.assertEquals(operation, action.getOperation());
+        Assert.assertEquals(kind, action.getKind());
+        Assert.assertEquals(policyName, action.getPolicyName());
+        Assert.assertEquals(name, action.getName());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.sync;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.logging.Logger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for replaying the journal of a bulk operation.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class JournalTest
+{
+    private static final Logger logger = Logger.getLogger(JournalTest.class.getName());
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplay() throws IOException
+    {
+        String testName = "JournalReplayTest";
+        logger.info("Starting test: "+testName);
+
+        File file = new File(folder.getRoot(), "journal.log");
+        Journal journal = new Journal(file);
+        journal.open();
+        Assert.assertFalse(journal.isResuming());
+        journal.begin("create/policy1");
+        journal.complete("create/policy1", 1L);
+        journal.begin("create/policy2");
+        journal.close();
+
+        // The completed and pending operations are restored
+        Journal replayed = new Journal(file);
+        replayed.open();
+        Assert.assertTrue(replayed.isResuming());
+        Assert.assertEquals(Long.valueOf(1L), replayed.getCompletedId("create/policy1"));
+        Assert.assertFalse(replayed.isPending("create/policy1"));
+        Assert.assertNull(replayed.getCompletedId("create/policy2"));
+        Assert.assertTrue(replayed.isPending("create/policy2"));
+
+        // The journal is removed once the operation has completed
+        replayed.delete();
+        Assert.assertFalse(file.exists());
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testPartialLine() throws IOException
+    {
+        String testName = "JournalPartialLineTest";
+        logger.info("Starting test: "+testName);
+
+        File file = new File(folder.getRoot(), "journal.log");
+        String contents = "B\tcreate/policy1\nC\t1\tcreate/policy1\nB\tcreate/policy2\n";
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write((contents+"C\t2\tcreate/pol").getBytes(UTF8));
+        }
+        finally
+        {
+            out.close();
+        }
+
+        // The partial line is discarded and truncated from the file
+        Journal journal = new Journal(file);
+        journal.open();
+        Assert.assertEquals(contents.getBytes(UTF8).length, file.length());
+        Assert.assertEquals(Long.valueOf(1L), journal.getCompletedId("create/policy1"));
+        Assert.assertTrue(journal.isPending("create/policy2"));
+
+        // New records start on a new line
+        journal.complete("create/policy2", 2L);
+        journal.close();
+        Journal replayed = new Journal(file);
+        replayed.open();
+        Assert.assertEquals(Long.valueOf(2L), replayed.getCompletedId("create/policy2"));
+        Assert.assertFalse(replayed.isPending("create/policy2"));
+        replayed.close();
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testInvalidLines() throws IOException
+    {
+        String testName = "JournalInvalidLinesTest";
+        logger.info("Starting test: "+testName);
+
+        File file = new File(folder.getRoot(), "journal.log");
+        String contents = "B\tcreate/policy1\nX\tcreate/policy1\nC\tabc\tcreate/policy1\n"
+            +"B\tdelete/policy2\nC\t2\tdelete/policy2\n";
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(contents.getBytes(UTF8));
+        }
+        finally
+        {
+            out.close();
+        }
+
+        // The invalid lines are skipped and the valid records are still replayed
+        Journal journal = new Journal(file);
+        journal.open();
+        Assert.assertTrue(journal.isResuming());
+        Assert.assertTrue(journal.isPending("create/policy1"));
+        Assert.assertNull(journal.getCompletedId("create/policy1"));
+        Assert.assertEquals(Long.valueOf(2L), journal.getCompletedId("delete/policy2"));
+        Assert.assertFalse(journal.isPending("delete/policy2"));
+        Assert.assertEquals(contents.getBytes(UTF8).length, file.length());
+
+        // Reopening the journal replays the same records again
+        journal.complete("create/policy1", 1L);
+        journal.open();
+        Assert.assertEquals(Long.valueOf(1L), journal.getCompletedId("create/policy1"));
+        Assert.assertFalse(journal.isPending("create/policy1"));
+        journal.close();
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testNotOpen() throws IOException
+    {
+        Journal journal = new Journal(new File(folder.getRoot(), "journal.log"));
+        journal.begin("create/policy1");
+    }
+}
\ No newline at end of file
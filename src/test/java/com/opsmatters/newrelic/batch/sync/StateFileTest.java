@@ -0,0 +1,252 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.sync;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import junit.framework.Assert;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraMetricAlertCondition;
+import com.opsmatters.newrelic.api.model.alerts.conditions.InfraProcessRunningAlertCondition;
+
+/**
+ * The set of tests used for loading, compacting and replaying the state file.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class StateFileTest
+{
+    private static final Logger logger = Logger.getLogger(StateFileTest.class.getName());
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplay() throws IOException
+    {
+        String testName = "StateFileReplayTest";
+        logger.info("Starting test: "+testName);
+
+        File file = new File(folder.getRoot(), "state.log");
+        StateFile state = new StateFile(file);
+        state.load();
+        state.put(StateFile.getPolicyKey("policy1"), 1L, StateFile.POLICY, null, "abc");
+        state.put(StateFile.getPolicyKey("policy2"), 2L, StateFile.POLICY, null, null);
+        state.put(StateFile.getConditionKey(StateFile.NRQL_ALERT_CONDITION, 1L, "condition1"),
+            3L, StateFile.NRQL_ALERT_CONDITION, 1L, "def");
+        state.remove(StateFile.getPolicyKey("policy2"));
+        state.close();
+        Assert.assertEquals(4, getLines(file).size());
+
+        // The log is replayed in order, including the delete
+        StateFile replayed = new StateFile(file);
+        replayed.load();
+        Assert.assertEquals(2, replayed.size());
+        Assert.assertEquals(Long.valueOf(1L), replayed.getId(StateFile.getPolicyKey("policy1")));
+        Assert.assertNull(replayed.getId(StateFile.getPolicyKey("policy2")));
+        StateFile.Entry entry = replayed.get(StateFile.getConditionKey(StateFile.NRQL_ALERT_CONDITION, 1L, "condition1"));
+        Assert.assertEquals(3L, entry.getId());
+        Assert.assertEquals(StateFile.NRQL_ALERT_CONDITION, entry.getType());
+        Assert.assertEquals(Long.valueOf(1L), entry.getPolicyId());
+        Assert.assertEquals("def", entry.getFingerprint());
+        replayed.close();
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testUnchangedId() throws IOException
+    {
+        String testName = "StateFileUnchangedIdTest";
+        logger.info("Starting test: "+testName);
+
+        StateFile state = new StateFile(new File(folder.getRoot(), "state.log"));
+        state.load();
+        String key = StateFile.getChannelKey("channel1");
+        state.put(key, 10L, StateFile.CHANNEL, null, "abc");
+        Assert.assertEquals(Long.valueOf(10L), state.getUnchangedId(key, "abc"));
+        Assert.assertNull(state.getUnchangedId(key, "xyz"));
+        state.close();
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testStaleEntry() throws IOException
+    {
+        String testName = "StateFileStaleEntryTest";
+        logger.info("Starting test: "+testName);
+
+        File file = new File(folder.getRoot(), "state.log");
+        String key = StateFile.getPolicyKey("policy1");
+        write(file, "P\t1\t\tpolicy\t1000\tabc\t"+key+"\n");
+
+        StateFile state = new StateFile(file);
+        state.load();
+        Assert.assertNotNull(state.get(key));
+        Assert.assertNull(state.getId(key));
+
+        // An unchanged object is still skipped so that it is not created again
+        Assert.assertEquals(Long.valueOf(1L), state.getUnchangedId(key, "abc"));
+        Assert.assertNull(state.getUnchangedId(key, "xyz"));
+
+        // Entries do not expire with a maximum age of zero
+        state.setMaxAge(0L);
+        Assert.assertEquals(Long.valueOf(1L), state.getId(key));
+        state.close();
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testInfraSubtypes()
+    {
+        String testName = "StateFileInfraSubtypesTest";
+        logger.info("Starting test: "+testName);
+
+        // Infrastructure conditions share a type but each kind has its own subtype
+        InfraMetricAlertCondition metric = InfraMetricAlertCondition.builder().policyId(20L).name("cpu").build();
+        InfraProcessRunningAlertCondition process = InfraProcessRunningAlertCondition.builder().policyId(20L).name("cpu").build();
+        Assert.assertEquals(StateFile.INFRA_ALERT_CONDITION, StateFile.getType(metric));
+        Assert.assertEquals(StateFile.INFRA_ALERT_CONDITION, StateFile.getType(process));
+        Assert.assertEquals("infra_metric", StateFile.getSubtype(metric));
+        Assert.assertEquals("infra_process_running", StateFile.getSubtype(process));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testPartialLine() throws IOException
+    {
+        String testName = "StateFilePartialLineTest";
+        logger.info("Starting test: "+testName);
+
+        File file = new File(folder.getRoot(), "state.log");
+        long now = System.currentTimeMillis();
+        write(file, "P\t1\t\tpolicy\t"+now+"\tabc\tpolicy/policy1\n"
+            +"P\t2\t\tpolicy\t"+now+"\tdef\tpolicy/pol");
+
+        // The partial line is discarded and the log is rewritten without it
+        StateFile state = new StateFile(file);
+        state.load();
+        Assert.assertEquals(1, state.size());
+        Assert.assertEquals(Long.valueOf(1L), state.getId("policy/policy1"));
+        Assert.assertEquals(1, getLines(file).size());
+
+        // Changes are appended after the last complete line
+        state.put("policy/policy2", 2L, StateFile.POLICY, null, "def");
+        state.close();
+        StateFile replayed = new StateFile(file);
+        replayed.load();
+        Assert.assertEquals(2, replayed.size());
+        replayed.close();
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testCompact() throws IOException
+    {
+        String testName = "StateFileCompactTest";
+        logger.info("Starting test: "+testName);
+
+        File file = new File(folder.getRoot(), "state.log");
+        StateFile state = new StateFile(file);
+        state.load();
+        for(int i = 0; i < 1500; i++)
+            state.put(StateFile.getPolicyKey("policy"+(i%10)), i, StateFile.POLICY, null, null);
+        Assert.assertEquals(1500, getLines(file).size());
+
+        // The log has grown to more than twice the number of entries
+        state.save();
+        List<String> lines = getLines(file);
+        Assert.assertEquals(10, lines.size());
+        Assert.assertFalse(new File(folder.getRoot(), "state.log.tmp").exists());
+
+        // The compacted log has the last value of each entry
+        StateFile replayed = new StateFile(file);
+        replayed.load();
+        Assert.assertEquals(10, replayed.size());
+        Assert.assertEquals(Long.valueOf(1499L), replayed.getId(StateFile.getPolicyKey("policy9")));
+        replayed.close();
+        state.close();
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testCompactWithoutLoad() throws IOException
+    {
+        String testName = "StateFileCompactWithoutLoadTest";
+        logger.info("Starting test: "+testName);
+
+        File file = new File(folder.getRoot(), "state.log");
+        StateFile state = new StateFile(file);
+        state.load();
+        state.put(StateFile.getPolicyKey("policy1"), 1L, StateFile.POLICY, null, null);
+        state.close();
+
+        // The entries of the earlier run are kept even though the log was not loaded
+        StateFile next = new StateFile(file);
+        next.put(StateFile.getPolicyKey("policy2"), 2L, StateFile.POLICY, null, null);
+        next.compact();
+        Assert.assertEquals(2, next.size());
+        Assert.assertEquals(2, getLines(file).size());
+        next.close();
+
+        StateFile other = new StateFile(file);
+        other.compact();
+        Assert.assertEquals(2, other.size());
+        Assert.assertEquals(2, getLines(file).size());
+        other.close();
+
+        logger.info("Completed test: "+testName);
+    }
+
+    /**
+     * Writes the given contents to the given file.
+     */
+    private static void write(File file, String contents) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(contents.getBytes(UTF8));
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the lines of the given file.
+     */
+    private static List<String> getLines(File file) throws IOException
+    {
+        return Files.readAllLines(file.toPath(), UTF8);
+    }
+}
\ No newline at end of file
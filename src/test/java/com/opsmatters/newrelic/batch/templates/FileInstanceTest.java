@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Gerald Curley
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.opsmatters.newrelic.batch.templates;
+
+import java.util.logging.Logger;
+import org.junit.Test;
+import junit.framework.Assert;
+
+/**
+ * The set of tests used for reading and sharing the values of the columns of a file.
+ * 
+ * @author Gerald Curley (opsmatters)
+ */
+public class FileInstanceTest
+{
+    private static final Logger logger = Logger.getLogger(FileInstanceTest.class.getName());
+
+    private static final String[] HEADERS = new String[] {"Type", "Policy", "Name", "Enabled", "Duration"};
+
+    @Test
+    public void testSharedValues()
+    {
+        String testName = "FileInstanceSharedValuesTest";
+        logger.info("Starting test: "+testName);
+
+        FileInstance file = new TestTemplate().getInstance(HEADERS);
+        String first = file.getString("policy", getLine("policy1", "condition1"));
+        String second = file.getString("policy", getLine("policy1", "condition2"));
+        Assert.assertEquals("policy1", first);
+        Assert.assertSame(first, second);
+
+        // Values are trimmed before they are shared
+        Assert.assertSame(first, file.getString("policy", getLine(" policy1 ", "condition3")));
+
+        // Equal values in different columns are kept in separate dictionaries
+        String name = file.getString("name", getLine("policy2", "policy1"));
+        Assert.assertEquals("policy1", name);
+        Assert.assertNotSame(first, name);
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testUniqueColumn()
+    {
+        String testName = "FileInstanceUniqueColumnTest";
+        logger.info("Starting test: "+testName);
+
+        // A column of unique values does not stop the values of the other columns being shared
+        FileInstance file = new TestTemplate().getInstance(HEADERS);
+        String policy = null;
+        String first = null;
+        for(int i = 0; i < FileInstance.MAX_DICTIONARY_SIZE*3; i++)
+        {
+            String[] line = getLine("policy"+(i/1000), "condition"+i);
+            String name = file.getString("name", line);
+            if(i == 0)
+                first = name;
+            String value = file.getString("policy", line);
+            if(i%1000 == 0)
+                policy = value;
+            Assert.assertSame(policy, value);
+        }
+
+        // The least recently used values are evicted from a full dictionary
+        String name = file.getString("name", getLine("policy1", "condition0"));
+        Assert.assertEquals(first, name);
+        Assert.assertNotSame(first, name);
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test
+    public void testValues()
+    {
+        String testName = "FileInstanceValuesTest";
+        logger.info("Starting test: "+testName);
+
+        FileInstance file = new TestTemplate().getInstance(HEADERS);
+        String[] line = new String[] {"test", "policy1", "condition1", "true", " 10 "};
+        Assert.assertTrue(file.matches(line));
+        Assert.assertEquals(Boolean.TRUE, file.getBoolean("enabled", line));
+        Assert.assertEquals(Integer.valueOf(10), file.getInteger("duration", line));
+
+        // Missing columns use the default value, and empty columns are null
+        line = new String[] {"test", "policy1", "condition1", "", null};
+        Assert.assertNull(file.getBoolean("enabled", line));
+        Assert.assertEquals(Integer.valueOf(5), file.getInteger("duration", line));
+        Assert.assertEquals(Integer.valueOf(5), file.getInteger("duration", new String[] {"test", "policy1"}));
+
+        logger.info("Completed test: "+testName);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testMissingColumn()
+    {
+        new TestTemplate().getInstance(new String[] {"Type", "Name"}).checkColumns();
+    }
+
+    /**
+     * Returns a line with copies of the given policy and name, as they would be read from a file.
+     */
+    private static String[] getLine(String policy, String name)
+    {
+        return new String[] {"test", new String(policy), new String(name), "true", "10"};
+    }
+
+    /**
+     * A template with a policy, name, flag and number.
+     */
+    private static class TestTemplate extends FileTemplate
+    {
+        TestTemplate()
+        {
+            addColumn(TemplateColumn.builder().name("policy").header("Policy").build());
+            addColumn(TemplateColumn.builder().name("name").header("Name").build());
+            addColumn(TemplateColumn.builder().name("enabled").header("Enabled").mandatory(false).build());
+            addColumn(TemplateColumn.builder().name("duration").header("Duration").mandatory(false).defaultValue("5").build());
+        }
+
+        public String getType()
+        {
+            return "test";
+        }
+    }
+}
\ No newline at end of file